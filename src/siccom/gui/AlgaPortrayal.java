@@ -0,0 +1,63 @@
+package siccom.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+
+import siccom.sim.Alga;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.SimplePortrayal2D;
+import sim.util.gui.SimpleColorMap;
+
+/**
+ * Draws the algae as discs shaded by their height -- one instance serves all algae
+ * @author andreas
+ *
+ */
+public class AlgaPortrayal extends SimplePortrayal2D
+{
+	private static final long serialVersionUID = 4415907310628463770L;
+
+	static final Color darkGreen = new Color(100, 200, 100);
+	static final Color lightGreen = new Color(0, 255, 0);
+
+	SimpleColorMap colorM = new SimpleColorMap(0.0, 6.0, darkGreen, lightGreen);
+
+	@Override
+	public void draw(Object object, Graphics2D graphics, DrawInfo2D info)
+	{
+		Alga a = (Alga) object;
+		final double width = info.draw.width * a.getDiameter();
+		final double height = info.draw.height * a.getDiameter();
+
+		graphics.setColor(colorM.getColor(a.getHeight()));
+
+		final int x = (int)(info.draw.x - width / 2.0);
+		final int y = (int)(info.draw.y - height / 2.0);
+		final int w = (int)(width);
+		final int h = (int)(height);
+
+		// draw centered on the origin
+		graphics.fillOval(x, y, w, h);
+	}
+
+	/**
+	 *  information for the Inspector
+	 */
+	@Override
+	public boolean hitObject(Object object, DrawInfo2D range)
+	{
+		final double SLOP = 1.0;	// need a little extra diameter to hit circles
+		final double diameter = ((Alga) object).getDiameter();
+		final double width = range.draw.width * diameter;
+		final double height = range.draw.height * diameter;
+
+		Ellipse2D.Double ellipse = new Ellipse2D.Double( 
+				range.draw.x-width/2-SLOP,
+				range.draw.y-height/2-SLOP, 
+				width+SLOP*2,
+				height+SLOP*2 );
+
+		return (ellipse.intersects( range.clip.x, range.clip.y, range.clip.width, range.clip.height ));
+	}
+}
@@ -0,0 +1,75 @@
+package siccom.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.util.HashMap;
+
+import siccom.sim.BranchingCoral;
+import siccom.sim.BranchingGroup;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.SimplePortrayal2D;
+import sim.util.gui.SimpleColorMap;
+
+/**
+ * Draws the branching corals as stars of their branches -- one instance serves all colonies.
+ * The branches have the color of the group, faded to white with the bleach grade.
+ * @author andreas
+ *
+ */
+public class BranchingCoralPortrayal extends SimplePortrayal2D
+{
+	private static final long serialVersionUID = -2270164839570385417L;
+
+	/**
+	 * The color map of each group
+	 */
+	HashMap<BranchingGroup, SimpleColorMap> colorMaps = new HashMap<BranchingGroup, SimpleColorMap>();
+
+	@Override
+	public void draw(Object object, Graphics2D graph, DrawInfo2D inf)
+	{
+		BranchingCoral bC = (BranchingCoral) object;
+
+		SimpleColorMap colorM = colorMaps.get(bC.bG);
+		if (colorM == null)
+		{
+			colorM = new SimpleColorMap(0.0, 100.0, bC.bG.color, Color.WHITE);
+			colorMaps.put(bC.bG, colorM);
+		}
+		graph.setColor(colorM.getColor(bC.getBleachGrade()));		// depending on the bleachGrade of the coral
+
+		int x = (int)(inf.draw.x);
+		int y = (int)(inf.draw.y);
+		int numBranches = bC.getNumBranches();
+		for (int i=0; i<numBranches; i++)
+		{
+			int rad = (int)(inf.draw.width*(int)bC.getBranchLength(i));
+			int div = i+1;
+			int endX = (int)(x + (rad*Math.cos( (2*Math.PI/numBranches)*div )));
+			int endY = (int)(y - (rad*Math.sin( (2*Math.PI/numBranches)*div )));
+
+			graph.drawLine(x, y, endX, endY);
+		}
+	}
+
+	/**
+	 * for the inspector of Coral objects
+	 */
+	@Override
+	public boolean hitObject(Object object, DrawInfo2D range)
+	{
+		final double SLOP = 1.0;	// need a little extra diameter to hit circles
+		final double diameter = ((BranchingCoral) object).getDiameter();
+		final double width = range.draw.width * diameter;
+		final double height = range.draw.height * diameter;
+
+		Ellipse2D.Double ellipse = new Ellipse2D.Double( 
+				range.draw.x-width/2-SLOP,
+				range.draw.y-height/2-SLOP, 
+				width+SLOP*2,
+				height+SLOP*2 );
+
+		return (ellipse.intersects( range.clip.x, range.clip.y, range.clip.width, range.clip.height ));
+	}
+}
@@ -0,0 +1,154 @@
+package siccom.gui;
+
+import org.jfree.data.xy.XYSeries;
+
+import siccom.sim.TimeSeriesBuffer;
+
+/**
+ * Shows a {@link TimeSeriesBuffer} in a chart series with a bounded number of points.
+ * The last values (those in the visible window of a scrolling chart) are drawn one by one.
+ * The values before are taken in buckets of stride values; a bucket is drawn as its lowest and highest value
+ * (in the order they occurred), so peaks stay visible. Once these buckets take more than the maximum number
+ * of points the stride is doubled (until they fit) and the series is rebuilt -- so a run of any length keeps at most
+ * maxPoints points plus the last values in the chart, and rebuilding costs little more than appending.
+ * <p>
+ * The series does not notify the chart by itself; the owner updates all series of a chart
+ * and then fires one change for the chart (see {@link #fireChanged()}).
+ * @author andreas
+ *
+ */
+public class DecimatingSeries
+{
+	final TimeSeriesBuffer buffer;
+	final XYSeries series;
+	int maxPoints;
+	/**
+	 * The number of last values drawn one by one
+	 */
+	int fullResolution;
+	/**
+	 * The number of values per bucket
+	 */
+	int stride = 1;
+	/**
+	 * The values up to here are drawn in complete buckets
+	 */
+	int done;
+	/**
+	 * The points drawn one by one after the buckets
+	 */
+	int tailPoints;
+
+	/**
+	 * @param buffer the values
+	 * @param series the chart series -- filled only by this object
+	 * @param maxPoints the number of points the series may hold
+	 */
+	public DecimatingSeries(TimeSeriesBuffer buffer, XYSeries series, int maxPoints)
+	{
+		this.buffer = buffer;
+		this.series = series;
+		this.maxPoints = Math.max(4, maxPoints);
+		series.setNotify(false);
+	}
+
+	/**
+	 * Sets the number of points the series may hold -- e.g. two per pixel column of the chart.
+	 * A smaller number takes effect with the next update.
+	 */
+	public void setMaxPoints(int maxPoints)
+	{
+		this.maxPoints = Math.max(4, maxPoints);
+	}
+
+	/**
+	 * Sets the number of last values drawn one by one -- e.g. those of the time window shown by the chart
+	 */
+	public void setFullResolution(int values)
+	{
+		fullResolution = Math.max(0, values);
+	}
+
+	/**
+	 * Draws the values added to the buffer since the last update -- without notifying the chart
+	 */
+	public void update()
+	{
+		if (tailPoints > 0)
+		{
+			int n = series.getItemCount();
+			series.delete(n - tailPoints, n - 1);
+			tailPoints = 0;
+		}
+		int size = buffer.size();
+		int history = size - fullResolution;
+		while (done + stride <= history)
+		{
+			addBucket(done, done + stride);
+			done += stride;
+		}
+
+		while (series.getItemCount() > maxPoints)
+		{
+			stride *= 2;
+			series.clear();
+			done = 0;
+			while (done + stride <= history)
+			{
+				addBucket(done, done + stride);
+				done += stride;
+			}
+		}
+
+		for (int i=done; i<size; i++) series.add(buffer.x(i), buffer.get(i), false);
+		tailPoints = size - done;
+	}
+
+	/**
+	 * Tells the chart that the series has changed -- the chart redraws all of its series
+	 */
+	public void fireChanged()
+	{
+		series.fireSeriesChanged();
+	}
+
+	/**
+	 * Draws the values from..to-1 as their lowest and highest value
+	 * @return the number of points added
+	 */
+	private int addBucket(int from, int to)
+	{
+		if (to - from == 1)
+		{
+			series.add(buffer.x(from), buffer.get(from), false);
+			return 1;
+		}
+		int lo = from, hi = from;
+		for (int i=from+1; i<to; i++)
+		{
+			double v = buffer.get(i);
+			if (v < buffer.get(lo)) lo = i;
+			if (v > buffer.get(hi)) hi = i;
+		}
+		if (lo == hi)
+		{
+			series.add(buffer.x(lo), buffer.get(lo), false);
+			return 1;
+		}
+		int first = Math.min(lo, hi), second = Math.max(lo, hi);
+		series.add(buffer.x(first), buffer.get(first), false);
+		series.add(buffer.x(second), buffer.get(second), false);
+		return 2;
+	}
+
+	/**
+	 * Forgets the drawn points -- the series is rebuilt with the next update
+	 */
+	public void reset()
+	{
+		series.clear();
+		stride = 1;
+		done = 0;
+		tailPoints = 0;
+	}
+}
@@ -0,0 +1,91 @@
+package siccom.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.util.HashMap;
+
+import org.jhotdraw.geom.Polygon2D;
+
+import siccom.sim.MassiveCoral;
+import siccom.sim.MassiveGroup;
+import sim.portrayal.DrawInfo2D;
+import sim.portrayal.SimplePortrayal2D;
+import sim.util.gui.SimpleColorMap;
+
+/**
+ * Draws the massive corals -- one instance serves all colonies.
+ * The colony is filled with the color of its group, faded to white with its bleach grade.
+ * @author andreas
+ *
+ */
+public class MassiveCoralPortrayal extends SimplePortrayal2D
+{
+	private static final long serialVersionUID = 6243115834510725093L;
+
+	/**
+	 * The color map of each group
+	 */
+	HashMap<MassiveGroup, SimpleColorMap> colorMaps = new HashMap<MassiveGroup, SimpleColorMap>();
+	/**
+	 * The outline -- reused for every colony
+	 */
+	Polygon2D.Double drawP = new Polygon2D.Double();
+
+	@Override
+	public void draw(Object object, Graphics2D graph, DrawInfo2D inf)
+	{
+		MassiveCoral mC = (MassiveCoral) object;
+
+		SimpleColorMap colorM = colorMaps.get(mC.mG);
+		if (colorM == null)
+		{
+			colorM = new SimpleColorMap(0.0, 100.0, mC.mG.color, Color.WHITE);
+			colorMaps.put(mC.mG, colorM);
+		}
+		graph.setColor(colorM.getColor(mC.getBleachGrade()));		// depending on the bleachGrade of the coral
+
+		double x = inf.draw.x;
+		double y = inf.draw.y;
+		int numBranches = mC.getNumBranches();
+
+		drawP.reset();
+		for (int i=0; i < numBranches; i++)
+		{
+			double rad = (inf.draw.width*mC.getBranchLength(i));
+			int div = i+1;
+			double endX = x + (rad*Math.cos( (2*Math.PI/numBranches)*div ));
+			double endY = y - (rad*Math.sin( (2*Math.PI/numBranches)*div ));
+
+			drawP.addPoint(endX, endY);
+		}
+		graph.fill(drawP);
+
+		if (mC.getAlive())
+		{
+			graph.setColor(Color.black);
+			graph.draw(drawP);
+		}
+		graph.setColor(Color.white);
+	}
+
+	/**
+	 * for the inspector of Coral objects
+	 */
+	@Override
+	public boolean hitObject(Object object, DrawInfo2D range)
+	{
+		final double SLOP = 1.0;	// need a little extra diameter to hit circles
+		final double diameter = ((MassiveCoral) object).getDiameter();
+		final double width = range.draw.width * diameter;
+		final double height = range.draw.height * diameter;
+
+		Ellipse2D.Double ellipse = new Ellipse2D.Double( 
+				range.draw.x-width/2-SLOP,
+				range.draw.y-height/2-SLOP, 
+				width+SLOP*2,
+				height+SLOP*2 );
+
+		return (ellipse.intersects( range.clip.x, range.clip.y, range.clip.width, range.clip.height ));
+	}
+}
@@ -0,0 +1,142 @@
+package siccom.gui;
+
+import java.util.Arrays;
+
+/**
+ * What the reef view draws of one month -- the colours and outlines of the colonies and algae in primitive arrays.
+ * A frame is filled on the simulation thread and handed to the {@link ReefRenderer}; from then on it is
+ * not changed until the renderer gives it back for reuse, so the view never reads the live fields.
+ * All lengths are in units of the simulation area.
+ * @author andreas
+ *
+ */
+public class ReefFrame
+{
+	/**
+	 * The month of the frame
+	 */
+	int step;
+
+	/**
+	 * The massive corals: centre, colour (RGB), outline drawn in black (alive)
+	 * and the outline points relative to the centre -- those of colony i from outlineStart[i] to outlineStart[i+1]
+	 */
+	int numMassive;
+	float[] mx = new float[0], my = new float[0];
+	int[] mColor = new int[0];
+	boolean[] mAlive = new boolean[0];
+	int[] outlineStart = new int[1];
+	float[] outlineX = new float[0], outlineY = new float[0];
+	int outlineSize;
+
+	/**
+	 * The branching corals: centre, colour and the branch ends relative to the centre
+	 */
+	int numBranching;
+	float[] bx = new float[0], by = new float[0];
+	int[] bColor = new int[0];
+	int[] branchStart = new int[1];
+	float[] branchX = new float[0], branchY = new float[0];
+	int branchSize;
+
+	/**
+	 * The algae: centre, diameter and colour
+	 */
+	int numAlgae;
+	float[] ax = new float[0], ay = new float[0], aDiameter = new float[0];
+	int[] aColor = new int[0];
+
+	/**
+	 * Empties the frame and makes room for the given numbers of colonies and algae
+	 */
+	void clear(int massive, int branching, int algae)
+	{
+		numMassive = 0;
+		numBranching = 0;
+		numAlgae = 0;
+		if (mx.length < massive)
+		{
+			mx = Arrays.copyOf(mx, massive);
+			my = Arrays.copyOf(my, massive);
+			mColor = Arrays.copyOf(mColor, massive);
+			mAlive = Arrays.copyOf(mAlive, massive);
+			outlineStart = Arrays.copyOf(outlineStart, massive+1);
+		}
+		if (bx.length < branching)
+		{
+			bx = Arrays.copyOf(bx, branching);
+			by = Arrays.copyOf(by, branching);
+			bColor = Arrays.copyOf(bColor, branching);
+			branchStart = Arrays.copyOf(branchStart, branching+1);
+		}
+		if (ax.length < algae)
+		{
+			ax = Arrays.copyOf(ax, algae);
+			ay = Arrays.copyOf(ay, algae);
+			aDiameter = Arrays.copyOf(aDiameter, algae);
+			aColor = Arrays.copyOf(aColor, algae);
+		}
+		outlineSize = 0;
+		branchSize = 0;
+		outlineStart[0] = 0;
+		branchStart[0] = 0;
+	}
+
+	void addOutlinePoint(double x, double y)
+	{
+		int n = outlineSize++;
+		if (n == outlineX.length)
+		{
+			outlineX = Arrays.copyOf(outlineX, Math.max(64, 2*n));
+			outlineY = Arrays.copyOf(outlineY, Math.max(64, 2*n));
+		}
+		outlineX[n] = (float) x;
+		outlineY[n] = (float) y;
+	}
+
+	/**
+	 * Closes the outline of a massive coral -- the points added before belong to it
+	 */
+	void addMassive(double x, double y, int color, boolean alive)
+	{
+		int i = numMassive++;
+		mx[i] = (float) x;
+		my[i] = (float) y;
+		mColor[i] = color;
+		mAlive[i] = alive;
+		outlineStart[i+1] = outlineSize;
+	}
+
+	void addBranchEnd(double x, double y)
+	{
+		int n = branchSize++;
+		if (n == branchX.length)
+		{
+			branchX = Arrays.copyOf(branchX, Math.max(64, 2*n));
+			branchY = Arrays.copyOf(branchY, Math.max(64, 2*n));
+		}
+		branchX[n] = (float) x;
+		branchY[n] = (float) y;
+	}
+
+	/**
+	 * Closes a branching coral -- the branch ends added before belong to it
+	 */
+	void addBranching(double x, double y, int color)
+	{
+		int i = numBranching++;
+		bx[i] = (float) x;
+		by[i] = (float) y;
+		bColor[i] = color;
+		branchStart[i+1] = branchSize;
+	}
+
+	void addAlga(double x, double y, double diameter, int color)
+	{
+		int i = numAlgae++;
+		ax[i] = (float) x;
+		ay[i] = (float) y;
+		aDiameter[i] = (float) diameter;
+		aColor[i] = color;
+	}
+}
@@ -0,0 +1,287 @@
+package siccom.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+import javax.swing.JComponent;
+
+import siccom.sim.Alga;
+import siccom.sim.BranchingCoral;
+import siccom.sim.BranchingGroup;
+import siccom.sim.MassiveCoral;
+import siccom.sim.MassiveGroup;
+import siccom.sim.Siccom;
+import sim.util.Bag;
+import sim.util.gui.SimpleColorMap;
+
+/**
+ * Draws the reef on a thread of its own from {@link ReefFrame}s captured at the end of a month.
+ * <ul>
+ * <li>{@link #capture} fills a frame on the simulation thread and hands it over -- it never waits for the drawing;
+ * if the renderer has not yet taken the frame before, that frame is skipped</li>
+ * <li>the renderer draws the newest frame into the back image and swaps it with the front image</li>
+ * <li>the view only copies the front image to the screen</li>
+ * </ul>
+ * The frames and images are reused from frame to frame.
+ * The turf cells fill the whole area with the same colour and are drawn as one gray rectangle.
+ * @author andreas
+ *
+ */
+public class ReefRenderer implements Runnable
+{
+	static final Color TURF = Color.gray;
+
+	final JComponent view;
+	final double width, height;
+	final Object lock = new Object();
+	/**
+	 * The frame waiting to be drawn and a frame free for the next capture
+	 */
+	ReefFrame pending, spare;
+	/**
+	 * The image shown and the image drawn into -- swapped under the lock of the front image
+	 */
+	BufferedImage front, back;
+	final Object frontLock = new Object();
+	Thread thread;
+	volatile boolean running;
+	/**
+	 * The number of frames drawn and skipped
+	 */
+	public volatile int rendered, skipped;
+
+	/**
+	 * The colour maps -- only used on the simulation thread
+	 */
+	HashMap<MassiveGroup, SimpleColorMap> massiveColors = new HashMap<MassiveGroup, SimpleColorMap>();
+	HashMap<BranchingGroup, SimpleColorMap> branchingColors = new HashMap<BranchingGroup, SimpleColorMap>();
+	SimpleColorMap algaColors = new SimpleColorMap(0.0, 6.0, AlgaPortrayal.darkGreen, AlgaPortrayal.lightGreen);
+
+	/**
+	 * The polygon of a massive coral -- only used on the render thread
+	 */
+	int[] px = new int[64], py = new int[64];
+
+	/**
+	 * @param view the component showing the front image
+	 * @param width the width of the simulation area
+	 * @param height the height of the simulation area
+	 */
+	public ReefRenderer(JComponent view, double width, double height)
+	{
+		this.view = view;
+		this.width = width;
+		this.height = height;
+	}
+
+	public void start()
+	{
+		running = true;
+		thread = new Thread(this, "reef renderer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void stop()
+	{
+		synchronized (lock)
+		{
+			running = false;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Captures the reef of this month and hands it to the renderer -- called on the simulation thread
+	 */
+	public void capture(Siccom sim, int step)
+	{
+		ReefFrame f;
+		synchronized (lock)
+		{
+			f = spare;
+			spare = null;
+		}
+		if (f == null) f = new ReefFrame();
+
+		Bag m = sim.massiveCorals.getAllObjects();
+		Bag b = sim.branchingCorals.getAllObjects();
+		Bag a = sim.algae.getAllObjects();
+		f.clear(m.numObjs, b.numObjs, a.numObjs);
+		f.step = step;
+
+		for (int i=0; i<m.numObjs; i++)
+		{
+			MassiveCoral mC = (MassiveCoral) m.objs[i];
+			SimpleColorMap colorM = massiveColors.get(mC.mG);
+			if (colorM == null)
+			{
+				colorM = new SimpleColorMap(0.0, 100.0, mC.mG.color, Color.WHITE);
+				massiveColors.put(mC.mG, colorM);
+			}
+			int numBranches = mC.getNumBranches();
+			double angle = 2*Math.PI/numBranches;
+			for (int k=0; k<numBranches; k++)
+			{
+				double len = mC.getBranchLength(k);
+				double div = k+1;
+				f.addOutlinePoint(len*Math.cos(angle*div), -len*Math.sin(angle*div));
+			}
+			f.addMassive(mC.sendXPos(), mC.sendYPos(), colorM.getColor(mC.getBleachGrade()).getRGB(), mC.getAlive());
+		}
+
+		for (int i=0; i<b.numObjs; i++)
+		{
+			BranchingCoral bC = (BranchingCoral) b.objs[i];
+			SimpleColorMap colorM = branchingColors.get(bC.bG);
+			if (colorM == null)
+			{
+				colorM = new SimpleColorMap(0.0, 100.0, bC.bG.color, Color.WHITE);
+				branchingColors.put(bC.bG, colorM);
+			}
+			int numBranches = bC.getNumBranches();
+			double angle = 2*Math.PI/numBranches;
+			for (int k=0; k<numBranches; k++)
+			{
+				double len = (int) bC.getBranchLength(k);
+				double div = k+1;
+				f.addBranchEnd(len*Math.cos(angle*div), -len*Math.sin(angle*div));
+			}
+			f.addBranching(bC.sendXPos(), bC.sendYPos(), colorM.getColor(bC.getBleachGrade()).getRGB());
+		}
+
+		for (int i=0; i<a.numObjs; i++)
+		{
+			Alga alga = (Alga) a.objs[i];
+			f.addAlga(alga.sendXPos(), alga.sendYPos(), alga.getDiameter(), algaColors.getColor(alga.getHeight()).getRGB());
+		}
+
+		synchronized (lock)
+		{
+			if (pending != null)
+			{
+				skipped++;
+				spare = pending;
+			}
+			pending = f;
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			ReefFrame f;
+			synchronized (lock)
+			{
+				while (running && pending == null)
+				{
+					try
+					{
+						lock.wait();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+				if (!running) return;
+				f = pending;
+				pending = null;
+			}
+
+			render(f);
+			rendered++;
+
+			synchronized (lock)
+			{
+				if (spare == null) spare = f;
+			}
+			view.repaint();
+		}
+	}
+
+	/**
+	 * Draws a frame into the back image and makes it the front image
+	 */
+	void render(ReefFrame f)
+	{
+		int w = view.getWidth(), h = view.getHeight();
+		if (w <= 0 || h <= 0)
+		{
+			w = (int) width;
+			h = (int) height;
+		}
+		if (back == null || back.getWidth() != w || back.getHeight() != h)
+			back = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+
+		double scale = Math.min(w / width, h / height);
+		Graphics2D g = back.createGraphics();
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, w, h);
+		g.setColor(TURF);
+		g.fillRect(0, 0, (int)(width*scale), (int)(height*scale));
+
+		for (int i=0; i<f.numMassive; i++)
+		{
+			int from = f.outlineStart[i], to = f.outlineStart[i+1];
+			int n = to - from;
+			if (px.length < n)
+			{
+				px = new int[2*n];
+				py = new int[2*n];
+			}
+			double x = f.mx[i]*scale, y = f.my[i]*scale;
+			for (int k=0; k<n; k++)
+			{
+				px[k] = (int)(x + f.outlineX[from+k]*scale);
+				py[k] = (int)(y + f.outlineY[from+k]*scale);
+			}
+			g.setColor(new Color(f.mColor[i]));
+			g.fillPolygon(px, py, n);
+			if (f.mAlive[i])
+			{
+				g.setColor(Color.black);
+				g.drawPolygon(px, py, n);
+			}
+		}
+
+		for (int i=0; i<f.numBranching; i++)
+		{
+			int x = (int)(f.bx[i]*scale), y = (int)(f.by[i]*scale);
+			g.setColor(new Color(f.bColor[i]));
+			for (int k=f.branchStart[i]; k<f.branchStart[i+1]; k++)
+				g.drawLine(x, y, (int)(x + f.branchX[k]*scale), (int)(y + f.branchY[k]*scale));
+		}
+
+		for (int i=0; i<f.numAlgae; i++)
+		{
+			double d = f.aDiameter[i]*scale;
+			g.setColor(new Color(f.aColor[i]));
+			g.fillOval((int)(f.ax[i]*scale - d/2), (int)(f.ay[i]*scale - d/2), (int) d, (int) d);
+		}
+		g.dispose();
+
+		synchronized (frontLock)
+		{
+			BufferedImage shown = front;
+			front = back;
+			back = shown;
+		}
+	}
+
+	/**
+	 * Copies the front image to the screen -- called on the Swing thread
+	 */
+	public void paint(Graphics2D g)
+	{
+		synchronized (frontLock)
+		{
+			if (front != null) g.drawImage(front, 0, 0, null);
+		}
+	}
+}
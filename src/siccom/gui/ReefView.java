@@ -0,0 +1,45 @@
+package siccom.gui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+
+import javax.swing.JComponent;
+
+/**
+ * Shows the image drawn last by its {@link ReefRenderer} -- painting only copies the image,
+ * so it neither reads the simulation nor waits for it.
+ * @author andreas
+ *
+ */
+public class ReefView extends JComponent
+{
+	private static final long serialVersionUID = -8467023350613418062L;
+
+	ReefRenderer renderer;
+
+	/**
+	 * @param width the width of the simulation area -- also the preferred width in pixels
+	 * @param height the height of the simulation area
+	 */
+	public ReefView(double width, double height)
+	{
+		renderer = new ReefRenderer(this, width, height);
+		setPreferredSize(new Dimension((int) width, (int) height));
+		setOpaque(true);
+	}
+
+	public ReefRenderer getRenderer()
+	{
+		return renderer;
+	}
+
+	@Override
+	protected void paintComponent(Graphics g)
+	{
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, getWidth(), getHeight());
+		renderer.paint((Graphics2D) g);
+	}
+}
@@ -15,10 +15,16 @@ import org.jfree.data.xy.XYSeries;
 
 import siccom.Main;
 import siccom.Welcome;
+import siccom.sim.Alga;
+import siccom.sim.BranchingCoral;
 import siccom.sim.BranchingGroup;
 import siccom.sim.Filter;
+import siccom.sim.MassiveCoral;
 import siccom.sim.MassiveGroup;
+import siccom.sim.ReefSink;
+import siccom.sim.ReefSnapshot;
 import siccom.sim.Siccom;
+import siccom.sim.TimeSeriesBuffer;
 import siccom.sim.TurfCell;
 import sim.display.Console;
 import sim.display.Controller;
@@ -57,6 +63,17 @@ public class SiccomUI extends GUIState
 	 * The frame for the display
 	 */
 	public static JFrame displayFrame;
+	/**
+	 * The reef drawn by a thread of its own -- the display above is hidden but can be shown
+	 * from the console for inspecting colonies
+	 */
+	ReefView reefView;
+	JFrame reefFrame;
+	/**
+	 * Decides in which months the reef is captured -- every REEF_UPDATE months of simulation time
+	 */
+	TimedDisplayAlgorithm reefTiming;
+	static final double REEF_UPDATE = 1.0;
 	/**
 	 * The simulation that is represented
 	 */
@@ -125,6 +142,12 @@ public class SiccomUI extends GUIState
 	 * Portrayal for turf algae; for portrayals see the MASON documentation
 	 */
 	SparseGridPortrayal2D  turfPortrayal = new SparseGridPortrayal2D();
+	/**
+	 * The portrayals of the single agents -- one for each kind of agent, shared by all of them
+	 */
+	MassiveCoralPortrayal massiveCoralPortrayal = new MassiveCoralPortrayal();
+	BranchingCoralPortrayal branchingCoralPortrayal = new BranchingCoralPortrayal();
+	AlgaPortrayal algaPortrayal = new AlgaPortrayal();
 	/**
 	 * JFrame for the Population Size Chart
 	 */
@@ -146,6 +169,31 @@ public class SiccomUI extends GUIState
 	private DynamicCharter covChart;
 	
 	private DynamicCharter tempChart;
+	/**
+	 * The values of the chart series -- compressed, for the whole run
+	 */
+	private TimeSeriesBuffer[] popData, covData, tempData;
+	/**
+	 * The chart series drawn from the values with a bounded number of points
+	 */
+	private DecimatingSeries[] popView, covView, tempView;
+	/**
+	 * The number of points a chart series holds at first -- then two per pixel column of the chart
+	 */
+	static final int MAX_CHART_POINTS = 2000;
+	/**
+	 * The months shown once the time axes scroll (see {@link DynamicCharter}) -- drawn month by month
+	 */
+	static final int VISIBLE_MONTHS = 120;
+	/**
+	 * The charts are redrawn at most once in this time -- the months in between are drawn together
+	 */
+	static final long FRAME_MILLIS = 100;
+	private long lastFrame;
+	/**
+	 * IF true -- the time axes have been set to show the last 10 years
+	 */
+	private boolean xDynamic;
 	
 	/**
 	 * ArrayList in which the different panels for parameter files are stored 
@@ -285,6 +333,10 @@ public class SiccomUI extends GUIState
 		if (tempFrame != null) tempFrame.dispose();		
 		if (displayFrame != null) displayFrame.dispose();
 		displayFrame = null;	// let gc
+		if (reefView != null) reefView.getRenderer().stop();
+		if (reefFrame != null) reefFrame.dispose();
+		reefFrame = null;
+		reefView = null;
 		display = null;			// let gc	
 		removeModFiles();
 		
@@ -297,6 +349,8 @@ public class SiccomUI extends GUIState
 	 */
 	public void finish()
 	{
+		drawCharts();
+		captureReef();
 		super.finish();
 
 		long endTime = System.currentTimeMillis();
@@ -304,9 +358,6 @@ public class SiccomUI extends GUIState
 		double mins = (int)(extTime / 60000);
 		double secs = (int)((extTime -(mins*60000)) /1000);
 		System.out.println("Execution Time: " + numform2.format(mins) + " min " + numform2.format(secs) + " sec");
-		
-		sim.disser1=true;
-		sim.disser2=true;
 	}
 	
 	/**
@@ -322,6 +373,11 @@ public class SiccomUI extends GUIState
 		setupPopChart();
 		setupCovChart();
 		setupTempChart();
+		lastSnapshot = null;
+		chartedStep = -1;
+		xDynamic = false;
+		sim.reefOutput.addSink(chartSink);
+		reefTiming = new TimedDisplayAlgorithm(this, 0, REEF_UPDATE, false);
 		
 		scheduleRepeatingImmediatelyAfter(new Steppable() {
 			/**
@@ -334,6 +390,7 @@ public class SiccomUI extends GUIState
 			{
 				double t = state.schedule.getTime()/12;				// time displayed in years
 				updateCharts(t);
+				if (reefTiming.visualUpdate(state)) captureReef();
 			}
 		});
 	}
@@ -380,6 +437,9 @@ public class SiccomUI extends GUIState
 			tsa = (TimeSeriesAttributes) popChart.getSeriesAttribute(i);
 			tsa.setStrokeColor(Color.green);
 			tsa.setDashPattern(5);
+			
+			popData = buffers(series);
+			popView = views(popData, series);
 		}
 	}
 	
@@ -432,6 +492,9 @@ public class SiccomUI extends GUIState
 			tsa.setDashPattern(5);
 			i++;
 			
+			covData = buffers(series);
+			covView = views(covData, series);
+			
 			
 //			series[i] = new XYSeries("allCorals", true);
 //			covChart.addSeries(series[i], null);
@@ -464,84 +527,123 @@ public class SiccomUI extends GUIState
 			tsa = (TimeSeriesAttributes) tempChart.getSeriesAttribute(1);
 			tsa.setStrokeColor(Color.red);
 			tsa.setDashPattern(3);
+			
+			tempData = buffers(series);
+			tempView = views(tempData, series);
+			tempChart.setYDynamic();
+		}
+	}
+	
+	/**
+	 * Creates a buffer for the values of each chart series -- one value per month from now on, the time in years
+	 */
+	private TimeSeriesBuffer[] buffers(XYSeries[] series)
+	{
+		TimeSeriesBuffer[] data = new TimeSeriesBuffer[series.length];
+		for (int i=0; i<series.length; i++)
+			if (series[i] != null) data[i] = new TimeSeriesBuffer(state.schedule.getSteps()/12.0, 1/12.0, true);
+		return data;
+	}
+	
+	private DecimatingSeries[] views(TimeSeriesBuffer[] data, XYSeries[] series)
+	{
+		DecimatingSeries[] views = new DecimatingSeries[series.length];
+		for (int i=0; i<series.length; i++)
+			if (series[i] != null)
+			{
+				views[i] = new DecimatingSeries(data[i], series[i], MAX_CHART_POINTS);
+				views[i].setFullResolution(VISIBLE_MONTHS);
+			}
+		return views;
+	}
+	
+	/**
+	 * Draws the new values of a chart -- the visible months one by one, the history before with at most
+	 * two points per pixel column (the lowest and highest value) -- and fires one change for the whole chart
+	 */
+	private void update(DecimatingSeries[] views, TimeSeriesChartInformation ts)
+	{
+		int columns = ts.getChart().getWidth();
+		DecimatingSeries first = null;
+		for (DecimatingSeries v : views)
+		{
+			if (v == null) continue;
+			if (columns > 0) v.setMaxPoints(2*columns);
+			v.update();
+			if (first == null) first = v;
 		}
+		if (first != null) first.fireChanged();
+		ts.startTimer(0);
+	}
+	
+	/**
+	 * Draws the months gathered since the last frame
+	 */
+	private void drawCharts()
+	{
+		if (popView == null) return;
+		update(popView, tsPop);
+		update(covView, tsCov);
+		update(tempView, tsTemp);
+		lastFrame = System.currentTimeMillis();
 	}
 	
 	
 	
+	/**
+	 * Keeps the last snapshot of the reef for the charts
+	 */
+	private ReefSink chartSink = new ReefSink()
+	{
+		@Override
+		public boolean wantsColonies(int step) { return false; }
+
+		@Override
+		public void receive(ReefSnapshot snapshot) { lastSnapshot = snapshot; }
+
+		@Override
+		public void close() { }
+	};
+	private ReefSnapshot lastSnapshot;
+	/**
+	 * The month of the last snapshot drawn
+	 */
+	private int chartedStep = -1;
+
 	private void updateCharts(double t) 
 	{
-		tempChart.setYDynamic();
+		ReefSnapshot s = lastSnapshot;
+		if (s == null || s.step == chartedStep) return;
+		chartedStep = s.step;
 		
-		if (t >= 10)
+		if (t >= 10 && !xDynamic)
 		{
 			popChart.setXDynamic("pop");
 			covChart.setXDynamic("cov");
 			tempChart.setXDynamic("temp");
+			xDynamic = true;
 		}
 		// now add the data
 		if (t >= Schedule.EPOCH && t < Schedule.AFTER_SIMULATION) 
 		{
 		
 			// Population Size
-		 	XYSeries popSeries[] = tsPop.getSeries();
 		 	int j = 0;
-			for (MassiveGroup mG : sim.maCoGroups)
-			{
-				int count = mG.getNum();
-				popSeries[j].add(t,count, true);
-				j++;
-			}
-			for (BranchingGroup bG : sim.braCoGroups)
-			{
-				int count = bG.getNum();
-				popSeries[j].add(t,count, true);
-				j++;
-			}
-			int algaCount = sim.numAlgae;
-			popSeries[j].add(t,algaCount, false);
-			tsPop.startTimer(0);
+			for (int g=0; g<s.getNumGroups(); g++, j++)
+				popData[j].add(s.getCount(g));
+			popData[j].add(s.numAlgae);
 
 			 // Relative Cover
-			
-			double allCover=0;
-			
-			 XYSeries covSeries[] = tsCov.getSeries();
 			 j = 0;
-			 for (MassiveGroup mG : sim.maCoGroups)
-			 {
-				 double cover = mG.getCover();
-				 allCover += cover; 
-				 covSeries[j].add(t, cover, true);
-				 j++;
-			 }
-			 for (BranchingGroup bG : sim.braCoGroups)
-			 {
-				 double cover = bG.getCover();
-				 allCover += cover; 
-				 covSeries[j].add(t, cover, true);
-				 j++;
-			 }
-
-			 double algalCover = sim.algaeCover();
-			 covSeries[j].add(t,algalCover, true);
-			 tsCov.startTimer(0);
-			 j++;
-			 
-//			 covSeries[j].add(t,allCover, true);
-//			 tsCov.startTimer(0);
+			 for (int g=0; g<s.getNumGroups(); g++, j++)
+				 covData[j].add(s.getCover(g));
+			 covData[j].add(s.algalCover);
 			 
 			 // Temperature
-			 XYSeries tempSeries[] = tsTemp.getSeries();
-			 
-			 double count = sim.temp.meanTemp;
-			 tempSeries[0].add(t,count, true);
-			 tsTemp.startTimer(0);
-			 
-			 double lmst = sim.temp.longTermSummerMeanTemp;
-			 tempSeries[1].add(t, lmst, true);
-			 tsTemp.startTimer(0);
+			 tempData[0].add(s.meanTemp);
+			 tempData[1].add(s.longTermSummerMeanTemp);
 			 
+			 if (System.currentTimeMillis() - lastFrame >= FRAME_MILLIS) drawCharts();
 		}
 	}
 	
@@ -556,6 +658,12 @@ public class SiccomUI extends GUIState
 		setupPortrayals();
 		setupPopChart();				
 		setupCovChart();
+		setupTempChart();
+		lastSnapshot = null;
+		chartedStep = -1;
+		xDynamic = false;
+		sim.reefOutput.addSink(chartSink);
+		reefTiming = new TimedDisplayAlgorithm(this, 0, REEF_UPDATE, false);
 		
 		scheduleRepeatingImmediatelyAfter( new Steppable() {
 			/**
@@ -568,10 +676,20 @@ public class SiccomUI extends GUIState
 				double t = state.schedule.getTime();
 
 				updateCharts(t);
+				if (reefTiming.visualUpdate(state)) captureReef();
 			}
 		});
 	}
 
+	/**
+	 * Hands the reef of this month to the renderer -- it is drawn on the render thread
+	 */
+	private void captureReef()
+	{
+		if (reefView == null || sim == null) return;
+		reefView.getRenderer().capture(sim, (int) state.schedule.getSteps());
+	}
+
 
 	/**
 	 * Sets up the portrayals for the different object types
@@ -604,8 +722,11 @@ public class SiccomUI extends GUIState
 				});
 		
 		massiveCoralsPortrayal.setField( sim.massiveCorals );
+		massiveCoralsPortrayal.setPortrayalForClass(MassiveCoral.class, massiveCoralPortrayal);
 		branchingCoralsPortrayal.setField(sim.branchingCorals);
+		branchingCoralsPortrayal.setPortrayalForClass(BranchingCoral.class, branchingCoralPortrayal);
 		algaePortrayal.setField( sim.algae );
+		algaePortrayal.setPortrayalForClass(Alga.class, algaPortrayal);
 		
 				
 		// reschedule the displayer
@@ -626,9 +747,17 @@ public class SiccomUI extends GUIState
 		display = new Display2D(Siccom.gridWidth, Siccom.gridHeight, this);
 		displayFrame = display.createFrame();
 		c.registerFrame(displayFrame);
-		displayFrame.setVisible(true);
+		displayFrame.setVisible(false);		// MASON does not paint a hidden display
 		display.setBackdrop(Color.BLACK);
 		
+		reefView = new ReefView(Siccom.gridWidth, Siccom.gridHeight);
+		reefFrame = new JFrame("Reef");
+		reefFrame.getContentPane().add(reefView);
+		reefFrame.pack();
+		c.registerFrame(reefFrame);
+		reefFrame.setVisible(true);
+		reefView.getRenderer().start();
+		
 		// now attach the field portrayals
 		display.attach(turfPortrayal, "Turf");
 		display.attach(massiveCoralsPortrayal, "Massive Corals");
@@ -0,0 +1,62 @@
+package siccom.sim;
+
+import sim.util.Bag;
+
+/**
+ * Keeps dead agents of one kind for reuse, so a running reef creates (almost) no new agent objects.
+ * An agent is released only when it is no longer in a field --
+ * i.e. by the {@link ReefTiling} at the beginning of the month after it has died.
+ * @author andreas
+ *
+ * @param <T> the kind of agent
+ */
+public class AgentPool<T>
+{
+	/**
+	 * The free agents
+	 */
+	Bag free = new Bag();
+	/**
+	 * The number of agents taken from the pool and newly created since the start
+	 */
+	public long reused, created;
+
+	/**
+	 * @return a free agent -- null if the pool is empty and a new one has to be created
+	 */
+	@SuppressWarnings("unchecked")
+	public T obtain()
+	{
+		if (free.numObjs == 0)
+		{
+			created++;
+			return null;
+		}
+		reused++;
+		return (T) free.pop();
+	}
+
+	/**
+	 * Returns a dead agent to the pool
+	 */
+	public void release(T agent)
+	{
+		free.add(agent);
+	}
+
+	/**
+	 * @return the number of free agents
+	 */
+	public int size()
+	{
+		return free.numObjs;
+	}
+
+	/**
+	 * Drops all free agents
+	 */
+	public void clear()
+	{
+		free.clear();
+	}
+}
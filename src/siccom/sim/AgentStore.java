@@ -0,0 +1,169 @@
+package siccom.sim;
+
+import java.util.Arrays;
+
+/**
+ * The state of the agents of one population -- one record per agent.
+ * The agent objects are thin handles: they hold the slot of their record and read and write
+ * their state through it, so the record is the only copy of the state.
+ * <ul>
+ * <li>an agent takes a slot when it is created or reused from its pool and gives it back when it returns to the pool
+ * -- a dead agent keeps its state until then, so its neighbours can still read it in the same month</li>
+ * <li>the passes over the whole population (counting, cover, maximum length) run as loops over the slots,
+ * without touching the agent objects</li>
+ * </ul>
+ * The handles themselves remain, since the fields hold the agents;
+ * with the records outside of the heap they are all the collector has to trace.
+ * <p>
+ * The store of a population whose agents are read by their neighbours keeps a halo:
+ * a copy of all records taken before the tiles step in parallel (see {@link ReefTiling}).
+ * While the tiles step, an agent writes only its own record and reads its neighbours from the halo,
+ * so it sees them as they were at the beginning of the month, whichever tile they belong to.
+ * @author andreas
+ *
+ */
+public class AgentStore
+{
+	/**
+	 * The agent in each slot -- null if the slot is free
+	 */
+	Object[] agent;
+	/**
+	 * The slots in use lie below this mark
+	 */
+	public int end;
+	/**
+	 * The free slots below the mark
+	 */
+	int[] free;
+	int numFree;
+	/**
+	 * The number of slots in use
+	 */
+	public int count;
+	/**
+	 * The state of the agents
+	 */
+	final Records records;
+	/**
+	 * The copy of the records neighbours read while the tiles step -- null if the store has none
+	 */
+	AgentStore halo;
+
+	public AgentStore(Records records)
+	{
+		this.records = records;
+		agent = new Object[64];
+		free = new int[64];
+		records.resize(agent.length);
+	}
+
+	/**
+	 * @param halo the records of the halo
+	 */
+	public AgentStore(Records records, Records halo)
+	{
+		this(records);
+		this.halo = new AgentStore(halo);
+	}
+
+	/**
+	 * @return the halo of the store -- read by the neighbours of an agent while the tiles step
+	 */
+	public AgentStore halo()
+	{
+		return halo;
+	}
+
+	/**
+	 * Copies the records of all slots in use into the halo
+	 */
+	public void snapshot()
+	{
+		if (halo != null) records.copyTo(halo.records, end);
+	}
+
+	/**
+	 * Gives a slot to an agent -- all fields of the slot are zero
+	 * @return the slot
+	 */
+	public int allocate(Object a)
+	{
+		int s;
+		if (numFree > 0) s = free[--numFree];
+		else
+		{
+			if (end == agent.length)
+			{
+				agent = Arrays.copyOf(agent, 2*end);
+				free = Arrays.copyOf(free, 2*end);
+				records.resize(2*end);
+			}
+			s = end++;
+		}
+		agent[s] = a;
+		count++;
+		return s;
+	}
+
+	/**
+	 * Puts a slot back to the free list
+	 */
+	public void release(int s)
+	{
+		if (s < 0 || agent[s] == null) return;
+		agent[s] = null;
+		records.wipe(s);
+		free[numFree++] = s;
+		count--;
+	}
+
+	/**
+	 * @return the agent in a slot -- null if the slot is free
+	 */
+	public Object agent(int s)
+	{
+		return agent[s];
+	}
+
+	/**
+	 * Forgets all agents
+	 */
+	public void clear()
+	{
+		for (int s=0; s<end; s++) if (agent[s] != null) records.wipe(s);
+		Arrays.fill(agent, 0, end, null);
+		end = 0;
+		numFree = 0;
+		count = 0;
+	}
+
+	/**
+	 * Gives back the resources of the store -- the store is not used afterwards
+	 */
+	public void close()
+	{
+		records.close();
+		if (halo != null) halo.close();
+	}
+
+	public final double get(int s, int field)
+	{
+		return records.getDouble(s, field);
+	}
+
+	public final void set(int s, int field, double value)
+	{
+		records.setDouble(s, field, value);
+	}
+
+	public final int getInt(int s, int field)
+	{
+		return records.getInt(s, field);
+	}
+
+	public final void setInt(int s, int field, int value)
+	{
+		records.setInt(s, field, value);
+	}
+}
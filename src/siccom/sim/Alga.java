@@ -1,107 +1,79 @@
 /**
- * This class defines the single Alga 
+ * This class defines the single Alga -- stepped by the tile of the {@link ReefTiling} it lies in
  */
 
 package siccom.sim;
 
-import java.awt.*;
 import java.awt.geom.Ellipse2D;
 
-import sim.engine.*;
-import sim.portrayal.DrawInfo2D;
-import sim.portrayal.SimplePortrayal2D;
+import ec.util.MersenneTwisterFast;
 import sim.util.*;
-import sim.util.gui.SimpleColorMap;
 
 
-public class Alga extends SimplePortrayal2D implements Steppable
+public class Alga
 {
 	/**
-	 * 
+	 * The doubles of the record of an alga in the {@link AgentStore} of the algae
 	 */
-	private static final long serialVersionUID = 2513272544690847577L;
-
-	/**
-	 * The position of the alga
-	 */
-	public double xPos, yPos; 	
-	/**
-	 * The growth rate of an alga
-	 */
-	public double growthRate;
-	/**
-	 * The radius of the alga
-	 */
-	public double radius;	
-	/**
-	 * The diameter of the alga
-	 */
-	public double diameter;
-	/**
-	 * The range within which the alga identifies neighbors for interaction
-	 */
-	public double range;
-	/**
-	 * The height of the alga
-	 */
-	public double algaHeight;	
-	/**
-	 * The area the alga occupies
-	 */
-	public double size;				
-	/**
-	 * The alga's color
-	 */
-	Color color;									
-	Color darkGreen = new Color(100, 200, 100);
-	Color mediumGreen = new Color(50, 220, 50);
-	Color lightGreen = new Color(0, 255, 0);
-	
-	/**
-	 * The arrays in which competitors are stored
-	 */
-	Bag aB, mB, bB;
+	static final int X = 0, Y = 1, RADIUS = 2, DIAMETER = 3, SIZE = 4, GROWTH_RATE = 5, HEIGHT = 6;
+	static final int DOUBLES = 7;
 	/**
-	 * The alga's position
+	 * The ints of the record -- GHOST marks the copy of an alga of a neighbouring strip (see {@link StripExchange})
 	 */
-	Double2D me;
+	static final int AGE = 0, ALIVE = 1, GHOST = 2;
+	static final int INTS = 3;
+
 	/**
 	 * The main simulation
 	 */
 	Siccom sim;
 	/**
-	 * The configuration class through which parameters are determined
+	 * The store holding the state of the alga: position, size, growth, height, age and life status
 	 */
-	Config conf;
-	
+	AgentStore store;
 	/**
-	 * Determines the alga's life status
+	 * The slot of the alga in the store
 	 */
-	public boolean alive;
+	int slot = -1;
 	/**
-	 * The time the alga is in the simulation
+	 * The tile stepping the alga
 	 */
-	public int age;
+	ReefTiling.Tile tile;
+
 	/**
 	 * The range outside the experimental field at which algal fragments can still settle
-	 * in order to minimize edge effects. 
+	 * in order to minimize edge effects.
 	 */
 	private double algalExtensionBuffer = 100 / Siccom.resolution;
-	
+
 	// Different outputs for the console
-	public double sendXPos() { return xPos; }
-	public double sendYPos() { return yPos; }
-	public double getRadius() { return radius; }
-	public double getDiameter() { return diameter; }
-	public double getGrowthRate() { return growthRate; }
-	public int getAge() { return age; }
-	public boolean getAlive() { return alive; }
-	public double getHeight() { return algaHeight; }
-	public double getSize() { return size; }
-	
+	public double sendXPos() { return store.get(slot, X); }
+	public double sendYPos() { return store.get(slot, Y); }
+	public double getRadius() { return store.get(slot, RADIUS); }
+	public double getDiameter() { return store.get(slot, DIAMETER); }
+	public double getGrowthRate() { return store.get(slot, GROWTH_RATE); }
+	public int getAge() { return store.getInt(slot, AGE); }
+	public boolean getAlive() { return slot >= 0 && store.getInt(slot, ALIVE) != 0; }
+	public double getHeight() { return store.get(slot, HEIGHT); }
+	public double getSize() { return store.get(slot, SIZE); }
+
+	void setHeight(double algaHeight) { store.set(slot, HEIGHT, algaHeight); }
+	boolean ghost() { return store.getInt(slot, GHOST) != 0; }
+
+	double haloX() { return store.halo().get(slot, X); }
+	double haloY() { return store.halo().get(slot, Y); }
+	double haloRadius() { return store.halo().get(slot, RADIUS); }
+	double haloSize() { return store.halo().get(slot, SIZE); }
+	boolean haloContains(double x, double y)
+	{
+		double dx = x - haloX(), dy = y - haloY();
+		double radius = haloRadius();
+		return dx*dx + dy*dy < radius*radius;
+	}
+
 	/**
 	 * Constructor
-	 * @param sim the simulation where alga is situated in 
+	 * @param sim the simulation where alga is situated in
 	 * @param xPos x-position
 	 * @param yPos y-position
 	 * @param radius initial radius
@@ -109,282 +81,262 @@ public class Alga extends SimplePortrayal2D implements Steppable
 	 * @param aH alga height at instantiation
 	 */
 	  public Alga( 	Siccom sim,
-			  		double 	xPos, 			
-			  		double 	yPos, 
+			  		double 	xPos,
+			  		double 	yPos,
 			  		double 	radius,
 			  		int 	age,
 			  		double  aH)
 	  {
 		  this.sim = sim;
-		  this.color = sim.conf.algaColor;
-		  this.xPos = xPos;
-		  this.yPos = yPos;
-		  this.radius = radius;
-		  this.growthRate = sim.conf.aGrowthRate;
-		  this.age = age;
-		  diameter = 2*radius;
-		  this.me = new Double2D(xPos, yPos);		// get my own location
-		  alive = true;
-		  size = Math.pow(radius, 2)*Math.PI;
+		  reset(xPos, yPos, radius, age, aH);
+	  }
+
+	  /**
+	   * Sets the alga back to a newly settled alga -- used for new algae and for algae reused from the pool
+	   * @param xPos x-position
+	   * @param yPos y-position
+	   * @param radius initial radius
+	   * @param age initial age of the alga
+	   * @param aH alga height at instantiation
+	   */
+	  void reset(	double 	xPos,
+			  		double 	yPos,
+			  		double 	radius,
+			  		int 	age,
+			  		double  aH)
+	  {
+		  if (slot < 0)
+		  {
+			  store = sim.algaStore;
+			  slot = store.allocate(this);
+		  }
+		  store.set(slot, X, xPos);
+		  store.set(slot, Y, yPos);
+		  store.set(slot, GROWTH_RATE, sim.conf.aGrowthRate);
+		  store.setInt(slot, AGE, age);
+		  store.set(slot, DIAMETER, 2*radius);
+		  store.setInt(slot, ALIVE, 1);
+		  store.setInt(slot, GHOST, 0);
+		  store.set(slot, SIZE, Math.pow(radius, 2)*Math.PI);
 		  if (radius <= sim.conf.aMaxRadius)
 		  {
-			  algaHeight = radius;
+			  setHeight(radius);
 		  }
 		  else
 		  {
 			  radius = sim.conf.aMaxRadius;
-			  algaHeight = aH;
+			  setHeight(aH);
 		  }
+		  store.set(slot, RADIUS, radius);
+	  }
+
+	  /**
+	   * Gives the slot of the alga back to the store and the alga to the pool
+	   */
+	  void release()
+	  {
+		  store.release(slot);
+		  slot = -1;
+		  sim.algaPool.release(this);
 	  }
-	 
-	  @Override
-	  public void step(SimState state) 
+
+	  /**
+	   * Step routine of an alga -- called by its tile
+	   */
+	  void step()
 	  {
 		  /**
-		   * 	Life loop of an alga 
+		   * 	Life loop of an alga
 		   */
-		  if (alive)
+			if (outside()) die();
+		  store.set(slot, GROWTH_RATE, sim.conf.aGrowthRate);		// sim.aGrowthRate;
+
+		  if (getHeight()> sim.conf.aFragmentationHeight)
 		  {
-				if (xPos < -algalExtensionBuffer || xPos > Siccom.gridWidth+algalExtensionBuffer 
-						|| yPos < -algalExtensionBuffer || yPos > Siccom.gridHeight+algalExtensionBuffer)
-			  			die();
-			  growthRate = sim.conf.aGrowthRate;		// sim.aGrowthRate;
-			  
-			  if (getHeight()> sim.conf.aFragmentationHeight) 
-			  { 
-				  fragtate(); 
-			  }			 
-			  
-			  // find neighbours
-			  if (alive) interactAlgae();
-			  if (alive) interactMassiveCorals();
-			  if (alive) interactBranchingCorals();
-		  
-		  
-			  if (age > sim.conf.algaMaxAge) die();
-			  else  
-			  {
-				  grow();
-				  reschedule(1.0);	
-			  }
+			  fragtate();
 		  }
+
+		  // find neighbours -- the competition among the algae has been resolved by the AlgaCompetition
+		  if (getAlive()) interactMassiveCorals();
+		  if (getAlive()) interactBranchingCorals();
+
+
+		  if (getAge() > sim.conf.algaMaxAge) die();
+		  else grow();
 	  }
-	 
+
 	  /**
-	   * Interaction with massive corals
+	   * Takes the alga out of its field after it has stepped, if it has died
 	   */
-	  private void interactMassiveCorals() 
+	  void commit()
 	  {
-		  mB = sim.massiveCorals.getObjectsExactlyWithinDistance(me, radius+sim.maCoMaxLength);
-		  if (mB.numObjs > 0)
-		  {
-			  for (int i=0; i< mB.numObjs; i++)	
-			  {
-				  if (alive)
-				  {
-					  MassiveCoral otherC = (MassiveCoral) mB.objs[i];
-	
-					  if ((otherC.size > size) && otherC.sendShape().contains(me.x, me.y))  
-					  {
-						  if (otherC.bleached)
-						  {
-							  if (sim.random.nextBoolean(1-(otherC.bleachGrade/100))) die(); // bleach grade is used to define the probability for 
-							  																 // algal survival if situated on a coral
-							  																 // --> the more the coral recovers, the higher the probability for an alga to die
-						  }
-						  else die();
-						  
-					  }
-				  }
-			  }
-		  }
-		  mB.clear();
+		  if (!getAlive()) sim.buffer.death(sim.algae, this);
 	  }
-	
+
 	  /**
-	   * Interaction with branching corals
+	   * Interaction with massive corals -- only the colonies listed at the alga's position can cover it
 	   */
-	  private void interactBranchingCorals() 
+	  private void interactMassiveCorals()
 	  {
-		bB = sim.branchingCorals.getObjectsExactlyWithinDistance(me, radius+sim.braCoMaxLength+10);
-		  if (bB.numObjs > 0 )
+		  double x = sendXPos(), y = sendYPos();
+		  Bag mB = sim.coverage.candidates(x, y);
+		  for (int i=0; i< mB.numObjs; i++)
 		  {
-			  for (int i=0; i< bB.numObjs; i++)	
+			  if (getAlive() && mB.objs[i] instanceof MassiveCoral)
 			  {
-				  if(alive)
+				  MassiveCoral otherC = (MassiveCoral) mB.objs[i];
+
+				  if ((otherC.haloSize() > getSize()) && otherC.haloContains(x, y))
 				  {
-					  BranchingCoral otherC = (BranchingCoral) bB.objs[i];
-					  double dist = me.distance(otherC.sendXPos(), otherC.sendYPos());
-					  
-					  if (otherC.radius > this.radius + dist)
+					  if (otherC.haloBleached())
 					  {
-					  	  if (otherC.bleached)
-						  {
-							  if (sim.random.nextBoolean(1-(otherC.bleachGrade/100))) die(); 
-						  }																 	
-						  else die();																 	
+						  if (tile.random.nextBoolean(1-(otherC.haloBleachGrade()/100))) die(); // bleach grade is used to define the probability for
+						  																 // algal survival if situated on a coral
+						  																 // --> the more the coral recovers, the higher the probability for an alga to die
 					  }
+					  else die();
+
 				  }
 			  }
 		  }
-		  mB.clear();
 	  }
-	  
+
 	  /**
-	   * Interaction with other algae
+	   * Interaction with branching corals -- a colony covering the alga completely also covers its centre
 	   */
-	  private void interactAlgae() 
+	  private void interactBranchingCorals()
 	  {
-		  aB = sim.algae.getObjectsExactlyWithinDistance(me, radius+3);
-		  if (aB.numObjs > 1)
+		  double x = sendXPos(), y = sendYPos();
+		  Bag bB = sim.coverage.candidates(x, y);
+		  for (int i=0; i< bB.numObjs; i++)
 		  {
-				  for (int i=0; i< aB.numObjs; i++)	
+			  if(getAlive() && bB.objs[i] instanceof BranchingCoral)
+			  {
+				  BranchingCoral otherC = (BranchingCoral) bB.objs[i];
+				  double dx = x - otherC.haloX(), dy = y - otherC.haloY();
+				  double dist = Math.sqrt(dx*dx + dy*dy);
+
+				  if (otherC.haloRadius() > this.getRadius() + dist)
 				  {
-					  if(alive)
+				  	  if (otherC.haloBleached())
 					  {
-						  Alga otherA = (Alga) aB.objs[i];
-					
-						  double dist = me.distance(otherA.me);
-						  
-						  if (dist < (this.radius+otherA.radius) && otherA.getHeight() > this.getHeight())
-						  {
-							  die();
-						  }
+						  if (tile.random.nextBoolean(1-(otherC.haloBleachGrade()/100))) die();
 					  }
+					  else die();
 				  }
+			  }
 		  }
-		  aB.clear();
 	  }
-		
+
 	  /**
-	   * Reschedules the alga within the given time
-	   * @param dTime
+	   * @return true if the alga lies beyond the range around the reef where algae can live
 	   */
-	  public final void reschedule(double dTime) 
+	  boolean outside()
 	  {
-		  if (dTime <= 0.0) {
-				step(sim);
-		  }
-		  sim.schedule.scheduleOnceIn(dTime, this);
+		  double xPos = sendXPos(), yPos = sendYPos();
+		  return xPos < -algalExtensionBuffer || xPos > Siccom.gridWidth+algalExtensionBuffer
+				  || yPos < -algalExtensionBuffer || yPos > Siccom.gridHeight+algalExtensionBuffer;
 	  }
-	
-	  /**
-	   * Draws the alga
-	   */
-	  public void draw(Object object, Graphics2D graphics, DrawInfo2D info)
-	  {
-		  final double width = info.draw.width * diameter;
-		  final double height = info.draw.height * diameter;
-	    	
-		  SimpleColorMap colorM = new SimpleColorMap(0.0, 6.0, darkGreen, lightGreen);
-		  color = colorM.getColor(algaHeight);
-		  graphics.setColor(color);
-	    	
-		  final int x = (int)(info.draw.x - width / 2.0);
-		  final int y = (int)(info.draw.y - height / 2.0);
-		  final int w = (int)(width);
-		  final int h = (int)(height);
-
-		  // draw centered on the origin
-		  graphics.fillOval(x, y, w, h);
-	  }  
-		
 
-		/**
-		 *  information for the Inspector
-		 */
-		public boolean hitObject(Object object, DrawInfo2D range)
-	    {
-	    	final double SLOP = 1.0;	// need a little extra diameter to hit circles
-	    	final double width = range.draw.width * diameter;
-	    	final double height = range.draw.height * diameter;
-	    	
-	    	Ellipse2D.Double ellipse = new Ellipse2D.Double( 
-	    			range.draw.x-width/2-SLOP,
-	    			range.draw.y-height/2-SLOP, 
-	                width+SLOP*2,
-	                height+SLOP*2 );
-	    	
-	    	return (ellipse.intersects( range.clip.x, range.clip.y, range.clip.width, range.clip.height ));
-	    }
-		
 		 /**
-		  *  Death of an alga - sets the life-status to false
+		  *  Death of an alga - sets the life-status to false.
+		  *  While the alga steps it leaves its field when its tile commits;
+		  *  the tiling returns it to the pool at the beginning of the next month
 		  */
 		 public void die()
 		 {
-			 alive = false;
-			 sim.algae.remove(this);
+			 store.setInt(slot, ALIVE, 0);
+			 if (tile == null) sim.buffer.death(sim.algae, this);
 		 }
-		
-		
+
+
 		/**
-		 * Fragmenting of an alga
+		 * Fragmenting of an alga -- while the alga steps the fragments settle when its tile commits
 		 */
 		public void fragtate()
 		{
    			double x = this.sendXPos();
   			double y = this.sendYPos();
   			double halfRange = sim.conf.aFragRange;
-  			
-  			int fragNum = sim.random.nextInt(sim.conf.aMaxFragNum);
-  			
-  			
+  			MersenneTwisterFast random = tile != null ? tile.random : sim.random;
+
+  			int fragNum = random.nextInt(sim.conf.aMaxFragNum);
+
+
   			if (fragNum !=0)
   			{
   				for (int i=0; i<=fragNum; i++)
   				{
-  					double xPos = sim.random.nextDouble() *  ((x+halfRange) - (x-halfRange) + 1)  + (x-halfRange);
-  					double yPos = sim.random.nextDouble() *  ((y+halfRange) - (y-halfRange) + 1)  + (y-halfRange);	
-  			  					
-  					Alga a = new Alga(	sim,											
-  										xPos, 											
-  										yPos,											
-  										sim.conf.aFragmentSize,							
-  										0,																	
-  										sim.conf.algaRecRad);							
-  					sim.algae.setObjectLocation(a, new Double2D(xPos, yPos));
-  					sim.schedule.scheduleOnce(a);
- 					
+  					double xPos = random.nextDouble() *  ((x+halfRange) - (x-halfRange) + 1)  + (x-halfRange);
+  					double yPos = random.nextDouble() *  ((y+halfRange) - (y-halfRange) + 1)  + (y-halfRange);
+  					if (tile != null) tile.fragment(this, xPos, yPos);
+  					else settle(xPos, yPos);
   				}
   			}
-  			algaHeight = algaHeight - (fragNum * sim.conf.aFragmentSize) ;
-  			
+  			setHeight(getHeight() - (fragNum * sim.conf.aFragmentSize));
+
+		}
+
+		/**
+		 * Lets a fragment of the alga settle
+		 */
+		void settle(double xPos, double yPos)
+		{
+			// no settling on a coral
+			if (sim.occupancy.doomed(OccupancyMap.ALGA, xPos, yPos, sim.conf.aFragmentSize)) return;
+
+			Alga a = sim.newAlga(	xPos,
+									yPos,
+									sim.conf.aFragmentSize,
+									0,
+									sim.conf.algaRecRad);
+			sim.buffer.birth(sim.algae, a, xPos, yPos);
 		}
-  		
+
 		/**
 		 * Algal growth
 		 */
 		public void grow()
 		{
+			double radius = getRadius();
 			if (radius<sim.conf.aMaxRadius)
 			{
-			  radius = radius + growthRate;
-			  algaHeight = radius;
-			} 
-			else 
+			  radius = radius + getGrowthRate();
+			  setHeight(radius);
+			}
+			else
 			{
 				radius = sim.conf.aMaxRadius;
-				algaHeight = algaHeight + growthRate;
+				setHeight(getHeight() + getGrowthRate());
 			}
-			age += 1;
-			
-			diameter = 2*radius;
-			
-			size = ((Math.pow(radius,2))*Math.PI);
+			store.setInt(slot, AGE, getAge() + 1);
+
+			store.set(slot, RADIUS, radius);
+			store.set(slot, DIAMETER, 2*radius);
+			store.set(slot, SIZE, (Math.pow(radius,2))*Math.PI);
+		}
+
+		/**
+		 * @return true if a point lies within the disc of the alga -- the same as sendShape().contains(x, y)
+		 */
+		public boolean contains(double x, double y)
+		{
+			double dx = x - sendXPos(), dy = y - sendYPos();
+			double radius = getRadius();
+			return dx*dx + dy*dy < radius*radius;
 		}
-		
+
 		/**
 		 * To retrieve the shape object of an alga
 		 * @return
 		 */
 		 public Ellipse2D.Double sendShape()
 			{
-				  	double ulX = xPos - radius;
-				  	double ulY = yPos - radius;
-					return new Ellipse2D.Double( ulX, ulY, diameter, diameter );
+				  	double ulX = sendXPos() - getRadius();
+				  	double ulY = sendYPos() - getRadius();
+					return new Ellipse2D.Double( ulX, ulY, getDiameter(), getDiameter() );
 			}
-		 
-		 
-		 
+
+
+
 }
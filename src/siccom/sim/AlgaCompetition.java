@@ -0,0 +1,182 @@
+package siccom.sim;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.Bag;
+
+/**
+ * Resolves the competition among the algae once a month, before the algae step.
+ * An alga dies if it overlaps a taller alga within the reach of its neighbourhood
+ * (the same rule the algae used to apply one by one).
+ * <ul>
+ * <li>the algae are sorted by height, the tallest first</li>
+ * <li>each alga is tested against the taller algae that have survived so far -- only those
+ * in the cells of a coarse grid within its reach</li>
+ * <li>an alga that survives is put into the grid; algae of the same height are put in together,
+ * since they cannot kill each other</li>
+ * </ul>
+ * Survivors hardly overlap, so each test meets only a few of them and a month costs
+ * little more than the sort, even if the algae bloom.
+ * The arrays are kept from month to month.
+ * <p>
+ * The ghosts of the algae of a neighbouring strip compete as well, but are not killed here:
+ * a ghost overlapping a taller alga only stays out of the survivors.
+ * @author andreas
+ *
+ */
+public class AlgaCompetition implements Steppable
+{
+	private static final long serialVersionUID = -4407623129874651130L;
+
+	/**
+	 * The reach beyond its own radius within which an alga finds its neighbours
+	 */
+	public static final double NEIGHBOUR_REACH = 3;
+
+	static final Comparator<Alga> TALLEST_FIRST = new Comparator<Alga>()
+	{
+		@Override
+		public int compare(Alga a, Alga b)
+		{
+			return Double.compare(b.getHeight(), a.getHeight());
+		}
+	};
+
+	Siccom sim;
+	int cellsX, cellsY;
+	double cellSize;
+	/**
+	 * The first survivor in each cell and the next survivor in the same cell -- -1 ends a cell
+	 */
+	int[] head, next;
+	/**
+	 * The survivors
+	 */
+	double[] sx, sy, sr;
+	int numSurvivors;
+	/**
+	 * The algae of this month sorted by height
+	 */
+	Alga[] sorted = new Alga[0];
+	/**
+	 * The number of algae killed in the last month
+	 */
+	public int killed;
+
+	public AlgaCompetition(Siccom sim)
+	{
+		this.sim = sim;
+		// an alga meets no alga farther away than its radius plus the reach
+		cellSize = sim.conf.aMaxRadius + NEIGHBOUR_REACH;
+		cellsX = Math.max(1, (int)Math.ceil(Siccom.gridWidth / cellSize));
+		cellsY = Math.max(1, (int)Math.ceil(Siccom.gridHeight / cellSize));
+		head = new int[cellsX*cellsY];
+		ensureCapacity(64);
+	}
+
+	/**
+	 * Positions beyond the edges of the reef fall into the border cells
+	 */
+	private int cellX(double x)
+	{
+		return Math.max(0, Math.min(cellsX-1, (int)Math.floor(x / cellSize)));
+	}
+
+	private int cellY(double y)
+	{
+		return Math.max(0, Math.min(cellsY-1, (int)Math.floor(y / cellSize)));
+	}
+
+	@Override
+	public void step(SimState state)
+	{
+		killed = 0;
+		Bag all = sim.algaeOrder.agents();
+		int n = 0;
+		if (sorted.length < all.numObjs) sorted = new Alga[Math.max(all.numObjs, 2*sorted.length)];
+		for (int i=0; i<all.numObjs; i++)
+		{
+			Alga a = (Alga) all.objs[i];
+			// an alga drifted off the reef dies in its step before it meets any other
+			if (a.getAlive() && !a.outside()) sorted[n++] = a;
+		}
+		Arrays.sort(sorted, 0, n, TALLEST_FIRST);
+		ensureCapacity(n);
+		Arrays.fill(head, -1);
+		numSurvivors = 0;
+
+		sim.buffer.begin();
+		int from = 0;
+		while (from < n)
+		{
+			// the algae of the same height
+			int to = from+1;
+			while (to < n && sorted[to].getHeight() == sorted[from].getHeight()) to++;
+
+			for (int i=from; i<to; i++)
+			{
+				Alga a = sorted[i];
+				if (!overlapsTaller(a)) continue;
+				if (a.ghost()) sorted[i] = null;
+				else
+				{
+					a.die();
+					killed++;
+				}
+			}
+			for (int i=from; i<to; i++)
+			{
+				Alga a = sorted[i];
+				if (a != null && a.getAlive()) insert(a);
+				sorted[i] = null;
+			}
+			from = to;
+		}
+		sim.buffer.commit();
+	}
+
+	/**
+	 * @return true if a survivor in the grid overlaps the alga and lies within its reach
+	 */
+	private boolean overlapsTaller(Alga a)
+	{
+		double x = a.sendXPos(), y = a.sendYPos(), radius = a.getRadius();
+		double reach = radius + NEIGHBOUR_REACH;
+		int rings = (int)Math.ceil(reach / cellSize);
+		int cx = cellX(x), cy = cellY(y);
+		for (int i=Math.max(0, cx-rings); i<=Math.min(cellsX-1, cx+rings); i++)
+			for (int j=Math.max(0, cy-rings); j<=Math.min(cellsY-1, cy+rings); j++)
+				for (int s=head[i*cellsY + j]; s>=0; s=next[s])
+				{
+					double dx = sx[s] - x, dy = sy[s] - y;
+					double d2 = dx*dx + dy*dy;
+					double touch = radius + sr[s];
+					if (d2 <= reach*reach && d2 < touch*touch) return true;
+				}
+		return false;
+	}
+
+	private void insert(Alga a)
+	{
+		int s = numSurvivors++;
+		sx[s] = a.sendXPos();
+		sy[s] = a.sendYPos();
+		sr[s] = a.getRadius();
+		int c = cellX(sx[s])*cellsY + cellY(sy[s]);
+		next[s] = head[c];
+		head[c] = s;
+	}
+
+	private void ensureCapacity(int size)
+	{
+		if (next != null && next.length >= size) return;
+		int length = Math.max(size, next == null ? 0 : 2*next.length);
+		next = new int[length];
+		sx = new double[length];
+		sy = new double[length];
+		sr = new double[length];
+	}
+}
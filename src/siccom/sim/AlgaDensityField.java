@@ -0,0 +1,226 @@
+package siccom.sim;
+
+import java.util.Arrays;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+
+/**
+ * Keeps the algal recruits that are smaller than the promotion radius as counts on the raster of the turf cells,
+ * instead of individual {@link Alga} agents.
+ * <ul>
+ * <li>the recruits of a cell are counted per age -- all recruits of the same age have the same radius</li>
+ * <li>once a month the recruits grow; those reaching the promotion radius become {@link Alga} agents
+ * at a random position within their cell</li>
+ * <li>grazing and disturbances remove counted recruits with the same probabilities as agents</li>
+ * </ul>
+ * Interactions of the counted recruits with corals and larger algae are left to the agents they become.
+ * A promotion radius of 0 switches the field off.
+ * @author andreas
+ *
+ */
+public class AlgaDensityField implements Steppable
+{
+	private static final long serialVersionUID = -2378410635598230951L;
+
+	Siccom sim;
+	/**
+	 * The raster -- the same as the one of the turf cells
+	 */
+	int cellsX, cellsY;
+	double cellWidth, cellHeight;
+	/**
+	 * The number of recruits per age (first index) and cell (second index)
+	 */
+	int[][] counts;
+	/**
+	 * The number of recruits per age over all cells
+	 */
+	long[] totals;
+	/**
+	 * The radius a recruit has to reach to become an agent
+	 */
+	public double promotionRadius;
+	/**
+	 * The number of recruits that became agents in the last month
+	 */
+	public int promoted;
+
+	public AlgaDensityField(Siccom sim, double promotionRadius)
+	{
+		this.sim = sim;
+		this.promotionRadius = promotionRadius;
+		cellsX = sim.cellNumWidth;
+		cellsY = sim.cellNumHeight;
+		cellWidth = sim.cellWidth;
+		cellHeight = sim.cellHeight;
+
+		// the oldest recruit that can still be smaller than the promotion radius
+		int ages = 1;
+		if (sim.conf.aGrowthRate > 0) ages += (int)Math.ceil((promotionRadius - sim.conf.algaRecRad) / sim.conf.aGrowthRate);
+		ages = Math.max(1, Math.min(ages, sim.conf.algaMaxAge + 1));
+		counts = new int[ages][cellsX*cellsY];
+		totals = new long[ages];
+	}
+
+	/**
+	 * @return true if an alga of that radius is kept as a count
+	 */
+	public boolean accepts(double radius)
+	{
+		return radius < promotionRadius;
+	}
+
+	/**
+	 * @return the radius of a recruit of that age
+	 */
+	public double radius(int age)
+	{
+		return Math.min(sim.conf.algaRecRad + age * sim.conf.aGrowthRate, sim.conf.aMaxRadius);
+	}
+
+	/**
+	 * @return the index of the cell at that position -- -1 if it lies outside of the reef
+	 */
+	int cell(double x, double y)
+	{
+		int cx = (int)Math.floor(x / cellWidth);
+		int cy = (int)Math.floor(y / cellHeight);
+		if (cx < 0 || cy < 0 || cx >= cellsX || cy >= cellsY) return -1;
+		return cx*cellsY + cy;
+	}
+
+	/**
+	 * Settles a new recruit
+	 */
+	public void add(double x, double y)
+	{
+		int c = cell(x, y);
+		if (c < 0) return;
+		counts[0][c]++;
+		totals[0]++;
+	}
+
+	/**
+	 * Lets the recruits grow and promotes those reaching the promotion radius
+	 */
+	@Override
+	public void step(SimState state)
+	{
+		promoted = 0;
+		int last = counts.length-1;
+
+		sim.buffer.begin();
+		for (int age=last; age>=0; age--)
+		{
+			int[] n = counts[age];
+			boolean grown = age+1 > sim.conf.algaMaxAge || !accepts(radius(age+1)) || age == last;
+			if (grown) promote(age+1, n);
+			else
+			{
+				int[] older = counts[age+1];
+				for (int c=0; c<n.length; c++) older[c] += n[c];
+				totals[age+1] += totals[age];
+			}
+			Arrays.fill(n, 0);
+			totals[age] = 0;
+		}
+		sim.buffer.commit();
+	}
+
+	/**
+	 * Creates agents from the recruits of a cohort
+	 * @param age the age of the recruits after growing
+	 */
+	private void promote(int age, int[] n)
+	{
+		// recruits too old to live on die like agents of that age
+		if (age > sim.conf.algaMaxAge) return;
+
+		double r = radius(age);
+		for (int c=0; c<n.length; c++)
+		{
+			if (n[c] == 0) continue;
+			double x0 = (c / cellsY) * cellWidth;
+			double y0 = (c % cellsY) * cellHeight;
+			for (int k=0; k<n[c]; k++)
+			{
+				double x = x0 + sim.random.nextDouble()*cellWidth;
+				double y = y0 + sim.random.nextDouble()*cellHeight;
+				sim.buffer.birth(sim.algae, sim.newAlga(x, y, r, age, r), x, y);
+				promoted++;
+			}
+		}
+	}
+
+	/**
+	 * Removes each recruit with the given probability
+	 */
+	public void graze(double p)
+	{
+		for (int age=0; age<counts.length; age++)
+		{
+			if (totals[age] == 0) continue;
+			int[] n = counts[age];
+
+			// the recruits of all cells are numbered as one row -- only the grazed ones are found
+			int next = Sampling.next(sim.random, -1, p);
+			int first = 0;
+			for (int c=0; c<n.length && next<Integer.MAX_VALUE; c++)
+			{
+				int m = n[c];
+				while (next < first + m)
+				{
+					n[c]--;
+					totals[age]--;
+					next = Sampling.next(sim.random, next, p);
+				}
+				first += m;
+			}
+		}
+	}
+
+	/**
+	 * Removes all recruits in the cells whose centre lies within a circle
+	 */
+	public void clear(double x, double y, double r)
+	{
+		int x0 = Math.max(0, (int)((x-r) / cellWidth)), x1 = Math.min(cellsX-1, (int)((x+r) / cellWidth));
+		int y0 = Math.max(0, (int)((y-r) / cellHeight)), y1 = Math.min(cellsY-1, (int)((y+r) / cellHeight));
+
+		for (int cx=x0; cx<=x1; cx++)
+			for (int cy=y0; cy<=y1; cy++)
+			{
+				double dx = (cx+0.5)*cellWidth - x;
+				double dy = (cy+0.5)*cellHeight - y;
+				if (dx*dx + dy*dy > r*r) continue;
+				int c = cx*cellsY + cy;
+				for (int age=0; age<counts.length; age++)
+				{
+					totals[age] -= counts[age][c];
+					counts[age][c] = 0;
+				}
+			}
+	}
+
+	/**
+	 * @return the number of recruits
+	 */
+	public long count()
+	{
+		long n = 0;
+		for (int age=0; age<totals.length; age++) n += totals[age];
+		return n;
+	}
+
+	/**
+	 * @param minAge the minimum age of the recruits counted
+	 * @return the area covered by the recruits of at least that age
+	 */
+	public double cover(int minAge)
+	{
+		double area = 0;
+		for (int age=minAge; age<totals.length; age++) area += totals[age] * Math.PI * Math.pow(radius(age), 2);
+		return area;
+	}
+}
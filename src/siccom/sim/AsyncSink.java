@@ -0,0 +1,113 @@
+package siccom.sim;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands the snapshots to another sink on a thread of its own, so slow sinks (files, networks)
+ * do not hold up the simulation. The snapshots wait in a bounded queue and are delivered in batches:
+ * the thread takes all snapshots waiting at once. If the queue is full the simulation waits.
+ * {@link #close()} delivers the snapshots still waiting and then closes the sink.
+ * @author andreas
+ *
+ */
+public class AsyncSink implements ReefSink
+{
+	/**
+	 * Marks the end of the queue
+	 */
+	private static final ReefSnapshot END = new ReefSnapshot(-1, 0, null, null, null, null, 0, 0, 0, 0, 0, 0, false, null);
+
+	final ReefSink sink;
+	final BlockingQueue<ReefSnapshot> queue;
+	final Thread thread;
+
+	/**
+	 * @param sink the sink fed from the thread
+	 * @param capacity the number of snapshots that may wait
+	 */
+	public AsyncSink(ReefSink sink, int capacity)
+	{
+		this.sink = sink;
+		queue = new ArrayBlockingQueue<ReefSnapshot>(capacity);
+		thread = new Thread("reef sink")
+		{
+			@Override
+			public void run()
+			{
+				deliver();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void deliver()
+	{
+		ArrayList<ReefSnapshot> batch = new ArrayList<ReefSnapshot>();
+		try
+		{
+			while (true)
+			{
+				batch.add(queue.take());
+				queue.drainTo(batch);
+				for (ReefSnapshot s : batch)
+				{
+					if (s == END)
+					{
+						sink.close();
+						return;
+					}
+					sink.receive(s);
+				}
+				batch.clear();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Asked on the simulation thread -- the sink must answer without touching its own state
+	 */
+	@Override
+	public boolean wantsColonies(int step)
+	{
+		return sink.wantsColonies(step);
+	}
+
+	@Override
+	public void receive(ReefSnapshot snapshot)
+	{
+		put(snapshot);
+	}
+
+	@Override
+	public void close()
+	{
+		put(END);
+		try
+		{
+			thread.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void put(ReefSnapshot s)
+	{
+		try
+		{
+			queue.put(s);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
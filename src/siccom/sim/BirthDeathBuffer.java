@@ -0,0 +1,269 @@
+package siccom.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import sim.field.continuous.Continuous2D;
+import sim.util.Double2D;
+
+/**
+ * Collects births and deaths of agents during a phase (recruitment, grazing, bleaching, disturbance)
+ * and commits them to the spatial fields at the end of the phase:
+ * <ul>
+ * <li>new agents are sorted by the cell of their field before they are inserted,
+ * so neighbouring agents are inserted one after another</li>
+ * <li>dead agents are removed after the phase, so the bags of the fields do not change while they are iterated</li>
+ * </ul>
+ * Outside of a phase births and deaths are applied at once.
+ * The agents are not scheduled -- the {@link ReefTiling} steps the agents it finds in the fields.
+ * Phases may be nested; the changes are committed when the outermost phase ends.
+ * The buffer also notes where corals are born, so the {@link NeighbourList}s of the colonies around know they are out of date,
+ * and keeps the {@link MortonOrder}s and {@link NeighbourGrid}s of the fields up to date.
+ * @author andreas
+ *
+ */
+public class BirthDeathBuffer
+{
+	Siccom sim;
+	/**
+	 * The number of open phases
+	 */
+	int depth;
+
+	/**
+	 * The agents born in the actual phase
+	 */
+	int numBirths;
+	Object[] births = new Object[64];
+	Continuous2D[] birthFields = new Continuous2D[64];
+	double[] birthX = new double[64], birthY = new double[64];
+	/**
+	 * The cell and the index of each birth -- used for sorting
+	 */
+	long[] order = new long[64];
+
+	/**
+	 * The agents died in the actual phase
+	 */
+	int numDeaths;
+	Object[] deaths = new Object[64];
+	Continuous2D[] deathFields = new Continuous2D[64];
+
+	/**
+	 * The last step in which a coral was born in each cell of the coral fields -- -1 if none was born yet
+	 */
+	long[] coralBirths;
+	/**
+	 * The sorted orders of the fields that are kept up to date
+	 */
+	ArrayList<MortonOrder> orders = new ArrayList<MortonOrder>();
+	/**
+	 * The neighbour grids of the fields that are kept up to date
+	 */
+	ArrayList<NeighbourGrid> grids = new ArrayList<NeighbourGrid>();
+	int cellsX, cellsY;
+	double cellSize;
+
+	public BirthDeathBuffer(Siccom sim)
+	{
+		this.sim = sim;
+		cellSize = sim.discretization;
+		cellsX = (int)Math.ceil(Siccom.gridWidth / cellSize) + 1;
+		cellsY = (int)Math.ceil(Siccom.gridHeight / cellSize) + 1;
+		coralBirths = new long[cellsX*cellsY];
+		Arrays.fill(coralBirths, -1);
+	}
+
+	/**
+	 * Keeps the order of a field informed about births and deaths
+	 */
+	public void addOrder(MortonOrder order)
+	{
+		orders.add(order);
+	}
+
+	/**
+	 * Keeps the neighbour grid of a field informed about births and deaths
+	 */
+	public void addGrid(NeighbourGrid grid)
+	{
+		grids.add(grid);
+	}
+
+	/**
+	 * Builds the neighbour grids of a field anew -- to be called after agents have been placed
+	 * directly into the field (the initial populations)
+	 */
+	public void placed(Continuous2D field)
+	{
+		for (int i=0; i<grids.size(); i++)
+			if (grids.get(i).field == field) grids.get(i).rebuild();
+	}
+
+	/**
+	 * Informs the orders and grids about an agent put into a field
+	 */
+	private void inserted(Continuous2D field, Object agent, double x, double y)
+	{
+		for (int i=0; i<orders.size(); i++)
+			if (orders.get(i).field == field) orders.get(i).born(agent);
+		for (int i=0; i<grids.size(); i++)
+			if (grids.get(i).field == field) grids.get(i).insert(agent, x, y);
+	}
+
+	/**
+	 * Takes an agent out of its field and informs the orders and grids
+	 */
+	private void remove(Continuous2D field, Object agent)
+	{
+		Double2D loc = field.getObjectLocation(agent);
+		field.remove(agent);
+		for (int i=0; i<orders.size(); i++)
+			if (orders.get(i).field == field) orders.get(i).died();
+		if (loc == null) return;			// died twice
+		for (int i=0; i<grids.size(); i++)
+			if (grids.get(i).field == field) grids.get(i).remove(agent, loc.x, loc.y);
+	}
+
+	/**
+	 * Notes the birth of a coral in its cell
+	 */
+	void stampCoral(double x, double y)
+	{
+		int cx = Math.max(0, Math.min(cellsX-1, (int)Math.floor(x / cellSize)));
+		int cy = Math.max(0, Math.min(cellsY-1, (int)Math.floor(y / cellSize)));
+		coralBirths[cx*cellsY + cy] = sim.schedule.getSteps();
+	}
+
+	/**
+	 * @param step the step since when births are looked for
+	 * @return true if a coral has been born within a square around a position since that step
+	 */
+	public boolean coralBornSince(long step, double x, double y, double range)
+	{
+		int x0 = Math.max(0, (int)Math.floor((x-range) / cellSize)), x1 = Math.min(cellsX-1, (int)Math.floor((x+range) / cellSize));
+		int y0 = Math.max(0, (int)Math.floor((y-range) / cellSize)), y1 = Math.min(cellsY-1, (int)Math.floor((y+range) / cellSize));
+
+		for (int cx=x0; cx<=x1; cx++)
+			for (int cy=y0; cy<=y1; cy++)
+				if (coralBirths[cx*cellsY + cy] >= step) return true;
+		return false;
+	}
+
+	/**
+	 * Starts a phase
+	 */
+	public void begin()
+	{
+		depth++;
+	}
+
+	/**
+	 * Ends a phase -- commits the changes if it is the outermost phase
+	 */
+	public void commit()
+	{
+		if (depth > 0) depth--;
+		if (depth > 0) return;
+
+		commitBirths();
+		commitDeaths();
+	}
+
+	/**
+	 * Adds a new agent to a field -- it steps from the next time step on
+	 * @param field the field of the agent
+	 * @param agent the agent
+	 * @param x the x-position
+	 * @param y the y-position
+	 */
+	public void birth(Continuous2D field, Object agent, double x, double y)
+	{
+		if (field == sim.massiveCorals || field == sim.branchingCorals) stampCoral(x, y);
+
+		if (depth == 0)
+		{
+			field.setObjectLocation(agent, new Double2D(x, y));
+			inserted(field, agent, x, y);
+			return;
+		}
+
+		if (numBirths == births.length)
+		{
+			int n = 2*numBirths;
+			births = Arrays.copyOf(births, n);
+			birthFields = Arrays.copyOf(birthFields, n);
+			birthX = Arrays.copyOf(birthX, n);
+			birthY = Arrays.copyOf(birthY, n);
+			order = new long[n];
+		}
+		births[numBirths] = agent;
+		birthFields[numBirths] = field;
+		birthX[numBirths] = x;
+		birthY[numBirths] = y;
+		numBirths++;
+	}
+
+	/**
+	 * Removes a dead agent from its field
+	 * @param field the field of the agent
+	 * @param agent the agent
+	 */
+	public void death(Continuous2D field, Object agent)
+	{
+		if (depth == 0)
+		{
+			remove(field, agent);
+			return;
+		}
+
+		if (numDeaths == deaths.length)
+		{
+			int n = 2*numDeaths;
+			deaths = Arrays.copyOf(deaths, n);
+			deathFields = Arrays.copyOf(deathFields, n);
+		}
+		deaths[numDeaths] = agent;
+		deathFields[numDeaths] = field;
+		numDeaths++;
+	}
+
+	/**
+	 * Inserts the new agents sorted by their cell
+	 */
+	void commitBirths()
+	{
+		for (int i=0; i<numBirths; i++)
+		{
+			double d = birthFields[i].discretization;
+			long cx = (long)Math.floor(birthX[i] / d) & 0x7fff;
+			long cy = (long)Math.floor(birthY[i] / d) & 0x7fff;
+			order[i] = (((cx << 15) | cy) << 32) | i;
+		}
+		Arrays.sort(order, 0, numBirths);
+
+		for (int k=0; k<numBirths; k++)
+		{
+			int i = (int)(order[k] & 0xffffffffL);
+			birthFields[i].setObjectLocation(births[i], new Double2D(birthX[i], birthY[i]));
+			inserted(birthFields[i], births[i], birthX[i], birthY[i]);
+			births[i] = null;
+			birthFields[i] = null;
+		}
+		numBirths = 0;
+	}
+
+	/**
+	 * Removes the dead agents from their fields
+	 */
+	void commitDeaths()
+	{
+		for (int i=0; i<numDeaths; i++)
+		{
+			remove(deathFields[i], deaths[i]);
+			deaths[i] = null;
+			deathFields[i] = null;
+		}
+		numDeaths = 0;
+	}
+}
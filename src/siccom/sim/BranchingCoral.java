@@ -1,33 +1,21 @@
 package siccom.sim;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.geom.Ellipse2D;
-import java.util.ArrayList;
 
-import sim.engine.SimState;
-import sim.engine.Steppable;
-import sim.portrayal.DrawInfo2D;
-import sim.portrayal.SimplePortrayal2D;
+import ec.util.MersenneTwisterFast;
+
 import sim.util.Bag;
-import sim.util.Double2D;
-import sim.util.gui.SimpleColorMap;
 
 
 /**
- * 
- * 
+ * This class defines {@link BranchingCoral}
+ *
  * @author kubicek
  * @author version 1.0
  *
  */
-public class BranchingCoral extends SimplePortrayal2D implements Steppable
+public class BranchingCoral
 {
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = -7344285892340782073L;
-	
 	/*
 	 * VARIABLES
 	 */
@@ -38,397 +26,429 @@ public class BranchingCoral extends SimplePortrayal2D implements Steppable
 	 * The simulation where the coral is in
 	 */
 	public Siccom sim;
-	/**
-	 * Name of the coral group
-	 */
-	public String name;
-	/**
-	 * A bag to collect all neighbors
-	 */
-	public Bag neighbours;
-	/**
-	 * The graphical information for {@link SimplePortrayal2D}
-	 */
-	public Graphics2D graph;
-	
-	/**
-	 * The drawing information for {@link SimplePortrayal2D}
-	 */
-	public DrawInfo2D inf;
 
-	/**
-	 * The number of branches the colony has. 
-	 */
-	public int numBranches = 34;
-	
-	/**
-	 * The maximum momentary branch length
-	 */
-	public double maxLength;
-	
-	/**
-	 * ArrayList for the single branches of the colony
-	 */
-	public ArrayList<Branch> branches = new ArrayList<Branch>(numBranches);
+	public BranchingGroup bG;
 
-	// Colony
-	public Double2D me;
-	/**
-	 * The x-Position of the colony center
-	 */
-	public double	xPos;
-	/**
-	 * The y-Position of the colony center
-	 */
-	public double 	yPos;
-	/**
-	 * The set growth rate of the colony
-	 */
-	public double 	initGrowthRate;
-	/**
-	 * The momentary growth rate of the colony. Can vary due to interaction.
-	 */
-	public double 	growthRate;			
-	/**
-	 * The radius of a colony. Used to determine the initial branch length.
-	 * Later the radius is calculated as mean branch length in {@link #getAvRadius()}
-	 */
-	public double radius;											
-	/**
-	 * The maximum branch length of a colony
-	 */
-	public double maxBranchLength;		
-	/**
-	 * The diameter of the colony
-	 */
-	public double diameter;										
-	/**
-	 * The size of the colony
-	 */
-	public double size;		
-	/**
-	 * The maximumSize of a colony
-	 */
-	public double maxSize;
-	/**
-	 * The range in which the individual looks for neighbours
-	 */
-	public double range;							
 	/**
-	 * The desired initial color for representation in the GUI 
+	 * The store of the branching corals
 	 */
-	Color initColor;					
+	CoralStore store;
 	/**
-	 * The actual momentary color for representation in the GUI 
+	 * The slot of the colony
 	 */
-	Color color;													
-	/** 
-	 * The life status of the coral colony
-	 */
-	private boolean alive;										
-	/**
-	 * Measure to determine for how long is the colony in the simulation
-	 */
-	public int age;	
-	
-	public double CI;
-	
-	public BranchingGroup bG;
-	
-	
-	/*
-	 *  Bleaching
-	 */
-	/** 
-	 *  The bleach status
-	 */
-	boolean bleached;
-	/**
-	 * The grade of bleaching
-	 */
-	double bleachGrade;
+	int slot = -1;
 
 	/**
 	 * The recovery rate from a bleaching event
 	 */
-	double recoveryRate = 17;
-	/**
-	 * The percentage of a bleached coral that is covered by algae.
-	 */
-	public double algCoverage;
+	static final double recoveryRate = 17;
+
 	/**
-	 * The number of neighboring coral colonies
+	 * The coral neighbours, kept from month to month
 	 */
-	private int numNeighbours = 0;
+	NeighbourList massiveNeighbours, branchingNeighbours;
 	/**
-	 * The maximum branch Length of a 
+	 * The tile stepping the colony
 	 */
-	public double maximumBranchLength;
-	
-	private double interArea;
-	
+	ReefTiling.Tile tile;
+
 	// FRAGMENTING
 	double extensionBuffer = 100/Siccom.resolution;
-	public double fragSize;
-	public double fragRange;
-	double fragProb;
+	public double fragSize = 10 / Siccom.resolution;
 
-	private double surfaceFactor;
-
-	private int nn;
-		
 
 	// Different getters and setters for the console
-	public String getName() { return name; }
-	public double getCI() { return CI; }
-	public double getSurfaceFactor() { return surfaceFactor; }
-	public double sendXPos() { return xPos; }
-	public double sendYPos() { return yPos; }
-	public int getAge() { return age; }
-	public boolean getAlive() { return alive; }
-	public double sendSize() { return size; }
-	public double getGrowthRate() { return initGrowthRate/Siccom.dimensionConv_milimeters; }
-	public double getRadius() { return radius; }
-	public boolean getBleached() { return bleached; }
+	public String getName() { return bG.name; }
+	public double getCI() { return store.get(slot, CoralStore.CI); }
+	public double getSurfaceFactor() { return bG.surfaceFactor; }
+	public double sendXPos() { return store.get(slot, CoralStore.X); }
+	public double sendYPos() { return store.get(slot, CoralStore.Y); }
+	public int getAge() { return store.getInt(slot, CoralStore.AGE); }
+	public boolean getAlive() { return store.is(slot, CoralStore.ALIVE); }
+	public double sendSize() { return store.get(slot, CoralStore.SIZE); }
+	public double getGrowthRate() { return initGrowthRate()/Siccom.dimensionConv_milimeters; }
+	public double getRadius() { return store.get(slot, CoralStore.RADIUS); }
+	public double getDiameter() { return 2*getRadius(); }
+	public boolean getBleached() { return store.is(slot, CoralStore.BLEACHED); }
 	public double getMinBleachProb() { return bG.minBleachProb; }
 	public double getMinDeathProb() { return bG.minDeathProb; }
-	public int getNumNeighbours() { return nn; }
-	
-	
-	
+	public int getNumNeighbours() { return store.getInt(slot, CoralStore.NEIGHBOURS); }
+	public double getBleachGrade() { return store.get(slot, CoralStore.BLEACH_GRADE); }
+	public int getNumBranches() { return store.getInt(slot, CoralStore.NUM_BRANCHES); }
+	public double getBranchLength(int k) { return store.branchLength(slot, k); }
+	public double getInitGrowthRate() { return initGrowthRate(); }
+	/**
+	 * @return the probability of the colony to fragment
+	 */
+	public double getFragProb() { return sim.fragProb*bG.surfaceFactor; }
+
+	double initGrowthRate() { return store.get(slot, CoralStore.INIT_GROWTH_RATE); }
+	double growthRate() { return store.get(slot, CoralStore.GROWTH_RATE); }
+	void setGrowthRate(double growthRate) { store.set(slot, CoralStore.GROWTH_RATE, growthRate); }
+	double maxBranchLength() { return store.get(slot, CoralStore.MAX_RADIUS); }
+	double maximumBranchLength() { return store.get(slot, CoralStore.MAX_BRANCH_LENGTH); }
+	void setBleachGrade(double bleachGrade) { store.set(slot, CoralStore.BLEACH_GRADE, bleachGrade); }
+	boolean ghost() { return store.is(slot, CoralStore.GHOST); }
+
+	double haloX() { return store.halo().get(slot, CoralStore.X); }
+	double haloY() { return store.halo().get(slot, CoralStore.Y); }
+	double haloRadius() { return store.halo().get(slot, CoralStore.RADIUS); }
+	double haloSize() { return store.halo().get(slot, CoralStore.SIZE); }
+	double haloCI() { return store.halo().get(slot, CoralStore.CI); }
+	double haloBleachGrade() { return store.halo().get(slot, CoralStore.BLEACH_GRADE); }
+	boolean haloBleached() { return store.halo().is(slot, CoralStore.BLEACHED); }
+	boolean haloContains(double x, double y)
+	{
+		double dx = x - haloX(), dy = y - haloY();
+		double radius = haloRadius();
+		return dx*dx + dy*dy < radius*radius;
+	}
+
+	/**
+	 * Sets the radius and the size
+	 */
+	void setRadius(double radius)
+	{
+		store.set(slot, CoralStore.RADIUS, radius);
+		store.set(slot, CoralStore.SIZE, Math.PI * Math.pow(radius, 2));
+	}
+
+	/**
+	 * Counts a neighbouring colony at least half the size of this one
+	 */
+	private void addNeighbour()
+	{
+		store.setInt(slot, CoralStore.NEIGHBOURS, store.getInt(slot, CoralStore.NEIGHBOURS) + 1);
+	}
+
 
 	/**
 	   * Constructor for massive coral
-	   * @param sim the simulation where coral is situated in 
-	   * @param name the name of the coral group
-	   * @param color the color of the coral group
+	   * @param sim the simulation where coral is situated in
+	   * @param CI the competition index
 	   * @param maxRadius the maximum radius a colony can reach
 	   * @param xPos x-position
 	   * @param yPos y-position
 	   * @param radius initial radius
 	   * @param growthRate the growth rate of the coral
-	 * @param growthRate2 
 	   * @param numBranches the number of branches per colony
 	   * @param age the time the colony is in the simulation
-	   * 
+	   * @param bG the group of the coral
+	   *
 	   */
-	
-	public BranchingCoral(	Siccom sim, 
-							String name,
-							Color color,
+
+	public BranchingCoral(	Siccom sim,
 							double CI,
-							double surfaceFactor,
 							double maxRadius,
-							double xPos, 
-							double yPos, 
+							double xPos,
+							double yPos,
 							double radius,
 							double growthRate,
 							int numBranches,
 							int age,
-							BranchingGroup bG) 
+							BranchingGroup bG)
 	{
 		this.sim = sim;
-		this.name = name;
-		this.xPos = xPos;						
-		this.yPos = yPos;
-		this.radius = radius;
-		initGrowthRate = growthRate;
-		this.growthRate = initGrowthRate;
-		this.CI = CI;
-		this.surfaceFactor = surfaceFactor;
-		this.age = age;
+		massiveNeighbours = new NeighbourList(sim.massiveGrid);
+		branchingNeighbours = new NeighbourList(sim.branchingGrid);
+		reset(CI, maxRadius, xPos, yPos, radius, growthRate, numBranches, age, bG);
+	}
+
+	/**
+	 * Resets the colony -- see {@link MassiveCoral#reset}
+	 */
+	void reset(	double CI,
+				double maxRadius,
+				double xPos,
+				double yPos,
+				double radius,
+				double growthRate,
+				int numBranches,
+				int age,
+				BranchingGroup bG)
+	{
 		this.bG = bG;
-		diameter = 2*radius;
-		me = new Double2D(xPos, yPos);		
-		size = Math.PI * Math.pow(radius, 2);
-		alive = true;	  
-		maxBranchLength = maxRadius;
-	
-
-		
-		maxSize = Math.pow(maxRadius, 2) * Math.PI;	
-		
-	
-		initColor = color;
-		this.numBranches = numBranches;
-		
-		for (int i=1; i <= numBranches ; i++)
+		if (slot < 0)
 		{
-			Branch b = new Branch(xPos, yPos, radius, numBranches, i, growthRate);
-			branches.add(b);
+			store = sim.branchingStore;
+			slot = store.allocate(this);
 		}
+		store.set(slot, CoralStore.X, xPos);
+		store.set(slot, CoralStore.Y, yPos);
+		setRadius(radius);
+		store.set(slot, CoralStore.INIT_GROWTH_RATE, growthRate);
+		setGrowthRate(growthRate);
+		store.set(slot, CoralStore.CI, CI);
+		store.setInt(slot, CoralStore.AGE, age);
+		store.setInt(slot, CoralStore.GROUP, bG.index);
+		store.set(slot, CoralStore.MAX_RADIUS, maxRadius);
+		store.set(slot, CoralStore.INDEXED_REACH, -1);
+		store.setInt(slot, CoralStore.FLAGS, CoralStore.ALIVE);
+		massiveNeighbours.reset();
+		branchingNeighbours.reset();
+
+		store.setInt(slot, CoralStore.NUM_BRANCHES, numBranches);
+		for (int k=0; k < numBranches; k++)
+		{
+			store.setBranchLength(slot, k, radius);
+			store.setBranchGrowth(slot, k, growthRate);
+		}
+
+		index();
+		occupy();
+	}
+
+	/**
+	 * Releases the slot of the colony
+	 */
+	void release()
+	{
+		store.release(slot);
+		slot = -1;
+	}
+
+	/**
+	 * Lists the colony in the coverage index
+	 */
+	void index()
+	{
+		double reach = getRadius();
+		if (reach <= store.get(slot, CoralStore.INDEXED_REACH)) return;
+		unindex();
+		store.set(slot, CoralStore.INDEXED_REACH, reach + sim.coverage.margin);
+		sim.coverage.add(this, sendXPos(), sendYPos(), reach + sim.coverage.margin);
+	}
+
+	/**
+	 * Removes the colony from the coverage index
+	 */
+	void unindex()
+	{
+		double indexedReach = store.get(slot, CoralStore.INDEXED_REACH);
+		if (indexedReach < 0) return;
+		sim.coverage.remove(this, sendXPos(), sendYPos(), indexedReach);
+		store.set(slot, CoralStore.INDEXED_REACH, -1);
+	}
 
-		fragSize = 10 / Siccom.resolution;
-		fragRange = sim.fragRange;
-		fragProb = sim.fragProb*bG.surfaceFactor;
+	/**
+	 * Marks the disc of the colony in the occupancy map
+	 */
+	void occupy()
+	{
+		double disc = 0;
+		if (getAlive() && !getBleached())
+		{
+			disc = sim.occupancy.innerRadius(getRadius());
+		}
+		double markedDisc = store.get(slot, CoralStore.MARKED_DISC);
+		if (disc >= markedDisc && disc - markedDisc < sim.occupancy.cellWidth/2) return;
+		sim.occupancy.mark(false, sendXPos(), sendYPos(), markedDisc, false);
+		markedDisc = Math.max(0, disc);
+		store.set(slot, CoralStore.MARKED_DISC, markedDisc);
+		sim.occupancy.mark(false, sendXPos(), sendYPos(), markedDisc, true);
 	}
 
 
-	
-	/** 
+
+	/**
 	 * Step routine of a branching coral colony
 	 */
-	public void step(SimState state)
+	void step()
 	{
-		if (xPos < -extensionBuffer || xPos > Siccom.gridWidth+extensionBuffer 
+		double xPos = sendXPos(), yPos = sendYPos();
+		if (xPos < -extensionBuffer || xPos > Siccom.gridWidth+extensionBuffer
 				|| yPos < -extensionBuffer || yPos > Siccom.gridHeight+extensionBuffer)
-	  			die();
-		
-		if (alive)
 		{
-			checkBleaching();
-			if (bleached){
-				 growthRate = initGrowthRate * (1 - (bleachGrade / 100)); 
-				 recover();
-			}
-			else
-			// reset the growth rate at every step 
-			growthRate = initGrowthRate;
-
-	     	if (radius>=maxBranchLength && sim.random.nextBoolean(fragProb)) fragtate();
-			
-			// find neighbours
-			getAvRadius();
-			if(alive) interactMassiveCorals();
-			if(alive) interactBranchingCorals();
-			if (radius<=sim.conf.aMaxRadius || bleached) interactAlgae();
-			if (age <= sim.conf.interactTurfAge ) interactTurf();
-			
-			double percentOvergrowth = 100/size*interArea;
-			if (percentOvergrowth>=sim.dieOvergrowthBra) die(); 
-			interArea=0;
-	
-			if (alive && radius<=maxBranchLength)
-			{
-				grow();
-			}
-			
-			
-			if (numNeighbours < 1)			
+			// left the reef
+			die();
+			return;
+		}
+
+		if (getBleached()){
+			setGrowthRate(initGrowthRate() * (1 - (getBleachGrade() / 100)));
+			recover();
+		}
+		else
+		// reset the growth rate at every step
+		setGrowthRate(initGrowthRate());
+
+     	if (getRadius()>=maxBranchLength() && tile.random.nextBoolean(getFragProb())) fragtate();
+
+		// find neighbours
+		getAvRadius();
+		if(getAlive()) interactMassiveCorals();
+		if(getAlive()) interactBranchingCorals();
+		if (getRadius()<=sim.conf.aMaxRadius || getBleached()) interactAlgae();
+		if (getAge() <= sim.conf.interactTurfAge ) interactTurf();
+
+		double percentOvergrowth = 100/sendSize()*store.get(slot, CoralStore.INTER_AREA);
+		if (percentOvergrowth>=sim.dieOvergrowthBra) die();
+		store.set(slot, CoralStore.INTER_AREA, 0.0);
+
+		if (getAlive() && getRadius()<=maxBranchLength())
+		{
+			grow();
+		}
+
+
+		if (getNumNeighbours() < 1)
+		{
+			if (tile.random.nextBoolean(sim.breakageProb	* bG.surfaceFactor ))
 			{
-				if (sim.random.nextBoolean(sim.breakageProb	* surfaceFactor ))
-				{
-					if (sim.random.nextBoolean(fragProb)) fragtate();
-					die();
-				}
+				if (tile.random.nextBoolean(getFragProb())) fragtate();
+				die();
 			}
-			
+		}
+
+		store.setInt(slot, CoralStore.AGE, getAge() + 1);
+		store.setInt(slot, CoralStore.NEIGHBOURS, 0);
+	}
+
+	/**
+	 * Catches up on the field and the indices after the step
+	 */
+	void commit()
+	{
+		if (getAlive()) index();
+		else
+		{
+			sim.buffer.death(sim.branchingCorals, this);
+			unindex();
+		}
+		occupy();
+	}
+
+	/**
+	 * @return the distance of a point from the colony centre
+	 */
+	double distance(double x, double y)
+	{
+		double dx = sendXPos() - x, dy = sendYPos() - y;
+		return Math.sqrt(dx*dx + dy*dy);
+	}
 
-			reschedule(1.0);
-			age += 1;
-			numNeighbours = 0;
-		}			
+	/**
+	 * Counts the overgrown area of the month
+	 */
+	private void addInterArea(double intersectionArea)
+	{
+		store.set(slot, CoralStore.INTER_AREA, store.get(slot, CoralStore.INTER_AREA) + intersectionArea);
 	}
-	
+
 	private void interactAlgae() {
-		neighbours = sim.algae.getObjectsWithinDistance(me, maximumBranchLength+sim.conf.aMaxRadius+1);
+		NeighbourGrid grid = sim.algaeGrid;
+		NeighbourGrid.Ids neighbours = tile.ids;
+		grid.query(sendXPos(), sendYPos(), maximumBranchLength()+sim.conf.aMaxRadius+1, neighbours);
 
-		if (neighbours.numObjs > 0)
+		if (neighbours.size > 0)
 		{
-			//algae can grow over corals if these are bleached. 
+			//algae can grow over corals if these are bleached.
 			//--> calculate the area algae cover of the coral colony
-			algCoverage=0;
-			for (int j=0; j<neighbours.numObjs; j++)
+			double algCoverage=0;
+			for (int j=0; j<neighbours.size; j++)
 			{
-				algCoverage = algCoverage + ((Alga) neighbours.objs[j]).getSize();
+				algCoverage = algCoverage + ((Alga) grid.agent(neighbours.ids[j])).haloSize();
 			}
-				
-			for (int i=0; i< neighbours.numObjs; i++)	
-			{	
-				if(alive)
+			store.set(slot, CoralStore.ALG_COVERAGE, algCoverage);
+
+			int numBranches = getNumBranches();
+			for (int i=0; i< neighbours.size; i++)
+			{
+				if(getAlive())
 				{
-					Alga otherA =  (Alga) neighbours.objs[i];
-					double dist = me.distance(otherA.sendXPos(), otherA.sendYPos());
-			    
-					if ( dist <= this.getRadius() + otherA.getRadius())
+					Alga otherA =  (Alga) grid.agent(neighbours.ids[i]);
+					double dist = distance(otherA.haloX(), otherA.haloY());
+
+					if ( dist <= this.getRadius() + otherA.haloRadius())
 					{
-						Double r=0.0;
-						Double R=0.0;
-						if (otherA.getRadius()> this.getRadius()+ dist) die();
-						else if (otherA.getRadius() > this.getRadius()){
+						double r=0.0;
+						double R=0.0;
+						if (otherA.haloRadius()> this.getRadius()+ dist) die();
+						else if (otherA.haloRadius() > this.getRadius()){
 							r = this.getRadius();
-							R = otherA.getRadius();
+							R = otherA.haloRadius();
 						}
-						else {	
-							r = otherA.getRadius();
+						else {
+							r = otherA.haloRadius();
 							R = this.getRadius();
 						}
-						
-						Double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
-						Double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
-						Double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
 
-						Double intersectionArea = part1 + part2 - part3;	
-						
+						double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
+						double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
+						double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
+
+						double intersectionArea = part1 + part2 - part3;
+
 						if (intersectionArea>0)
-							interArea += intersectionArea;	
-						
-						for (Branch b : branches)
+							addInterArea(intersectionArea);
+
+						for (int k=0; k<numBranches; k++)
 						{
-							if (otherA.sendShape().contains(b.getEndX(), b.getEndY()))
+							if (otherA.haloContains(store.endX(slot, k), store.endY(slot, k)))
 							{
-								b.reduceGeneralGrowth();
+								// reduces the growth rate of the branch as soon as it touches the alga
+								store.setBranchGrowth(slot, k, store.branchGrowth(slot, k) * 0.7);
 							}
 						}
 					}
 				}
 			}
 		}
-		neighbours.clear();
 	}
 
-	
+
 	/**
 	 * Interaction with neighboring branching corals
 	 */
 	public void interactBranchingCorals() {
-		neighbours = sim.branchingCorals.getObjectsWithinDistance(me, maximumBranchLength+sim.braCoMaxLength+1);
+		Bag neighbours = branchingNeighbours.get(sim, tile.ids, sendXPos(), sendYPos(), maximumBranchLength()+sim.braCoMaxLength+1);
 		if (neighbours.numObjs > 1)
 		{
-			for (int i=0; i< neighbours.numObjs; i++)	
+			int numBranches = getNumBranches();
+			for (int i=0; i< neighbours.numObjs; i++)
 			{
-				if (alive)
+				if (getAlive())
 				{
 					BranchingCoral otherC = (BranchingCoral) neighbours.objs[i];
-			
-					if(otherC.me!=this.me)
+
+					if(otherC!=this)
 					{
 						double ciCalc = 1;
-						if (this.getCI() <= otherC.getCI()) ciCalc = this.getCI()/otherC.getCI() / sim.ciFactor;
-						
+						if (this.getCI() <= otherC.haloCI()) ciCalc = this.getCI()/otherC.haloCI() / sim.ciFactor;
+
 						double gReducer = ciCalc;
 						if (gReducer > 1) gReducer = 1;
-						
-						double dist = me.distance(otherC.xPos, otherC.yPos);
-						if (dist<=this.getRadius()+otherC.getRadius() && otherC.size >= size*0.5) numNeighbours+=1;
-						if (dist<this.getRadius()+otherC.getRadius() && otherC.bleached == false)
+
+						double dist = distance(otherC.haloX(), otherC.haloY());
+						if (dist<=this.getRadius()+otherC.haloRadius() && otherC.haloSize() >= sendSize()*0.5) addNeighbour();
+						if (dist<this.getRadius()+otherC.haloRadius() && otherC.haloBleached() == false)
 						{
-							Double r=0.0;
-							Double R=0.0;
-							if (otherC.getRadius()> this.getRadius()+dist) die();
-							else if (otherC.getRadius() > this.getRadius()){
+							double r=0.0;
+							double R=0.0;
+							if (otherC.haloRadius()> this.getRadius()+dist) die();
+							else if (otherC.haloRadius() > this.getRadius()){
 								r = this.getRadius();
-								R = otherC.getRadius();
+								R = otherC.haloRadius();
 							}
-							else {	
-								r = otherC.getRadius();
+							else {
+								r = otherC.haloRadius();
 								R = this.getRadius();
 							}
-							
-							Double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
-							Double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
-							Double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
-	
-							Double intersectionArea = part1 + part2 - part3;	
+
+							double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
+							double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
+							double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
+
+							double intersectionArea = part1 + part2 - part3;
 							if (intersectionArea>0)
-								interArea += intersectionArea;						
-							
-							for (Branch b : branches)
+								addInterArea(intersectionArea);
+
+							for (int k=0; k<numBranches; k++)
 							{
-								if ( otherC.sendShape().contains(b.getEndX(), b.getEndY()) )
+								if ( otherC.haloContains(store.endX(slot, k), store.endY(slot, k)) )
 								{
-									b.growthRate = initGrowthRate*gReducer;
-	
+									store.setBranchGrowth(slot, k, initGrowthRate()*gReducer);
+
 								}
 							}
 						}
@@ -437,67 +457,68 @@ public class BranchingCoral extends SimplePortrayal2D implements Steppable
 			}
 		}
 		neighbours.clear();
-	}					
+	}
+
 
 
-	
 	/**
 	 * Interaction with neighboring massive corals
 	 */
 	public void interactMassiveCorals()
 	{
-		neighbours = sim.massiveCorals.getObjectsWithinDistance(me, (maximumBranchLength+sim.maCoMaxLength+1));
+		Bag neighbours = massiveNeighbours.get(sim, tile.ids, sendXPos(), sendYPos(), (maximumBranchLength()+sim.maCoMaxLength+1));
 		if (neighbours.numObjs > 1)
-		{			
-			for (int i=0; i< neighbours.numObjs; i++)	
+		{
+			int numBranches = getNumBranches();
+			for (int i=0; i< neighbours.numObjs; i++)
 			{
-				if(alive)
+				if(getAlive())
 					{
 					MassiveCoral otherC = (MassiveCoral) neighbours.objs[i];
-					
+
 					/*
-					 * in competition with massive corals the growth rate of a branching coral 
-					 * is not only reduced due to the CI of the competitor but also because of 
+					 * in competition with massive corals the growth rate of a branching coral
+					 * is not only reduced due to the CI of the competitor but also because of
 					 * the massive structure, which is why the size term also is multiplied by 2
 					 */
 					double ciCalc = 1;
-					if (this.getCI() <= otherC.getCI()) ciCalc = this.getCI()/otherC.getCI() / sim.ciFactor;
-					
+					if (this.getCI() <= otherC.haloCI()) ciCalc = this.getCI()/otherC.haloCI() / sim.ciFactor;
+
 					double gReducer = ciCalc;
 					if (gReducer > 1) gReducer = 1;
-					
 
-					double dist = me.distance(otherC.sendXPos(), otherC.sendYPos());
-					if (dist<=this.getRadius()+otherC.getRadius() && otherC.size >= size*0.5) numNeighbours+=1;
-					
-					if (dist<this.getRadius()+otherC.getRadius() && otherC.bleached == false)
+
+					double dist = distance(otherC.haloX(), otherC.haloY());
+					if (dist<=this.getRadius()+otherC.haloRadius() && otherC.haloSize() >= sendSize()*0.5) addNeighbour();
+
+					if (dist<this.getRadius()+otherC.haloRadius() && otherC.haloBleached() == false)
 					{
-						Double r=0.0;
-						Double R=0.0;
-						if (otherC.getRadius()> this.getRadius()+dist) die();
-						 if (otherC.getRadius() > this.getRadius()){
+						double r=0.0;
+						double R=0.0;
+						if (otherC.haloRadius()> this.getRadius()+dist) die();
+						 if (otherC.haloRadius() > this.getRadius()){
 							r = this.getRadius();
-							R = otherC.getRadius();
+							R = otherC.haloRadius();
 						}
-						else {	
-							r = otherC.getRadius();
+						else {
+							r = otherC.haloRadius();
 							R = this.getRadius();
 						}
-						
-						Double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
-						Double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
-						Double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
 
-						Double intersectionArea = part1 + part2 - part3;	
-						if (otherC.getRadius()>this.getRadius() && intersectionArea>0)
-							interArea += intersectionArea;
+						double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
+						double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
+						double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
+
+						double intersectionArea = part1 + part2 - part3;
+						if (otherC.haloRadius()>this.getRadius() && intersectionArea>0)
+							addInterArea(intersectionArea);
 
-						
-						for (Branch b : branches)
+
+						for (int k=0; k<numBranches; k++)
 						{
-							if ( otherC.sendShape().contains(b.getEndX(), b.getEndY()) )
+							if ( otherC.haloContains(store.endX(slot, k), store.endY(slot, k)) )
 							{
-								b.growthRate = initGrowthRate*gReducer;
+								store.setBranchGrowth(slot, k, initGrowthRate()*gReducer);
 							}
 						}
 					}
@@ -507,7 +528,7 @@ public class BranchingCoral extends SimplePortrayal2D implements Steppable
 		neighbours.clear();
 	}
 
-					
+
 
 
 	/**
@@ -515,243 +536,179 @@ public class BranchingCoral extends SimplePortrayal2D implements Steppable
 	 */
 	private void interactTurf()
 	{
-		Bag t = sim.turf.getAllObjects();
-			
-		for (int i=0; i<t.size(); i++)
+		// the cell lies in the tile of the colony
+		TurfCell tC = sim.turfCellAt(sendXPos(), sendYPos());
+		if (tC != null)
 		{
-			TurfCell tC = (TurfCell) t.objs[i];
-			if (tC.sendShape().contains(me.x, me.y))
-			{
-				if (tC.sendCover() > 100) tC.cover = 100;
-				if (sim.random.nextBoolean(tC.sendCover()/100/2)) die(); //probability to max 50%
-			}
+			if (tC.sendCover() > 100) tC.setCover(100);
+			if (tile.random.nextBoolean(tC.sendCover()/100/2)) die(); //probability to max 50%
 		}
 	}
-	
-	/**
-	 * reschedules coral 
-	 * @param dTime time interval
-	 */
-	public final void reschedule(double dTime) {
-		if (dTime <= 0.0) {
-			step(sim);
-			return;
-		}
-		sim.schedule.scheduleOnceIn(dTime, this);
-	}
-	
+
 	/**
 	 * Determines the average radius of the colony
 	 */
 	public double getAvRadius()
 	{
 		double averageLength = 0;
-		maxLength = 0;
-		for (Branch b : branches)
+		double maxLength = 0;
+		int numBranches = getNumBranches();
+		for (int k=0; k<numBranches; k++)
 		{
-			/** 
-			 * The following part is to minimize edge effects of the simulation. 
-			 * If branching corals do not have any neighbors on one side they would grow to infinity and thereby 
+			double endX = store.endX(slot, k), endY = store.endY(slot, k);
+			double length = store.branchLength(slot, k);
+			/**
+			 * The following part is to minimize edge effects of the simulation.
+			 * If branching corals do not have any neighbors on one side they would grow to infinity and thereby
 			 * skew the value for the average radius
 			 */
-			
-			if (b.getEndX() < Siccom.gridWidth  || b.getEndX() > Siccom.gridWidth ||
-				b.getEndY() < Siccom.gridHeight || b.getEndY() > Siccom.gridHeight ) maxLength = radius;
+
+			if (endX < Siccom.gridWidth  || endX > Siccom.gridWidth ||
+				endY < Siccom.gridHeight || endY > Siccom.gridHeight ) maxLength = getRadius();
 
 			// if they are on the simulation area.
-			if (b.getBranchLength() >= maxLength) maxLength = b.getBranchLength();
-			averageLength += b.getBranchLength();
+			if (length >= maxLength) maxLength = length;
+			averageLength += length;
 		}
-		radius = averageLength / numBranches;
-		diameter = 2*radius;
-		size = Math.PI * Math.pow(radius, 2);
-		
-		maximumBranchLength = maxLength;
-		
-		
-		return radius;
+		setRadius(averageLength / numBranches);
+
+		store.set(slot, CoralStore.MAX_BRANCH_LENGTH, maxLength);
+
+
+		return getRadius();
 	}
 
-		
+
 	/**
 	 * Growth of the colony
 	 */
 	public void grow()
 	{
-		for (Branch b : branches)
+		double maxBranchLength = maxBranchLength();
+		double initGrowthRate = initGrowthRate();
+		int numBranches = getNumBranches();
+		for (int k=0; k<numBranches; k++)
 		{
-			if (b.branchLength < maxBranchLength && b.stop == false)
-							b.growBranch();
-			if (b.branchLength > maxBranchLength) b.branchLength=maxBranchLength;  // ATTENTION
-			
-			b.stop = false;
-			b.growthRate = initGrowthRate;
+			double length = store.branchLength(slot, k);
+			if (length < maxBranchLength)
+				length += store.branchGrowth(slot, k);
+			if (length > maxBranchLength) length = maxBranchLength;  // ATTENTION
+			store.setBranchLength(slot, k, length);
+			store.setBranchGrowth(slot, k, initGrowthRate);
 		}
-		
-		diameter = 2*radius;
-		size = Math.PI * Math.pow(radius, 2);
-				
 	}
-	
-	/**
-	 * Draw the coral
-	 * Draw info is for scaling issues of the portrayals
-	 */
-	public void draw(Object object, Graphics2D graphics, DrawInfo2D info)
-    {
-    	graph = graphics;
-    	inf = info;
-    	
-		
-		int x = (int)(inf.draw.x);
-    	int y = (int)(inf.draw.y);
-     	
-    	SimpleColorMap colorM = new SimpleColorMap(0.0, 100.0, initColor, Color.WHITE); 	// color is chosen 
-    	color = colorM.getColor(bleachGrade);												// depending on the bleachGrade of the coral	
-    	
-   		graph.setColor(color);
-   		
-   		drawCoral(inf, x, y);
-
-    }
-
-	private void drawCoral(DrawInfo2D inf, int x, int y) 
+
+	public double calculateHemisphere()
 	{
-		for (Branch b : branches)
-		{
-			drawArm(x,y, (int)b.getBranchLength(), (int)b.multiplier, inf);
-		}
+		return 2*Math.PI*Math.pow((getRadius()*Siccom.resolution), 2);
 	}
 
-	private void drawArm(int x, int y, int length, int div, DrawInfo2D inf)
-	{
-		int rad = (int)(inf.draw.width*length);
-		
-		int endX = (int)(x + (rad*Math.cos( (2*Math.PI/numBranches)*div )));
-        int endY = (int)(y - (rad*Math.sin( (2*Math.PI/numBranches)*div )));
 
-   		graph.drawLine(x,y,endX,endY);
-	}
-	
-	
 	/**
-	 * for the inspector of Coral objects
+	 *  sets the life-status to false -- removes object from hash table
 	 */
-	public boolean hitObject(Object object, DrawInfo2D range)
-    {
-    	final double SLOP = 1.0;	// need a little extra diameter to hit circles
-    	final double width = range.draw.width * diameter;
-    	final double height = range.draw.height * diameter;
-    	
-    	Ellipse2D.Double ellipse = new Ellipse2D.Double( 
-    			range.draw.x-width/2-SLOP,
-    			range.draw.y-height/2-SLOP, 
-                width+SLOP*2,
-                height+SLOP*2 );
-    	
-    	return (ellipse.intersects( range.clip.x, range.clip.y, range.clip.width, range.clip.height ));
-    }
-	
-	public double calculateHemisphere()
+	public void die()
 	{
-		return 2*Math.PI*Math.pow((radius*Siccom.resolution), 2);
-	}
-	
+		store.setFlag(slot, CoralStore.ALIVE, false);
+		if (tile != null) return;
+		sim.buffer.death(sim.branchingCorals, this);
+		unindex();
+		occupy();
+  	}
 
 	/**
-	 *  sets the life-status to false
-	 *  -- removes object from hash table 
+	 * @return true if a point lies within the disc of the colony -- the same as sendShape().contains(x, y)
 	 */
-	public void die() 
+	public boolean contains(double x, double y)
 	{
-		alive = false;
-		sim.branchingCorals.remove(this);
-  	}
+		double dx = x - sendXPos(), dy = y - sendYPos();
+		double radius = getRadius();
+		return dx*dx + dy*dy < radius*radius;
+	}
 
 	public Ellipse2D.Double sendShape()
 	{
-		  	double ulX = xPos - radius;
-		  	double ulY = yPos - radius;
-			return new Ellipse2D.Double( ulX, ulY, diameter, diameter );
+		  	double ulX = sendXPos() - getRadius();
+		  	double ulY = sendYPos() - getRadius();
+			return new Ellipse2D.Double( ulX, ulY, getDiameter(), getDiameter() );
 	}
-	
 
-	
+
+
 	 /*
 	  * BLEACHING AND RECOVERY
 	  */
-	 public void checkBleaching()
-	 {
-		 double bleachProb = sim.bleachProbs.get(name);
-
-		 if (bleachProb > 0)
-		 {
-			 if (sim.random.nextBoolean(bleachProb)) bleach();
-		 }
-	 }
-
 	 /**
 	  * Lets a coral bleach, and die with a certain probability
 	  */
 	 public void bleach()
 	 {
-		 if (sim.random.nextBoolean( sim.bleachDeathProbs.get(name) )) die();
+		 if (sim.random.nextBoolean( sim.bleachDeathProbs[bG.index] )) die();
+
+
+		 setBleachGrade(100);
 
-		 
-		 bleachGrade = 100;
-		 
 		 // reduce growth rate to nearly 0;
-		 growthRate = growthRate / bleachGrade;
+		 setGrowthRate(growthRate() / getBleachGrade());
 		 // set boolean bleached to true;
-		 bleached = true; 
+		 store.setFlag(slot, CoralStore.BLEACHED, true);
+		 occupy();
 	 }
-	 
+
+	 /**
+	  * Recovery of a bleached coral
+	  */
 	 public void recover()
 	 {
-		 bleachGrade = bleachGrade - recoveryRate;
+		 setBleachGrade(getBleachGrade() - recoveryRate);
 //		 growthRate = growthRate / bleachGrade;
-		 if (bleachGrade<=0){
-			 bleached = false;
-			 bleachGrade = 0;
+		 if (getBleachGrade()<=0){
+			 store.setFlag(slot, CoralStore.BLEACHED, false);
+			 setBleachGrade(0);
 		 }
 	 }
 
+		/**
+		 * Breaks fragments off the colony -- while the colony steps they settle when its tile commits
+		 */
 		public void fragtate()
 		{
 			double x = this.sendXPos();
 			double y = this.sendYPos();
 			double halfRange = sim.conf.aFragRange;
-			
+			MersenneTwisterFast random = tile != null ? tile.random : sim.random;
+
 			int fragNum = 	1; //	sim.random.nextInt(sim.conf.aMaxFragNum);
-			
-			 
+
+
 			if (fragNum != 0)
 			{
 				for (int i=0; i<=fragNum; i++)
 				{
-					double xPos = sim.random.nextDouble() *  ((x+halfRange) - (x-halfRange) + 1)  + (x-halfRange);
-					double yPos = sim.random.nextDouble() *  ((y+halfRange) - (y-halfRange) + 1)  + (y-halfRange);	
-			  					
-					BranchingCoral bC = new BranchingCoral(	sim,										// the simulation, the agent acts in
-								name,
-								bG.color,
-								bG.CI,
-								bG.surfaceFactor,
-								bG.maxRadius,
-								xPos, 										
-								yPos,										
-								fragSize,									
-								growthRate,								
-								numBranches,
-								0,
-								bG);																			
-
-					sim.branchingCorals.setObjectLocation(bC, new Double2D(xPos, yPos));
-					sim.schedule.scheduleOnce(bC);
-					
+					double xPos = random.nextDouble() *  ((x+halfRange) - (x-halfRange) + 1)  + (x-halfRange);
+					double yPos = random.nextDouble() *  ((y+halfRange) - (y-halfRange) + 1)  + (y-halfRange);
+					if (tile != null) tile.fragment(this, xPos, yPos);
+					else settle(xPos, yPos);
 				}
 			}
 		}
- 
-}
 
+		/**
+		 * Lets a fragment of the colony settle
+		 */
+		void settle(double xPos, double yPos)
+		{
+			// a fragment landing on a colony would die at once
+			if (sim.occupancy.doomed(OccupancyMap.BRANCHING, xPos, yPos, fragSize, this)) return;
+
+			BranchingCoral bC = bG.newCoral(	xPos,
+												yPos,
+												fragSize,
+												growthRate(),
+												getNumBranches(),
+												0);
+
+			sim.buffer.birth(sim.branchingCorals, bC, xPos, yPos);
+		}
+
+}
@@ -2,7 +2,6 @@ package siccom.sim;
 
 import java.awt.Color;
 
-import sim.engine.Schedule;
 import sim.util.Bag;
 import sim.util.Double2D;
 
@@ -50,6 +49,10 @@ public class BranchingGroup extends CoralGroup
 	 * The age of a colony
 	 */
 	private int age;
+	/**
+	 * Dead colonies of this group kept for reuse
+	 */
+	public AgentPool<BranchingCoral> pool = new AgentPool<BranchingCoral>();
 	
 
 	/**
@@ -131,10 +134,7 @@ public class BranchingGroup extends CoralGroup
 			age = 10;
 			
 			BranchingCoral mC = new BranchingCoral( sim,										// the simulation, the agent acts in
-													name,
-													color,
 													CI,
-													surfaceFactor,
 													maxRadius,
 													xPos, 										// x position
 													yPos,										// y position
@@ -147,13 +147,28 @@ public class BranchingGroup extends CoralGroup
 			sim.branchingCorals.setObjectLocation(mC, 
 					new Double2D(xPos, yPos));							// random location
 			
-			sim.schedule.scheduleOnce(Schedule.EPOCH, mC);					// schedule once in the beginning 
-																		// -- then Coral reschedules itself if alive			
 			sumSize = sumSize + mC.sendSize();
 		}
 		
 	}
 	
+	/**
+	 * Provides a colony of this group -- a dead one from the pool if there is one, otherwise a new one
+	 * @param xPos x-position
+	 * @param yPos y-position
+	 * @param radius initial radius
+	 * @param growthRate the growth rate
+	 * @param numBranches the number of branches
+	 * @param age the initial age
+	 */
+	public BranchingCoral newCoral(double xPos, double yPos, double radius, double growthRate, int numBranches, int age)
+	{
+		BranchingCoral bC = pool.obtain();
+		if (bC == null) return new BranchingCoral(sim, CI, maxRadius, xPos, yPos, radius, growthRate, numBranches, age, this);
+		bC.reset(CI, maxRadius, xPos, yPos, radius, growthRate, numBranches, age, this);
+		return bC;
+	}
+	
 	/**
   	 *  Creates recruits and appends them to branchingCorals
   	 */
@@ -163,29 +178,26 @@ public class BranchingGroup extends CoralGroup
  		importedRecs = importedRecruits();
  		totalRecs = selfMadeRecs + importedRecs;
  		
- 		
- 		for (int i = 0 ; i<totalRecs; i++)
+ 		sim.buffer.begin();
+ 		// only the recruits landing where they can live are placed
+		int settlers = sim.occupancy.settlers(OccupancyMap.BRANCHING, totalRecs);
+ 		for (int i = 0 ; i<settlers; i++)
 		{
-			double xPos = sim.random.nextDouble()*Siccom.gridWidth;
-  			double yPos = sim.random.nextDouble()*Siccom.gridHeight;
+			sim.occupancy.nextPosition(OccupancyMap.BRANCHING);
+			double xPos = sim.occupancy.x;
+  			double yPos = sim.occupancy.y;
+  			if (sim.occupancy.doomed(OccupancyMap.BRANCHING, xPos, yPos, recRad)) continue;
   				
-  			BranchingCoral mC = new BranchingCoral(	sim,										// the simulation, the agent acts in
-  													name,
-  													color,
-  													CI,
-  													surfaceFactor,
-  													maxRadius,
-   													xPos, 										// x position
-  													yPos,										// y position
-  													recRad,										// radius
-  													growthRate,									// growthRate
-													numBranches,
-													0,
-													this);											//age																							
+  			BranchingCoral mC = newCoral(	xPos, 										// x position
+  											yPos,										// y position
+  											recRad,										// radius
+  											growthRate,									// growthRate
+  											numBranches,
+  											0);											//age
   			
-  			sim.branchingCorals.setObjectLocation(mC, new Double2D(xPos, yPos));
-  			sim.schedule.scheduleOnce(mC);
+  			sim.buffer.birth(sim.branchingCorals, mC, xPos, yPos);
   		}
+ 		sim.buffer.commit();
  	}
  	
  	/**
@@ -196,26 +208,38 @@ public class BranchingGroup extends CoralGroup
  	{
 		// the number of recruits that come directly from the focal reef
  		double inRecNum = 0;
+ 		double surfaceArea = matureSurface();
+ 		if (pooledSurface >= 0) surfaceArea = pooledSurface;
+
+		// calculate the total propagule output
+		inRecNum = (surfaceArea * surfaceFactor * propagulesPerSqCm);		
+		
+		return (int) (inRecNum * retainFactor);
+		
+ 	}
+
+ 	/**
+ 	 * Sums up the surface of all mature colonies of this group
+ 	 * @return the surface area producing propagules
+ 	 */
+ 	public double matureSurface()
+ 	{
  		double surfaceArea = 0;
 
  		// collect all massive corals into a bag to make them iterable
-		Bag bB = sim.branchingCorals.getAllObjects();
+		Bag bB = sim.branchingOrder.agents();
 		for(int i = 0; i<bB.size(); i++)
 		{
 			BranchingCoral bC = (BranchingCoral)bB.objs[i];
 			
 			// check, if coral is of the desired species, mature and can produce propagules 
-			if(bC.getName().equals(name) && bC.diameter >= diamAtMaturity && 
-					(bC.xPos > 0 || bC.xPos < Siccom.gridWidth || bC.yPos > 0 || bC.yPos < Siccom.gridHeight))
+			if(bC.getName().equals(name) && bC.getDiameter() >= diamAtMaturity && !bC.ghost() && 
+					(bC.sendXPos() > 0 || bC.sendXPos() < Siccom.gridWidth || bC.sendYPos() > 0 || bC.sendYPos() < Siccom.gridHeight))
 			{
 					surfaceArea += bC.calculateHemisphere();
 			}
 		}
-		// calculate the total propagule output
-		inRecNum = (surfaceArea * surfaceFactor * propagulesPerSqCm);		
-		
-		return (int) (inRecNum * retainFactor);
-		
+		return surfaceArea;
  	}
  	
  	/**
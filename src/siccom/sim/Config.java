@@ -9,6 +9,7 @@ import java.lang.reflect.Field;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 
 import javax.swing.JTable;
@@ -138,6 +139,11 @@ public class Config
 	 * The maximal number of fragments an alga can produce
 	 */
 	public int aMaxFragNum;
+	/**
+	 * The radius from which on an algal recruit becomes an individual agent
+	 * -- smaller recruits are counted in the {@link AlgaDensityField} (0 = all algae are agents)
+	 */
+	public double algaPromotionRadius;
 	
 	// Parameter files to read
 	/**
@@ -145,6 +151,15 @@ public class Config
 	 * for corals, algae, and the environment, respectively
 	 */
 	public ParameterFile currentParameterFile = null;
+	/**
+	 * All values read from the parameter files by name -- the values of a species file
+	 * are named after the species (e.g. Porites.growthRate)
+	 */
+	public LinkedHashMap<String, String> parameters = new LinkedHashMap<String, String>();
+	/**
+	 * Put before the names of the values read now
+	 */
+	private String parameterPrefix = "";
 
 	Boolean gradualTempIncrease;
 
@@ -201,17 +216,9 @@ public class Config
 			
 			Siccom.dimensionConv_meters = Siccom.resolution / 100.0;					// converter from meters to pixels
 			Siccom.dimensionConv_milimeters = 1 / (Siccom.resolution*10) / 12;			// converter from mm/year to pixels/month
-			Siccom.gridWidth = Siccom.areaWidth / Siccom.dimensionConv_meters;				// the simulation area width in pixels
-			Siccom.gridHeight = Siccom.areaHeight / Siccom.dimensionConv_meters;			// the simulation area height in pixels
-			
-			Siccom.totalArea = Siccom.gridWidth * Siccom.gridHeight;
-			
 			
 			sim.turfResolution = (int) (1 / Siccom.dimensionConv_meters);
-			sim.cellNumWidth = (int)(Siccom.gridWidth / sim.turfResolution);
-			sim.cellNumHeight = (int)(Siccom.gridHeight / sim.turfResolution);
-			sim.cellWidth = sim.turfResolution;
-			sim.cellHeight = sim.turfResolution;
+			scaleArea();
 		
 		}
 		catch (IOException e) 
@@ -222,6 +229,87 @@ public class Config
 	}
 
 	
+	/**
+	 * Derives the size of the simulation area in pixels and the number of turf cells
+	 * from the area in meters, the resolution and the turf resolution
+	 */
+	public void scaleArea()
+	{
+		Siccom.gridWidth = Siccom.areaWidth / Siccom.dimensionConv_meters;				// the simulation area width in pixels
+		Siccom.gridHeight = Siccom.areaHeight / Siccom.dimensionConv_meters;			// the simulation area height in pixels
+		
+		Siccom.totalArea = Siccom.gridWidth * Siccom.gridHeight;
+		
+		sim.cellNumWidth = (int)(Siccom.gridWidth / sim.turfResolution);
+		sim.cellNumHeight = (int)(Siccom.gridHeight / sim.turfResolution);
+		sim.cellWidth = sim.turfResolution;
+		sim.cellHeight = sim.turfResolution;
+	}
+	
+	/**
+	 * Sets the size of the simulation area
+	 * @param width the width in meters
+	 * @param height the height in meters
+	 */
+	public void setArea(double width, double height)
+	{
+		Siccom.areaWidth = width;
+		Siccom.areaHeight = height;
+		scaleArea();
+	}
+	
+	/**
+	 * Sets the width of a turf cell
+	 * @param meters the width of a turf cell in meters
+	 */
+	public void setTurfResolution(double meters)
+	{
+		sim.turfResolution = (int) (meters / Siccom.dimensionConv_meters);
+		if (sim.turfResolution < 1) sim.turfResolution = 1;
+		scaleArea();
+	}
+	
+	/**
+	 * Adds a type of disturbance to the simulation, unless one of its parameters switches it off
+	 * @param n the number of the type
+	 * @param name the name in the output -- if null: "small" for type 1, "large" for type 2, "disturbanceN" otherwise
+	 * @param maxSize the maximum diameter of a disturbed area in meters
+	 * @param minSize the minimum diameter of a disturbed area in meters
+	 * @param meanInterval the mean interval between events in months
+	 * @param sdPercent the relative standard deviation of the interval
+	 * @param maxNumber the number of simultaneous events
+	 * @param fragments if branching corals may leave fragments -- if null only type 1 leaves fragments
+	 */
+	private void addDisturbance(int n, String name, double maxSize, double minSize, int meanInterval, 
+								double sdPercent, int maxNumber, Boolean fragments)
+	{
+		if (name == null)
+		{
+			if (n == 1) name = "small";
+			else if (n == 2) name = "large";
+			else name = "disturbance" + n;
+		}
+		if (fragments == null) fragments = (n == 1);
+		
+		DisturbanceType d = new DisturbanceType(	n,
+													name,
+													maxSize / Siccom.dimensionConv_meters,
+													minSize / Siccom.dimensionConv_meters,
+													meanInterval,
+													sdPercent,
+													maxNumber,
+													fragments);
+		if (!d.isActive()) return;
+		
+		MersenneTwisterFast random = new MersenneTwisterFast(sim.seed());
+
+		// sets the time for the first disturbance event to occur
+		d.firstInterval = Math.round(random.nextGaussian() * d.sdInterval + d.meanInterval)+1;
+		while (d.firstInterval <= 0) {d.firstInterval = Math.round(random.nextGaussian() * d.sdInterval + d.meanInterval)+1;}
+		
+		sim.disturbanceTypes.add(d);
+	}
+	
 	/**
 	 * Reads the environment parameter file
 	 * @param fn the filename 
@@ -245,68 +333,20 @@ public class Config
 			ParameterFile pf = new ParameterFile(in, fileName, true);
 			this.currentParameterFile = pf;
 			
-			sim.disturbMaxSize1 = readDouble(pf, "disturbMaxSize1") / Siccom.dimensionConv_meters;
-			sim.disturbMinSize1 = readDouble(pf, "disturbMinSize1") / Siccom.dimensionConv_meters;
-			sim.disturbMaxRadius1 = sim.disturbMaxSize1 / 2;
-			sim.disturbMinRadius1 = sim.disturbMinSize1 / 2;	
-			sim.disturbMeanInterval1 = (int)readDouble(pf, "disturbMeanInterval1");
-			sim.disturbSDPercent1 = readDouble(pf, "disturbSDInterval1");
-			sim.disturbSDInterval1 = (int)(sim.disturbSDPercent1*sim.disturbMeanInterval1/100);
-			sim.disturbMaxNumber1 = readInt(pf, "disturbMaxNumber1");
-			
-			if (sim.disturbMaxSize1==0 || sim.disturbMinSize1==0 || 
-					sim.disturbMaxNumber1==0 || sim.disturbMeanInterval1==0 )
+			// any number of disturbance types -- disturbMaxSize1, disturbMaxSize2, ...
+			sim.disturbanceTypes.clear();
+			for (int n=1; pf.getValue("disturbMaxSize" + n) != null; n++)
 			{
-				sim.disser1 = false;
-			}
-			else
-			{
-
-				MersenneTwisterFast random = new MersenneTwisterFast(sim.seed());
-
-				// sets the time for the first disturbance event to occur
-				sim.dInterval = Math.round(random.nextGaussian() * sim.disturbSDInterval1 + sim.disturbMeanInterval1 +1);
-				while (sim.dInterval <= 0) {sim.dInterval = Math.round(random.nextGaussian() * sim.disturbSDInterval1 + sim.disturbMeanInterval1)+1;}
-				
-				sim.dist1 = new double[6];
-				sim.dist1[0] = sim.disturbMaxRadius1;
-				sim.dist1[1] = sim.disturbMinRadius1;
-				sim.dist1[2] = (double)sim.disturbMeanInterval1;
-				sim.dist1[3] = (double)sim.disturbSDInterval1;
-				sim.dist1[4] = (double)sim.disturbMaxNumber1;
-				sim.dist1[5] = (double)sim.dInterval;
-			}
-			
-			
-			sim.disturbMaxSize2 = readDouble(pf, "disturbMaxSize2") / Siccom.dimensionConv_meters;
-			sim.disturbMinSize2 = readDouble(pf, "disturbMinSize2") / Siccom.dimensionConv_meters;
-			sim.disturbMaxRadius2 = sim.disturbMaxSize2 / 2;
-			sim.disturbMinRadius2 = sim.disturbMinSize2 / 2;	
-			sim.disturbMeanInterval2 = (int)readDouble(pf, "disturbMeanInterval2");
-			sim.disturbSDPercent2 = readDouble(pf, "disturbSDInterval2");
-			sim.disturbSDInterval2 = (int)(sim.disturbSDPercent2*sim.disturbMeanInterval2/100);
-			sim.disturbMaxNumber2 = readInt(pf, "disturbMaxNumber2");
-			
-			if (sim.disturbMaxSize2==0 || sim.disturbMinSize2==0 || 
-					sim.disturbMaxNumber2==0 || sim.disturbMeanInterval2==0)
-			{
-				sim.disser2 = false;
-			}
-			else
-			{
-		
-				MersenneTwisterFast random = new MersenneTwisterFast(sim.seed());
-				// sets the time for the first disturbance event to occur
-				sim.dInterval = Math.round(random.nextGaussian() * sim.disturbSDInterval2 + sim.disturbMeanInterval2)+1;
-				while (sim.dInterval <= 0) {sim.dInterval = Math.round(random.nextGaussian() * sim.disturbSDInterval2 + sim.disturbMeanInterval2)+1;}
-	
-				sim.dist2 = new double[6];
-				sim.dist2[0] = sim.disturbMaxRadius2;
-				sim.dist2[1] = sim.disturbMinRadius2;
-				sim.dist2[2] = (double)sim.disturbMeanInterval2;
-				sim.dist2[3] = (double)sim.disturbSDInterval2;
-				sim.dist2[4] = (double)sim.disturbMaxNumber2;
-				sim.dist2[5] = (double)sim.dInterval;
+				String name = pf.getValue("disturbName" + n);
+				String frag = pf.getValue("disturbFragments" + n);
+				addDisturbance(	n,
+								name,
+								readDouble(pf, "disturbMaxSize" + n),
+								readDouble(pf, "disturbMinSize" + n),
+								(int)readDouble(pf, "disturbMeanInterval" + n),
+								readDouble(pf, "disturbSDInterval" + n),
+								readInt(pf, "disturbMaxNumber" + n),
+								frag == null ? null : Boolean.valueOf(frag));
 			}
 			
 			sim.maxDisBreakProb = readDouble(pf, "maxDisBreakProb");
@@ -337,9 +377,7 @@ public class Config
 			sim.maxGrazingProb = sim.grazingProb + sim.grazingProbHalfRange;
 			
 			// SCALING TURF
-			sim.turfResolution = (int) (readInt(pf, "turfResolution")/Siccom.dimensionConv_meters);
-			sim.cellNumWidth = (int)(Siccom.gridWidth / sim.turfResolution);
-			sim.cellNumHeight = (int)(Siccom.gridHeight / sim.turfResolution);
+			setTurfResolution(readDouble(pf, "turfResolution"));
 			
 			// To determine if smaller bleaching events occur or not
 			sim.constantTemperature = Boolean.valueOf(readString(pf, "constTemp"));
@@ -373,8 +411,9 @@ public class Config
 		// read massive coral group parameters and setup the Massive Groups		
 		for (int i=1; i<=Siccom.maCoGroupNum;i++)
 		{
-			String fileName = "maCoParam"+numform2.format(i);
+			String fileName = speciesFileName("maCoParam", i);
 			readParameterFile(fileName);
+			if (!fileName.endsWith(numform2.format(i))) name = name + "_" + numform2.format(i);
 	
 			MassiveGroup maco = new MassiveGroup(	sim,
 													name,
@@ -402,8 +441,9 @@ public class Config
 		// read branching coral group parameters and setup Branching Groups
 		for (int i=1; i<=Siccom.braCoGroupNum;i++)
 		{
-			String fileName = "braCoParam"+numform2.format(i);
+			String fileName = speciesFileName("braCoParam", i);
 			readParameterFile(fileName);
+			if (!fileName.endsWith(numform2.format(i))) name = name + "_" + numform2.format(i);
 		
 			BranchingGroup braco = new BranchingGroup(	sim,
 														name,
@@ -429,6 +469,25 @@ public class Config
 		}
 	}
 	
+	/**
+	 * Finds the parameter file for the i-th species of a growth form.
+	 * If there are more species than parameter files, the existing files are reused cyclically.
+	 * @param prefix the file prefix (maCoParam or braCoParam)
+	 * @param i the number of the species
+	 * @return the file name without extension
+	 */
+	private String speciesFileName(String prefix, int i)
+	{
+		String fileName = prefix + numform2.format(i);
+		if (new File(getLocalFileName(fileName + infoFileExtension)).isFile()) return fileName;
+		
+		int available = 0;
+		while (new File(getLocalFileName(prefix + numform2.format(available+1) + infoFileExtension)).isFile()) available++;
+		if (available == 0) return fileName;
+		
+		return prefix + numform2.format((i-1) % available + 1);
+	}
+	
 	private void readAlgaFile(String fn) {
 		File file;
 		String fileName;
@@ -464,6 +523,8 @@ public class Config
 			algaRecNumPerSqM = readDouble(pf, "algaRecNumPerSqM");
 			algaRecNum = (int)( algaRecNumPerSqM * Siccom.areaWidth * Siccom.areaHeight );
 			algalCover = Siccom.totalArea / 100 * algalCoverPercent;
+			String pr = pf.getValue("algaPromotionRadius");
+			algaPromotionRadius = pr == null ? 0 : readDouble(pf, "algaPromotionRadius") / Siccom.resolution;
 			
 			
 		
@@ -505,6 +566,7 @@ public class Config
 			this.currentParameterFile = pf;
 
 			name = readString(pf, "name");
+			parameterPrefix = name + ".";
 			colorString = readString(pf, "color");
 			color = getRGBColor(colorString);
 			
@@ -531,6 +593,17 @@ public class Config
 //			JOptionPane.showMessageDialog(frame, e, "Error",
 //					JOptionPane.WARNING_MESSAGE);
 		}
+		finally {
+			parameterPrefix = "";
+		}
+	}
+	
+	/**
+	 * Remembers a value read from a parameter file
+	 */
+	private void record(String key, String value)
+	{
+		if (value != null) parameters.put(parameterPrefix + key, value.trim());
 	}
 	
 	/**
@@ -544,6 +617,7 @@ public class Config
 	 */
 	public double readDouble(ParameterFile pf, String key) {
 		String s = pf.getValue(key);
+		record(key, s);
 
 		double value = 0;
 		try {
@@ -566,6 +640,7 @@ public class Config
 	 */
 	public int readInt(ParameterFile pf, String key) {
 		String str = pf.getValue(key);
+		record(key, str);
 
 		int val = 0;
 		try {
@@ -589,6 +664,7 @@ public class Config
 	public String readString(ParameterFile pf, String key)
 	{
 		String s = pf.getValue(key);
+		record(key, s);
 		
 		String value = "";
 		try{
@@ -602,6 +678,7 @@ public class Config
 	
 	public boolean readBoolean(ParameterFile pf, String key) {
 		String str = pf.getValue(key);
+		record(key, str);
 	
 		boolean val = true;
 		try {
@@ -639,6 +716,21 @@ public class Config
 			readGuiParam(fpp.table, fpp.fileName);
 	}
 	
+	/**
+	 * @param tab the parameter table
+	 * @param key the name of a parameter
+	 * @return the value of the parameter in the table -- null if the table has no such parameter
+	 */
+	private static String guiValue(JTable tab, String key)
+	{
+		for (int row=0; row<tab.getRowCount(); row++)
+		{
+			Object name = tab.getValueAt(row, 1);
+			if (name != null && key.equals(name.toString().trim())) return ((String) tab.getValueAt(row, 0)).trim();
+		}
+		return null;
+	}
+	
 	/**
 	 * Reads the parameters from the GUI parameter panels
 	 * @param tab the parameter table
@@ -648,108 +740,57 @@ public class Config
 	{
 		if(fN.equals("environment.inf"))
 		{
-			sim.disturbMaxSize1 = Double.valueOf((String)tab.getValueAt(0, 0)) / Siccom.dimensionConv_meters;
-			sim.disturbMinSize1 = Double.valueOf((String)tab.getValueAt(1, 0)) / Siccom.dimensionConv_meters;
-			sim.disturbMaxRadius1 = sim.disturbMaxSize1 / 2;
-			sim.disturbMinRadius1 = sim.disturbMinSize1 / 2;	
-			sim.disturbMeanInterval1 = (int)(Double.valueOf((String)tab.getValueAt(2, 0))*1.0);
-			sim.disturbSDPercent1 = Double.valueOf((String)tab.getValueAt(3, 0));
-			sim.disturbSDInterval1 = (int)(sim.disturbSDPercent1*sim.disturbMeanInterval1/100);
-			sim.disturbMaxNumber1 = Integer.valueOf((String)tab.getValueAt(4, 0));
-			
-			if (sim.disturbMaxSize1==0 || sim.disturbMinSize1==0 || 
-					sim.disturbMaxNumber1==0 || sim.disturbMeanInterval1==0 )
+			// the rows are found by their names -- the table has as many disturbance types as the file
+			sim.disturbanceTypes.clear();
+			for (int n=1; guiValue(tab, "disturbMaxSize" + n) != null; n++)
 			{
-				sim.disser1 = false;
-			}
-			else
-			{
-				MersenneTwisterFast random = new MersenneTwisterFast(sim.seed());
-
-				// sets the time for the first disturbance event to occur
-				sim.dInterval = Math.round(random.nextGaussian() * sim.disturbSDInterval1 + sim.disturbMeanInterval1+1);
-				while (sim.dInterval <= 0) {sim.dInterval = Math.round(random.nextGaussian() * sim.disturbSDInterval1 + sim.disturbMeanInterval1)+1;}
-				
-				sim.dist1 = new double[6];
-				sim.dist1[0] = sim.disturbMaxRadius1;
-				sim.dist1[1] = sim.disturbMinRadius1;
-				sim.dist1[2] = (double)sim.disturbMeanInterval1;
-				sim.dist1[3] = (double)sim.disturbSDInterval1;
-				sim.dist1[4] = (double)sim.disturbMaxNumber1;
-				sim.dist1[5] = (double)sim.dInterval;
-			}
-			
-			
-			sim.disturbMaxSize2 = Double.valueOf((String)tab.getValueAt(5, 0)) / Siccom.dimensionConv_meters;
-			sim.disturbMinSize2 = Double.valueOf((String)tab.getValueAt(6, 0)) / Siccom.dimensionConv_meters;
-			sim.disturbMaxRadius2 = sim.disturbMaxSize2 / 2;
-			sim.disturbMinRadius2 = sim.disturbMinSize2 / 2;	
-			sim.disturbMeanInterval2 = (int) (Double.valueOf((String)tab.getValueAt(7, 0))*1.0);
-			sim.disturbSDPercent2 = Double.valueOf((String)tab.getValueAt(8, 0));
-			sim.disturbSDInterval2 = (int)(sim.disturbSDPercent2*sim.disturbMeanInterval2/100);
-			sim.disturbMaxNumber2 = Integer.valueOf((String)tab.getValueAt(9, 0));
-			
-			if (sim.disturbMaxSize2==0 || sim.disturbMinSize2==0 || 
-					sim.disturbMaxNumber2==0 || sim.disturbMeanInterval2==0)
-			{
-				sim.disser2 = false;
-			}
-			else
-			{
-				MersenneTwisterFast random = new MersenneTwisterFast(sim.seed());
-				// sets the time for the first disturbance event to occur
-				sim.dInterval = Math.round(random.nextGaussian() * sim.disturbSDInterval2 + sim.disturbMeanInterval2+1);
-				while (sim.dInterval <= 0) {sim.dInterval = Math.round(random.nextGaussian() * sim.disturbSDInterval2 + sim.disturbMeanInterval2)+1;}
-				
-				sim.dist2 = new double[6];
-				sim.dist2[0] = sim.disturbMaxRadius2;
-				sim.dist2[1] = sim.disturbMinRadius2;
-				sim.dist2[2] = (double)sim.disturbMeanInterval2;
-				sim.dist2[3] = (double)sim.disturbSDInterval2;
-				sim.dist2[4] = (double)sim.disturbMaxNumber2;
-				sim.dist2[5] = (double)sim.dInterval;
+				String frag = guiValue(tab, "disturbFragments" + n);
+				addDisturbance(	n,
+								guiValue(tab, "disturbName" + n),
+								Double.valueOf(guiValue(tab, "disturbMaxSize" + n)),
+								Double.valueOf(guiValue(tab, "disturbMinSize" + n)),
+								(int)(Double.valueOf(guiValue(tab, "disturbMeanInterval" + n))*1.0),
+								Double.valueOf(guiValue(tab, "disturbSDInterval" + n)),
+								Integer.valueOf(guiValue(tab, "disturbMaxNumber" + n)),
+								frag == null ? null : Boolean.valueOf(frag));
 			}
 			
-			sim.maxDisBreakProb = Double.valueOf((String)tab.getValueAt(10, 0));
-			sim.minDisBreakProb = Double.valueOf((String)tab.getValueAt(11, 0));
+			sim.maxDisBreakProb = Double.valueOf(guiValue(tab, "maxDisBreakProb"));
+			sim.minDisBreakProb = Double.valueOf(guiValue(tab, "minDisBreakProb"));
 			
-			sim.longTermYears = Integer.valueOf((String)tab.getValueAt(12, 0) );
-			sim.minDHD = Double.valueOf((String)tab.getValueAt(13, 0));
-			sim.maxHR = Double.valueOf((String)tab.getValueAt(14, 0));
-			sim.minHR = Double.valueOf((String)tab.getValueAt(15, 0));
-			sim.bleachInterval = (int)(Double.valueOf((String)tab.getValueAt(16, 0)) * 12);// input is in years --> calculated in month
+			sim.longTermYears = Integer.valueOf(guiValue(tab, "longTermYears"));
+			sim.minDHD = Double.valueOf(guiValue(tab, "minDHD"));
+			sim.maxHR = Double.valueOf(guiValue(tab, "maxHR"));
+			sim.minHR = Double.valueOf(guiValue(tab, "minHR"));
+			sim.bleachInterval = (int)(Double.valueOf(guiValue(tab, "bleachInterval")) * 12);// input is in years --> calculated in month
 			
-			sim.coralRecImportFactor = Double.valueOf((String)tab.getValueAt(17, 0));
+			sim.coralRecImportFactor = Double.valueOf(guiValue(tab, "coralRecImportFactor"));
 			
-			sim.breakageProb = Double.valueOf((String)tab.getValueAt(18, 0));
-			sim.fragProb = Double.valueOf((String)tab.getValueAt(19, 0));
-			sim.fragRange = Double.valueOf((String)tab.getValueAt(20, 0)) / Siccom.dimensionConv_meters;
+			sim.breakageProb = Double.valueOf(guiValue(tab, "breakageProb"));
+			sim.fragProb = Double.valueOf(guiValue(tab, "fragProb"));
+			sim.fragRange = Double.valueOf(guiValue(tab, "fragRange")) / Siccom.dimensionConv_meters;
 			
-			sim.dieOvergrowthMas = Double.valueOf((String)tab.getValueAt(21, 0));
-			sim.dieOvergrowthBra = Double.valueOf((String)tab.getValueAt(22, 0));
+			sim.dieOvergrowthMas = Double.valueOf(guiValue(tab, "dieOvergrowthMas"));
+			sim.dieOvergrowthBra = Double.valueOf(guiValue(tab, "dieOvergrowthBra"));
 
-			sim.iniGrazingProb = Double.valueOf((String)tab.getValueAt(23, 0));
+			sim.iniGrazingProb = Double.valueOf(guiValue(tab, "grazingProb"));
 			sim.grazingProb = sim.iniGrazingProb;
-			sim.iniAlgalThreshold = Double.valueOf((String)tab.getValueAt(24, 0));
+			sim.iniAlgalThreshold = Double.valueOf(guiValue(tab, "iniAlgalThreshold"));
 			// calculate the grazing prob min and max relative to the initial grazing prob
 			sim.minGrazingProb = sim.iniGrazingProb - sim.grazingProbHalfRange;
 			if (sim.minGrazingProb < 0.0) sim.minGrazingProb = 0;
 			sim.maxGrazingProb = sim.iniGrazingProb + sim.grazingProbHalfRange;
 			
 			// SCALING TURF
-			sim.turfResolution = (int) (Double.valueOf((String)tab.getValueAt(25, 0))/Siccom.dimensionConv_meters);
-			sim.cellNumWidth = (int)(Siccom.gridWidth / sim.turfResolution);
-			sim.cellNumHeight = (int)(Siccom.gridHeight / sim.turfResolution);
-			sim.cellWidth = sim.turfResolution;
-			sim.cellHeight = sim.turfResolution;
+			setTurfResolution(Double.valueOf(guiValue(tab, "turfResolution")));
 			
 			// To determine if smaller bleaching events occur or not
-			sim.constantTemperature = Boolean.valueOf((String)tab.getValueAt(26, 0));
+			sim.constantTemperature = Boolean.valueOf(guiValue(tab, "constTemp"));
 			
 			// Gradual temperature increase over time
-			gradualTempIncrease = Boolean.valueOf((String)tab.getValueAt(27, 0));
-			totalTempIncrease = Double.valueOf((String)tab.getValueAt(28, 0));
-			increaseYears = Integer.valueOf((String)tab.getValueAt(29, 0));
+			gradualTempIncrease = Boolean.valueOf(guiValue(tab, "gradualTempIncrease"));
+			totalTempIncrease = Double.valueOf(guiValue(tab, "totalTempIncrease"));
+			increaseYears = Integer.valueOf(guiValue(tab, "increaseYears"));
 			yearlyTempIncrease = totalTempIncrease/increaseYears;
 	
 			
@@ -759,7 +800,7 @@ public class Config
 					yearlyTempIncrease);
 
 			// Strength of the Competition Index
-			sim.ciFactor = Double.valueOf((String)tab.getValueAt(30, 0));
+			sim.ciFactor = Double.valueOf(guiValue(tab, "ciFactor"));
 			
 
 			
@@ -784,6 +825,7 @@ public class Config
 			algaRecNumPerSqM = 		Double.valueOf((String)tab.getValueAt(14, 0));
 			algaRecNum = 			(int)( algaRecNumPerSqM * Siccom.areaWidth * Siccom.areaHeight );
 			algalCover = 			Siccom.totalArea / 100 * algalCoverPercent;
+			algaPromotionRadius = 	tab.getRowCount() > 15 ? Double.valueOf((String)tab.getValueAt(15, 0)) / Siccom.resolution : 0;
 		}
 		
 		else if (fN.startsWith("maCoParam") || fN.startsWith("braCoParam"))
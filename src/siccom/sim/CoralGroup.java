@@ -21,6 +21,10 @@ public abstract class CoralGroup
 	 * The name of the Coral Group (Species name)
 	 */
 	public String name;		
+	/**
+	 * The position of the group among all coral groups -- used to look up the bleaching probabilities
+	 */
+	public int index;
 	
 	public String colorString;
 	/**
@@ -74,7 +78,12 @@ public abstract class CoralGroup
 	/**
 	 * The number of recruits per recruitment event
 	 */
-	public int	fixRecImport;					
+	public int	fixRecImport;
+	/**
+	 * The share of this strip in the surface of mature colonies on the whole reef, if the reef is split into strips -- 
+	 * replaces the local surface when computing the self made recruits (negative if not used)
+	 */
+	public double pooledSurface = -1;					
 	
 
 	// TEMPERATURE
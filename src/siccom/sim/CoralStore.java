@@ -0,0 +1,265 @@
+package siccom.sim;
+
+import java.util.Arrays;
+
+import org.jhotdraw.geom.Polygon2D;
+
+/**
+ * The {@link AgentStore} of a coral population -- the record of a colony holds its state and its branches.
+ * Branch k of a colony with n branches points at the angle 2*PI/n*(k+1); its end lies at its length from the colony centre.
+ * The outline of a massive colony is the polygon through the ends of its branches.
+ * @author andreas
+ *
+ */
+public class CoralStore extends AgentStore
+{
+	/**
+	 * The doubles of a record
+	 */
+	static final int X = 0, Y = 1, RADIUS = 2, SIZE = 3, INIT_GROWTH_RATE = 4, GROWTH_RATE = 5, CI = 6,
+			MAX_RADIUS = 7, MAX_BRANCH_LENGTH = 8, BLEACH_GRADE = 9, ALG_COVERAGE = 10, INTER_AREA = 11,
+			MARKED_DISC = 12, INDEXED_REACH = 13;
+	/**
+	 * The length and the growth rate of branch k are the doubles BRANCHES+2k and BRANCHES+2k+1
+	 */
+	static final int BRANCHES = 14;
+	/**
+	 * The ints of a record
+	 */
+	static final int AGE = 0, GROUP = 1, FLAGS = 2, NUM_BRANCHES = 3, ASLEEP_SINCE = 4, NEIGHBOURS = 5;
+	static final int INTS = 6;
+	/**
+	 * The flags
+	 * <ul>
+	 * <li>ALIVE: the colony has not died yet</li>
+	 * <li>BLEACHED: the colony is bleached</li>
+	 * <li>ROUNDED: the outline is drawn with whole branch lengths -- a massive colony that has not grown yet</li>
+	 * <li>GHOST: the copy of a colony of a neighbouring strip (see {@link StripExchange}) -- it neither steps nor counts</li>
+	 * </ul>
+	 */
+	static final int ALIVE = 1, BLEACHED = 2, ROUNDED = 4, GHOST = 8;
+
+	/**
+	 * The direction of each branch of a colony with n branches
+	 */
+	final double[][] cos, sin;
+
+	/**
+	 * Creates the store chosen for the simulation
+	 * @param sim the simulation
+	 * @param name the name of the population -- names the mapped file
+	 * @param maxBranches the largest number of branches of a colony
+	 */
+	public static CoralStore create(Siccom sim, String name, int maxBranches)
+	{
+		int doubles = BRANCHES + 2*maxBranches;
+		CoralStore store = new CoralStore(Records.create(sim, name, doubles, INTS), maxBranches);
+		store.halo = new CoralStore(Records.create(sim, name + ".halo", doubles, INTS), maxBranches);
+		return store;
+	}
+
+	CoralStore(Records records, int maxBranches)
+	{
+		super(records);
+		cos = new double[maxBranches+1][];
+		sin = new double[maxBranches+1][];
+		for (int n=1; n<=maxBranches; n++)
+		{
+			cos[n] = new double[n];
+			sin[n] = new double[n];
+			for (int k=0; k<n; k++)
+			{
+				cos[n][k] = Math.cos((2*Math.PI/n)*(k+1));
+				sin[n][k] = Math.sin((2*Math.PI/n)*(k+1));
+			}
+		}
+	}
+
+	@Override
+	public CoralStore halo()
+	{
+		return (CoralStore) halo;
+	}
+
+	public boolean is(int s, int flag)
+	{
+		return (getInt(s, FLAGS) & flag) != 0;
+	}
+
+	public void setFlag(int s, int flag, boolean on)
+	{
+		int f = getInt(s, FLAGS);
+		setInt(s, FLAGS, on ? f | flag : f & ~flag);
+	}
+
+	public double branchLength(int s, int k)
+	{
+		return get(s, BRANCHES + 2*k);
+	}
+
+	public void setBranchLength(int s, int k, double length)
+	{
+		set(s, BRANCHES + 2*k, length);
+	}
+
+	public double branchGrowth(int s, int k)
+	{
+		return get(s, BRANCHES + 2*k + 1);
+	}
+
+	public void setBranchGrowth(int s, int k, double growthRate)
+	{
+		set(s, BRANCHES + 2*k + 1, growthRate);
+	}
+
+	/**
+	 * @return the x-position of the end of a branch
+	 */
+	public double endX(int s, int k)
+	{
+		return get(s, X) + branchLength(s, k) * cos[getInt(s, NUM_BRANCHES)][k];
+	}
+
+	/**
+	 * @return the y-position of the end of a branch
+	 */
+	public double endY(int s, int k)
+	{
+		return get(s, Y) - branchLength(s, k) * sin[getInt(s, NUM_BRANCHES)][k];
+	}
+
+	/**
+	 * @return the length a branch has in the outline
+	 */
+	private double outlineLength(int s, int k, boolean rounded)
+	{
+		double length = branchLength(s, k);
+		return rounded ? (int)length : length;
+	}
+
+	/**
+	 * @return true if a point lies within the outline of a colony -- the same as the contains of the outline polygon
+	 */
+	public boolean outlineContains(int s, double px, double py)
+	{
+		int n = getInt(s, NUM_BRANCHES);
+		if (n <= 2) return false;
+		double x = get(s, X), y = get(s, Y);
+		boolean rounded = is(s, ROUNDED);
+		double[] c = cos[n], si = sin[n];
+
+		// the crossing test of java.awt.Polygon, walking the edges from the last corner
+		int hits = 0;
+		double length = outlineLength(s, n-1, rounded);
+		double lastx = x + length*c[n-1];
+		double lasty = y - length*si[n-1];
+		double curx, cury;
+		for (int k=0; k<n; lastx = curx, lasty = cury, k++)
+		{
+			length = outlineLength(s, k, rounded);
+			curx = x + length*c[k];
+			cury = y - length*si[k];
+			if (cury == lasty) continue;
+
+			double leftx;
+			if (curx < lastx)
+			{
+				if (px >= lastx) continue;
+				leftx = curx;
+			}
+			else
+			{
+				if (px >= curx) continue;
+				leftx = lastx;
+			}
+
+			double test1, test2;
+			if (cury < lasty)
+			{
+				if (py < cury || py >= lasty) continue;
+				if (px < leftx)
+				{
+					hits++;
+					continue;
+				}
+				test1 = px - curx;
+				test2 = py - cury;
+			}
+			else
+			{
+				if (py < lasty || py >= cury) continue;
+				if (px < leftx)
+				{
+					hits++;
+					continue;
+				}
+				test1 = px - lastx;
+				test2 = py - lasty;
+			}
+			if (test1 < (test2 / (lasty - cury) * (lastx - curx))) hits++;
+		}
+		return (hits & 1) != 0;
+	}
+
+	/**
+	 * Draws the outline of a colony into a polygon
+	 */
+	public void outline(int s, Polygon2D.Double p)
+	{
+		int n = getInt(s, NUM_BRANCHES);
+		double x = get(s, X), y = get(s, Y);
+		boolean rounded = is(s, ROUNDED);
+		p.reset();
+		for (int k=0; k<n; k++)
+		{
+			double length = outlineLength(s, k, rounded);
+			p.addPoint(x + length*cos[n][k], y - length*sin[n][k]);
+		}
+	}
+
+	/**
+	 * Counts the living colonies and sums their areas per group
+	 * @param num the number of colonies per group index
+	 * @param area the area per group index
+	 * @return the area of all colonies
+	 */
+	public double census(int[] num, double[] area)
+	{
+		Arrays.fill(num, 0);
+		Arrays.fill(area, 0);
+		double total = 0;
+		for (int s=0; s<end; s++)
+		{
+			if (!is(s, ALIVE) || is(s, GHOST)) continue;
+			int g = getInt(s, GROUP);
+			double size = get(s, SIZE);
+			num[g]++;
+			area[g] += size;
+			total += size;
+		}
+		return total;
+	}
+
+	/**
+	 * @param initial the length returned if no colony is longer
+	 * @return the radius of the last colony (in slot order) that is not bleached and has a branch longer than the initial length
+	 */
+	public double maxLength(double initial)
+	{
+		double max = initial;
+		for (int s=0; s<end; s++)
+			if (is(s, ALIVE) && !is(s, BLEACHED | GHOST) && get(s, MAX_BRANCH_LENGTH) > max) max = get(s, RADIUS);
+		return max;
+	}
+
+	/**
+	 * @return the longest branch of the living colonies
+	 */
+	public double longestBranch()
+	{
+		double max = 0;
+		for (int s=0; s<end; s++)
+			if (is(s, ALIVE) && !is(s, GHOST)) max = Math.max(max, get(s, MAX_BRANCH_LENGTH));
+		return max;
+	}
+}
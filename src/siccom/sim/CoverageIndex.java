@@ -0,0 +1,117 @@
+package siccom.sim;
+
+import sim.util.Bag;
+
+/**
+ * Answers which colonies cover a point, without a radius query.
+ * The reef is divided into coarse cells; each colony is listed in every cell its bounding square overlaps.
+ * The square is registered with a margin, so a growing colony is only listed again when it has grown beyond the margin.
+ * Colonies register themselves when they are created or reused and after they have grown, and leave when they die.
+ * Positions beyond the edges of the reef fall into the border cells.
+ * @author andreas
+ *
+ */
+public class CoverageIndex
+{
+	/**
+	 * The candidate colonies of each cell -- null for a cell never used
+	 */
+	Bag[] cells;
+	int cellsX, cellsY;
+	double cellSize;
+	/**
+	 * The extra reach a colony is registered with
+	 */
+	public double margin;
+
+	static final Bag NONE = new Bag();
+
+	public CoverageIndex(double width, double height, double cellSize, double margin)
+	{
+		this.cellSize = cellSize;
+		this.margin = margin;
+		cellsX = (int)Math.ceil(width / cellSize);
+		cellsY = (int)Math.ceil(height / cellSize);
+		cells = new Bag[cellsX*cellsY];
+	}
+
+	private int cellX(double x)
+	{
+		return Math.max(0, Math.min(cellsX-1, (int)Math.floor(x / cellSize)));
+	}
+
+	private int cellY(double y)
+	{
+		return Math.max(0, Math.min(cellsY-1, (int)Math.floor(y / cellSize)));
+	}
+
+	/**
+	 * Lists a colony in all cells of the square around its centre
+	 * @param reach half the edge length of the square
+	 */
+	public void add(Object colony, double x, double y, double reach)
+	{
+		for (int cx=cellX(x-reach); cx<=cellX(x+reach); cx++)
+			for (int cy=cellY(y-reach); cy<=cellY(y+reach); cy++)
+			{
+				int c = cx*cellsY + cy;
+				if (cells[c] == null) cells[c] = new Bag();
+				cells[c].add(colony);
+			}
+	}
+
+	/**
+	 * Removes a colony from all cells of the square it has been listed with
+	 */
+	public void remove(Object colony, double x, double y, double reach)
+	{
+		for (int cx=cellX(x-reach); cx<=cellX(x+reach); cx++)
+			for (int cy=cellY(y-reach); cy<=cellY(y+reach); cy++)
+			{
+				Bag b = cells[cx*cellsY + cy];
+				if (b != null) b.remove(colony);
+			}
+	}
+
+	/**
+	 * @return the colonies that may cover a point -- the bag must not be changed
+	 */
+	public Bag candidates(double x, double y)
+	{
+		Bag b = cells[cellX(x)*cellsY + cellY(y)];
+		return b == null ? NONE : b;
+	}
+
+	/**
+	 * @return true if a colony covers a point
+	 */
+	public static boolean covers(Object colony, double x, double y)
+	{
+		if (colony instanceof MassiveCoral) return ((MassiveCoral) colony).contains(x, y);
+		BranchingCoral bC = (BranchingCoral) colony;
+		double dx = bC.sendXPos() - x, dy = bC.sendYPos() - y;
+		return dx*dx + dy*dy <= bC.getRadius()*bC.getRadius();
+	}
+
+	/**
+	 * @return the largest colony covering a point -- null if the point is free
+	 */
+	public Object colonyAt(double x, double y)
+	{
+		Bag b = candidates(x, y);
+		Object top = null;
+		double topSize = -1;
+		for (int i=0; i<b.numObjs; i++)
+		{
+			Object o = b.objs[i];
+			if (!covers(o, x, y)) continue;
+			double size = (o instanceof MassiveCoral) ? ((MassiveCoral) o).sendSize() : ((BranchingCoral) o).sendSize();
+			if (size > topSize)
+			{
+				top = o;
+				topSize = size;
+			}
+		}
+		return top;
+	}
+}
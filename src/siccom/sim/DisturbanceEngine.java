@@ -0,0 +1,274 @@
+package siccom.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import ec.util.MersenneTwisterFast;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.field.continuous.Continuous2D;
+import sim.util.Bag;
+import sim.util.MutableInt2D;
+
+/**
+ * Runs all configured {@link DisturbanceType}s.
+ * Once a month the events of all types that are due are drawn and resolved together:
+ * <ul>
+ * <li>only the cells of the spatial index that overlap a disturbed area are visited</li>
+ * <li>each coral hit by an event dies with the breakage probability of its group,
+ * a coral hit by several events gets a trial for each of them</li>
+ * <li>all algae within a disturbed area die, the counted recruits of the {@link AlgaDensityField} as well</li>
+ * </ul>
+ * The deaths (and fragments of broken branching corals) are committed after all events are resolved,
+ * so the cost depends on the agents within the disturbed areas and not on the number of events.
+ * <p>
+ * If the reef is split into strips, all strips draw the same events for the whole reef
+ * and each resolves those reaching into it; only strip 0 writes them to the output.
+ * @author andreas
+ *
+ */
+public class DisturbanceEngine implements Steppable
+{
+	private static final long serialVersionUID = 7183395150227263561L;
+
+	Siccom sim;
+	ArrayList<DisturbanceType> types;
+	/**
+	 * Draws the times, sizes and places of the events
+	 */
+	MersenneTwisterFast random;
+	/**
+	 * The left border of the strip and the width of the whole reef -- 0 and the width of the field without strips
+	 */
+	double stripX, reefWidth;
+	/**
+	 * The strip has neighbours to the left and right
+	 */
+	boolean hasLeft, hasRight;
+	/**
+	 * Writes the events to the output
+	 */
+	boolean logs = true;
+
+	/**
+	 * The events of the actual month: centre, radius and type
+	 */
+	int numEvents;
+	double[] eventX = new double[8], eventY = new double[8], eventR = new double[8];
+	DisturbanceType[] eventType = new DisturbanceType[8];
+
+	/**
+	 * The agents hit by the events of the actual month
+	 */
+	HashSet<Object> hit = new HashSet<Object>();
+	Bag dying = new Bag();
+	Bag fragmenting = new Bag();
+	/**
+	 * The field cell looked up -- reused for all cells
+	 */
+	final MutableInt2D cell = new MutableInt2D();
+
+	public DisturbanceEngine(Siccom sim, ArrayList<DisturbanceType> types)
+	{
+		this.sim = sim;
+		this.types = types;
+		random = sim.random;
+		reefWidth = Siccom.gridWidth;
+		if (sim.transport != null)
+		{
+			int strip = sim.transport.getStrip();
+			int numStrips = sim.transport.getNumStrips();
+
+			// the same seed in all strips
+			random = new MersenneTwisterFast(sim.environmentRandom().nextLong());
+			stripX = strip * Siccom.gridWidth;
+			reefWidth = numStrips * Siccom.gridWidth;
+			hasLeft = strip > 0;
+			hasRight = strip < numStrips-1;
+			logs = strip == 0;
+		}
+		for (DisturbanceType d : types) d.nextEvent = (long)d.firstInterval;
+	}
+
+	@Override
+	public void step(SimState state)
+	{
+		long steps = sim.schedule.getSteps();
+
+		numEvents = 0;
+		for (DisturbanceType d : types)
+		{
+			if (d.nextEvent != steps) continue;
+			drawEvents(d, (int)steps);
+
+			// sets the time for the next event
+			if (d.meanInterval<=1) d.nextEvent = steps + 1;
+			else d.nextEvent = steps + Math.max(1, Math.round(random.nextGaussian() * d.sdInterval + d.meanInterval) + 1);
+		}
+		if (numEvents == 0) return;
+
+		resolveMassive();
+		resolveBranching();
+		resolveAlgae();
+		commit();
+	}
+
+	/**
+	 * Draws the locations and sizes of the synchronous events of a type
+	 * -- keeps those reaching into the strip, in the coordinates of the strip
+	 */
+	void drawEvents(DisturbanceType d, int steps)
+	{
+		for (int j=0; j<d.maxNumber; j++)
+		{
+			double dRadius = random.nextDouble()* (d.maxRadius - d.minRadius +1) + d.minRadius;
+			if (dRadius<0.5) dRadius = 0;
+
+			double dX = random.nextDouble() *  ((reefWidth+dRadius) - (0-dRadius) + 1)  + (0-dRadius);
+			double dY = random.nextDouble() *  ((Siccom.gridHeight+dRadius) - (0-dRadius) + 1)  + (0-dRadius);
+
+			if (Siccom.createOutput && logs) sim.outW.disturbanceOutput(steps, d.name, dX, dY, dRadius);
+
+			// an event within another strip -- no agents lie beyond the inner borders
+			dX -= stripX;
+			if ((hasLeft && dX + dRadius < 0) || (hasRight && dX - dRadius >= Siccom.gridWidth)) continue;
+
+			if (numEvents == eventX.length)
+			{
+				int n = 2*numEvents;
+				eventX = Arrays.copyOf(eventX, n);
+				eventY = Arrays.copyOf(eventY, n);
+				eventR = Arrays.copyOf(eventR, n);
+				eventType = Arrays.copyOf(eventType, n);
+			}
+			eventX[numEvents] = dX;
+			eventY[numEvents] = dY;
+			eventR[numEvents] = dRadius;
+			eventType[numEvents] = d;
+			numEvents++;
+		}
+	}
+
+	/**
+	 * Collects the objects of a field within the disturbed area of an event
+	 * -- visits only the cells of the field overlapping the area
+	 * @param result the bag to add the objects to
+	 */
+	void candidates(Continuous2D field, int e, Bag result)
+	{
+		double d = field.discretization;
+		double r = eventR[e];
+		// floor as in Continuous2D -- the areas and the fragments reach into negative coordinates
+		int x0 = (int) Math.floor((eventX[e]-r) / d), x1 = (int) Math.floor((eventX[e]+r) / d);
+		int y0 = (int) Math.floor((eventY[e]-r) / d), y1 = (int) Math.floor((eventY[e]+r) / d);
+
+		for (int x=x0; x<=x1; x++)
+			for (int y=y0; y<=y1; y++)
+			{
+				cell.x = x;
+				cell.y = y;
+				Bag b = field.getObjectsAtLocation(cell);		// MutableInt2D hashes like Int2D
+				if (b != null) result.addAll(b);
+			}
+	}
+
+	/**
+	 * @return true if the point lies within the disturbed area of an event
+	 */
+	boolean within(int e, double x, double y)
+	{
+		double dx = x - eventX[e];
+		double dy = y - eventY[e];
+		return dx*dx + dy*dy <= eventR[e]*eventR[e];
+	}
+
+	void resolveMassive()
+	{
+		Bag c = new Bag();
+		for (int e=0; e<numEvents; e++)
+		{
+			c.clear();
+			candidates(sim.massiveCorals, e, c);
+			for (int i=0; i<c.numObjs; i++)
+			{
+				MassiveCoral maco = (MassiveCoral) c.objs[i];
+				if (maco.ghost() || hit.contains(maco) || !within(e, maco.sendXPos(), maco.sendYPos())) continue;
+
+				double sf = maco.mG.surfaceFactor;
+				double prob = 1 - ((sim.maxDisBreakProb-sim.minDisBreakProb)/sf);
+				if (sim.random.nextBoolean(prob))
+				{
+					hit.add(maco);
+					dying.add(maco);
+				}
+			}
+		}
+	}
+
+	void resolveBranching()
+	{
+		Bag c = new Bag();
+		for (int e=0; e<numEvents; e++)
+		{
+			c.clear();
+			candidates(sim.branchingCorals, e, c);
+			for (int i=0; i<c.numObjs; i++)
+			{
+				BranchingCoral braco = (BranchingCoral) c.objs[i];
+				if (braco.ghost() || hit.contains(braco) || !within(e, braco.sendXPos(), braco.sendYPos())) continue;
+
+				double sf = braco.bG.surfaceFactor;
+				double prob = 1 - ((sim.maxDisBreakProb-sim.minDisBreakProb)/sf);
+				if (sim.random.nextBoolean(prob))
+				{
+					hit.add(braco);
+					dying.add(braco);
+					if (eventType[e].fragments && sim.random.nextBoolean(braco.getFragProb())) fragmenting.add(braco);
+				}
+			}
+		}
+	}
+
+	void resolveAlgae()
+	{
+		Bag c = new Bag();
+		for (int e=0; e<numEvents; e++)
+		{
+			c.clear();
+			sim.algaDensity.clear(eventX[e], eventY[e], eventR[e]);
+			candidates(sim.algae, e, c);
+			for (int i=0; i<c.numObjs; i++)
+			{
+				Alga a = (Alga) c.objs[i];
+				if (a.ghost() || hit.contains(a) || !within(e, a.sendXPos(), a.sendYPos())) continue;
+				hit.add(a);
+				dying.add(a);
+			}
+		}
+	}
+
+	/**
+	 * Lets the broken branching corals fragment and all hit agents die
+	 */
+	void commit()
+	{
+		sim.buffer.begin();
+		for (int i=0; i<dying.numObjs; i++)
+		{
+			Object o = dying.objs[i];
+			if (o instanceof MassiveCoral) ((MassiveCoral) o).die();
+			else if (o instanceof BranchingCoral) ((BranchingCoral) o).die();
+			else ((Alga) o).die();
+		}
+
+		// the fragments settle after the hit colonies have gone
+		for (int i=0; i<fragmenting.numObjs; i++) ((BranchingCoral) fragmenting.objs[i]).fragtate();
+		sim.buffer.commit();
+
+		fragmenting.clear();
+		dying.clear();
+		hit.clear();
+	}
+}
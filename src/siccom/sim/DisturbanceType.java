@@ -0,0 +1,95 @@
+package siccom.sim;
+
+/**
+ * The parameters of one type of disturbance (e.g. storms of a certain strength).
+ * Any number of types can be configured in environment.inf with the keys
+ * disturbMaxSizeN, disturbMinSizeN, disturbMeanIntervalN, disturbSDIntervalN and disturbMaxNumberN
+ * (N = 1, 2, 3, ...), optionally disturbNameN and disturbFragmentsN.
+ * @author andreas
+ *
+ */
+public class DisturbanceType
+{
+	/**
+	 * The number of the type in the parameter file
+	 */
+	public int number;
+	/**
+	 * The name of the type in the disturbance output
+	 */
+	public String name;
+	/**
+	 * The maximum diameter of a disturbed area (pixels)
+	 */
+	public double maxSize;
+	/**
+	 * The minimum diameter of a disturbed area (pixels)
+	 */
+	public double minSize;
+	/**
+	 * The maximum radius of a disturbed area
+	 */
+	public double maxRadius;
+	/**
+	 * The minimum radius of a disturbed area
+	 */
+	public double minRadius;
+	/**
+	 * The mean interval at which the disturbance takes place
+	 */
+	public int meanInterval;
+	/**
+	 * The percentage standard deviation for the interval of a disturbance event
+	 */
+	public double sdPercent;
+	/**
+	 * The actual standard deviation for the interval of a disturbance event
+	 */
+	public int sdInterval;
+	/**
+	 * The number of synchronous disturbance events
+	 */
+	public int maxNumber;
+	/**
+	 * IF true -- branching corals killed by the disturbance may leave fragments
+	 */
+	public boolean fragments;
+	/**
+	 * The month of the first event
+	 */
+	public double firstInterval;
+	/**
+	 * The month of the next event
+	 */
+	long nextEvent;
+
+	public DisturbanceType(	int number,
+							String name,
+							double maxSize,
+							double minSize,
+							int meanInterval,
+							double sdPercent,
+							int maxNumber,
+							boolean fragments)
+	{
+		this.number = number;
+		this.name = name;
+		this.maxSize = maxSize;
+		this.minSize = minSize;
+		maxRadius = maxSize / 2;
+		minRadius = minSize / 2;
+		this.meanInterval = meanInterval;
+		this.sdPercent = sdPercent;
+		sdInterval = (int)(sdPercent*meanInterval/100);
+		this.maxNumber = maxNumber;
+		this.fragments = fragments;
+	}
+
+	/**
+	 * @return false if one of the parameters switches the disturbance off
+	 */
+	public boolean isActive()
+	{
+		return !(maxSize==0 || minSize==0 || maxNumber==0 || meanInterval==0);
+	}
+}
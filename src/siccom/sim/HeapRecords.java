@@ -0,0 +1,67 @@
+package siccom.sim;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the {@link Records} of a store in two arrays on the heap, one for the doubles and one for the ints.
+ * The fields of slot s start at s times the number of fields, so a record lies in one piece.
+ * @author andreas
+ *
+ */
+public class HeapRecords extends Records
+{
+	double[] d = new double[0];
+	int[] i = new int[0];
+
+	public HeapRecords(int doubles, int ints)
+	{
+		super(doubles, ints);
+	}
+
+	@Override
+	public double getDouble(int s, int field)
+	{
+		return d[s*doubles + field];
+	}
+
+	@Override
+	public void setDouble(int s, int field, double value)
+	{
+		d[s*doubles + field] = value;
+	}
+
+	@Override
+	public int getInt(int s, int field)
+	{
+		return i[s*ints + field];
+	}
+
+	@Override
+	public void setInt(int s, int field, int value)
+	{
+		i[s*ints + field] = value;
+	}
+
+	@Override
+	protected void resize(int n)
+	{
+		d = Arrays.copyOf(d, n*doubles);
+		i = Arrays.copyOf(i, n*ints);
+	}
+
+	@Override
+	protected void wipe(int s)
+	{
+		Arrays.fill(d, s*doubles, (s+1)*doubles, 0);
+		Arrays.fill(i, s*ints, (s+1)*ints, 0);
+	}
+
+	@Override
+	protected void copyTo(Records to, int n)
+	{
+		HeapRecords t = (HeapRecords) to;
+		if (t.d.length < d.length) t.resize(d.length / doubles);
+		System.arraycopy(d, 0, t.d, 0, n*doubles);
+		System.arraycopy(i, 0, t.i, 0, n*ints);
+	}
+}
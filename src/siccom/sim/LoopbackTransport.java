@@ -0,0 +1,165 @@
+package siccom.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * {@link StripTransport} over TCP connections on the local machine -- for running several strips on one box.
+ * Strip i listens on port basePort+i and connects to all strips with a lower index,
+ * so every pair of strips shares one connection.
+ * Incoming messages are read by one thread per connection, so sending never waits for the other side.
+ * @author andreas
+ *
+ */
+public class LoopbackTransport implements StripTransport
+{
+	/**
+	 * Marks a closed connection in the queue of incoming messages
+	 */
+	private static final byte[] closed = new byte[0];
+
+	int strip;
+	int numStrips;
+	/**
+	 * The connections to the other strips (null for the own strip)
+	 */
+	Socket[] sockets;
+	DataOutputStream[] out;
+	/**
+	 * The incoming messages of each strip
+	 */
+	BlockingQueue<byte[]>[] in;
+	ServerSocket server;
+
+	/**
+	 * Connects to all other strips -- returns when all connections are set up
+	 * @param strip the own strip
+	 * @param numStrips the number of strips
+	 * @param basePort the port of strip 0
+	 */
+	@SuppressWarnings("unchecked")
+	public LoopbackTransport(int strip, int numStrips, int basePort) throws IOException
+	{
+		this.strip = strip;
+		this.numStrips = numStrips;
+		sockets = new Socket[numStrips];
+		out = new DataOutputStream[numStrips];
+		in = new BlockingQueue[numStrips];
+
+		InetAddress local = InetAddress.getLoopbackAddress();
+		server = new ServerSocket(basePort + strip, numStrips, local);
+
+		// connect to the lower strips -- they may not be listening yet
+		for (int i=0; i<strip; i++)
+		{
+			Socket s = null;
+			while (s == null)
+			{
+				try
+				{
+					s = new Socket(local, basePort + i);
+				}
+				catch (ConnectException e)
+				{
+					try { Thread.sleep(100); } catch (InterruptedException ie) { throw new IOException(ie); }
+				}
+			}
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			dos.writeInt(strip);
+			dos.flush();
+			open(i, s, dos);
+		}
+
+		// accept the higher strips
+		for (int i=strip+1; i<numStrips; i++)
+		{
+			Socket s = server.accept();
+			int other = new DataInputStream(s.getInputStream()).readInt();
+			open(other, s, new DataOutputStream(new BufferedOutputStream(s.getOutputStream())));
+		}
+	}
+
+	/**
+	 * Stores a connection and starts reading from it
+	 */
+	private void open(final int other, Socket s, DataOutputStream dos) throws IOException
+	{
+		s.setTcpNoDelay(true);
+		sockets[other] = s;
+		out[other] = dos;
+		final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<byte[]>();
+		in[other] = queue;
+
+		final DataInputStream dis = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+		Thread reader = new Thread("strip " + strip + " <- " + other)
+		{
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						byte[] msg = new byte[dis.readInt()];
+						dis.readFully(msg);
+						queue.put(msg);
+					}
+				}
+				catch (EOFException e) {}
+				catch (IOException e) {}
+				catch (InterruptedException e) {}
+				queue.offer(closed);
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	public int getStrip() { return strip; }
+
+	public int getNumStrips() { return numStrips; }
+
+	public void send(int other, byte[] message) throws IOException
+	{
+		out[other].writeInt(message.length);
+		out[other].write(message);
+		out[other].flush();
+	}
+
+	public byte[] receive(int other) throws IOException
+	{
+		byte[] msg;
+		try
+		{
+			msg = in[other].take();
+		}
+		catch (InterruptedException e)
+		{
+			throw new IOException(e);
+		}
+		if (msg == closed)
+		{
+			in[other].offer(closed);
+			throw new EOFException("Strip " + other + " has closed the connection");
+		}
+		return msg;
+	}
+
+	public void close()
+	{
+		for (int i=0; i<numStrips; i++)
+		{
+			try { if (sockets[i] != null) sockets[i].close(); } catch (IOException e) {}
+		}
+		try { server.close(); } catch (IOException e) {}
+	}
+}
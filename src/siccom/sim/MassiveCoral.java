@@ -1,38 +1,23 @@
 package siccom.sim;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.geom.Ellipse2D;
-import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
-import java.util.ArrayList;
-
 import org.jhotdraw.geom.Polygon2D;
 
-import sim.engine.SimState;
-import sim.engine.Steppable;
-import sim.portrayal.DrawInfo2D;
-import sim.portrayal.SimplePortrayal2D;
 import sim.util.Bag;
-import sim.util.Double2D;
-import sim.util.gui.SimpleColorMap;
 
-public class MassiveCoral extends SimplePortrayal2D implements Steppable
+public class MassiveCoral
 {
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = -3129930872986577803L;
-
 	 /**
 	 * This class defines {@link MassiveCoral}
 	 * --> constructor, methods for Coral
-	 * 
+	 * <p>
+	 * The state of the colony lies in its slot of the {@link CoralStore} of the massive corals.
+	 * The colony is stepped by the tile of the {@link ReefTiling} it lies in.
+	 *
 	 * @author kubicek
 	 * @version 1.0
-	 * 
+	 *
 	 */
-	
+
 	/*
 	 * VARIABLES
 	 */
@@ -43,368 +28,421 @@ public class MassiveCoral extends SimplePortrayal2D implements Steppable
 	 * The simulation where the coral is in
 	 */
 	public Siccom sim;
-	/**
-	 * Name of the coral group
-	 */
-	public String name;
-	/**
-	 * A bag to collect all neighbors
-	 */
-	public Bag neighbours;
-	/**
-	 * The graphical information for {@link SimplePortrayal2D}
-	 */
-	public Graphics2D graph;
-	
-	/**
-	 * The drawing information for {@link SimplePortrayal2D}
-	 */
-	public DrawInfo2D inf;
-	
-	
-	/*
-	 *  Colony
-	 */
-	Double2D me;
-	/**
-	 * The x-Position of the colony center
-	 */
-	public double	xPos;
-	/**
-	 * The y-Position of the colony center
-	 */
-	public double 	yPos;
-	/**
-	 * The set growth rate of the colony
-	 */
-	public double 	initGrowthRate;
-	/**
-	 * The momentary growth rate of the colony. Can vary due to interaction.
-	 */
-	public double 	growthRate;			
-	/**
-	 * The radius of a colony. 
-	 */
-	public double radius;						
-	/**
-	 * The maximum radius a massive colony can reach	
-	 */
-	public double maximumRadius;
-	/**
-	 * The diameter of the colony
-	 */
-	public double diameter;										
-	/**
-	 * The size of the colony
-	 */
-	public double size;											
-	/**
-	 * The range in which the individual looks for neighbours
-	 */
-	public double range;							
-	/**
-	 * The desired initial color for representation in the GUI 
-	 */
-	Color initColor;												
-	/**
-	 * The actual momentary color for representation in the GUI 
-	 */
-	Color color;													
-	/** 
-	 * The life status of the coral colony
-	 */
-	private boolean alive;	
-	
-	private boolean bleachDead=false;
-	
-	/**
-	 * Measure to determine for how long is the colony in the simulation
-	 */
-	public int age;
-	
-	public double CI;
-	
+
 	public MassiveGroup mG;
-	
-	/*
-	 *  Bleaching
-	 */
-	/** 
-	 *  The bleach status
+
+	/**
+	 * The store holding the state of the colony
 	 */
-	boolean bleached;
+	CoralStore store;
 	/**
-	 * The grade of bleaching
+	 * The slot of the colony in the {@link CoralStore} -- -1 if it has none
 	 */
-	double bleachGrade;
+	int slot = -1;
 
 	/**
 	 * The recovery rate from a bleaching event
 	 */
-	double recoveryRate = 17;
-	/**
-	 * The percentage of a bleached coral that is covered by algae.
-	 */
-	public double algCoverage;
+	static final double recoveryRate = 17;
 
 	/*
-	 *  CORAL POLYGON SHAPE	
-	 */
-	/**
-	 * The shape of the coral
+	 *  CORAL POLYGON SHAPE
 	 */
-	 Polygon2D.Double p;
-	
 	/**
 	 * The number branches a massive coral has -- determines the number of corners a polygon has
 	 */
-	private int numBranches = 24;
-	/**
-	 * List of all branches of the coral
-	 */
-	public ArrayList<Branch> branches = new ArrayList<Branch>(numBranches);
-	
+	static final int NUM_BRANCHES = 24;
+
 	/**
-	 * The actual maximum branch length
+	 * The coral neighbours, kept from month to month
 	 */
-	public double maxLength;
+	NeighbourList massiveNeighbours, branchingNeighbours;
 	/**
-	 * The maximum allowed branch length
+	 * The tile stepping the colony -- null while it does not step
 	 */
-	public double maximumBranchLength;
-	
-	private double interArea;
-	
+	ReefTiling.Tile tile;
+
 	// Different getters and setters for the console
-	public String getName() { return name; }
-	public double getCI() { return CI; }
-	public double sendXPos() { return xPos; }
-	public double sendYPos() { return yPos; }
-	public int getAge() { return age; }
-	public double sendSize() { return size; }
-	public double getGrowthRate() { return initGrowthRate/Siccom.dimensionConv_milimeters; }
-	public double getRadius() { return radius; }
-	public boolean getBleached() { return bleached; }
+	public String getName() { return mG.name; }
+	public double getCI() { return store.get(slot, CoralStore.CI); }
+	public double sendXPos() { return store.get(slot, CoralStore.X); }
+	public double sendYPos() { return store.get(slot, CoralStore.Y); }
+	public int getAge()
+	{
+		int age = store.getInt(slot, CoralStore.AGE);
+		int asleepSince = store.getInt(slot, CoralStore.ASLEEP_SINCE);
+		return asleepSince < 0 ? age : age + (int)(sim.schedule.getSteps() - asleepSince);
+	}
+	public double sendSize() { return store.get(slot, CoralStore.SIZE); }
+	public double getGrowthRate() { return initGrowthRate()/Siccom.dimensionConv_milimeters; }
+	public double getRadius() { return store.get(slot, CoralStore.RADIUS); }
+	public double getDiameter() { return 2*getRadius(); }
+	public boolean getBleached() { return store.is(slot, CoralStore.BLEACHED); }
 	public double getMinBleachProb() { return mG.minBleachProb; }
 	public double getMinDeathProb() { return mG.minDeathProb; }
-	
-	
+	public boolean getAlive() { return store.is(slot, CoralStore.ALIVE); }
+	public double getBleachGrade() { return store.get(slot, CoralStore.BLEACH_GRADE); }
+	public int getNumBranches() { return NUM_BRANCHES; }
+	public double getBranchLength(int k) { return store.branchLength(slot, k); }
+
+	// the state in the record of the colony
+	double initGrowthRate() { return store.get(slot, CoralStore.INIT_GROWTH_RATE); }
+	double growthRate() { return store.get(slot, CoralStore.GROWTH_RATE); }
+	void setGrowthRate(double growthRate) { store.set(slot, CoralStore.GROWTH_RATE, growthRate); }
+	double maximumRadius() { return store.get(slot, CoralStore.MAX_RADIUS); }
+	double maximumBranchLength() { return store.get(slot, CoralStore.MAX_BRANCH_LENGTH); }
+	void setBleachGrade(double bleachGrade) { store.set(slot, CoralStore.BLEACH_GRADE, bleachGrade); }
+	int age() { return store.getInt(slot, CoralStore.AGE); }
+	boolean asleep() { return store.getInt(slot, CoralStore.ASLEEP_SINCE) >= 0; }
+	boolean ghost() { return store.is(slot, CoralStore.GHOST); }
+
+	// the state seen by the neighbours (see AgentStore#halo())
+	double haloX() { return store.halo().get(slot, CoralStore.X); }
+	double haloY() { return store.halo().get(slot, CoralStore.Y); }
+	double haloRadius() { return store.halo().get(slot, CoralStore.RADIUS); }
+	double haloSize() { return store.halo().get(slot, CoralStore.SIZE); }
+	double haloCI() { return store.halo().get(slot, CoralStore.CI); }
+	double haloBleachGrade() { return store.halo().get(slot, CoralStore.BLEACH_GRADE); }
+	boolean haloBleached() { return store.halo().is(slot, CoralStore.BLEACHED); }
+	boolean haloContains(double x, double y) { return store.halo().outlineContains(slot, x, y); }
+	void haloOutline(Polygon2D.Double p) { store.halo().outline(slot, p); }
+
+	/**
+	 * Sets the radius and the size that goes with it
+	 */
+	void setRadius(double radius)
+	{
+		store.set(slot, CoralStore.RADIUS, radius);
+		store.set(slot, CoralStore.SIZE, Math.PI * Math.pow(radius, 2));
+	}
+
+
 	/**
 	   * Constructor for massive coral
-	   * @param sim the simulation where coral is situated in 
-	   * @param name the name of the coral group
-	   * @param color the color of the coral group
+	   * @param sim the simulation where coral is situated in
+	   * @param CI the competition index
 	   * @param maxRadius the maximum radius a colony can reach
 	   * @param xPos x-position
 	   * @param yPos y-position
 	   * @param radius initial radius
 	   * @param growthRate the growth rate of the coral
 	   * @param age the time the coral is in the simulation
-	   * 
+	   * @param mG the group of the coral
+	   *
 	   */
-	
-	public MassiveCoral(	Siccom sim, 
-							String name,
-							Color color,
+
+	public MassiveCoral(	Siccom sim,
 							double CI,
 							double maxRadius,
-							double xPos, 
-							double yPos, 
+							double xPos,
+							double yPos,
 							double radius,
-							double growthRate, 
+							double growthRate,
 							int age,
-							MassiveGroup mG) 
+							MassiveGroup mG)
 	{
 		this.sim = sim;
-		this.name = name;
-		this.xPos = xPos;						//xPos;
-		this.yPos = yPos;
-		this.radius = radius;
-		initGrowthRate = growthRate;
-		this.growthRate = initGrowthRate;
-		initColor = color;
-		this.CI = CI;
-		this.age = age;
+		massiveNeighbours = new NeighbourList(sim.massiveGrid);
+		branchingNeighbours = new NeighbourList(sim.branchingGrid);
+		reset(CI, maxRadius, xPos, yPos, radius, growthRate, age, mG);
+	}
+
+	/**
+	 * Sets the coral back to a new colony, as the constructor does -- used for corals taken from the pool
+	 */
+	void reset(	double CI,
+				double maxRadius,
+				double xPos,
+				double yPos,
+				double radius,
+				double growthRate,
+				int age,
+				MassiveGroup mG)
+	{
 		this.mG = mG;
-		diameter = 2*radius;
-		me = new Double2D(xPos, yPos);		// get my own location
-		size = Math.PI * Math.pow(radius, 2);
-		alive = true;	
-		this.maximumRadius = maxRadius;
-		
+		if (slot < 0)
+		{
+			store = sim.massiveStore;
+			slot = store.allocate(this);
+		}
+		store.set(slot, CoralStore.X, xPos);
+		store.set(slot, CoralStore.Y, yPos);
+		setRadius(radius);
+		store.set(slot, CoralStore.INIT_GROWTH_RATE, growthRate);
+		setGrowthRate(growthRate);
+		store.set(slot, CoralStore.CI, CI);
+		store.setInt(slot, CoralStore.AGE, age);
+		store.setInt(slot, CoralStore.GROUP, mG.index);
+		store.set(slot, CoralStore.MAX_RADIUS, maxRadius);
+		store.set(slot, CoralStore.INDEXED_REACH, -1);
+		store.setInt(slot, CoralStore.ASLEEP_SINCE, -1);
+		// the outline has whole branch lengths until the colony grows
+		store.setInt(slot, CoralStore.FLAGS, CoralStore.ALIVE | CoralStore.ROUNDED);
+		massiveNeighbours.reset();
+		branchingNeighbours.reset();
+
 		// create axes of the coral
-		for (int i=1; i <= numBranches ; i++)
+		store.setInt(slot, CoralStore.NUM_BRANCHES, NUM_BRANCHES);
+		for (int k=0; k < NUM_BRANCHES; k++)
 		{
-			Branch b = new Branch(xPos, yPos, radius, numBranches, i, growthRate);
-			branches.add(b);
+			store.setBranchLength(slot, k, radius);
+			store.setBranchGrowth(slot, k, growthRate);
 		}
-		
-		// set up the polygon shape
-		p = new Polygon2D.Double();
-		for (int i=0; i < branches.size(); i++)
+
+		index();
+		occupy();
+	}
+
+	/**
+	 * Gives the slot of the colony back to the store -- the colony goes back to the pool
+	 */
+	void release()
+	{
+		store.release(slot);
+		slot = -1;
+	}
+
+	/**
+	 * Lists the colony in the coverage index again if it has grown beyond the reach it is listed with
+	 */
+	void index()
+	{
+		double reach = 0;
+		for (int k=0; k<NUM_BRANCHES; k++) reach = Math.max(reach, store.branchLength(slot, k));
+		if (reach <= store.get(slot, CoralStore.INDEXED_REACH)) return;
+		unindex();
+		store.set(slot, CoralStore.INDEXED_REACH, reach + sim.coverage.margin);
+		sim.coverage.add(this, sendXPos(), sendYPos(), reach + sim.coverage.margin);
+	}
+
+	/**
+	 * Removes the colony from the coverage index
+	 */
+	void unindex()
+	{
+		double indexedReach = store.get(slot, CoralStore.INDEXED_REACH);
+		if (indexedReach < 0) return;
+		sim.coverage.remove(this, sendXPos(), sendYPos(), indexedReach);
+		store.set(slot, CoralStore.INDEXED_REACH, -1);
+	}
+
+	/**
+	 * Marks the cells within the colony where settlers would die in the occupancy map.
+	 * The disc is only marked anew when it has shrunk or grown by half a cell
+	 */
+	void occupy()
+	{
+		double disc = 0;
+		if (getAlive() && !getBleached())
 		{
-			Branch b =  branches.get(i);
-			int length = (int)b.getBranchLength();
-			int rad = length;
-			int div = (int)b.multiplier;
-			double endX = b.startX + (rad*Math.cos( (2*Math.PI/numBranches )*div ));
-	        double endY = b.startY - (rad*Math.sin( (2*Math.PI/numBranches)*div ));
-
-	        p.addPoint(endX, endY);
+			// the polygon contains the disc of its shortest branch (less the corners)
+			double shortest = Double.MAX_VALUE;
+			for (int k=0; k<NUM_BRANCHES; k++) shortest = Math.min(shortest, store.branchLength(slot, k));
+			disc = sim.occupancy.innerRadius(Math.min(getRadius(), (shortest-1) * Math.cos(Math.PI/NUM_BRANCHES)));
 		}
-		
+		double markedDisc = store.get(slot, CoralStore.MARKED_DISC);
+		if (disc >= markedDisc && disc - markedDisc < sim.occupancy.cellWidth/2) return;
+		sim.occupancy.mark(true, sendXPos(), sendYPos(), markedDisc, false);
+		markedDisc = Math.max(0, disc);
+		store.set(slot, CoralStore.MARKED_DISC, markedDisc);
+		sim.occupancy.mark(true, sendXPos(), sendYPos(), markedDisc, true);
 	}
-	
-	/** 
-	 * Step routine of a massive coral colony
+
+	/**
+	 * Step routine of a massive coral colony -- called by its tile, see {@link #commit()}
 	 */
-	public void step(SimState state)
+	void step()
 	{
-			if (alive)
+			if (getBleached()){
+				setGrowthRate(initGrowthRate() * (1 - (getBleachGrade() / 100)));
+				recover();
+			}
+			else
+				// reset the growth rate at every step
+				setGrowthRate(initGrowthRate());
+
+			if (!(getRadius() >= maximumRadius()))
 			{
-			
-				checkBleaching();
-				if (bleached){
-					 growthRate = initGrowthRate * (1 - (this.bleachGrade / 100)); 
-					recover();
-				}
-				else
-					// reset the growth rate at every step 
-					growthRate = initGrowthRate;
-				
-				if (!(radius >= maximumRadius))
-				{
-					if (alive) getAvRadius();
-					
-					if (alive) interactMassiveCorals();
-					if (alive) interactBranchingCorals();
-					if (radius<=sim.conf.aMaxRadius || bleached) interactAlgae();
-					if (age <= sim.conf.interactTurfAge) interactTurf();
-			
-					double percentOvergrowth = 100/size*interArea;
-					if (percentOvergrowth>=sim.dieOvergrowthMas) die(); 	
-					interArea = 0.0;
-					
-					if (alive)
-					{
-						grow();
-					}
-				}				
-				reschedule(1.0);
-				age += 1;
-			}	
+				if (getAlive()) getAvRadius();
+
+				if (getAlive()) interactMassiveCorals();
+				if (getAlive()) interactBranchingCorals();
+				if (getRadius()<=sim.conf.aMaxRadius || getBleached()) interactAlgae();
+				if (age() <= sim.conf.interactTurfAge) interactTurf();
+
+				double percentOvergrowth = 100/sendSize()*store.get(slot, CoralStore.INTER_AREA);
+				if (percentOvergrowth>=sim.dieOvergrowthMas) die();
+				store.set(slot, CoralStore.INTER_AREA, 0.0);
+
+				if (getAlive()) grow();
+			}
+			store.setInt(slot, CoralStore.AGE, age() + 1);
+			if (getRadius() >= maximumRadius() && !getBleached()) sleep();
 		}
 
-	
+	/**
+	 * Brings the field, the coverage index and the occupancy map up to date after the colony has stepped
+	 */
+	void commit()
+	{
+		if (getAlive()) index();
+		else
+		{
+			sim.buffer.death(sim.massiveCorals, this);
+			unindex();
+		}
+		occupy();
+	}
+
+	/**
+	 * Takes the colony out of the steps of its tile -- its step would only count its age
+	 */
+	void sleep()
+	{
+		store.setInt(slot, CoralStore.ASLEEP_SINCE, (int)sim.schedule.getSteps());
+	}
+
+	/**
+	 * Lets a sleeping colony step again and catches up its age
+	 */
+	void wake()
+	{
+		int asleepSince = store.getInt(slot, CoralStore.ASLEEP_SINCE);
+		if (asleepSince < 0) return;
+		store.setInt(slot, CoralStore.AGE, age() + (int)(sim.schedule.getSteps() - asleepSince));
+		store.setInt(slot, CoralStore.ASLEEP_SINCE, -1);
+	}
+
+	/**
+	 * @return the distance of a point from the colony centre
+	 */
+	double distance(double x, double y)
+	{
+		double dx = sendXPos() - x, dy = sendYPos() - y;
+		return Math.sqrt(dx*dx + dy*dy);
+	}
+
+	/**
+	 * Adds to the area the colony is overgrown by in this month
+	 */
+	private void addInterArea(double intersectionArea)
+	{
+		store.set(slot, CoralStore.INTER_AREA, store.get(slot, CoralStore.INTER_AREA) + intersectionArea);
+	}
+
+
 	/**
 	 * Interaction with neighboring macroalgae
 	 */
 	private void interactAlgae() {
-		neighbours = sim.algae.getObjectsExactlyWithinDistance(me, maximumBranchLength+sim.conf.aMaxRadius+1);
+		NeighbourGrid grid = sim.algaeGrid;
+		NeighbourGrid.Ids neighbours = tile.ids;
+		grid.query(sendXPos(), sendYPos(), maximumBranchLength()+sim.conf.aMaxRadius+1, neighbours);
 
-		if (neighbours.numObjs > 0)
+		if (neighbours.size > 0)
 		{
-			//algae can grow over corals if these are bleached. 
+			//algae can grow over corals if these are bleached.
 			//--> calculate the area algae cover of the coral colony
-			algCoverage=0;
-			for (int j=0; j<neighbours.numObjs; j++)
+			double algCoverage=0;
+			for (int j=0; j<neighbours.size; j++)
 			{
-				algCoverage = algCoverage + ((Alga) neighbours.objs[j]).getSize();
+				algCoverage = algCoverage + ((Alga) grid.agent(neighbours.ids[j])).haloSize();
 			}
-				
-			for (int i=0; i< neighbours.numObjs; i++)	
-			{	
-				if(alive)
+			store.set(slot, CoralStore.ALG_COVERAGE, algCoverage);
+
+			for (int i=0; i< neighbours.size; i++)
+			{
+				if(getAlive())
 				{
-					Alga otherA =  (Alga) neighbours.objs[i];
-					double dist = me.distance(otherA.sendXPos(), otherA.sendYPos());
-			    
-					if ( dist <= this.getRadius() + otherA.getRadius())
+					Alga otherA =  (Alga) grid.agent(neighbours.ids[i]);
+					double dist = distance(otherA.haloX(), otherA.haloY());
+
+					if ( dist <= this.getRadius() + otherA.haloRadius())
 					{
-						Double r=0.0;
-						Double R=0.0;
-						if (otherA.getRadius()> this.getRadius()+ dist) die();
-						else if (otherA.getRadius() > this.getRadius()){
+						double r=0.0;
+						double R=0.0;
+						if (otherA.haloRadius()> this.getRadius()+ dist) die();
+						else if (otherA.haloRadius() > this.getRadius()){
 							r = this.getRadius();
-							R = otherA.getRadius();
+							R = otherA.haloRadius();
 						}
-						else {	
-							r = otherA.getRadius();
+						else {
+							r = otherA.haloRadius();
 							R = this.getRadius();
 						}
-						
-						Double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
-						Double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
-						Double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
 
-						Double intersectionArea = part1 + part2 - part3;	
-						
+						double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
+						double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
+						double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
+
+						double intersectionArea = part1 + part2 - part3;
+
 						if (intersectionArea>0)
-							interArea += intersectionArea;	
-						
-						for (Branch b : branches)
+							addInterArea(intersectionArea);
+
+						for (int k=0; k<NUM_BRANCHES; k++)
 						{
-							if (otherA.sendShape().contains(b.getEndX(), b.getEndY()))
+							if (otherA.haloContains(store.endX(slot, k), store.endY(slot, k)))
 							{
-								b.reduceGeneralGrowth();
+								// reduces the growth rate of the branch as soon as it touches the alga
+								store.setBranchGrowth(slot, k, store.branchGrowth(slot, k) * 0.7);
 							}
 						}
 					}
 				}
 			}
 		}
-		neighbours.clear();
 	}
-	
+
 	/**
 	 * Interaction with neighboring massive corals
 	 */
-	public void interactMassiveCorals() 
+	public void interactMassiveCorals()
 	{
-		neighbours = sim.massiveCorals.getObjectsExactlyWithinDistance(me, maximumBranchLength+sim.maCoMaxLength+10);
+		Bag neighbours = massiveNeighbours.get(sim, tile.ids, sendXPos(), sendYPos(), maximumBranchLength()+sim.maCoMaxLength+10);
 		if (neighbours.numObjs > 1)
 		{
-			for (int i=0; i< neighbours.numObjs; i++)	
+			for (int i=0; i< neighbours.numObjs; i++)
 			{
-				if (alive)
+				if (getAlive())
 				{
-					MassiveCoral otherC = (MassiveCoral) neighbours.objs[i];	
-					if(otherC.me!=this.me)
+					MassiveCoral otherC = (MassiveCoral) neighbours.objs[i];
+					if(otherC!=this)
 					{
 						double ciCalc = 1;
-						if (this.getCI() <= otherC.getCI()) ciCalc = this.getCI()/otherC.getCI() / sim.ciFactor;
-						
+						if (this.getCI() <= otherC.haloCI()) ciCalc = this.getCI()/otherC.haloCI() / sim.ciFactor;
+
 						double gReducer = ciCalc;
 						if (gReducer > 1) gReducer = 1;
-						
-						double dist = me.distance(otherC.sendXPos(), otherC.sendYPos());
-						if (dist<this.getRadius()+otherC.getRadius() && otherC.bleached == false)
+
+						double dist = distance(otherC.haloX(), otherC.haloY());
+						if (dist<this.getRadius()+otherC.haloRadius() && otherC.haloBleached() == false)
 						{
-							Double r=0.0;
-							Double R=0.0;
-							if (otherC.getRadius()> this.getRadius()+dist) die();
-							 if (otherC.getRadius() > this.getRadius()){
+							double r=0.0;
+							double R=0.0;
+							if (otherC.haloRadius()> this.getRadius()+dist) die();
+							 if (otherC.haloRadius() > this.getRadius()){
 								r = this.getRadius();
-								R = otherC.getRadius();
+								R = otherC.haloRadius();
 							}
-							else {	
-								r = otherC.getRadius();
+							else {
+								r = otherC.haloRadius();
 								R = this.getRadius();
 							}
-							
-							Double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
-							Double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
-							Double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
-	
-							Double intersectionArea = part1 + part2 - part3;	
+
+							double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
+							double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
+							double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
+
+							double intersectionArea = part1 + part2 - part3;
 							if (intersectionArea>0)
-								interArea += intersectionArea;
-	
-							for (Branch b : branches)
+								addInterArea(intersectionArea);
+
+							for (int k=0; k<NUM_BRANCHES; k++)
 							{
-								if ( otherC.sendShape().contains(b.getEndX(), b.getEndY()) )
+								if ( otherC.haloContains(store.endX(slot, k), store.endY(slot, k)) )
 								{
-									b.growthRate = initGrowthRate*gReducer;
+									store.setBranchGrowth(slot, k, initGrowthRate()*gReducer);
 								}
 							}
 						}
@@ -414,57 +452,57 @@ public class MassiveCoral extends SimplePortrayal2D implements Steppable
 		}
 		neighbours.clear();
 	}
-	
+
 	/**
 	 * Interaction with neighboring branching corals
 	 */
-	public void interactBranchingCorals() 
+	public void interactBranchingCorals()
 	{
-		
-		growthRate = initGrowthRate;
-		neighbours = sim.branchingCorals.getObjectsExactlyWithinDistance(me, maximumBranchLength+sim.braCoMaxLength+10);
+
+		setGrowthRate(initGrowthRate());
+		Bag neighbours = branchingNeighbours.get(sim, tile.ids, sendXPos(), sendYPos(), maximumBranchLength()+sim.braCoMaxLength+10);
 		if (neighbours.numObjs > 1)
 		{
-			for (int i=0; i< neighbours.numObjs; i++)	
+			for (int i=0; i< neighbours.numObjs; i++)
 			{
-				if (alive)
+				if (getAlive())
 				{
 					BranchingCoral otherC = (BranchingCoral) neighbours.objs[i];
 
 					double ciCalc = 1;
-					if (this.getCI() <= otherC.getCI()) ciCalc = this.getCI()/otherC.getCI() / sim.ciFactor;
+					if (this.getCI() <= otherC.haloCI()) ciCalc = this.getCI()/otherC.haloCI() / sim.ciFactor;
 
 					double gReducer = ciCalc;
 					if (gReducer > 1) gReducer = 1;
-					
-					double dist = me.distance(otherC.xPos, otherC.yPos);
-					if (dist<this.getRadius()+otherC.getRadius() && otherC.bleached == false)
+
+					double dist = distance(otherC.haloX(), otherC.haloY());
+					if (dist<this.getRadius()+otherC.haloRadius() && otherC.haloBleached() == false)
 					{
-						Double r=0.0;
-						Double R=0.0;
-						if (otherC.getRadius()> this.getRadius()+dist) die();
-						else if (otherC.getRadius() > this.getRadius()){
+						double r=0.0;
+						double R=0.0;
+						if (otherC.haloRadius()> this.getRadius()+dist) die();
+						else if (otherC.haloRadius() > this.getRadius()){
 							r = this.getRadius();
-							R = otherC.getRadius();
+							R = otherC.haloRadius();
 						}
-						else {	
-							r = otherC.getRadius();
+						else {
+							r = otherC.haloRadius();
 							R = this.getRadius();
 						}
-						
-						Double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
-						Double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
-						Double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
 
-						Double intersectionArea = part1 + part2 - part3;	
+						double part1 = r*r*Math.acos((dist*dist + r*r - R*R)/(2*dist*r));
+						double part2 = R*R*Math.acos((dist*dist + R*R - r*r)/(2*dist*R));
+						double part3 = 0.5*Math.sqrt((-dist+r+R)*(dist+r-R)*(dist-r+R)*(dist+r+R));
+
+						double intersectionArea = part1 + part2 - part3;
 						if (intersectionArea>0)
-							interArea += intersectionArea;						
-						
-						for (Branch b : branches)
+							addInterArea(intersectionArea);
+
+						for (int k=0; k<NUM_BRANCHES; k++)
 						{
-							if ( otherC.sendShape().contains(b.getEndX(), b.getEndY()) )
+							if ( otherC.haloContains(store.endX(slot, k), store.endY(slot, k)) )
 							{
-								b.growthRate = initGrowthRate*gReducer;
+								store.setBranchGrowth(slot, k, initGrowthRate()*gReducer);
 
 							}
 						}
@@ -480,32 +518,14 @@ public class MassiveCoral extends SimplePortrayal2D implements Steppable
 	 */
 	private void interactTurf()
 	{
-		Bag t = sim.turf.getAllObjects();
-			
-		for (int i=0; i<t.size(); i++)
+		// the cell lies in the tile of the colony
+		TurfCell tC = sim.turfCellAt(sendXPos(), sendYPos());
+		if (tC != null)
 		{
-			TurfCell tC = (TurfCell) t.objs[i];
-			if (tC.sendShape().contains(me.x, me.y))
-			{
-				if (tC.sendCover() > 100) tC.cover = 100;
-				if (sim.random.nextBoolean(tC.sendCover()/100/2)) die(); 
-			}
+			if (tC.sendCover() > 100) tC.setCover(100);
+			if (tile.random.nextBoolean(tC.sendCover()/100/2)) die();
 		}
 	}
-	
-	
-	
-	/**
-	 * reschedules coral 
-	 * @param dTime time interval
-	 */
-	public final void reschedule(double dTime) {
-		if (dTime <= 0.0) {
-			step(sim);
-			return;
-		}
-		sim.schedule.scheduleOnceIn(dTime, this);
-	}
 
 	/**
 	 * Determines the average radius of the colony
@@ -513,229 +533,146 @@ public class MassiveCoral extends SimplePortrayal2D implements Steppable
 	public void getAvRadius()
 	{
 		double averageLength = 0;
-		maxLength = 0;
-		for (Branch b : branches)
+		double maxLength = 0;
+		for (int k=0; k<NUM_BRANCHES; k++)
 		{
-			/** 
-			 * The following part is to minimize edge effects of the simulation. 
-			 * If branching corals do not have any neighbours on one side they would grow to infinity and thereby 
+			double endX = store.endX(slot, k), endY = store.endY(slot, k);
+			double length = store.branchLength(slot, k);
+			/**
+			 * The following part is to minimize edge effects of the simulation.
+			 * If branching corals do not have any neighbours on one side they would grow to infinity and thereby
 			 * skew the value for the average radius
 			 */
-			
-			if (b.getEndX() < Siccom.gridWidth  || b.getEndX() > Siccom.gridWidth ||
-				b.getEndY() < Siccom.gridHeight || b.getEndY() > Siccom.gridHeight ) maxLength = radius;
+
+			if (endX < Siccom.gridWidth  || endX > Siccom.gridWidth ||
+				endY < Siccom.gridHeight || endY > Siccom.gridHeight ) maxLength = getRadius();
 
 			// if they are on the simulation area.
-			if (b.getBranchLength() >= maxLength) maxLength = b.getBranchLength();
-			averageLength += b.getBranchLength();
+			if (length >= maxLength) maxLength = length;
+			averageLength += length;
 		}
-		radius = averageLength / numBranches;
-		diameter = 2*radius;
-		size = Math.PI * Math.pow(radius, 2);
-		
-		maximumBranchLength = maxLength;
+		setRadius(averageLength / NUM_BRANCHES);
+
+		store.set(slot, CoralStore.MAX_BRANCH_LENGTH, maxLength);
 	}
-	
-	/**
-	 * Draws the colony
-	 */
-	public void draw(Object object, Graphics2D graphics, DrawInfo2D info)
-    {
-    	graph = graphics;
-    	inf = info;
-    	
-		
-		double x = inf.draw.x;
-    	double y = inf.draw.y;
-
-    	
-       	if (bleachDead) graph.setColor(Color.white);
-    	else
-    	{
-    		SimpleColorMap colorM = new SimpleColorMap(0.0, 100.0, initColor, Color.WHITE); 	// color is chosen 
-    		color = colorM.getColor(bleachGrade);												// depending on the bleachGrade of the coral		
-
-    		graph.setColor(color);
-    	}
-   		
-   		drawPoly(inf, x, y);
-   		graph.setColor(Color.white);
-    }
+
+	public double calculateHemisphere()
+	{
+		return 2*Math.PI*Math.pow((getRadius()*Siccom.resolution), 2);
+	}
+
+
 	/**
-	 * Draws the polygon shape of the colony
-	 * @param inf the drawing information
-	 * @param x	the x coordinate
-	 * @param y the y coordinate
+	 *  sets the life-status to false
+	 *  -- removes object from hash table, at once or, while the colony steps, when its tile commits.
+	 *  The tiling returns the colony to the pool at the beginning of the next month
 	 */
-	private void drawPoly(DrawInfo2D inf, double x, double y) 
+	public void die()
 	{
-		Polygon2D.Double drawP = new Polygon2D.Double();
-		for (int i=0; i < branches.size(); i++)
-		{
-			Branch b =  branches.get(i);
-			double length = b.getBranchLength();
-			
-			double rad = (inf.draw.width*length);
-			
-			int div = (int)b.multiplier;
-			double endX = x + (rad*Math.cos( (2*Math.PI/numBranches)*div ));
-	        double endY = y - (rad*Math.sin( (2*Math.PI/numBranches)*div ));
-
-	        drawP.addPoint(endX, endY);
-		}
-		graph.fill(drawP);
-		
-		if (alive)
-		{
-			graph.setColor(Color.black);
-		
-			graph.draw(drawP);
-		}
+		store.setFlag(slot, CoralStore.ALIVE, false);
+		if (tile != null) return;
+		sim.buffer.death(sim.massiveCorals, this);
+		unindex();
+		occupy();
 	}
-	
-	/**
-	 * for the inspector of Coral objects
-	 */
-	public boolean hitObject(Object object, DrawInfo2D range)
-    {
-		final double SLOP = 1.0;	// need a little extra diameter to hit circles
-    	final double width = range.draw.width * diameter;
-    	final double height = range.draw.height * diameter;
-
-       	Ellipse2D.Double ellipse = new Ellipse2D.Double( 
-    			range.draw.x-width/2-SLOP,
-    			range.draw.y-height/2-SLOP, 
-                width+SLOP*2,
-                height+SLOP*2 );
-    	
-    	return (ellipse.intersects( range.clip.x, range.clip.y, range.clip.width, range.clip.height ));
-    }
-	
+
+
+
+
 	/**
-	 * Calculates the hemispherical surface area of the coral
-	 * @return
+	 * @return true if a point lies within the polygon shape of the coral
 	 */
-	public double calculateHemisphere()
+	public boolean contains(double x, double y)
 	{
-		return 2*Math.PI*Math.pow((radius*Siccom.resolution), 2);
+		return store.outlineContains(slot, x, y);
 	}
-	
-	
+
 	/**
-	 *  sets the life-status to false
-	 *  -- removes object from hash table 
+	 * Draws the actual shape of the coral into a polygon
 	 */
-	public void die() 
+	public void outline(Polygon2D.Double p)
 	{
-		alive = false;
-		sim.massiveCorals.remove(this);
+		store.outline(slot, p);
 	}
-		
-	
-	
-	
+
 	/**
 	 * Passes the actual shape of the coral.
 	 * @return Polygon p
 	 */
 	public Polygon2D.Double sendShape()
 	{
-		return 	p;	
+		Polygon2D.Double p = new Polygon2D.Double();
+		outline(p);
+		return 	p;
 	}
 
 	/**
-	 * Lets the coral grow. If the branch is not touching another, bigger coral, 
+	 * Lets the coral grow. If the branch is not touching another, bigger coral,
 	 * it will grow with the growth rate defined in the interaction part.
-	 * Afterwards it calculates the new size and diameter.
 	 */
 	public void grow()
 	{
-		
-		p = new Polygon2D.Double();
-
-			
-		for (int i=0; i < branches.size(); i++)
+		double maximumRadius = maximumRadius();
+		double initGrowthRate = initGrowthRate();
+		for (int k=0; k < NUM_BRANCHES; k++)
 		{
-			Branch b =  branches.get(i);
-			
-			if (b.branchLength < maximumRadius && b.stop == false)
-				b.growBranch();
-
-			b.stop = false;
-			growthRate = initGrowthRate;
-			
-			
-			double length = b.getBranchLength();
-			double rad = length;
-			double div = b.multiplier;
-
-			double endX = b.startX + (rad*Math.cos( (2*Math.PI/numBranches )*div ));
-	        double endY = b.startY - (rad*Math.sin( (2*Math.PI/numBranches)*div ));
-
-	        p.addPoint(endX, endY);
-	
+			double length = store.branchLength(slot, k);
+			if (length < maximumRadius)
+			{
+				store.setBranchLength(slot, k, length + store.branchGrowth(slot, k));
+				store.setBranchGrowth(slot, k, initGrowthRate);
+			}
 		}
-		
-		size = Math.PI * Math.pow(radius, 2);
-		diameter = 2*radius;		
+		setGrowthRate(initGrowthRate);
+		store.setFlag(slot, CoralStore.ROUNDED, false);
 	}
-	
+
 	/**
 	 * reduces the growth rate of a coral as soon as it touches a macroalga for each macroalga it touches
 	 * @return the new growth rate
 	 */
 	 public double reduceGeneralGrowth()
 	 {
-		 growthRate = growthRate * 0.9;
-		 return growthRate;
+		 setGrowthRate(growthRate() * 0.9);
+		 return growthRate();
 	 }
 
 	 /*
 	  * BLEACHING AND RECOVERY
 	  */
-	 /**
-	  * Check if the colony will bleach within this time step
-	  */
-	 public void checkBleaching()
-	 {
-		 double bleachProb = sim.bleachProbs.get(name);
-
-		 if (bleachProb > 0)
-		 {
-			 if (sim.random.nextBoolean(bleachProb)) bleach();
-		 }
-	 }
-
 	 /**
 	  * Lets a coral bleach, and die with a certain probability
 	  */
 	 public void bleach()
 	 {
-		 if (sim.random.nextBoolean( sim.bleachDeathProbs.get(name) )) 
+		 if (sim.random.nextBoolean( sim.bleachDeathProbs[mG.index] ))
 		 {
 			 die();
 //			 bleachDead=true;
 		 }
-		 
-		 bleachGrade = 100;
-		 
+
+		 setBleachGrade(100);
+
 		 // reduce growth rate to nearly 0;
-		 growthRate = growthRate / bleachGrade;
+		 setGrowthRate(growthRate() / getBleachGrade());
 		 // set boolean bleached to true;
-		 bleached = true; 
+		 store.setFlag(slot, CoralStore.BLEACHED, true);
+		 occupy();
+		 // a bleached colony has to recover
+		 wake();
 	 }
-	 
+
 	 /**
-	  * Recovery of a bleached coral
+	  * Recovery of a bleached coral -- the occupancy map follows when the tile commits
 	  */
 	 public void recover()
 	 {
-		 bleachGrade = bleachGrade - recoveryRate;
+		 setBleachGrade(getBleachGrade() - recoveryRate);
 //		 growthRate = growthRate / bleachGrade;
-		 if (bleachGrade<= 0)
+		 if (getBleachGrade()<= 0)
 		 {
-			 bleached = false;
-			 bleachGrade = 0;
+			 store.setFlag(slot, CoralStore.BLEACHED, false);
+			 setBleachGrade(0);
 		 }
 	 }
-}
\ No newline at end of file
+}
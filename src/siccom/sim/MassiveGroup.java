@@ -2,7 +2,6 @@ package siccom.sim;
 
 import java.awt.Color;
 
-import sim.engine.Schedule;
 import sim.util.Bag;
 import sim.util.Double2D;
 
@@ -43,6 +42,10 @@ public class MassiveGroup extends CoralGroup
 	 * The age of a colony
 	 */
 	private int age;
+	/**
+	 * Dead colonies of this group kept for reuse
+	 */
+	public AgentPool<MassiveCoral> pool = new AgentPool<MassiveCoral>();
 	
 
 	/**
@@ -118,8 +121,6 @@ public class MassiveGroup extends CoralGroup
 			age = 10;
 			
 			MassiveCoral mC = new MassiveCoral( 	sim,										// the simulation, the agent acts in
-													name,
-													color,
 													CI,
 													maxRadius,
 													xPos, 										// x position
@@ -132,12 +133,26 @@ public class MassiveGroup extends CoralGroup
 			sim.massiveCorals.setObjectLocation(mC, 
 					new Double2D(xPos, yPos));							// random location
 			
-			sim.schedule.scheduleOnce(Schedule.EPOCH, mC);					// schedule once in the beginning 
-																		// -- then Coral reschedules itself if alive			
 			sumSize = sumSize + mC.sendSize();
 		}
 	}
 	
+	/**
+	 * Provides a colony of this group -- a dead one from the pool if there is one, otherwise a new one
+	 * @param xPos x-position
+	 * @param yPos y-position
+	 * @param radius initial radius
+	 * @param growthRate the growth rate
+	 * @param age the initial age
+	 */
+	public MassiveCoral newCoral(double xPos, double yPos, double radius, double growthRate, int age)
+	{
+		MassiveCoral mC = pool.obtain();
+		if (mC == null) return new MassiveCoral(sim, CI, maxRadius, xPos, yPos, radius, growthRate, age, this);
+		mC.reset(CI, maxRadius, xPos, yPos, radius, growthRate, age, this);
+		return mC;
+	}
+	
 	/**
   	 *  Creates recruits and appends them to massiveCorals
   	 */
@@ -147,27 +162,25 @@ public class MassiveGroup extends CoralGroup
  		importedRecs = importedRecruits();
  		totalRecs = selfMadeRecs + importedRecs;
  		
- 		
- 		for (int i = 0 ; i<totalRecs; i++)
+ 		sim.buffer.begin();
+ 		// only the recruits landing where they can live are placed
+		int settlers = sim.occupancy.settlers(OccupancyMap.MASSIVE, totalRecs);
+ 		for (int i = 0 ; i<settlers; i++)
 		{
-			double xPos = sim.random.nextDouble()*Siccom.gridWidth;
-  			double yPos = sim.random.nextDouble()*Siccom.gridHeight;
+			sim.occupancy.nextPosition(OccupancyMap.MASSIVE);
+			double xPos = sim.occupancy.x;
+  			double yPos = sim.occupancy.y;
+  			if (sim.occupancy.doomed(OccupancyMap.MASSIVE, xPos, yPos, recRad)) continue;
   				
-  			MassiveCoral mC = new MassiveCoral(	sim,										// the simulation, the agent acts in
-  												name,
-  												color,
-  												CI,
-  												maxRadius,
-  												xPos, 										// x position
-  												yPos,										// y position
-  												recRad,										// radius
-  												growthRate,
-  												0,
-  												this); 										// age
+  			MassiveCoral mC = newCoral(	xPos, 										// x position
+  										yPos,										// y position
+  										recRad,										// radius
+  										growthRate,
+  										0); 										// age
   						
-  			sim.massiveCorals.setObjectLocation(mC, new Double2D(xPos, yPos));
-  			sim.schedule.scheduleOnce(mC);
+  			sim.buffer.birth(sim.massiveCorals, mC, xPos, yPos);
   		}
+ 		sim.buffer.commit();
  	}
  	/**
  	 * Calculates the amount of recruits produced with the stock-recruitment relationship
@@ -177,28 +190,40 @@ public class MassiveGroup extends CoralGroup
  	{
 		// the number of recruits that come directly from the focal reef
  		double inRecNum = 0;
+ 		double surfaceArea = matureSurface();
+ 		if (pooledSurface >= 0) surfaceArea = pooledSurface;
+
+		// calculate the total propagule output
+		inRecNum = (surfaceArea * surfaceFactor * propagulesPerSqCm);	
+		int selfRecs = (int) (inRecNum * retainFactor);
+				
+		return selfRecs;
+		
+ 	}
+
+ 	/**
+ 	 * Sums up the surface of all mature colonies of this group
+ 	 * @return the surface area producing propagules
+ 	 */
+ 	public double matureSurface()
+ 	{
  		double surfaceArea = 0;
 
  		// collect all massive corals into a bag to make them iterable
-		Bag mB = sim.massiveCorals.getAllObjects();
+		Bag mB = sim.massiveOrder.agents();
 		for(int i = 0; i<mB.size(); i++)
 		{
 			MassiveCoral mC = (MassiveCoral)mB.objs[i];
 			
 			// check, if coral is mature and can produce propagules 
-			if(mC.getName().equals(name) && mC.diameter >= diamAtMaturity)
+			if(mC.getName().equals(name) && mC.getDiameter() >= diamAtMaturity && !mC.ghost())
 			{
 				// calculate area of a hemisphere (massive coral head)
 					surfaceArea += mC.calculateHemisphere();
 			}
 			
 		}
-		// calculate the total propagule output
-		inRecNum = (surfaceArea * surfaceFactor * propagulesPerSqCm);	
-		int selfRecs = (int) (inRecNum * retainFactor);
-				
-		return selfRecs;
-		
+		return surfaceArea;
  	}
 
  	/**
@@ -0,0 +1,79 @@
+package siccom.sim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Mean, variance, minimum and maximum of a stream of values, updated one value at a time (Welford).
+ * Two moments of separate streams can be merged into the moments of both.
+ * @author andreas
+ *
+ */
+public class Moments
+{
+	public long n;
+	public double mean;
+	/**
+	 * The sum of the squared deviations from the mean
+	 */
+	double m2;
+	public double min = Double.POSITIVE_INFINITY;
+	public double max = Double.NEGATIVE_INFINITY;
+
+	public void add(double x)
+	{
+		n++;
+		double d = x - mean;
+		mean += d / n;
+		m2 += d * (x - mean);
+		if (x < min) min = x;
+		if (x > max) max = x;
+	}
+
+	/**
+	 * Adds the values of another stream
+	 */
+	public void merge(Moments o)
+	{
+		if (o.n == 0) return;
+		long total = n + o.n;
+		double d = o.mean - mean;
+		mean += d * o.n / total;
+		m2 += o.m2 + d * d * ((double)n * o.n / total);
+		n = total;
+		if (o.min < min) min = o.min;
+		if (o.max > max) max = o.max;
+	}
+
+	/**
+	 * @return the sample variance -- 0 for less than two values
+	 */
+	public double variance()
+	{
+		return n < 2 ? 0 : m2 / (n-1);
+	}
+
+	public double sd()
+	{
+		return Math.sqrt(variance());
+	}
+
+	void write(DataOutputStream out) throws IOException
+	{
+		out.writeLong(n);
+		out.writeDouble(mean);
+		out.writeDouble(m2);
+		out.writeDouble(min);
+		out.writeDouble(max);
+	}
+
+	void read(DataInputStream in) throws IOException
+	{
+		n = in.readLong();
+		mean = in.readDouble();
+		m2 = in.readDouble();
+		min = in.readDouble();
+		max = in.readDouble();
+	}
+}
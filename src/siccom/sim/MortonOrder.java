@@ -0,0 +1,207 @@
+package siccom.sim;
+
+import java.util.Arrays;
+
+import sim.field.continuous.Continuous2D;
+import sim.util.Bag;
+import sim.util.Double2D;
+
+/**
+ * The agents of a field sorted by the Z-order (Morton) code of their cell,
+ * so the passes over a whole population (bleaching, grazing, cover, output ...) visit neighbouring agents one after another.
+ * Agents do not move, so the order is only brought up to date:
+ * <ul>
+ * <li>dead agents are dropped</li>
+ * <li>agents born since the last update are sorted on their own and merged in</li>
+ * </ul>
+ * The births are reported by the {@link BirthDeathBuffer}. Agents placed directly into the field
+ * (the initial populations) are found because the number of agents does not match -- then the order is sorted anew.
+ * @author andreas
+ *
+ */
+public class MortonOrder
+{
+	Continuous2D field;
+	/**
+	 * The sorted agents, their codes and their locations when they were sorted in
+	 */
+	Bag agents = new Bag();
+	long[] codes = new long[0];
+	Double2D[] locations = new Double2D[0];
+	/**
+	 * The agents born since the last update
+	 */
+	Bag born = new Bag();
+	/**
+	 * True if agents have been born or have died since the last update
+	 */
+	boolean dirty = true;
+	/**
+	 * The edge length of a cell
+	 */
+	double cellSize;
+	/**
+	 * The number of full sorts and of updates
+	 */
+	public int sorts, updates;
+
+	public MortonOrder(Continuous2D field, double cellSize)
+	{
+		this.field = field;
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * @return the agents of the field in Z-order -- the bag must not be changed
+	 */
+	public Bag agents()
+	{
+		if (dirty) update();
+		return agents;
+	}
+
+	/**
+	 * Notes a new agent of the field
+	 */
+	void born(Object agent)
+	{
+		born.add(agent);
+		dirty = true;
+	}
+
+	/**
+	 * Notes that an agent of the field has died
+	 */
+	void died()
+	{
+		dirty = true;
+	}
+
+	/**
+	 * @return the Morton code of the cell of a position
+	 */
+	long code(Double2D loc)
+	{
+		long cx = Math.max(0, (long)(loc.x / cellSize)) & 0x7fffL;
+		long cy = Math.max(0, (long)(loc.y / cellSize)) & 0x7fffL;
+		return spread(cx) | (spread(cy) << 1);
+	}
+
+	/**
+	 * Spreads the 15 bits of a value to every second bit
+	 */
+	static long spread(long v)
+	{
+		v = (v | (v << 8))  & 0x00FF00FF00FF00FFL;
+		v = (v | (v << 4))  & 0x0F0F0F0F0F0F0F0FL;
+		v = (v | (v << 2))  & 0x3333333333333333L;
+		v = (v | (v << 1))  & 0x5555555555555555L;
+		return v;
+	}
+
+	/**
+	 * Drops the dead agents and merges the new ones in
+	 */
+	void update()
+	{
+		dirty = false;
+		updates++;
+
+		// an agent counts as alive while it is in the field at the location it was sorted in with
+		// -- an agent reused from a pool has a new location
+		int n = 0;
+		for (int i=0; i<agents.numObjs; i++)
+		{
+			if (field.getObjectLocation(agents.objs[i]) != locations[i]) continue;
+			agents.objs[n] = agents.objs[i];
+			codes[n] = codes[i];
+			locations[n] = locations[i];
+			n++;
+		}
+
+		// the new agents -- sorted by their code
+		int m = 0;
+		long[] newCodes = new long[born.numObjs];
+		for (int i=0; i<born.numObjs; i++)
+		{
+			Double2D loc = field.getObjectLocation(born.objs[i]);
+			if (loc == null) continue;
+			newCodes[m] = (code(loc) << 32) | i;
+			m++;
+		}
+		Arrays.sort(newCodes, 0, m);
+
+		if (n + m != field.getAllObjects().numObjs)
+		{
+			sortAll();
+			born.clear();
+			return;
+		}
+
+		// merge both from the end
+		int size = n + m;
+		ensureCapacity(size);
+		int i = n-1, j = m-1;
+		for (int k=size-1; k>=0; k--)
+		{
+			if (j < 0 || (i >= 0 && codes[i] > (newCodes[j] >>> 32)))
+			{
+				agents.objs[k] = agents.objs[i];
+				codes[k] = codes[i];
+				locations[k] = locations[i];
+				i--;
+			}
+			else
+			{
+				Object o = born.objs[(int)(newCodes[j] & 0xffffffffL)];
+				agents.objs[k] = o;
+				codes[k] = newCodes[j] >>> 32;
+				locations[k] = field.getObjectLocation(o);
+				j--;
+			}
+		}
+		for (int k=size; k<agents.numObjs; k++) agents.objs[k] = null;
+		agents.numObjs = size;
+		born.clear();
+	}
+
+	/**
+	 * Sorts all agents of the field anew
+	 */
+	void sortAll()
+	{
+		sorts++;
+		Bag all = field.getAllObjects();
+		int size = all.numObjs;
+		ensureCapacity(size);
+
+		long[] keys = new long[size];
+		Double2D[] locs = new Double2D[size];
+		for (int i=0; i<size; i++)
+		{
+			locs[i] = field.getObjectLocation(all.objs[i]);
+			keys[i] = (code(locs[i]) << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		for (int k=0; k<size; k++)
+		{
+			int i = (int)(keys[k] & 0xffffffffL);
+			agents.objs[k] = all.objs[i];
+			codes[k] = keys[k] >>> 32;
+			locations[k] = locs[i];
+		}
+		for (int k=size; k<agents.numObjs; k++) agents.objs[k] = null;
+		agents.numObjs = size;
+	}
+
+	private void ensureCapacity(int size)
+	{
+		if (agents.objs.length < size) agents.resize(size);
+		if (codes.length < size)
+		{
+			codes = Arrays.copyOf(codes, Math.max(size, 2*codes.length));
+			locations = Arrays.copyOf(locations, codes.length);
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package siccom.sim;
+
+import java.util.Arrays;
+
+import sim.field.continuous.Continuous2D;
+import sim.util.Bag;
+import sim.util.Double2D;
+
+/**
+ * A second index of the agents of a field for the neighbour searches of the monthly steps, which allocates nothing.
+ * Each agent has an id -- a slot holding the agent and its position. The ids of a cell are chained.
+ * <ul>
+ * <li>{@link #query} writes the ids of the agents within a distance into a buffer owned by the caller</li>
+ * <li>{@link #visit} hands each agent within a distance to a visitor</li>
+ * </ul>
+ * The grid is told about births and deaths by the {@link BirthDeathBuffer}. Agents placed directly into the field
+ * (the initial populations) are not seen -- the grid has to be built anew then ({@link BirthDeathBuffer#placed}).
+ * An id keeps its agent until the slot is used for a new agent, so the agents found stay readable
+ * while the caller lets some of them die.
+ * Positions beyond the edges of the reef fall into the border cells.
+ * @author andreas
+ *
+ */
+public class NeighbourGrid
+{
+	/**
+	 * Receives the agents found by {@link NeighbourGrid#visit}
+	 */
+	public interface Visitor
+	{
+		/**
+		 * @param agent the agent
+		 * @param x its x-position
+		 * @param y its y-position
+		 * @param d2 its squared distance to the centre of the search
+		 */
+		void visit(Object agent, double x, double y, double d2);
+	}
+
+	/**
+	 * A buffer of ids owned by the caller of {@link NeighbourGrid#query} -- reused from query to query
+	 */
+	public static class Ids
+	{
+		public int[] ids = new int[32];
+		public int size;
+
+		void add(int id)
+		{
+			if (size == ids.length) ids = Arrays.copyOf(ids, 2*size);
+			ids[size++] = id;
+		}
+	}
+
+	Continuous2D field;
+	int cellsX, cellsY;
+	double cellSize;
+	/**
+	 * The first id of each cell -- -1 if the cell is empty
+	 */
+	int[] head;
+	/**
+	 * The agent, position and next id in the cell of each id
+	 */
+	Object[] agents = new Object[64];
+	double[] xs = new double[64], ys = new double[64];
+	int[] next = new int[64];
+	/**
+	 * The ids given out so far and the free ones among them
+	 */
+	int end;
+	int[] free = new int[64];
+	int numFree;
+	/**
+	 * The number of agents in the grid
+	 */
+	public int size;
+
+	public NeighbourGrid(Continuous2D field, double width, double height, double cellSize)
+	{
+		this.field = field;
+		this.cellSize = cellSize;
+		cellsX = Math.max(1, (int)Math.ceil(width / cellSize));
+		cellsY = Math.max(1, (int)Math.ceil(height / cellSize));
+		head = new int[cellsX*cellsY];
+		Arrays.fill(head, -1);
+	}
+
+	private int cellX(double x)
+	{
+		return Math.max(0, Math.min(cellsX-1, (int)Math.floor(x / cellSize)));
+	}
+
+	private int cellY(double y)
+	{
+		return Math.max(0, Math.min(cellsY-1, (int)Math.floor(y / cellSize)));
+	}
+
+	/**
+	 * @return the agent of an id
+	 */
+	public Object agent(int id)
+	{
+		return agents[id];
+	}
+
+	public double x(int id)
+	{
+		return xs[id];
+	}
+
+	public double y(int id)
+	{
+		return ys[id];
+	}
+
+	/**
+	 * Puts an agent into the grid
+	 */
+	void insert(Object agent, double x, double y)
+	{
+		int id;
+		if (numFree > 0) id = free[--numFree];
+		else
+		{
+			if (end == agents.length)
+			{
+				int n = 2*end;
+				agents = Arrays.copyOf(agents, n);
+				xs = Arrays.copyOf(xs, n);
+				ys = Arrays.copyOf(ys, n);
+				next = Arrays.copyOf(next, n);
+				free = Arrays.copyOf(free, n);
+			}
+			id = end++;
+		}
+		int c = cellX(x)*cellsY + cellY(y);
+		agents[id] = agent;
+		xs[id] = x;
+		ys[id] = y;
+		next[id] = head[c];
+		head[c] = id;
+		size++;
+	}
+
+	/**
+	 * Takes an agent out of the grid -- nothing happens if it is not in the grid
+	 */
+	void remove(Object agent, double x, double y)
+	{
+		int c = cellX(x)*cellsY + cellY(y);
+		int prev = -1;
+		for (int id=head[c]; id>=0; prev=id, id=next[id])
+		{
+			if (agents[id] != agent) continue;
+			if (prev < 0) head[c] = next[id];
+			else next[prev] = next[id];
+			free[numFree++] = id;
+			size--;
+			return;
+		}
+	}
+
+	/**
+	 * Builds the grid anew from the field
+	 */
+	void rebuild()
+	{
+		Arrays.fill(head, -1);
+		Arrays.fill(agents, 0, end, null);
+		end = 0;
+		numFree = 0;
+		size = 0;
+		Bag all = field.getAllObjects();
+		for (int i=0; i<all.numObjs; i++)
+		{
+			Double2D loc = field.getObjectLocation(all.objs[i]);
+			insert(all.objs[i], loc.x, loc.y);
+		}
+	}
+
+	/**
+	 * Finds the agents within a distance of a position -- the same as getObjectsExactlyWithinDistance of the field
+	 * @param out the buffer the ids are written to -- cleared first
+	 * @return the number of agents found
+	 */
+	public int query(double x, double y, double distance, Ids out)
+	{
+		out.size = 0;
+		double d2 = distance*distance;
+		int x1 = cellX(x+distance), y0 = cellY(y-distance), y1 = cellY(y+distance);
+		for (int cx=cellX(x-distance); cx<=x1; cx++)
+			for (int cy=y0; cy<=y1; cy++)
+				for (int id=head[cx*cellsY + cy]; id>=0; id=next[id])
+				{
+					double dx = xs[id] - x, dy = ys[id] - y;
+					if (dx*dx + dy*dy <= d2) out.add(id);
+				}
+		return out.size;
+	}
+
+	/**
+	 * Hands the agents within a distance of a position to a visitor.
+	 * The visitor must not let agents be born or die in the grid.
+	 */
+	public void visit(double x, double y, double distance, Visitor v)
+	{
+		double d2 = distance*distance;
+		int x1 = cellX(x+distance), y0 = cellY(y-distance), y1 = cellY(y+distance);
+		for (int cx=cellX(x-distance); cx<=x1; cx++)
+			for (int cy=y0; cy<=y1; cy++)
+				for (int id=head[cx*cellsY + cy]; id>=0; id=next[id])
+				{
+					double dx = xs[id] - x, dy = ys[id] - y;
+					double dd = dx*dx + dy*dy;
+					if (dd <= d2) v.visit(agents[id], xs[id], ys[id], dd);
+				}
+	}
+}
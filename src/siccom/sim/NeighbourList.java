@@ -0,0 +1,98 @@
+package siccom.sim;
+
+import sim.field.continuous.Continuous2D;
+import sim.util.Bag;
+import sim.util.Double2D;
+
+/**
+ * The coral neighbours of a colony in one field, kept from month to month -- found in the {@link NeighbourGrid} of the field.
+ * Corals do not move, so the list is collected with a skin beyond the interaction range
+ * and is only collected again if
+ * <ul>
+ * <li>the interaction range has grown beyond the skin</li>
+ * <li>a coral has been born in a cell the list covers (see {@link BirthDeathBuffer#coralBornSince})</li>
+ * </ul>
+ * Dead corals are dropped when the list is read, since they are no longer in the field.
+ * @author andreas
+ *
+ */
+public class NeighbourList
+{
+	NeighbourGrid grid;
+	Continuous2D field;
+	/**
+	 * The neighbours within the range of the list
+	 */
+	Bag cached = new Bag();
+	/**
+	 * The neighbours within the asked range -- reused for every request
+	 */
+	Bag result = new Bag();
+	/**
+	 * The range the list was collected with -- negative if it has not been collected yet
+	 */
+	double range = -1;
+	/**
+	 * The step the list was collected in
+	 */
+	long built;
+	/**
+	 * The number of times the list has been collected
+	 */
+	public int rebuilds;
+
+	public NeighbourList(NeighbourGrid grid)
+	{
+		this.grid = grid;
+		this.field = grid.field;
+	}
+
+	/**
+	 * Finds the corals of the field within a distance -- the same as getObjectsExactlyWithinDistance of the field
+	 * @param sim the simulation
+	 * @param ids the buffer for the search of the grid -- one per thread
+	 * @param x the x-position of the centre
+	 * @param y the y-position of the centre
+	 * @param distance the distance
+	 * @return the corals found -- the bag is reused by the next call
+	 */
+	public Bag get(Siccom sim, NeighbourGrid.Ids ids, double x, double y, double distance)
+	{
+		if (distance > range || sim.buffer.coralBornSince(built, x, y, range))
+		{
+			range = distance + sim.neighbourSkin;
+			built = sim.schedule.getSteps();
+			cached.clear();
+			grid.query(x, y, range, ids);
+			for (int i=0; i<ids.size; i++) cached.add(grid.agent(ids.ids[i]));
+			rebuilds++;
+		}
+
+		result.clear();
+		double d2 = distance*distance;
+		int n = 0;
+		for (int i=0; i<cached.numObjs; i++)
+		{
+			Object o = cached.objs[i];
+			Double2D loc = field.getObjectLocation(o);
+			if (loc == null) continue;			// dead
+			double dx = loc.x - x, dy = loc.y - y;
+			if (dx*dx + dy*dy <= d2) result.add(o);
+			// a colony reused from the pool somewhere else is no longer a neighbour
+			if (dx*dx + dy*dy <= range*range) cached.objs[n++] = o;
+		}
+		for (int i=n; i<cached.numObjs; i++) cached.objs[i] = null;
+		cached.numObjs = n;
+		return result;
+	}
+
+	/**
+	 * Forgets the list -- used when the colony is reused
+	 */
+	public void reset()
+	{
+		cached.clear();
+		result.clear();
+		range = -1;
+	}
+}
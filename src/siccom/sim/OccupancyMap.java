@@ -0,0 +1,206 @@
+package siccom.sim;
+
+import sim.util.Bag;
+
+/**
+ * Tells where settling recruits and fragments would be killed at once by the colony they land in,
+ * so they need not be created at all.
+ * <ul>
+ * <li>a massive (branching) recruit dies in its first step if an unbleached massive (branching) colony
+ * covers it completely</li>
+ * <li>an alga dies in its first step if an unbleached colony of either kind covers its centre
+ * (a massive colony) or all of it (a branching colony)</li>
+ * </ul>
+ * The reef is divided into cells. A cell lying completely within the inner disc of an unbleached colony
+ * is full for the recruits killed by that colony. Recruitment draws how many recruits land in the cells that are not full
+ * and places only those -- uniformly within these cells. In cells partly covered each position is tested
+ * with the {@link CoverageIndex}; recruits that would die are dropped.
+ * The colonies keep their discs up to date when they grow, bleach, recover or die.
+ * Colonies that bleach or die before the recruits' first step are neglected.
+ * @author andreas
+ *
+ */
+public class OccupancyMap
+{
+	public static final int MASSIVE = 0, BRANCHING = 1, ALGA = 2;
+
+	Siccom sim;
+	int cellsX, cellsY;
+	double cellWidth, cellHeight;
+	/**
+	 * The number of colonies of each kind that fill a cell
+	 */
+	int[] massiveFull, branchingFull;
+	/**
+	 * The cells not full for each kind of settler -- as a list and the position of each cell in the list
+	 */
+	int[][] free = new int[3][];
+	int[][] freePos = new int[3][];
+	int[] numFree = new int[3];
+	/**
+	 * The largest radius of a settler -- the inner discs are reduced by it
+	 */
+	double maxSettlerRadius;
+	/**
+	 * The position found by the last call of {@link #nextPosition}
+	 */
+	public double x, y;
+
+	public OccupancyMap(Siccom sim, double cellSize, double maxSettlerRadius)
+	{
+		this.sim = sim;
+		this.maxSettlerRadius = maxSettlerRadius;
+		cellsX = Math.max(1, (int)Math.ceil(Siccom.gridWidth / cellSize));
+		cellsY = Math.max(1, (int)Math.ceil(Siccom.gridHeight / cellSize));
+		// all cells have the same area
+		cellWidth = Siccom.gridWidth / cellsX;
+		cellHeight = Siccom.gridHeight / cellsY;
+
+		int n = cellsX*cellsY;
+		massiveFull = new int[n];
+		branchingFull = new int[n];
+		for (int k=0; k<3; k++)
+		{
+			free[k] = new int[n];
+			freePos[k] = new int[n];
+			for (int c=0; c<n; c++)
+			{
+				free[k][c] = c;
+				freePos[k][c] = c;
+			}
+			numFree[k] = n;
+		}
+	}
+
+	/**
+	 * @return the radius of the disc around the centre of a colony within which settlers die
+	 */
+	public double innerRadius(double radius)
+	{
+		return radius - maxSettlerRadius - 1e-9;
+	}
+
+	/**
+	 * Marks the cells within the inner disc of a colony as full (add = true) or takes the mark back
+	 */
+	public void mark(boolean massive, double cx, double cy, double disc, boolean add)
+	{
+		if (disc <= 0) return;
+		int x0 = Math.max(0, (int)Math.floor((cx-disc) / cellWidth)), x1 = Math.min(cellsX-1, (int)Math.floor((cx+disc) / cellWidth));
+		int y0 = Math.max(0, (int)Math.floor((cy-disc) / cellHeight)), y1 = Math.min(cellsY-1, (int)Math.floor((cy+disc) / cellHeight));
+		double d2 = disc*disc;
+
+		for (int i=x0; i<=x1; i++)
+		{
+			// the corner of the cell farthest from the centre
+			double dx = Math.max(Math.abs(i*cellWidth - cx), Math.abs((i+1)*cellWidth - cx));
+			for (int j=y0; j<=y1; j++)
+			{
+				double dy = Math.max(Math.abs(j*cellHeight - cy), Math.abs((j+1)*cellHeight - cy));
+				if (dx*dx + dy*dy > d2) continue;
+
+				int c = i*cellsY + j;
+				int[] full = massive ? massiveFull : branchingFull;
+				int other = massive ? branchingFull[c] : massiveFull[c];
+				int kind = massive ? MASSIVE : BRANCHING;
+				if (add)
+				{
+					if (full[c]++ == 0)
+					{
+						take(kind, c);
+						if (other == 0) take(ALGA, c);
+					}
+				}
+				else
+				{
+					if (--full[c] == 0)
+					{
+						put(kind, c);
+						if (other == 0) put(ALGA, c);
+					}
+				}
+			}
+		}
+	}
+
+	private void take(int kind, int c)
+	{
+		int p = freePos[kind][c];
+		int last = free[kind][--numFree[kind]];
+		free[kind][p] = last;
+		freePos[kind][last] = p;
+	}
+
+	private void put(int kind, int c)
+	{
+		free[kind][numFree[kind]] = c;
+		freePos[kind][c] = numFree[kind]++;
+	}
+
+	/**
+	 * @param kind the kind of settler
+	 * @param n the number of settlers landing anywhere on the reef
+	 * @return the number of them landing in cells that are not full -- binomially distributed
+	 */
+	public int settlers(int kind, int n)
+	{
+		double p = (double)numFree[kind] / (cellsX*cellsY);
+		int k = 0;
+		for (int i=Sampling.next(sim.random, -1, p); i<n; i=Sampling.next(sim.random, i, p)) k++;
+		return k;
+	}
+
+	/**
+	 * Draws a position within the cells that are not full -- stored in {@link #x} and {@link #y}
+	 */
+	public void nextPosition(int kind)
+	{
+		int c = free[kind][sim.random.nextInt(numFree[kind])];
+		x = ((c / cellsY) + sim.random.nextDouble()) * cellWidth;
+		y = ((c % cellsY) + sim.random.nextDouble()) * cellHeight;
+	}
+
+	/**
+	 * @param kind the kind of settler
+	 * @param radius the radius of the settler
+	 * @return true if a settler at (px, py) would be killed by the colony it lands in
+	 */
+	public boolean doomed(int kind, double px, double py, double radius)
+	{
+		return doomed(kind, px, py, radius, null);
+	}
+
+	/**
+	 * @param parent a colony not taken into account -- the parent of a fragment, which may break right after
+	 * @return true if a settler at (px, py) would be killed by the colony it lands in
+	 */
+	public boolean doomed(int kind, double px, double py, double radius, Object parent)
+	{
+		double size = Math.PI * radius*radius;
+		Bag b = sim.coverage.candidates(px, py);
+		for (int i=0; i<b.numObjs; i++)
+		{
+			Object o = b.objs[i];
+			if (o == parent) continue;
+			if (o instanceof MassiveCoral)
+			{
+				MassiveCoral mC = (MassiveCoral) o;
+				if (mC.getBleached() || kind == BRANCHING) continue;
+				if (kind == MASSIVE && mC.getRadius() > radius + dist(mC.sendXPos(), mC.sendYPos(), px, py)) return true;
+				if (kind == ALGA && mC.sendSize() > size && mC.contains(px, py)) return true;
+			}
+			else
+			{
+				BranchingCoral bC = (BranchingCoral) o;
+				if (bC.getBleached() || kind == MASSIVE) continue;
+				if (bC.getRadius() > radius + dist(bC.sendXPos(), bC.sendYPos(), px, py)) return true;
+			}
+		}
+		return false;
+	}
+
+	private static double dist(double x1, double y1, double x2, double y2)
+	{
+		return Math.sqrt((x1-x2)*(x1-x2) + (y1-y2)*(y1-y2));
+	}
+}
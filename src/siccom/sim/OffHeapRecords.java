@@ -0,0 +1,155 @@
+package siccom.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Keeps the {@link Records} of a store outside of the heap, so the state of millions of agents
+ * adds nothing to the work of the garbage collector.
+ * <p>
+ * A record holds the doubles followed by the ints.
+ * The records lie in chunks of 2^14 records; a chunk is a direct buffer or, if a file is given,
+ * a region of that file mapped into memory. The store grows by chunks, so no record is ever copied.
+ * @author andreas
+ *
+ */
+public class OffHeapRecords extends Records
+{
+	static final int CHUNK_BITS = 14;
+	static final int CHUNK_SLOTS = 1 << CHUNK_BITS;
+
+	final int recordSize;
+	/**
+	 * The offset of the ints within a record
+	 */
+	final int intOffset;
+	ByteBuffer[] chunks = new ByteBuffer[0];
+	/**
+	 * The mapped file -- null if the chunks are direct buffers
+	 */
+	FileChannel channel;
+
+	/**
+	 * @param doubles the number of doubles of a record
+	 * @param ints the number of ints of a record
+	 * @param file the file to map the records into -- null to keep them in direct buffers
+	 */
+	public OffHeapRecords(int doubles, int ints, File file) throws IOException
+	{
+		super(doubles, ints);
+		intOffset = 8*doubles;
+		recordSize = intOffset + 4*ints;
+		if (file != null)
+		{
+			if (file.getParentFile() != null) file.getParentFile().mkdirs();
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.setLength(0);
+			channel = raf.getChannel();
+		}
+	}
+
+	private ByteBuffer chunk(int s)
+	{
+		return chunks[s >>> CHUNK_BITS];
+	}
+
+	private int offset(int s)
+	{
+		return (s & (CHUNK_SLOTS-1)) * recordSize;
+	}
+
+	@Override
+	public double getDouble(int s, int field)
+	{
+		return chunk(s).getDouble(offset(s) + 8*field);
+	}
+
+	@Override
+	public void setDouble(int s, int field, double value)
+	{
+		chunk(s).putDouble(offset(s) + 8*field, value);
+	}
+
+	@Override
+	public int getInt(int s, int field)
+	{
+		return chunk(s).getInt(offset(s) + intOffset + 4*field);
+	}
+
+	@Override
+	public void setInt(int s, int field, int value)
+	{
+		chunk(s).putInt(offset(s) + intOffset + 4*field, value);
+	}
+
+	@Override
+	protected void resize(int n)
+	{
+		int needed = (n + CHUNK_SLOTS-1) >>> CHUNK_BITS;
+		if (needed <= chunks.length) return;
+		int first = chunks.length;
+		chunks = Arrays.copyOf(chunks, needed);
+		long chunkBytes = (long)CHUNK_SLOTS * recordSize;
+		for (int c=first; c<needed; c++)
+		{
+			ByteBuffer b;
+			if (channel == null) b = ByteBuffer.allocateDirect((int)chunkBytes);
+			else
+			{
+				try
+				{
+					b = channel.map(FileChannel.MapMode.READ_WRITE, c*chunkBytes, chunkBytes);
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException("Cannot map chunk " + c + " of the store", e);
+				}
+			}
+			chunks[c] = b.order(ByteOrder.nativeOrder());
+		}
+	}
+
+	@Override
+	protected void wipe(int s)
+	{
+		ByteBuffer b = chunk(s);
+		int o = offset(s);
+		for (int k=0; k<recordSize; k+=4) b.putInt(o + k, 0);
+	}
+
+	@Override
+	protected void copyTo(Records to, int n)
+	{
+		OffHeapRecords t = (OffHeapRecords) to;
+		t.resize(n);
+		for (int c=0; c<<CHUNK_BITS < n; c++)
+		{
+			int bytes = Math.min(CHUNK_SLOTS, n - (c<<CHUNK_BITS)) * recordSize;
+			ByteBuffer from = chunks[c].duplicate();
+			from.position(0).limit(bytes);
+			ByteBuffer into = t.chunks[c].duplicate();
+			into.position(0);
+			into.put(from);
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if (channel == null) return;
+		try
+		{
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot close the store: " + e.getMessage());
+		}
+		channel = null;
+	}
+}
@@ -6,15 +6,16 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 
-import sim.util.Bag;
+import java.awt.Color;
 
 /**
- * Writes the output files to the output folder
+ * Writes the output files to the output folder -- the grouped and temperature output
+ * from the monthly {@link ReefSnapshot}s, the disturbances as they happen
  * @author andreas
  *
  */
 
-public class OutputWriter
+public class OutputWriter implements ReefSink
 {
 
 	public static final long serialVersionUID = 6948161854909261168L;
@@ -63,6 +64,10 @@ public class OutputWriter
 	 * The print writer for disturbance data
 	 */
 	private PrintWriter disWriter;
+	/**
+	 * IF true -- the individual output is written
+	 */
+	public boolean writeIndividuals = false;
 
 	/**
 	 * This class
@@ -135,65 +140,53 @@ public class OutputWriter
 		disWriter.flush();
 	}
 	
-	public void temperatureOutput(int steps, double monthMean, double ltsm, double minHeatRate, double heatRate, boolean bleachEvent)
+	/**
+	 * write temperature output
+	 */
+	public void temperatureOutput(ReefSnapshot s)
 	{
-		tempWriter.append( steps + "\t");
-		tempWriter.append( conf.numform_2.format(monthMean) + "\t");
-		tempWriter.append( conf.numform_2.format(ltsm) + "\t");
-		tempWriter.append( conf.numform_3.format(minHeatRate) + "\t");
-		tempWriter.append( conf.numform_3.format(heatRate) + "\t");
-		tempWriter.append( bleachEvent + "\n");
+		tempWriter.append( s.step + "\t");
+		tempWriter.append( conf.numform_2.format(s.meanTemp) + "\t");
+		tempWriter.append( conf.numform_2.format(s.longTermSummerMeanTemp) + "\t");
+		tempWriter.append( conf.numform_3.format(s.minHeatRate) + "\t");
+		tempWriter.append( conf.numform_3.format(s.heatRate) + "\t");
+		tempWriter.append( s.bleaching + "\n");
 		tempWriter.flush();
 	}
 	
 	
 	/**
 	 * write individual output
-	 * @param steps
+	 * @param s a snapshot listing the colonies
 	 */
-	public void individualOutput(int steps)
+	public void individualOutput(ReefSnapshot s)
 	{
-		Bag m = sim.massiveCorals.getAllObjects();
-		for (int i=0; i<m.size(); i++ )
+		ReefSnapshot.Colonies c = s.getColonies();
+		for (int i=0; i<c.size(); i++ )
 		{	
-//			steps = sim.steps;
-			MassiveCoral mc = (MassiveCoral) m.objs[i];
-			indWriter.append( steps + "\t"  );  
-			indWriter.append( getMonth(steps) +"\t"  );  
-			indWriter.append(  getYear(steps) + "\t" );
-			indWriter.append( mc.getName() + "\t");
-			indWriter.append( conf.numform3.format(mc.color.getRed()) + "," 
-							  + conf.numform3.format(mc.color.getGreen()) + "," 
-							  + conf.numform3.format(mc.color.getBlue())+ "\t");
-			indWriter.append( conf.numform_2.format(mc.xPos) + "\t");
-			indWriter.append( conf.numform_2.format(mc.yPos) + "\t");
-			indWriter.append( conf.numform_2.format(mc.radius*Siccom.resolution) + "\t");
-			indWriter.append( conf.numform_2.format(mc.diameter*Siccom.resolution) + "\t");
-			indWriter.append( conf.numform_8.format(mc.sendSize()*Math.pow(Siccom.resolution, 2.0)) + "\t");
-			indWriter.append( mc.getAge() + "\n");
-		}
-		
-		Bag b = sim.branchingCorals.getAllObjects();
-		for (int i=0; i<b.size(); i++ )
-		{	
-			BranchingCoral bc = (BranchingCoral) b.objs[i];
-			indWriter.append( steps + "\t"  );  
-			indWriter.append( getMonth(steps) +"\t"  );  
-			indWriter.append(  getYear(steps) + "\t" );
-			indWriter.append( bc.getName() + "\t");
-			indWriter.append( conf.numform3.format(bc.color.getRed()) + "," 
-					  + conf.numform3.format(bc.color.getGreen()) + "," 
-					  + conf.numform3.format(bc.color.getBlue())+ "\t");
-			indWriter.append( conf.numform_2.format(bc.xPos) + "\t");
-			indWriter.append( conf.numform_2.format(bc.yPos) + "\t");
-			indWriter.append( conf.numform_2.format(bc.radius*Siccom.resolution) + "\t");
-			indWriter.append( conf.numform_2.format(bc.diameter*Siccom.resolution) + "\t");
-			indWriter.append( conf.numform_8.format(bc.sendSize()*Math.pow(Siccom.resolution, 2.0)) + "\t");
-			indWriter.append( bc.getAge() + "\n");
-			
+			int g = c.getGroup(i);
+			indWriter.append( s.step + "\t"  );  
+			indWriter.append( getMonth(s.step) +"\t"  );  
+			indWriter.append(  getYear(s.step) + "\t" );
+			indWriter.append( s.getName(g) + "\t");
+			indWriter.append( format(s.getColor(g)) + "\t");
+			indWriter.append( conf.numform_2.format(c.getX(i)) + "\t");
+			indWriter.append( conf.numform_2.format(c.getY(i)) + "\t");
+			indWriter.append( conf.numform_2.format(c.getRadius(i)*Siccom.resolution) + "\t");
+			indWriter.append( conf.numform_2.format(c.getDiameter(i)*Siccom.resolution) + "\t");
+			indWriter.append( conf.numform_8.format(c.getSize(i)*Math.pow(Siccom.resolution, 2.0)) + "\t");
+			indWriter.append( c.getAge(i) + "\n");
 		}
 		indWriter.flush();
 	}
+	
+	private String format(Color c)
+	{
+		return conf.numform3.format(c.getRed()) + "," 
+			 + conf.numform3.format(c.getGreen()) + "," 
+			 + conf.numform3.format(c.getBlue());
+	}
+	
 	/**
 	 * Determine the right month
 	 * @param steps
@@ -225,49 +218,58 @@ public class OutputWriter
 	/**
 	 * Writes the grouped output file
 	 */
-	public void groupedOutput(int steps)
+	public void groupedOutput(ReefSnapshot s)
 	{
-		for (MassiveGroup mG : sim.maCoGroups)
-		{
-			groupWriter.append( steps + "\t"  );  
-			groupWriter.append( getMonth(steps) +"\t"  );  
-			groupWriter.append(  conf.numform_3.format(getYear(steps)) + "\t" );
-			if (mG.name.length() >= 8) groupWriter.append( mG.name + "\t");
-			else 	groupWriter.append( mG.name + "\t");
-			groupWriter.append( conf.numform3.format(mG.color.getRed()) + "," 
-							  + conf.numform3.format(mG.color.getGreen()) + "," 
-							  + conf.numform3.format(mG.color.getBlue())+ "\t");
-			groupWriter.append(mG.getNum() + "\t");
-			groupWriter.append(conf.numform_1.format(mG.getCover()));
-			groupWriter.append("\n");
-		}
-		
-		for (BranchingGroup bG : sim.braCoGroups)
+		for (int g=0; g<s.getNumGroups(); g++)
 		{
-			groupWriter.append( steps + "\t"  );  
-			groupWriter.append( getMonth(steps) +"\t"  );  
-			groupWriter.append(  conf.numform_3.format(getYear(steps)) + "\t" );
-			if (bG.name.length() >= 8) groupWriter.append( bG.name + "\t");
-			else 	groupWriter.append( bG.name + "\t");
-			groupWriter.append( conf.numform3.format(bG.color.getRed()) + "," 
-					  + conf.numform3.format(bG.color.getGreen()) + "," 
-					  + conf.numform3.format(bG.color.getBlue())+ "\t");
-			groupWriter.append(bG.getNum() + "\t");
-			groupWriter.append(conf.numform_1.format(bG.getCover()));
+			groupWriter.append( s.step + "\t"  );  
+			groupWriter.append( getMonth(s.step) +"\t"  );  
+			groupWriter.append(  conf.numform_3.format(getYear(s.step)) + "\t" );
+			groupWriter.append( s.getName(g) + "\t");
+			groupWriter.append( format(s.getColor(g)) + "\t");
+			groupWriter.append(s.getCount(g) + "\t");
+			groupWriter.append(conf.numform_1.format(s.getCover(g)));
 			groupWriter.append("\n");
 		}
-		groupWriter.append( steps + "\t"  );  
-		groupWriter.append( getMonth(steps) +"\t"  );  
-		groupWriter.append(  conf.numform_3.format(getYear(steps)) + "\t" );
+		groupWriter.append( s.step + "\t"  );  
+		groupWriter.append( getMonth(s.step) +"\t"  );  
+		groupWriter.append(  conf.numform_3.format(getYear(s.step)) + "\t" );
 		groupWriter.append( "Algae" + "\t");
-		groupWriter.append( conf.numform3.format(sim.conf.algaColor.getRed()) + "," 
-				  + conf.numform3.format(sim.conf.algaColor.getGreen()) + "," 
-				  + conf.numform3.format(sim.conf.algaColor.getBlue())+ "\t");
-		groupWriter.append( sim.numAlgae + "\t");
-		groupWriter.append(conf.numform_1.format(sim.algalCoverPercent) + "\n");
+		groupWriter.append( format(sim.conf.algaColor) + "\t");
+		groupWriter.append( s.numAlgae + "\t");
+		groupWriter.append(conf.numform_1.format(s.algalCover) + "\n");
 		groupWriter.flush();
 	}
 	
+	/**
+	 * The individual output is written every indivOutInter months if writeIndividuals is set
+	 */
+	@Override
+	public boolean wantsColonies(int step)
+	{
+		return writeIndividuals && step != 0 && step % Siccom.indivOutInter == 0;
+	}
+	
+	@Override
+	public void receive(ReefSnapshot s)
+	{
+		groupedOutput(s);
+		temperatureOutput(s);
+		if (s.getColonies() != null) individualOutput(s);
+	}
+	
+	/**
+	 * Closes the output files
+	 */
+	@Override
+	public void close()
+	{
+		if (indWriter != null) indWriter.close();
+		if (groupWriter != null) groupWriter.close();
+		if (tempWriter != null) tempWriter.close();
+		if (disWriter != null) disWriter.close();
+	}
+	
 	/**
 	 * Write out the parameter settings to the simulation output file
 	 */
@@ -287,18 +289,15 @@ public class OutputWriter
 		System.out.println();
 		
 		System.out.println("Environment Parameters");
-//		System.out.println("disser1\t\t\t" + sim.disser1);
-		System.out.println( sim.disturbMaxSize1*Siccom.dimensionConv_meters + "\t|\t" + "disturbMaxSize1\t" + "\t|\t ---" );
-		System.out.println( sim.disturbMinSize1*Siccom.dimensionConv_meters + "\t|\t" + "disturbMinSize1\t" + "\t|\t ---" );
-		System.out.println( sim.disturbMeanInterval1 + "\t|\t" + "disturbMeanInterval1" + "\t|\t ---" );
-		System.out.println( sim.disturbSDPercent1 + "\t|\t" + "disturbSDInterval1" + "\t|\t ---" );
-		System.out.println( sim.disturbMaxNumber1 + "\t|\t" + "disturbMaxNumber1" + "\t|\t ---" );
-//		System.out.println("disser1\t\t\t" + sim.disser2);
-		System.out.println( sim.disturbMaxSize2*Siccom.dimensionConv_meters + "\t|\t" + "disturbMaxSize2\t" + "\t|\t ---" );
-		System.out.println( sim.disturbMinSize2*Siccom.dimensionConv_meters + "\t|\t" + "disturbMinSize2\t" + "\t|\t ---" );
-		System.out.println( sim.disturbMeanInterval2 + "\t|\t" + "disturbMeanInterval2" + "\t|\t ---" );
-		System.out.println( sim.disturbSDPercent2 + "\t|\t" + "disturbSDInterval2" + "\t|\t ---" );
-		System.out.println( sim.disturbMaxNumber2 + "\t|\t" + "disturbMaxNumber2" + "\t|\t ---" );
+		for (DisturbanceType d : sim.disturbanceTypes)
+		{
+			int n = d.number;
+			System.out.println( d.maxSize*Siccom.dimensionConv_meters + "\t|\t" + "disturbMaxSize" + n + "\t" + "\t|\t ---" );
+			System.out.println( d.minSize*Siccom.dimensionConv_meters + "\t|\t" + "disturbMinSize" + n + "\t" + "\t|\t ---" );
+			System.out.println( d.meanInterval + "\t|\t" + "disturbMeanInterval" + n + "\t|\t ---" );
+			System.out.println( d.sdPercent + "\t|\t" + "disturbSDInterval" + n + "\t|\t ---" );
+			System.out.println( d.maxNumber + "\t|\t" + "disturbMaxNumber" + n + "\t|\t ---" );
+		}
 		System.out.println( sim.minDHD + "\t|\t" + "minDHD" + "\t\t\t|\t ---" );
 		System.out.println( sim.maxHR + "\t|\t" + "maxHR" + "\t\t\t|\t ---" );
 		System.out.println( sim.bleachInterval / 12 + "\t|\t" + "bleachInterval\t" + "\t|\t ---" );
@@ -0,0 +1,119 @@
+package siccom.sim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Estimates the quantiles of a stream of values that are not negative, without keeping the values.
+ * A value falls into the bucket of the power of gamma just above it, so every quantile is returned
+ * within the relative accuracy given (for abundances and covers alike); zeros are counted apart.
+ * Sketches of the same accuracy are merged by adding their buckets.
+ * @author andreas
+ *
+ */
+public class QuantileSketch
+{
+	final double accuracy;
+	final double gamma;
+	final double logGamma;
+	long zeros;
+	long n;
+	/**
+	 * The count of each bucket -- bucket i is counts[i-offset]
+	 */
+	long[] counts = new long[0];
+	int offset;
+
+	/**
+	 * @param accuracy the relative accuracy of the quantiles -- e.g. 0.01
+	 */
+	public QuantileSketch(double accuracy)
+	{
+		this.accuracy = accuracy;
+		gamma = (1 + accuracy) / (1 - accuracy);
+		logGamma = Math.log(gamma);
+	}
+
+	public void add(double x)
+	{
+		n++;
+		if (x <= 0)
+		{
+			zeros++;
+			return;
+		}
+		int i = (int)Math.ceil(Math.log(x) / logGamma);
+		ensure(i, i);
+		counts[i-offset]++;
+	}
+
+	/**
+	 * Makes room for the buckets from lo to hi
+	 */
+	private void ensure(int lo, int hi)
+	{
+		if (counts.length == 0)
+		{
+			counts = new long[hi-lo+1];
+			offset = lo;
+			return;
+		}
+		int from = Math.min(lo, offset);
+		int to = Math.max(hi, offset + counts.length - 1);
+		if (from == offset && to == offset + counts.length - 1) return;
+		long[] c = new long[to-from+1];
+		System.arraycopy(counts, 0, c, offset-from, counts.length);
+		counts = c;
+		offset = from;
+	}
+
+	/**
+	 * Adds the values of another sketch of the same accuracy
+	 */
+	public void merge(QuantileSketch o)
+	{
+		if (o.accuracy != accuracy) throw new IllegalArgumentException("Sketches of different accuracy cannot be merged");
+		n += o.n;
+		zeros += o.zeros;
+		if (o.counts.length == 0) return;
+		ensure(o.offset, o.offset + o.counts.length - 1);
+		for (int i=0; i<o.counts.length; i++) counts[o.offset+i-offset] += o.counts[i];
+	}
+
+	/**
+	 * @param q the quantile between 0 and 1
+	 * @return the estimated quantile -- NaN if the sketch is empty
+	 */
+	public double quantile(double q)
+	{
+		if (n == 0) return Double.NaN;
+		long rank = (long)Math.floor(q * (n-1));
+		if (rank < zeros) return 0;
+		long seen = zeros;
+		for (int i=0; i<counts.length; i++)
+		{
+			seen += counts[i];
+			if (seen > rank) return 2 * Math.pow(gamma, i+offset) / (gamma + 1);
+		}
+		return 2 * Math.pow(gamma, offset+counts.length-1) / (gamma + 1);
+	}
+
+	void write(DataOutputStream out) throws IOException
+	{
+		out.writeLong(n);
+		out.writeLong(zeros);
+		out.writeInt(offset);
+		out.writeInt(counts.length);
+		for (long c : counts) out.writeLong(c);
+	}
+
+	void read(DataInputStream in) throws IOException
+	{
+		n = in.readLong();
+		zeros = in.readLong();
+		offset = in.readInt();
+		counts = new long[in.readInt()];
+		for (int i=0; i<counts.length; i++) counts[i] = in.readLong();
+	}
+}
@@ -0,0 +1,78 @@
+package siccom.sim;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The records of an {@link AgentStore} -- one record of a fixed number of doubles and ints per slot,
+ * the fields are addressed by their index.
+ * The records are kept either in arrays on the heap ({@link HeapRecords})
+ * or outside of the heap, optionally in a mapped file ({@link OffHeapRecords}).
+ * @author andreas
+ *
+ */
+public abstract class Records
+{
+	/**
+	 * The number of doubles and ints of a record
+	 */
+	final int doubles, ints;
+
+	/**
+	 * Creates the records chosen for the simulation
+	 * @param sim the simulation
+	 * @param name the name of the population -- names the mapped file
+	 * @param doubles the number of doubles of a record
+	 * @param ints the number of ints of a record
+	 */
+	public static Records create(Siccom sim, String name, int doubles, int ints)
+	{
+		if (!sim.offHeapStores) return new HeapRecords(doubles, ints);
+		try
+		{
+			File file = sim.storeDirectory == null ? null : new File(sim.storeDirectory, name + ".store");
+			return new OffHeapRecords(doubles, ints, file);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot map the store " + name + " -- it is kept on the heap: " + e.getMessage());
+			return new HeapRecords(doubles, ints);
+		}
+	}
+
+	protected Records(int doubles, int ints)
+	{
+		this.doubles = doubles;
+		this.ints = ints;
+	}
+
+	public abstract double getDouble(int s, int field);
+
+	public abstract void setDouble(int s, int field, double value);
+
+	public abstract int getInt(int s, int field);
+
+	public abstract void setInt(int s, int field, int value);
+
+	/**
+	 * Makes room for n records
+	 */
+	protected abstract void resize(int n);
+
+	/**
+	 * Sets all fields of a record to zero
+	 */
+	protected abstract void wipe(int s);
+
+	/**
+	 * Copies the first n records into other records of the same kind and size
+	 */
+	protected abstract void copyTo(Records to, int n);
+
+	/**
+	 * Gives back the resources of the records -- they are not used afterwards
+	 */
+	public void close()
+	{
+	}
+}
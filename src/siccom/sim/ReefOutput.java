@@ -0,0 +1,154 @@
+package siccom.sim;
+
+import java.awt.Color;
+import java.util.ArrayList;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.Bag;
+
+/**
+ * Builds the {@link ReefSnapshot} of each month once and hands it to all registered {@link ReefSink}s.
+ * The statistics are taken from the counts and covers gathered earlier in the month,
+ * the colonies are only listed if a sink asks for them.
+ * @author andreas
+ *
+ */
+public class ReefOutput implements Steppable
+{
+	private static final long serialVersionUID = -2315509816413520784L;
+
+	Siccom sim;
+	/**
+	 * The sinks -- not written to checkpoints, they are registered again after loading
+	 */
+	transient ArrayList<ReefSink> sinks;
+	/**
+	 * The names and colours of the groups -- shared by all snapshots
+	 */
+	String[] names;
+	Color[] colors;
+	/**
+	 * The last snapshot built -- null before the first month
+	 */
+	public transient ReefSnapshot last;
+
+	public ReefOutput(Siccom sim)
+	{
+		this.sim = sim;
+		int n = sim.maCoGroups.size() + sim.braCoGroups.size();
+		names = new String[n];
+		colors = new Color[n];
+		int i = 0;
+		for (MassiveGroup mG : sim.maCoGroups)
+		{
+			names[i] = mG.name;
+			colors[i++] = mG.color;
+		}
+		for (BranchingGroup bG : sim.braCoGroups)
+		{
+			names[i] = bG.name;
+			colors[i++] = bG.color;
+		}
+	}
+
+	public void addSink(ReefSink sink)
+	{
+		if (sinks == null) sinks = new ArrayList<ReefSink>();
+		sinks.add(sink);
+	}
+
+	public void removeSink(ReefSink sink)
+	{
+		if (sinks != null) sinks.remove(sink);
+	}
+
+	@Override
+	public void step(SimState state)
+	{
+		if (sinks == null || sinks.isEmpty()) return;
+		last = snapshot((int) sim.schedule.getSteps());
+		for (int i=0; i<sinks.size(); i++) sinks.get(i).receive(last);
+	}
+
+	/**
+	 * Builds the snapshot of a month
+	 */
+	ReefSnapshot snapshot(int step)
+	{
+		int[] counts = new int[names.length];
+		double[] covers = new double[names.length];
+		int i = 0;
+		for (MassiveGroup mG : sim.maCoGroups)
+		{
+			counts[i] = mG.getNum();
+			covers[i++] = mG.getCover();
+		}
+		for (BranchingGroup bG : sim.braCoGroups)
+		{
+			counts[i] = bG.getNum();
+			covers[i++] = bG.getCover();
+		}
+
+		ReefSnapshot.Colonies colonies = null;
+		for (int k=0; k<sinks.size(); k++)
+			if (sinks.get(k).wantsColonies(step))
+			{
+				colonies = colonies();
+				break;
+			}
+
+		Temperature t = sim.temp;
+		return new ReefSnapshot(step, sim.maCoGroups.size(), names, colors, counts, covers,
+				sim.numAlgae, sim.algalCoverPercent, t.meanTemp, t.longTermSummerMeanTemp,
+				t.heatRate, sim.minHR, sim.isBleaching(), colonies);
+	}
+
+	/**
+	 * Lists the living colonies -- without the ghosts of the neighbouring strips
+	 */
+	private ReefSnapshot.Colonies colonies()
+	{
+		Bag m = sim.massiveOrder.agents();
+		Bag b = sim.branchingOrder.agents();
+		int n = 0;
+		for (int i=0; i<m.numObjs; i++) if (!((MassiveCoral) m.objs[i]).ghost()) n++;
+		for (int i=0; i<b.numObjs; i++) if (!((BranchingCoral) b.objs[i]).ghost()) n++;
+		ReefSnapshot.Colonies c = new ReefSnapshot.Colonies(n);
+		n = 0;
+		for (int i=0; i<m.numObjs; i++)
+		{
+			MassiveCoral mc = (MassiveCoral) m.objs[i];
+			if (mc.ghost()) continue;
+			c.group[n] = mc.mG.index;
+			c.age[n] = mc.getAge();
+			c.x[n] = mc.sendXPos();
+			c.y[n] = mc.sendYPos();
+			c.radius[n] = mc.getRadius();
+			c.diameter[n] = mc.getDiameter();
+			c.size[n++] = mc.sendSize();
+		}
+		for (int i=0; i<b.numObjs; i++)
+		{
+			BranchingCoral bc = (BranchingCoral) b.objs[i];
+			if (bc.ghost()) continue;
+			c.group[n] = bc.bG.index;
+			c.age[n] = bc.getAge();
+			c.x[n] = bc.sendXPos();
+			c.y[n] = bc.sendYPos();
+			c.radius[n] = bc.getRadius();
+			c.diameter[n] = bc.getDiameter();
+			c.size[n++] = bc.sendSize();
+		}
+		return c;
+	}
+
+	/**
+	 * Closes all sinks
+	 */
+	public void close()
+	{
+		if (sinks == null) return;
+		for (int i=0; i<sinks.size(); i++) sinks.get(i).close();
+	}
+}
@@ -0,0 +1,26 @@
+package siccom.sim;
+
+/**
+ * Receives the monthly {@link ReefSnapshot}s of a simulation -- files, charts, collectors.
+ * Sinks are registered with {@link ReefOutput#addSink}.
+ * @author andreas
+ *
+ */
+public interface ReefSink
+{
+	/**
+	 * @param step the month
+	 * @return true if the snapshot of this month shall list the colonies
+	 */
+	boolean wantsColonies(int step);
+
+	/**
+	 * Takes the snapshot of a month. The snapshot may be kept, it is never changed.
+	 */
+	void receive(ReefSnapshot snapshot);
+
+	/**
+	 * Called once when the simulation finishes
+	 */
+	void close();
+}
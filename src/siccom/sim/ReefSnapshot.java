@@ -0,0 +1,109 @@
+package siccom.sim;
+
+import java.awt.Color;
+
+/**
+ * The state of the reef at the end of a month, as handed to the {@link ReefSink}s.
+ * A snapshot is built once per month by the {@link ReefOutput} and never changed afterwards,
+ * so any number of sinks may read it -- also from other threads.
+ * <p>
+ * The groups are numbered as in the simulation: the massive groups, then the branching groups.
+ * The colonies are only listed if a sink asked for them in this month.
+ * @author andreas
+ *
+ */
+public final class ReefSnapshot
+{
+	/**
+	 * The colonies of a month in parallel arrays -- one entry per colony
+	 */
+	public static final class Colonies
+	{
+		final int[] group, age;
+		final double[] x, y, radius, diameter, size;
+
+		Colonies(int n)
+		{
+			group = new int[n];
+			age = new int[n];
+			x = new double[n];
+			y = new double[n];
+			radius = new double[n];
+			diameter = new double[n];
+			size = new double[n];
+		}
+
+		public int size() { return group.length; }
+		public int getGroup(int i) { return group[i]; }
+		public int getAge(int i) { return age[i]; }
+		public double getX(int i) { return x[i]; }
+		public double getY(int i) { return y[i]; }
+		public double getRadius(int i) { return radius[i]; }
+		public double getDiameter(int i) { return diameter[i]; }
+		public double getSize(int i) { return size[i]; }
+	}
+
+	/**
+	 * The month (time step) of the snapshot
+	 */
+	public final int step;
+	/**
+	 * The number of massive groups -- the branching groups follow them
+	 */
+	public final int numMassiveGroups;
+	/**
+	 * The names and colours of the groups -- the same arrays for all snapshots of a run
+	 */
+	final String[] names;
+	final Color[] colors;
+	final int[] counts;
+	final double[] covers;
+	public final int numAlgae;
+	public final double algalCover;
+	public final double meanTemp;
+	public final double longTermSummerMeanTemp;
+	public final double heatRate;
+	public final double minHeatRate;
+	public final boolean bleaching;
+	final Colonies colonies;
+
+	ReefSnapshot(int step, int numMassiveGroups, String[] names, Color[] colors, int[] counts, double[] covers,
+			int numAlgae, double algalCover, double meanTemp, double longTermSummerMeanTemp,
+			double heatRate, double minHeatRate, boolean bleaching, Colonies colonies)
+	{
+		this.step = step;
+		this.numMassiveGroups = numMassiveGroups;
+		this.names = names;
+		this.colors = colors;
+		this.counts = counts;
+		this.covers = covers;
+		this.numAlgae = numAlgae;
+		this.algalCover = algalCover;
+		this.meanTemp = meanTemp;
+		this.longTermSummerMeanTemp = longTermSummerMeanTemp;
+		this.heatRate = heatRate;
+		this.minHeatRate = minHeatRate;
+		this.bleaching = bleaching;
+		this.colonies = colonies;
+	}
+
+	/**
+	 * @return the time of the snapshot in years
+	 */
+	public double getYear() { return step/12.0; }
+	public int getNumGroups() { return names.length; }
+	public String getName(int group) { return names[group]; }
+	public Color getColor(int group) { return colors[group]; }
+	/**
+	 * @return the number of colonies of a group
+	 */
+	public int getCount(int group) { return counts[group]; }
+	/**
+	 * @return the relative cover of a group in percent
+	 */
+	public double getCover(int group) { return covers[group]; }
+	/**
+	 * @return the colonies -- null if no sink asked for them in this month
+	 */
+	public Colonies getColonies() { return colonies; }
+}
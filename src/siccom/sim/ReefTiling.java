@@ -0,0 +1,418 @@
+package siccom.sim;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.jhotdraw.geom.Polygon2D;
+
+import ec.util.MersenneTwisterFast;
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.Bag;
+
+/**
+ * Splits the reef into square tiles which step in parallel.
+ * Each tile owns the agents whose centre lies within its bounds and the turf cells within them,
+ * and steps them on one thread with a random generator of its own, seeded from the run seed and the tile index.
+ * A month has three parts:
+ * <ol>
+ * <li>the barrier: the agents that have died since the last month go back to their pools,
+ * the living agents are handed to the tiles they lie in -- which migrates new fragments, recruits and immigrants --,
+ * the corals overlapping the turf of each tile are listed and the stores copy their records into their halos</li>
+ * <li>the tiles step their agents and then update their turf cells. An agent writes only its own record and the turf
+ * of its own tile and reads its neighbours from the halos, i.e. as they were at the barrier, whichever tile they belong to.
+ * The fields, the coverage index, the occupancy map and the pools are not touched</li>
+ * <li>the commit: tile by tile, the dead agents leave the fields, the living ones are indexed and marked anew,
+ * then the fragments of the month settle</li>
+ * </ol>
+ * So the result does not depend on the number of threads: each tile draws from its own generator
+ * and the shared structures only change in the barrier and the commit, in the order of the tiles.
+ * <p>
+ * The tiles are processed on a work-stealing pool and are split by their amount of work
+ * (their agents and their turf cells times the overlapping corals), so crowded tiles are shared between threads.
+ * @author andreas
+ *
+ */
+public class ReefTiling implements Steppable
+{
+	private static final long serialVersionUID = 2216398720563372471L;
+
+	/**
+	 * One tile of the reef
+	 */
+	static class Tile
+	{
+		/**
+		 * The random generator of the agents of this tile
+		 */
+		MersenneTwisterFast random;
+		/**
+		 * The ids found by the neighbour searches of the agents of this tile
+		 */
+		NeighbourGrid.Ids ids = new NeighbourGrid.Ids();
+		/**
+		 * The living agents owned by this tile -- sleeping massive corals are left out
+		 */
+		Bag massive = new Bag();
+		Bag branching = new Bag();
+		Bag algae = new Bag();
+		/**
+		 * The turf cells owned by this tile
+		 */
+		TurfCell[] cells;
+		/**
+		 * The corals overlapping the turf cells of this tile
+		 */
+		Bag turfMassive = new Bag();
+		Bag turfBranching = new Bag();
+		/**
+		 * The polygon the outlines of the massive corals are drawn into while the turf is updated
+		 */
+		Polygon2D.Double outline = new Polygon2D.Double();
+		/**
+		 * The fragments shed in this month -- the parent (a branching coral or an alga) and the position of each
+		 */
+		int numFragments;
+		Object[] parents = new Object[16];
+		double[] fragX = new double[16], fragY = new double[16];
+
+		/**
+		 * @param agentWork the work of stepping one agent
+		 * @return the estimated cost of stepping this tile
+		 */
+		long work(long agentWork)
+		{
+			return agentWork * (massive.numObjs + branching.numObjs + algae.numObjs)
+					+ (long)cells.length * (1 + turfMassive.numObjs + turfBranching.numObjs);
+		}
+
+		/**
+		 * Notes a fragment -- it settles when the tile commits
+		 */
+		void fragment(Object parent, double x, double y)
+		{
+			if (numFragments == parents.length)
+			{
+				int n = 2*numFragments;
+				parents = Arrays.copyOf(parents, n);
+				fragX = Arrays.copyOf(fragX, n);
+				fragY = Arrays.copyOf(fragY, n);
+			}
+			parents[numFragments] = parent;
+			fragX[numFragments] = x;
+			fragY[numFragments] = y;
+			numFragments++;
+		}
+
+		/**
+		 * Steps the agents of this tile and updates its turf cells
+		 */
+		void step()
+		{
+			for (int i=0; i<massive.numObjs; i++)
+			{
+				MassiveCoral mC = (MassiveCoral) massive.objs[i];
+				mC.tile = this;
+				mC.step();
+				mC.tile = null;
+			}
+			for (int i=0; i<branching.numObjs; i++)
+			{
+				BranchingCoral bC = (BranchingCoral) branching.objs[i];
+				bC.tile = this;
+				bC.step();
+				bC.tile = null;
+			}
+			for (int i=0; i<algae.numObjs; i++)
+			{
+				Alga a = (Alga) algae.objs[i];
+				a.tile = this;
+				a.step();
+				a.tile = null;
+			}
+			for (int i=0; i<cells.length; i++) cells[i].update(turfMassive, turfBranching, outline);
+		}
+	}
+
+	/**
+	 * Processes a range of tiles -- ranges with a lot of work are split in halves
+	 */
+	class TileTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		int from, to;
+		long work;
+
+		TileTask(int from, int to, long work)
+		{
+			this.from = from;
+			this.to = to;
+			this.work = work;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= 1 || work <= minWork)
+			{
+				for (int i=from; i<to; i++) tiles[i].step();
+				return;
+			}
+
+			// split at half of the work, so both halves cost about the same
+			long half = 0;
+			int mid = from;
+			while (mid < to-1 && half + workPerTile[mid] <= work/2) half += workPerTile[mid++];
+			if (mid == from) half += workPerTile[mid++];
+
+			invokeAll(	new TileTask(from, mid, half),
+						new TileTask(mid, to, work-half));
+		}
+	}
+
+	Siccom sim;
+	/**
+	 * The width and height of a tile in pixels
+	 */
+	int tileSize;
+	/**
+	 * The number of tiles along the width and the height of the simulation area
+	 */
+	int tilesX, tilesY;
+	/**
+	 * All tiles, row by row
+	 */
+	Tile[] tiles;
+	/**
+	 * The work of each tile in the current month
+	 */
+	long[] workPerTile;
+	/**
+	 * Tile ranges with less work are not split any further
+	 */
+	long minWork = 4096;
+	/**
+	 * The work of stepping one agent -- in units of one turf cell meeting one coral
+	 */
+	long agentWork = 32;
+	/**
+	 * The thread pool
+	 */
+	ForkJoinPool pool;
+	/**
+	 * The polygon the outlines of the massive corals are drawn into while they are binned
+	 */
+	Polygon2D.Double outline = new Polygon2D.Double();
+
+	/**
+	 * Sets up the tiles for the turf cells of the simulation
+	 * @param sim the simulation
+	 * @param tileSize the width and height of a tile in pixels
+	 * @param threads the number of threads
+	 */
+	public ReefTiling(Siccom sim, int tileSize, int threads)
+	{
+		this.sim = sim;
+
+		// tiles contain whole turf cells
+		tileSize = Math.max(tileSize, sim.cellWidth);
+		tileSize = tileSize - (tileSize % sim.cellWidth);
+		this.tileSize = tileSize;
+
+		tilesX = (int)Math.ceil((double)sim.cellNumWidth*sim.cellWidth / tileSize);
+		tilesY = (int)Math.ceil((double)sim.cellNumHeight*sim.cellHeight / tileSize);
+		tiles = new Tile[tilesX*tilesY];
+		workPerTile = new long[tiles.length];
+
+		int[] count = new int[tiles.length];
+		Bag t = sim.turf.getAllObjects();
+		for (int i=0; i<t.numObjs; i++)
+		{
+			TurfCell tC = (TurfCell) t.objs[i];
+			count[tileOf(tC.x, tC.y)]++;
+		}
+
+		for (int i=0; i<tiles.length; i++)
+		{
+			tiles[i] = new Tile();
+			tiles[i].cells = new TurfCell[count[i]];
+			tiles[i].random = new MersenneTwisterFast(sim.seed() * 0x9E3779B97F4A7C15L + i);
+			count[i] = 0;
+		}
+		for (int i=0; i<t.numObjs; i++)
+		{
+			TurfCell tC = (TurfCell) t.objs[i];
+			int k = tileOf(tC.x, tC.y);
+			tiles[k].cells[count[k]++] = tC;
+		}
+
+		pool = new ForkJoinPool(Math.max(1, threads));
+	}
+
+	/**
+	 * @return the index of the tile containing a position -- positions beyond the reef belong to the tiles at its edge
+	 */
+	private int tileOf(double x, double y)
+	{
+		int tx = Math.max(0, Math.min((int)Math.floor(x / tileSize), tilesX-1));
+		int ty = Math.max(0, Math.min((int)Math.floor(y / tileSize), tilesY-1));
+		return ty*tilesX + tx;
+	}
+
+	/**
+	 * Lists a coral in every tile whose turf its bounding box overlaps
+	 */
+	private void bin(Object coral, boolean massive, double minX, double minY, double maxX, double maxY)
+	{
+		int x0 = Math.max(0, (int)Math.floor(minX / tileSize));
+		int y0 = Math.max(0, (int)Math.floor(minY / tileSize));
+		int x1 = Math.min(tilesX-1, (int)Math.floor(maxX / tileSize));
+		int y1 = Math.min(tilesY-1, (int)Math.floor(maxY / tileSize));
+
+		for (int ty=y0; ty<=y1; ty++)
+			for (int tx=x0; tx<=x1; tx++)
+			{
+				if (massive) tiles[ty*tilesX + tx].turfMassive.add(coral);
+				else tiles[ty*tilesX + tx].turfBranching.add(coral);
+			}
+	}
+
+	/**
+	 * Gives the agents that have died since the last month back to their pools -- they have left their fields,
+	 * so nothing refers to them any more
+	 */
+	void sweep()
+	{
+		CoralStore m = sim.massiveStore;
+		for (int s=0; s<m.end; s++)
+		{
+			MassiveCoral mC = (MassiveCoral) m.agent(s);
+			if (mC == null || m.is(s, CoralStore.ALIVE)) continue;
+			mC.release();
+			mC.mG.pool.release(mC);
+		}
+
+		CoralStore b = sim.branchingStore;
+		for (int s=0; s<b.end; s++)
+		{
+			BranchingCoral bC = (BranchingCoral) b.agent(s);
+			if (bC == null || b.is(s, CoralStore.ALIVE)) continue;
+			bC.release();
+			bC.bG.pool.release(bC);
+		}
+
+		AgentStore a = sim.algaStore;
+		for (int s=0; s<a.end; s++)
+		{
+			Alga al = (Alga) a.agent(s);
+			if (al != null && !al.getAlive()) al.release();
+		}
+	}
+
+	/**
+	 * Hands the agents to the tiles they lie in, lists the corals overlapping the turf of each tile
+	 * and copies the records into the halos
+	 */
+	void assign()
+	{
+		for (int i=0; i<tiles.length; i++)
+		{
+			Tile tile = tiles[i];
+			tile.massive.clear();
+			tile.branching.clear();
+			tile.algae.clear();
+			tile.turfMassive.clear();
+			tile.turfBranching.clear();
+		}
+
+		Bag m = sim.massiveOrder.agents();
+		for (int i=0; i<m.numObjs; i++)
+		{
+			MassiveCoral mC = (MassiveCoral) m.objs[i];
+			// the ghosts of the neighbouring strips only cover turf
+			if (!mC.asleep() && !mC.ghost()) tiles[tileOf(mC.sendXPos(), mC.sendYPos())].massive.add(mC);
+			mC.outline(outline);
+			Rectangle2D r = outline.getBounds2D();
+			bin(mC, true, r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
+		}
+
+		Bag b = sim.branchingOrder.agents();
+		for (int i=0; i<b.numObjs; i++)
+		{
+			BranchingCoral bC = (BranchingCoral) b.objs[i];
+			double x = bC.sendXPos(), y = bC.sendYPos(), radius = bC.getRadius();
+			if (!bC.ghost()) tiles[tileOf(x, y)].branching.add(bC);
+			bin(bC, false, x-radius, y-radius, x+radius, y+radius);
+		}
+
+		Bag a = sim.algaeOrder.agents();
+		for (int i=0; i<a.numObjs; i++)
+		{
+			Alga al = (Alga) a.objs[i];
+			if (!al.ghost()) tiles[tileOf(al.sendXPos(), al.sendYPos())].algae.add(al);
+		}
+
+		for (int i=0; i<tiles.length; i++) workPerTile[i] = tiles[i].work(agentWork);
+
+		sim.massiveStore.snapshot();
+		sim.branchingStore.snapshot();
+		sim.algaStore.snapshot();
+	}
+
+	/**
+	 * Applies the changes of the month to the fields, the coverage index and the occupancy map, tile by tile,
+	 * and lets the fragments settle
+	 */
+	void commit()
+	{
+		sim.buffer.begin();
+		for (int t=0; t<tiles.length; t++)
+		{
+			Tile tile = tiles[t];
+			for (int i=0; i<tile.massive.numObjs; i++) ((MassiveCoral) tile.massive.objs[i]).commit();
+			for (int i=0; i<tile.branching.numObjs; i++) ((BranchingCoral) tile.branching.objs[i]).commit();
+			for (int i=0; i<tile.algae.numObjs; i++) ((Alga) tile.algae.objs[i]).commit();
+		}
+
+		// the fragments settle after all colonies have been marked
+		for (int t=0; t<tiles.length; t++)
+		{
+			Tile tile = tiles[t];
+			for (int i=0; i<tile.numFragments; i++)
+			{
+				Object parent = tile.parents[i];
+				if (parent instanceof BranchingCoral) ((BranchingCoral) parent).settle(tile.fragX[i], tile.fragY[i]);
+				else ((Alga) parent).settle(tile.fragX[i], tile.fragY[i]);
+				tile.parents[i] = null;
+			}
+			tile.numFragments = 0;
+		}
+		sim.buffer.commit();
+	}
+
+	/**
+	 * Steps all agents and turf cells of the month, the tiles in parallel
+	 */
+	@Override
+	public void step(SimState state)
+	{
+		sweep();
+		assign();
+
+		long work = 0;
+		for (int i=0; i<tiles.length; i++) work += workPerTile[i];
+
+		pool.invoke(new TileTask(0, tiles.length, work));
+		commit();
+	}
+
+	/**
+	 * Stops the threads of the pool
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,292 @@
+package siccom.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Sums up the monthly snapshots of many replicate runs without keeping their series.
+ * For each group (and the algae) and month it keeps
+ * <ul>
+ * <li>the moments of the abundance and of the relative cover ({@link Moments})</li>
+ * <li>a quantile sketch of both ({@link QuantileSketch})</li>
+ * <li>the number of runs in which the group has died out by then</li>
+ * </ul>
+ * A group has died out once its abundance has fallen to 0 after it was present -- it stays so for the rest
+ * of the run, even if imported recruits bring it back.
+ * The groups are told apart by name. Aggregates of separate processes are written with {@link #write},
+ * read back with {@link #read} and merged with {@link #merge}.
+ * @author andreas
+ *
+ */
+public class ReplicateAggregator implements ReefSink
+{
+	static final int MAGIC = 0x52455041;		// "REPA"
+	static final int VERSION = 1;
+	static final String ALGAE = "Algae";
+	static final double[] QUANTILES = {0.05, 0.25, 0.5, 0.75, 0.95};
+
+	/**
+	 * The statistics of one group in one month
+	 */
+	class Cell
+	{
+		Moments abundance = new Moments();
+		Moments cover = new Moments();
+		QuantileSketch abundanceQ = new QuantileSketch(accuracy);
+		QuantileSketch coverQ = new QuantileSketch(accuracy);
+		long extinct;
+
+		void add(int count, double c, boolean diedOut)
+		{
+			abundance.add(count);
+			cover.add(c);
+			abundanceQ.add(count);
+			coverQ.add(c);
+			if (diedOut) extinct++;
+		}
+
+		void merge(Cell o)
+		{
+			abundance.merge(o.abundance);
+			cover.merge(o.cover);
+			abundanceQ.merge(o.abundanceQ);
+			coverQ.merge(o.coverQ);
+			extinct += o.extinct;
+		}
+	}
+
+	/**
+	 * The relative accuracy of the quantiles
+	 */
+	final double accuracy;
+	/**
+	 * The names of the groups in order of their first appearance
+	 */
+	ArrayList<String> names = new ArrayList<String>();
+	/**
+	 * The cells of each month -- indexed by the position of the group in names
+	 */
+	ArrayList<ArrayList<Cell>> months = new ArrayList<ArrayList<Cell>>();
+	/**
+	 * The number of runs summed up
+	 */
+	public long runs;
+	/**
+	 * The position in names of each group of the current run
+	 */
+	private int[] groupIndex;
+	private int algaeIndex;
+	/**
+	 * Whether each group (the algae last) of the current run has been present and whether it has died out
+	 */
+	private boolean[] present, diedOut;
+
+	public ReplicateAggregator(double accuracy)
+	{
+		this.accuracy = accuracy;
+	}
+
+	/**
+	 * Starts a new run -- the groups are looked up again with its first snapshot
+	 */
+	public void beginRun()
+	{
+		runs++;
+		groupIndex = null;
+	}
+
+	private int indexOf(String name)
+	{
+		int i = names.indexOf(name);
+		if (i >= 0) return i;
+		names.add(name);
+		return names.size()-1;
+	}
+
+	private Cell cell(int month, int group)
+	{
+		while (months.size() <= month) months.add(new ArrayList<Cell>());
+		ArrayList<Cell> m = months.get(month);
+		while (m.size() <= group) m.add(null);
+		Cell c = m.get(group);
+		if (c == null)
+		{
+			c = new Cell();
+			m.set(group, c);
+		}
+		return c;
+	}
+
+	@Override
+	public boolean wantsColonies(int step)
+	{
+		return false;
+	}
+
+	@Override
+	public void receive(ReefSnapshot s)
+	{
+		if (groupIndex == null)
+		{
+			groupIndex = new int[s.getNumGroups()];
+			for (int g=0; g<groupIndex.length; g++) groupIndex[g] = indexOf(s.getName(g));
+			algaeIndex = indexOf(ALGAE);
+			present = new boolean[groupIndex.length+1];
+			diedOut = new boolean[groupIndex.length+1];
+		}
+		for (int g=0; g<groupIndex.length; g++)
+			cell(s.step, groupIndex[g]).add(s.getCount(g), s.getCover(g), diedOut(g, s.getCount(g)));
+		cell(s.step, algaeIndex).add(s.numAlgae, s.algalCover, diedOut(groupIndex.length, s.numAlgae));
+	}
+
+	/**
+	 * @return true if the group has died out in this or an earlier month of the current run
+	 */
+	private boolean diedOut(int g, int count)
+	{
+		if (count > 0) present[g] = true;
+		else if (present[g]) diedOut[g] = true;
+		return diedOut[g];
+	}
+
+	@Override
+	public void close()
+	{
+	}
+
+	/**
+	 * Adds the runs of another aggregate of the same accuracy
+	 */
+	public void merge(ReplicateAggregator o)
+	{
+		int[] index = new int[o.names.size()];
+		for (int g=0; g<index.length; g++) index[g] = indexOf(o.names.get(g));
+		for (int m=0; m<o.months.size(); m++)
+		{
+			ArrayList<Cell> cells = o.months.get(m);
+			for (int g=0; g<cells.size(); g++)
+				if (cells.get(g) != null) cell(m, index[g]).merge(cells.get(g));
+		}
+		runs += o.runs;
+	}
+
+	/**
+	 * Writes the summary table -- one line per month and group
+	 */
+	public void writeSummary(File f, Config conf) throws IOException
+	{
+		if (f.getParentFile() != null) f.getParentFile().mkdirs();
+		PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(f)));
+		w.write("Step\tYear\tName\tRuns\tAbundanceMean\tAbundanceSD\tAbundanceMin");
+		for (double q : QUANTILES) w.write("\tAbundanceQ" + (int)Math.round(q*100));
+		w.write("\tAbundanceMax\tCoverMean\tCoverSD\tCoverMin");
+		for (double q : QUANTILES) w.write("\tCoverQ" + (int)Math.round(q*100));
+		w.write("\tCoverMax\tExtinctionProb\n");
+		for (int m=0; m<months.size(); m++)
+		{
+			ArrayList<Cell> cells = months.get(m);
+			for (int g=0; g<cells.size(); g++)
+			{
+				Cell c = cells.get(g);
+				if (c == null) continue;
+				w.write(m + "\t" + conf.numform_3.format(m/12.0) + "\t" + names.get(g) + "\t" + c.abundance.n);
+				w.write("\t" + conf.numform_2.format(c.abundance.mean) + "\t" + conf.numform_2.format(c.abundance.sd())
+						+ "\t" + (long)c.abundance.min);
+				for (double q : QUANTILES) w.write("\t" + conf.numform_2.format(c.abundanceQ.quantile(q)));
+				w.write("\t" + (long)c.abundance.max);
+				w.write("\t" + conf.numform_3.format(c.cover.mean) + "\t" + conf.numform_3.format(c.cover.sd())
+						+ "\t" + conf.numform_3.format(c.cover.min));
+				for (double q : QUANTILES) w.write("\t" + conf.numform_3.format(c.coverQ.quantile(q)));
+				w.write("\t" + conf.numform_3.format(c.cover.max));
+				w.write("\t" + conf.numform_3.format((double)c.extinct / c.abundance.n) + "\n");
+			}
+		}
+		w.close();
+	}
+
+	/**
+	 * Writes the aggregate so it can be merged later
+	 */
+	public void write(File f) throws IOException
+	{
+		if (f.getParentFile() != null) f.getParentFile().mkdirs();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeDouble(accuracy);
+		out.writeLong(runs);
+		out.writeInt(names.size());
+		for (String n : names) out.writeUTF(n);
+		out.writeInt(months.size());
+		for (ArrayList<Cell> cells : months)
+		{
+			out.writeInt(cells.size());
+			for (Cell c : cells)
+			{
+				out.writeBoolean(c != null);
+				if (c == null) continue;
+				c.abundance.write(out);
+				c.cover.write(out);
+				c.abundanceQ.write(out);
+				c.coverQ.write(out);
+				out.writeLong(c.extinct);
+			}
+		}
+		out.close();
+	}
+
+	/**
+	 * Reads an aggregate written by {@link #write}
+	 */
+	public static ReplicateAggregator read(File f) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+		try
+		{
+			if (in.readInt() != MAGIC) throw new IOException(f + " is not a replicate aggregate");
+			int version = in.readInt();
+			if (version != VERSION) throw new IOException(f + " has version " + version + ", expected " + VERSION);
+			ReplicateAggregator a = new ReplicateAggregator(in.readDouble());
+			a.runs = in.readLong();
+			int numNames = in.readInt();
+			for (int i=0; i<numNames; i++) a.names.add(in.readUTF());
+			int numMonths = in.readInt();
+			for (int m=0; m<numMonths; m++)
+			{
+				ArrayList<Cell> cells = new ArrayList<Cell>();
+				int numCells = in.readInt();
+				for (int g=0; g<numCells; g++)
+				{
+					if (!in.readBoolean())
+					{
+						cells.add(null);
+						continue;
+					}
+					Cell c = a.new Cell();
+					c.abundance.read(in);
+					c.cover.read(in);
+					c.abundanceQ.read(in);
+					c.coverQ.read(in);
+					c.extinct = in.readLong();
+					cells.add(c);
+				}
+				a.months.add(cells);
+			}
+			return a;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
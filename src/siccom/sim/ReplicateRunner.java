@@ -0,0 +1,108 @@
+package siccom.sim;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Headless driver for replicate runs of {@link Siccom}.
+ * Runs the simulation with consecutive seeds and feeds the monthly snapshots of all runs
+ * into one {@link ReplicateAggregator}, so no output files are written per run.
+ * The summary table lists mean, standard deviation, quantiles and the probability of extinction
+ * of the abundance and cover of each group in each month.
+ * <p>
+ * Replicates can be split over separate processes: each writes its aggregate with -state,
+ * a final call merges them with -merge (and -runs 0) and writes the summary.
+ *
+ * <pre>
+ * -runs N         number of runs (default 10)
+ * -seed S         seed of the first run -- the runs use S, S+1, .. (default 1)
+ * -years Y        simulated years per run (default 10)
+ * -accuracy A     relative accuracy of the quantiles (default 0.01)
+ * -out F          the summary table (default output/replicates.dat)
+ * -state F        write the aggregate to F for merging
+ * -merge A,B,..   merge aggregates written by other processes
+ * -store D        also append each run to the {@link ResultsStore} in D
+ * </pre>
+ * @author andreas
+ *
+ */
+public class ReplicateRunner
+{
+	int runs = 10;
+	long seed = 1;
+	int years = 10;
+	double accuracy = 0.01;
+	String out;
+	String state;
+	String[] merge = new String[0];
+	ResultsStore store;
+
+	/**
+	 * Runs the simulation once and feeds its snapshots into the aggregate
+	 */
+	void runOnce(long s, ReplicateAggregator agg)
+	{
+		Siccom.gui = false;
+		Siccom.createOutput = false;
+
+		Siccom sim = new Siccom(s);
+		sim.start();
+		agg.beginRun();
+		sim.reefOutput.addSink(agg);
+		if (store != null)
+		{
+			ResultsRecorder rec = new ResultsRecorder(store, sim.conf.parameters, s);
+			rec.setParameter("years", String.valueOf(years));
+			sim.reefOutput.addSink(rec);
+		}
+
+		long months = years * 12L;
+		while (sim.schedule.getSteps() < months)
+		{
+			if (!sim.schedule.step(sim)) break;
+		}
+		sim.finish();
+	}
+
+	/**
+	 * The main method
+	 * @param args see the class description
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		ReplicateRunner runner = new ReplicateRunner();
+
+		for (int i=0; i<args.length; i++)
+		{
+			String a = args[i];
+			if (a.equals("-runs")) runner.runs = Integer.valueOf(args[++i]);
+			else if (a.equals("-seed")) runner.seed = Long.valueOf(args[++i]);
+			else if (a.equals("-years")) runner.years = Integer.valueOf(args[++i]);
+			else if (a.equals("-accuracy")) runner.accuracy = Double.valueOf(args[++i]);
+			else if (a.equals("-out")) runner.out = args[++i];
+			else if (a.equals("-state")) runner.state = args[++i];
+			else if (a.equals("-merge")) runner.merge = args[++i].split(",");
+			else if (a.equals("-store")) runner.store = new ResultsStore(new File(args[++i]));
+			else System.out.println("Unknown argument " + a);
+		}
+
+		ReplicateAggregator agg = new ReplicateAggregator(runner.accuracy);
+		for (int r=0; r<runner.runs; r++)
+		{
+			long s = runner.seed + r;
+			long t0 = System.currentTimeMillis();
+			runner.runOnce(s, agg);
+			System.out.println("Run " + (r+1) + "/" + runner.runs + " (seed " + s + ") " + (System.currentTimeMillis()-t0) + " ms");
+		}
+		for (String m : runner.merge) agg.merge(ReplicateAggregator.read(new File(m.trim())));
+
+		if (runner.state != null) agg.write(new File(runner.state));
+		if (runner.store != null) runner.store.close();
+
+		Siccom.gui = false;
+		Siccom sim = new Siccom(runner.seed);
+		if (runner.out == null) runner.out = sim.outputPath + "/replicates.dat";
+		agg.writeSummary(new File(runner.out), sim.conf);
+		System.out.println(agg.runs + " runs summed up in " + runner.out);
+	}
+}
@@ -0,0 +1,96 @@
+package siccom.sim;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the monthly series of a run in compressed {@link TimeSeriesBuffer}s and appends them
+ * to a {@link ResultsStore} when the run finishes.
+ * The series are the abundance and cover of each group and of the algae (e.g. Porites.abundance, Algae.cover)
+ * and the monthly mean temperature (temperature).
+ * @author andreas
+ *
+ */
+public class ResultsRecorder implements ReefSink
+{
+	ResultsStore store;
+	LinkedHashMap<String, String> parameters;
+	long seed;
+	/**
+	 * The series by name -- month 0 first
+	 */
+	LinkedHashMap<String, TimeSeriesBuffer> columns = new LinkedHashMap<String, TimeSeriesBuffer>();
+
+	/**
+	 * @param store the store
+	 * @param parameters the parameters of the run -- further values may be put before the run finishes
+	 * @param seed the seed of the run
+	 */
+	public ResultsRecorder(ResultsStore store, Map<String, String> parameters, long seed)
+	{
+		this.store = store;
+		this.parameters = new LinkedHashMap<String, String>(parameters);
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets a parameter of the run -- for values not read from the parameter files
+	 */
+	public void setParameter(String name, String value)
+	{
+		parameters.put(name, value);
+	}
+
+	/**
+	 * Appends the value of a month -- the months before the recording started are 0
+	 */
+	private void put(String name, int month, double value)
+	{
+		TimeSeriesBuffer c = columns.get(name);
+		if (c == null)
+		{
+			c = new TimeSeriesBuffer(0, 1, true);
+			columns.put(name, c);
+		}
+		while (c.size() < month) c.add(0);
+		c.add(value);
+	}
+
+	@Override
+	public boolean wantsColonies(int step)
+	{
+		return false;
+	}
+
+	@Override
+	public void receive(ReefSnapshot s)
+	{
+		for (int g=0; g<s.getNumGroups(); g++)
+		{
+			put(s.getName(g) + ".abundance", s.step, s.getCount(g));
+			put(s.getName(g) + ".cover", s.step, s.getCover(g));
+		}
+		put("Algae.abundance", s.step, s.numAlgae);
+		put("Algae.cover", s.step, s.algalCover);
+		put("temperature", s.step, s.meanTemp);
+	}
+
+	/**
+	 * Appends the run to the store
+	 */
+	@Override
+	public void close()
+	{
+		LinkedHashMap<String, double[]> values = new LinkedHashMap<String, double[]>();
+		for (Map.Entry<String, TimeSeriesBuffer> c : columns.entrySet()) values.put(c.getKey(), c.getValue().toArray());
+		try
+		{
+			store.append(parameters, seed, values);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Cannot append the run to the results store: " + e.getMessage());
+		}
+	}
+}
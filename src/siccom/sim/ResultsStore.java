@@ -0,0 +1,460 @@
+package siccom.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An append-only store of the results of many runs in one directory, so that sweeps can be queried
+ * without parsing their output files again.
+ * <ul>
+ * <li>catalogue.dat -- one line per run: id, hash of the parameters, seed, months and the parameters</li>
+ * <li>series.dat -- the monthly series of the runs as doubles, one column after the other</li>
+ * <li>index.dat -- the position of each column of each run in series.dat</li>
+ * </ul>
+ * A run is appended column by column, then its index entries and last its catalogue line;
+ * a run that was not completed is ignored when the store is opened: a catalogue line counts only with its line break,
+ * index entries count only for runs in the catalogue, and the id of such a run is not given again.
+ * A cut off index entry or catalogue line is cut away before the next run is appended.
+ * The catalogue and the index are held in memory, a query reads only the months asked for.
+ * <p>
+ * Used from the command line the store answers a query:
+ * <pre>
+ * ResultsStore DIR [-where "fragProb&gt;0.01 &amp; seed&lt;100"] [-series Porites.cover] [-from 600] [-to 1200]
+ * </pre>
+ * Without -series the matching runs are listed.
+ * @author andreas
+ *
+ */
+public class ResultsStore
+{
+	static final String CATALOGUE = "catalogue.dat", SERIES = "series.dat", INDEX = "index.dat";
+
+	/**
+	 * A run in the catalogue
+	 */
+	public static class Run
+	{
+		public int id;
+		public String configHash;
+		public long seed;
+		public int months;
+		public LinkedHashMap<String, String> parameters = new LinkedHashMap<String, String>();
+
+		/**
+		 * @return the value of a parameter -- a name without species also finds a species value
+		 * if it is the only one of that name (e.g. growthRate for Porites.growthRate); null if unknown
+		 */
+		public String getParameter(String name)
+		{
+			if (name.equals("seed")) return String.valueOf(seed);
+			if (name.equals("months")) return String.valueOf(months);
+			if (name.equals("configHash")) return configHash;
+			String v = parameters.get(name);
+			if (v != null) return v;
+			for (Map.Entry<String, String> e : parameters.entrySet())
+				if (e.getKey().endsWith("." + name))
+				{
+					if (v != null) return null;		// ambiguous
+					v = e.getValue();
+				}
+			return v;
+		}
+	}
+
+	File dir;
+	ArrayList<Run> runs = new ArrayList<Run>();
+	/**
+	 * The position (in doubles) and length of each column -- by run id and series name
+	 */
+	HashMap<String, long[]> index = new HashMap<String, long[]>();
+	/**
+	 * The number of doubles in series.dat
+	 */
+	long seriesLength;
+	FileChannel series;
+	int nextId;
+	/**
+	 * The bytes of index.dat and catalogue.dat up to the end of their last complete entry
+	 */
+	long indexLength, catalogueLength;
+
+	/**
+	 * Opens a store -- the directory is created if it does not exist
+	 */
+	public ResultsStore(File dir) throws IOException
+	{
+		this.dir = dir;
+		dir.mkdirs();
+		series = new RandomAccessFile(new File(dir, SERIES), "rw").getChannel();
+		seriesLength = series.size() / 8;
+		readIndex();
+		readCatalogue();
+
+		// index entries of runs that were not completed
+		HashMap<Integer, Boolean> completed = new HashMap<Integer, Boolean>();
+		for (Run r : runs) completed.put(r.id, Boolean.TRUE);
+		ArrayList<String> stale = new ArrayList<String>();
+		for (String k : index.keySet())
+			if (!completed.containsKey(Integer.valueOf(k.substring(0, k.indexOf('\t'))))) stale.add(k);
+		for (String k : stale) index.remove(k);
+	}
+
+	private void readIndex() throws IOException
+	{
+		File f = new File(dir, INDEX);
+		if (!f.exists()) return;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+		try
+		{
+			while (true)
+			{
+				int run = in.readInt();
+				String name = in.readUTF();
+				long position = in.readLong();
+				long length = in.readInt();
+				if (position + length <= seriesLength) index.put(run + "\t" + name, new long[] {position, length});
+				indexLength += 4 + 2 + utfLength(name) + 8 + 4;
+				nextId = Math.max(nextId, run+1);		// also the ids of runs that were not completed
+			}
+		}
+		catch (EOFException e)
+		{
+			// the end of the index -- a partly written last entry is dropped
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * @return the number of bytes of a string written by writeUTF (without the length)
+	 */
+	private static int utfLength(String s)
+	{
+		int n = 0;
+		for (int i=0; i<s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) n++;
+			else if (c <= 0x07FF) n += 2;
+			else n += 3;
+		}
+		return n;
+	}
+
+	private void readCatalogue() throws IOException
+	{
+		File f = new File(dir, CATALOGUE);
+		if (!f.exists()) return;
+		byte[] bytes = new byte[(int) f.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(f));
+		try
+		{
+			in.readFully(bytes);
+		}
+		finally
+		{
+			in.close();
+		}
+		// a line without its line break is the cut off line of a run that was not completed
+		int end = bytes.length;
+		while (end > 0 && bytes[end-1] != '\n') end--;
+		catalogueLength = end;
+
+		for (String line : new String(bytes, 0, end, "UTF-8").split("\n"))
+		{
+			String[] v = line.split("\t");
+			if (v.length < 4) continue;
+			Run r = new Run();
+			r.id = Integer.valueOf(v[0]);
+			r.configHash = v[1];
+			r.seed = Long.valueOf(v[2]);
+			r.months = Integer.valueOf(v[3]);
+			for (int i=4; i<v.length; i++)
+			{
+				int eq = v[i].indexOf('=');
+				if (eq > 0) r.parameters.put(v[i].substring(0, eq), v[i].substring(eq+1));
+			}
+			runs.add(r);
+			nextId = Math.max(nextId, r.id+1);
+		}
+	}
+
+	/**
+	 * Cuts a file back to its complete entries
+	 */
+	private void truncate(String name, long length) throws IOException
+	{
+		File f = new File(dir, name);
+		if (!f.exists() || f.length() == length) return;
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		raf.setLength(length);
+		raf.close();
+	}
+
+	/**
+	 * @return a hash of the parameters that does not depend on their order
+	 */
+	public static String configHash(Map<String, String> parameters)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> e : new TreeMap<String, String>(parameters).entrySet())
+			sb.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+		try
+		{
+			byte[] d = MessageDigest.getInstance("SHA-1").digest(sb.toString().getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder();
+			for (int i=0; i<8; i++) hex.append(String.format("%02x", d[i]));
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			return Integer.toHexString(sb.toString().hashCode());
+		}
+		catch (IOException e)
+		{
+			return Integer.toHexString(sb.toString().hashCode());
+		}
+	}
+
+	/**
+	 * Appends a run
+	 * @param parameters the parameters of the run -- tabs, line breaks and '=' in names are not allowed
+	 * @param seed the seed
+	 * @param columns the monthly series by name
+	 * @return the run
+	 */
+	public synchronized Run append(Map<String, String> parameters, long seed, Map<String, double[]> columns) throws IOException
+	{
+		Run r = new Run();
+		r.id = nextId++;
+		r.configHash = configHash(parameters);
+		r.seed = seed;
+		r.parameters.putAll(parameters);
+
+		truncate(INDEX, indexLength);
+		truncate(CATALOGUE, catalogueLength);
+
+		// the columns
+		DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, INDEX), true)));
+		for (Map.Entry<String, double[]> c : columns.entrySet())
+		{
+			double[] v = c.getValue();
+			ByteBuffer b = ByteBuffer.allocate(8*v.length).order(ByteOrder.LITTLE_ENDIAN);
+			b.asDoubleBuffer().put(v);
+			long position = seriesLength;
+			long at = position*8;
+			while (b.hasRemaining()) at += series.write(b, at);
+			seriesLength += v.length;
+			index.put(r.id + "\t" + c.getKey(), new long[] {position, v.length});
+			r.months = Math.max(r.months, v.length);
+
+			idx.writeInt(r.id);
+			idx.writeUTF(c.getKey());
+			idx.writeLong(position);
+			idx.writeInt(v.length);
+			indexLength += 4 + 2 + utfLength(c.getKey()) + 8 + 4;
+		}
+		series.force(false);
+		idx.close();
+
+		// the catalogue line completes the run
+		StringBuilder line = new StringBuilder();
+		line.append(r.id).append('\t').append(r.configHash).append('\t').append(r.seed).append('\t').append(r.months);
+		for (Map.Entry<String, String> e : r.parameters.entrySet())
+			line.append('\t').append(e.getKey()).append('=').append(e.getValue());
+		byte[] bytes = line.append('\n').toString().getBytes("UTF-8");
+		FileOutputStream w = new FileOutputStream(new File(dir, CATALOGUE), true);
+		w.write(bytes);
+		w.close();
+		catalogueLength += bytes.length;
+
+		runs.add(r);
+		return r;
+	}
+
+	/**
+	 * @return all runs in the catalogue
+	 */
+	public ArrayList<Run> getRuns()
+	{
+		return runs;
+	}
+
+	/**
+	 * Selects the runs matching all conditions of a query, e.g. "fragProb&gt;0.01 &amp; Porites.CI=0.5".
+	 * A condition compares a parameter (or seed, months, configHash) with a value by
+	 * &lt;, &lt;=, &gt;, &gt;=, = or != -- as numbers if both are numbers, else as text.
+	 * Runs without the parameter do not match.
+	 * @param where the conditions joined by &amp; -- null or empty selects all runs
+	 */
+	public ArrayList<Run> select(String where)
+	{
+		ArrayList<String[]> conditions = new ArrayList<String[]>();
+		if (where != null)
+			for (String c : where.split("&"))
+			{
+				c = c.trim();
+				if (c.length() == 0) continue;
+				String[] cond = parseCondition(c);
+				if (cond == null) throw new IllegalArgumentException("Cannot read the condition " + c);
+				conditions.add(cond);
+			}
+
+		ArrayList<Run> selected = new ArrayList<Run>();
+		for (Run r : runs)
+		{
+			boolean match = true;
+			for (String[] c : conditions)
+				if (!matches(r.getParameter(c[0]), c[1], c[2]))
+				{
+					match = false;
+					break;
+				}
+			if (match) selected.add(r);
+		}
+		return selected;
+	}
+
+	/**
+	 * @return the name, operator and value of a condition -- null if there is no operator
+	 */
+	private static String[] parseCondition(String c)
+	{
+		String[] ops = {"<=", ">=", "!=", "<", ">", "="};
+		for (String op : ops)
+		{
+			int i = c.indexOf(op);
+			if (i > 0) return new String[] {c.substring(0, i).trim(), op, c.substring(i+op.length()).trim()};
+		}
+		return null;
+	}
+
+	private static boolean matches(String value, String op, String target)
+	{
+		if (value == null) return false;
+		int cmp;
+		try
+		{
+			cmp = Double.compare(Double.valueOf(value), Double.valueOf(target));
+		}
+		catch (NumberFormatException e)
+		{
+			cmp = value.compareTo(target);
+		}
+		if (op.equals("<")) return cmp < 0;
+		if (op.equals("<=")) return cmp <= 0;
+		if (op.equals(">")) return cmp > 0;
+		if (op.equals(">=")) return cmp >= 0;
+		if (op.equals("!=")) return cmp != 0;
+		return cmp == 0;
+	}
+
+	/**
+	 * Reads months of a series of a run
+	 * @param run the run
+	 * @param name the series, e.g. Porites.cover
+	 * @param from the first month
+	 * @param to the last month (included)
+	 * @return the values -- shorter if the run ended earlier, null if the run has no such series
+	 */
+	public double[] series(Run run, String name, int from, int to) throws IOException
+	{
+		long[] e = index.get(run.id + "\t" + name);
+		if (e == null) return null;
+		from = Math.max(0, from);
+		to = (int)Math.min(to, e[1]-1);
+		if (to < from) return new double[0];
+		ByteBuffer b = ByteBuffer.allocate(8*(to-from+1)).order(ByteOrder.LITTLE_ENDIAN);
+		long at = (e[0] + from) * 8;
+		while (b.hasRemaining())
+		{
+			int n = series.read(b, at);
+			if (n < 0) throw new EOFException("The series " + name + " of run " + run.id + " is cut off");
+			at += n;
+		}
+		b.flip();
+		double[] v = new double[to-from+1];
+		b.asDoubleBuffer().get(v);
+		return v;
+	}
+
+	/**
+	 * @return the names of the series of a run
+	 */
+	public ArrayList<String> seriesNames(Run run)
+	{
+		ArrayList<String> names = new ArrayList<String>();
+		String prefix = run.id + "\t";
+		for (String k : index.keySet()) if (k.startsWith(prefix)) names.add(k.substring(prefix.length()));
+		return names;
+	}
+
+	public void close() throws IOException
+	{
+		series.close();
+	}
+
+	/**
+	 * Answers a query from the command line -- see the class description
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length == 0)
+		{
+			System.out.println("ResultsStore DIR [-where CONDITIONS] [-series NAME] [-from MONTH] [-to MONTH]");
+			return;
+		}
+		String where = null, name = null;
+		int from = 0, to = Integer.MAX_VALUE;
+		for (int i=1; i<args.length; i++)
+		{
+			String a = args[i];
+			if (a.equals("-where")) where = args[++i];
+			else if (a.equals("-series")) name = args[++i];
+			else if (a.equals("-from")) from = Integer.valueOf(args[++i]);
+			else if (a.equals("-to")) to = Integer.valueOf(args[++i]);
+			else System.out.println("Unknown argument " + a);
+		}
+
+		ResultsStore store = new ResultsStore(new File(args[0]));
+		long t0 = System.nanoTime();
+		ArrayList<Run> selected = store.select(where);
+		if (name == null)
+		{
+			System.out.println("Run\tConfigHash\tSeed\tMonths");
+			for (Run r : selected) System.out.println(r.id + "\t" + r.configHash + "\t" + r.seed + "\t" + r.months);
+		}
+		else
+		{
+			System.out.println("Run\tSeed\tMonth\t" + name);
+			for (Run r : selected)
+			{
+				double[] v = store.series(r, name, from, to);
+				if (v == null) continue;
+				for (int m=0; m<v.length; m++) System.out.println(r.id + "\t" + r.seed + "\t" + (from+m) + "\t" + v[m]);
+			}
+		}
+		System.err.println(selected.size() + " runs in " + (System.nanoTime()-t0)/1000000 + " ms");
+		store.close();
+	}
+}
@@ -0,0 +1,35 @@
+package siccom.sim;
+
+import ec.util.MersenneTwisterFast;
+
+/**
+ * Selects the members of a population that are hit by an event of probability p,
+ * without drawing a random number for every member.
+ * The gap between two hits is geometrically distributed, so the next hit can be found with one draw:
+ * <pre>
+ * for (int i = Sampling.next(random, -1, p); i &lt; n; i = Sampling.next(random, i, p)) ...
+ * </pre>
+ * The hits have the same distribution as calling random.nextBoolean(p) for each member.
+ * @author andreas
+ *
+ */
+public class Sampling
+{
+	/**
+	 * Finds the next member hit by the event
+	 * @param random the random generator
+	 * @param i the index of the last hit (-1 to start)
+	 * @param p the probability of the event
+	 * @return the index of the next hit -- Integer.MAX_VALUE if there is none
+	 */
+	public static int next(MersenneTwisterFast random, int i, double p)
+	{
+		if (p <= 0) return Integer.MAX_VALUE;
+		if (p >= 1) return i+1;
+
+		// number of members skipped before the next hit
+		double skip = Math.floor(Math.log(1.0 - random.nextDouble()) / Math.log(1.0 - p));
+		if (skip >= Integer.MAX_VALUE - 1 - i) return Integer.MAX_VALUE;
+		return i + 1 + (int)skip;
+	}
+}
@@ -0,0 +1,389 @@
+package siccom.sim;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * Headless benchmark driver for {@link Siccom}.
+ * Sweeps the size of the simulation area, the number of coral species and the turf resolution
+ * and measures for each setting how fast a fixed number of years is simulated:
+ * <ul>
+ * <li>months per second</li>
+ * <li>peak heap usage</li>
+ * <li>allocation rate of all threads, the workers stepping the tiles included</li>
+ * <li>time spent in garbage collection</li>
+ * <li>heap retained per agent at the end of the run -- the heap held by the simulation over the number of agents</li>
+ * </ul>
+ * Each parameter is swept while the others are kept at the default setting (40 x 40 m, 10 species, 1 m turf),
+ * with -grid all combinations are run.
+ * The results are written as a tab separated report. If a baseline report is given the months per second
+ * of every setting are compared to it and slowdowns beyond the tolerance are reported.
+ *
+ * <pre>
+ * -years Y        simulated years per setting (default 10)
+ * -seed S         random seed (default 1)
+ * -areas A,B,..   area widths and heights in meters (default 10,40,100,200)
+ * -species A,B,.. number of massive and of branching coral species (default 1,5,10,20)
+ * -turf A,B,..    turf cell widths in meters (default 0.25,0.5,1,2)
+ * -grid           run all combinations instead of one parameter at a time
+ * -out F          the report file (default output/benchmark.dat)
+ * -baseline F     compare against a stored report
+ * -tolerance T    relative slowdown that counts as regression (default 0.2)
+ * -offheap        keep the agent stores outside of the heap
+ * -storeDir D     map the off-heap agent stores into files in D
+ * </pre>
+ */
+public class ScalingBenchmark
+{
+	/**
+	 * The default area width and height in meters
+	 */
+	static final double defaultArea = 40;
+	/**
+	 * The default number of species per growth form
+	 */
+	static final int defaultSpecies = 10;
+	/**
+	 * The default width of a turf cell in meters
+	 */
+	static final double defaultTurf = 1;
+	/**
+	 * The header of the report
+	 */
+	static final String header = "AreaWidth\tAreaHeight\tSpecies\tTurfResolution\tYears\tMonths\tInitSec\tRunSec\tMonthsPerSec\tPeakHeapMB\tAllocMBPerSec\tGCMillis\tGCPercent\tAgents\tBytesPerAgent";
+
+	int years = 10;
+	long seed = 1;
+	double[] areas = {10, 40, 100, 200};
+	int[] species = {1, 5, 10, 20};
+	double[] turfs = {0.25, 0.5, 1, 2};
+	boolean grid = false;
+	String out;
+	String baseline;
+	double tolerance = 0.2;
+	boolean offHeap = false;
+	String storeDir;
+
+	/**
+	 * The result of one benchmark setting
+	 */
+	static class Result
+	{
+		double area;
+		int species;
+		double turf;
+		int years;
+		long months;
+		double initSec;
+		double runSec;
+		double peakHeapMB;
+		double allocMB;
+		long gcMillis;
+		int agents;
+		double retainedBytes;
+
+		double monthsPerSec() { return months / runSec; }
+
+		double bytesPerAgent() { return agents == 0 ? 0 : retainedBytes / agents; }
+
+		String key() { return area + "\t" + species + "\t" + turf + "\t" + years; }
+
+		String line(Config conf)
+		{
+			return 	conf.numform_2.format(area) + "\t" + conf.numform_2.format(area) + "\t" + species + "\t"
+					+ conf.numform_2.format(turf) + "\t" + years + "\t" + months + "\t"
+					+ conf.numform_3.format(initSec) + "\t" + conf.numform_3.format(runSec) + "\t"
+					+ conf.numform_2.format(monthsPerSec()) + "\t" + conf.numform_2.format(peakHeapMB) + "\t"
+					+ conf.numform_2.format(allocMB / runSec) + "\t" + gcMillis + "\t"
+					+ conf.numform_2.format(100.0 * gcMillis / (runSec*1000)) + "\t" + agents + "\t"
+					+ conf.numform_2.format(bytesPerAgent());
+		}
+	}
+
+	/**
+	 * Builds the list of settings and runs them
+	 * @return the results
+	 */
+	ArrayList<Result> runAll()
+	{
+		ArrayList<Result> results = new ArrayList<Result>();
+
+		if (grid)
+		{
+			for (double a : areas)
+				for (int s : species)
+					for (double t : turfs)
+						results.add(runSetting(a, s, t));
+		}
+		else
+		{
+			for (double a : areas) results.add(runSetting(a, defaultSpecies, defaultTurf));
+			for (int s : species) if (s != defaultSpecies) results.add(runSetting(defaultArea, s, defaultTurf));
+			for (double t : turfs) if (t != defaultTurf) results.add(runSetting(defaultArea, defaultSpecies, t));
+		}
+		return results;
+	}
+
+	/**
+	 * Runs the simulation for one setting
+	 * @param area the width and height of the area in meters
+	 * @param numSpecies the number of massive and of branching coral species
+	 * @param turf the width of a turf cell in meters
+	 * @return the measurements
+	 */
+	Result runSetting(double area, int numSpecies, double turf)
+	{
+		Siccom.gui = false;
+		Siccom.createOutput = false;
+
+		Siccom sim = new Siccom(seed);
+		sim.offHeapStores = offHeap;
+		sim.storeDirectory = storeDir;
+		sim.conf.setArea(area, area);
+		sim.conf.setTurfResolution(turf);
+		Siccom.maCoGroupNum = numSpecies;
+		Siccom.braCoGroupNum = numSpecies;
+
+		Result r = new Result();
+		r.area = area;
+		r.species = numSpecies;
+		r.turf = turf;
+		r.years = years;
+
+		long heapBefore = usedHeapAfterGC();
+		resetPeakHeap();
+		long gcBefore = gcMillis();
+		HashMap<Long, Long> allocBefore = allocatedBytes();
+
+		long t0 = System.nanoTime();
+		sim.start();
+		long t1 = System.nanoTime();
+
+		long months = years * 12L;
+		while (sim.schedule.getSteps() < months)
+		{
+			if (!sim.schedule.step(sim)) break;
+		}
+		long t2 = System.nanoTime();
+
+		r.months = sim.schedule.getSteps();
+		r.agents = sim.massiveCorals.size() + sim.branchingCorals.size() + sim.algae.size();
+		r.initSec = (t1 - t0) / 1e9;
+		r.runSec = (t2 - t1) / 1e9;
+		r.gcMillis = gcMillis() - gcBefore;
+		r.allocMB = allocatedSince(allocBefore) / (1024.0*1024.0);
+		r.peakHeapMB = peakHeap() / (1024.0*1024.0);
+		r.retainedBytes = usedHeapAfterGC() - heapBefore;
+
+		sim.finish();
+
+		return r;
+	}
+
+	/**
+	 * Resets the peak usage of all heap memory pools
+	 */
+	static void resetPeakHeap()
+	{
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+	}
+
+	/**
+	 * @return the sum of the peak usages of all heap memory pools in bytes
+	 */
+	static long peakHeap()
+	{
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+		return peak;
+	}
+
+	/**
+	 * @return the heap in use after a full collection in bytes
+	 */
+	static long usedHeapAfterGC()
+	{
+		System.gc();
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * @return the accumulated collection time of all garbage collectors in milliseconds
+	 */
+	static long gcMillis()
+	{
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			if (gc.getCollectionTime() > 0) millis += gc.getCollectionTime();
+		return millis;
+	}
+
+	/**
+	 * @return the bytes allocated so far by each live thread -- empty if the JVM does not support measuring it
+	 */
+	static HashMap<Long, Long> allocatedBytes()
+	{
+		HashMap<Long, Long> bytes = new HashMap<Long, Long>();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return bytes;
+
+		long[] ids = threads.getAllThreadIds();
+		long[] allocated = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+		for (int i=0; i<ids.length; i++)
+			if (allocated[i] >= 0) bytes.put(ids[i], allocated[i]);
+		return bytes;
+	}
+
+	/**
+	 * @param before the bytes allocated by each thread at the start
+	 * @return the bytes allocated by all live threads since the start -- threads started since then count in full,
+	 * threads that have ended are lost
+	 */
+	static long allocatedSince(HashMap<Long, Long> before)
+	{
+		long sum = 0;
+		for (Map.Entry<Long, Long> e : allocatedBytes().entrySet())
+		{
+			Long b = before.get(e.getKey());
+			sum += e.getValue() - (b == null ? 0 : b);
+		}
+		return sum;
+	}
+
+	/**
+	 * Writes the report
+	 * @param results the results
+	 * @param conf the configuration (for number formats)
+	 */
+	void writeReport(ArrayList<Result> results, Config conf) throws IOException
+	{
+		File f = new File(out);
+		if (f.getParentFile() != null) f.getParentFile().mkdirs();
+
+		PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(f)));
+		w.write(header + "\n");
+		for (Result r : results) w.write(r.line(conf) + "\n");
+		w.close();
+		System.out.println("Benchmark report written to " + f.getPath());
+	}
+
+	/**
+	 * Compares the results to a stored report
+	 * @param results the results of this run
+	 * @return the number of settings which are slower than the baseline by more than the tolerance
+	 */
+	int compareBaseline(ArrayList<Result> results) throws IOException
+	{
+		Hashtable<String, Double> base = new Hashtable<String, Double>();
+
+		BufferedReader br = new BufferedReader(new FileReader(baseline));
+		String line = br.readLine();	// header
+		while ((line = br.readLine()) != null)
+		{
+			String[] v = line.split("\t");
+			if (v.length < 9) continue;
+			String key = Double.valueOf(v[0]) + "\t" + Integer.valueOf(v[2]) + "\t" + Double.valueOf(v[3]) + "\t" + Integer.valueOf(v[4]);
+			base.put(key, Double.valueOf(v[8]));
+		}
+		br.close();
+
+		int regressions = 0;
+		System.out.println("Setting (area, species, turf, years)\tMonthsPerSec\tBaseline\tRatio");
+		for (Result r : results)
+		{
+			Double b = base.get(r.key());
+			if (b == null) continue;
+
+			double ratio = r.monthsPerSec() / b;
+			String flag = "";
+			if (ratio < 1 - tolerance)
+			{
+				flag = "\tREGRESSION";
+				regressions++;
+			}
+			System.out.println(r.key().replace('\t', ' ') + "\t" + r.monthsPerSec() + "\t" + b + "\t" + ratio + flag);
+		}
+		return regressions;
+	}
+
+	/**
+	 * Reads a comma separated list of numbers
+	 */
+	static double[] readDoubles(String s)
+	{
+		String[] v = s.split(",");
+		double[] d = new double[v.length];
+		for (int i=0; i<v.length; i++) d[i] = Double.valueOf(v[i].trim());
+		return d;
+	}
+
+	/**
+	 * Reads a comma separated list of integers
+	 */
+	static int[] readInts(String s)
+	{
+		String[] v = s.split(",");
+		int[] d = new int[v.length];
+		for (int i=0; i<v.length; i++) d[i] = Integer.valueOf(v[i].trim());
+		return d;
+	}
+
+	/**
+	 * The main method
+	 * @param args see the class description
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		ScalingBenchmark bench = new ScalingBenchmark();
+
+		for (int i=0; i<args.length; i++)
+		{
+			String a = args[i];
+			if (a.equals("-years")) bench.years = Integer.valueOf(args[++i]);
+			else if (a.equals("-seed")) bench.seed = Long.valueOf(args[++i]);
+			else if (a.equals("-areas")) bench.areas = readDoubles(args[++i]);
+			else if (a.equals("-species")) bench.species = readInts(args[++i]);
+			else if (a.equals("-turf")) bench.turfs = readDoubles(args[++i]);
+			else if (a.equals("-grid")) bench.grid = true;
+			else if (a.equals("-out")) bench.out = args[++i];
+			else if (a.equals("-baseline")) bench.baseline = args[++i];
+			else if (a.equals("-tolerance")) bench.tolerance = Double.valueOf(args[++i]);
+			else if (a.equals("-offheap")) bench.offHeap = true;
+			else if (a.equals("-storeDir"))
+			{
+				bench.offHeap = true;
+				bench.storeDir = args[++i];
+			}
+			else System.out.println("Unknown argument " + a);
+		}
+
+		ArrayList<Result> results = bench.runAll();
+
+		Siccom.gui = false;
+		Siccom sim = new Siccom(bench.seed);
+		if (bench.out == null) bench.out = sim.outputPath + "/benchmark.dat";
+		bench.writeReport(results, sim.conf);
+
+		int regressions = 0;
+		if (bench.baseline != null) regressions = bench.compareBaseline(results);
+
+		System.exit(regressions == 0 ? 0 : 1);
+	}
+}
@@ -16,7 +16,7 @@ import java.io.File;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
 import java.util.Locale;
 
 import sim.engine.Schedule;
@@ -68,6 +68,10 @@ public class Siccom extends SimState
 	 * The discretization of the simulation 
 	 */
 	public double discretization = 10.0;
+	/**
+	 * The distance beyond the interaction range within which corals keep their neighbours (see {@link NeighbourList})
+	 */
+	public double neighbourSkin = 10.0;
 	/**
 	 * The simulation area width in meters
 	 */
@@ -232,6 +236,10 @@ public class Siccom extends SimState
 	 * The layer for turf algae
 	 */
 	public SparseGrid2D turf;
+	/**
+	 * All turf cells, column by column
+	 */
+	public TurfCell[] turfCells;
 	/**
 	 * The relative cover per turf cell
 	 */
@@ -260,6 +268,18 @@ public class Siccom extends SimState
 	 * The height of a turf cell
 	 */
 	public int cellHeight; 
+	/**
+	 * The width and height of a tile in meters -- the agents and turf cells of a tile are stepped together on one thread
+	 */
+	public double tileWidth = 10;
+	/**
+	 * The number of threads for stepping the tiles
+	 */
+	public int numThreads = Runtime.getRuntime().availableProcessors();
+	/**
+	 * Steps the agents and turf cells tile by tile in parallel
+	 */
+	public ReefTiling tiling;
 
 	
 	// ENVIRONMENTAL / BLEACHING
@@ -298,13 +318,17 @@ public class Siccom extends SimState
 	 */
 	public double minBleachDeathProb; 
 	/**
-	 * Storage for bleaching probabilities for respective coral species
+	 * Storage for bleaching probabilities for respective coral species -- indexed by {@link CoralGroup#index}
 	 */
-	Hashtable<String, Double> bleachProbs;
+	double[] bleachProbs;
 	/**
-	 * Storage for bleach death probabilities for respective coral species
+	 * Storage for bleach death probabilities for respective coral species -- indexed by {@link CoralGroup#index}
 	 */
-	Hashtable<String, Double> bleachDeathProbs;
+	double[] bleachDeathProbs;
+	/**
+	 * The highest bleaching probability of all species in the actual month
+	 */
+	double maxBleachProb;
 	/**
 	 * The amount of years from which a long-term mean summer temperature is calculated
 	 */
@@ -343,75 +367,67 @@ public class Siccom extends SimState
 
 	// Variables for Disturbance Events
 	/**
-	 * The radius of a disturbance
+	 * The configured types of disturbance
 	 */
-	double dRadius ;
+	public ArrayList<DisturbanceType> disturbanceTypes = new ArrayList<DisturbanceType>();
 	/**
-	 * Determines if a respective disturbance takes place within a simulation run or not
+	 * Steppable for disturbance events
 	 */
-	public boolean disser1 = true;
+	public DisturbanceEngine disturber;
+	
 	/**
-	 * The maximum diameter of a disturbed area
+	 * Collects births and deaths during the monthly phases
 	 */
-	public double disturbMaxSize1; 
+	public BirthDeathBuffer buffer;
 	/**
-	 * The minimum diameter of a disturbed area
+	 * Dead algae kept for reuse
 	 */
-	public double disturbMinSize1;
+	public AgentPool<Alga> algaPool = new AgentPool<Alga>();
 	/**
-	 * The maximum radius of a disturbed area
+	 * The algal recruits below the promotion radius
 	 */
-	public double disturbMaxRadius1;
+	public AlgaDensityField algaDensity;
 	/**
-	 * The minimum radius of a disturbed area
+	 * Resolves the competition among the algae once a month
 	 */
-	public double disturbMinRadius1; 
+	public AlgaCompetition algaCompetition;
 	/**
-	 * The mean interval at which a respective disturbance takes place
+	 * The agents of the fields in Z-order -- used for the passes over whole populations
 	 */
-	public int disturbMeanInterval1;
+	public MortonOrder massiveOrder, branchingOrder, algaeOrder;
 	/**
-	 * The percentage standard deviation for the interval of a disturbance event
+	 * The agents of the fields for the neighbour searches of the steps
 	 */
-	public double disturbSDPercent1;
+	public NeighbourGrid massiveGrid, branchingGrid, algaeGrid;
 	/**
-	 * The actual standard deviation for the interval of a disturbance event
+	 * The state of the coral colonies -- the only copy of it, the colonies read and write through their slots
 	 */
-	public int disturbSDInterval1;
+	public CoralStore massiveStore, branchingStore;
 	/**
-	 * The number of synchronous disturbance events of the respective type
+	 * The state of the algae and of the turf cells
 	 */
-	int disturbMaxNumber1;
+	public AgentStore algaStore, turfStore;
 	/**
-	 * The actual interval of a disturbance 	
+	 * Keeps the stores outside of the heap
 	 */
-	double dInterval; 
-	// see above
-	public boolean disser2 = true;
-	public double disturbMaxSize2; 
-	public double disturbMinSize2;
-	public double disturbMaxRadius2;
-	public double disturbMinRadius2; 
-	public int disturbMeanInterval2;
-	public double disturbSDPercent2;
-	public int disturbSDInterval2;
-	int disturbMaxNumber2;
-
+	public boolean offHeapStores = false;
+	/**
+	 * The directory the off-heap stores are mapped into -- null to keep them in memory only
+	 */
+	public String storeDirectory = null;
 	/**
-	 * ArrayList to store disturbance parameter arrays in
+	 * The number and area of the colonies per group index -- filled by the census of the stores
 	 */
-	ArrayList<double[]> disturbances;
+	int[] groupCount;
+	double[] groupArea;
 	/**
-	 * Array to store disturbance parameters of disturbance type 1 in
+	 * The colonies covering each part of the reef
 	 */
-	double[] dist1;
+	public CoverageIndex coverage;
 	/**
-	 * Array to store disturbance parameters of disturbance type 2 in
+	 * The parts of the reef where settlers would die at once
 	 */
-	double[] dist2;
-	// Steppables for disturbance events
-	public Steppable disturber1;
-	public Steppable disturber2;
+	public OccupancyMap occupancy;
 
 	public double maxDisBreakProb;
 	public double minDisBreakProb;
@@ -440,6 +456,25 @@ public class Siccom extends SimState
 	 * The output writer
 	 */
 	public OutputWriter outW;
+	/**
+	 * Hands the monthly snapshots of the reef to the sinks (the output writer, the charts)
+	 */
+	public ReefOutput reefOutput;
+
+	// STRIPS
+	/**
+	 * The connection to the other strips, if the reef is split across several processes (null otherwise)
+	 */
+	public StripTransport transport;
+	/**
+	 * Exchanges boundary agents and recruitment with the other strips at the end of each month
+	 */
+	public StripExchange exchange;
+	/**
+	 * A random generator for the environment (temperature years, bleaching) shared by all strips -- 
+	 * if null the random generator of the simulation is used
+	 */
+	public MersenneTwisterFast envRandom;
 
 
 
@@ -461,6 +496,10 @@ public class Siccom extends SimState
 //	public double tempIncYear = totalTempIncrease/increaseYears;
 
 	private boolean haveBeenBleaching=false;
+	/**
+	 * @return true if the corals have been bleaching in this month
+	 */
+	public boolean isBleaching() { return haveBeenBleaching; }
 	public double maxHR;
 	public double minHR;
 	public double ciFactor = 10;
@@ -494,6 +533,16 @@ public class Siccom extends SimState
 	 * @param val the value for outputInterval
 	 */
 	public void setOutputInterval( int val ) {if (val>0) indivOutInter = val; }
+	/**
+	 * Displays the number of threads for the tiles of the reef in the GUI's Model Tab
+	 * @return the value of numThreads
+	 */
+	public int getNumThreads() { return numThreads; }
+	/**
+	 * Allows to set the number of threads -- takes effect at the next start
+	 * @param val the value for numThreads
+	 */
+	public void setNumThreads( int val ) {if (val>0) numThreads = val; }
 	/**
 	 * See the initial algal Threshold
 	 * @return iniAlgalThreshold
@@ -543,6 +592,9 @@ public class Siccom extends SimState
 		totalBraCoCov = 0;
 	
 		
+		buffer = new BirthDeathBuffer(this);
+		algaPool.clear();
+		
 		maCoGroups = new ArrayList<MassiveGroup>();
 		braCoGroups = new ArrayList<BranchingGroup>();		
 	
@@ -557,22 +609,61 @@ public class Siccom extends SimState
 		massiveCorals = new Continuous2D(discretization, gridWidth, gridHeight);
 		branchingCorals = new Continuous2D(discretization, gridWidth, gridHeight);
 		algae  = new Continuous2D(discretization, gridWidth, gridHeight);
+		massiveOrder = new MortonOrder(massiveCorals, discretization);
+		branchingOrder = new MortonOrder(branchingCorals, discretization);
+		algaeOrder = new MortonOrder(algae, discretization);
+		buffer.addOrder(massiveOrder);
+		buffer.addOrder(branchingOrder);
+		buffer.addOrder(algaeOrder);
+		massiveGrid = new NeighbourGrid(massiveCorals, gridWidth, gridHeight, discretization);
+		branchingGrid = new NeighbourGrid(branchingCorals, gridWidth, gridHeight, discretization);
+		algaeGrid = new NeighbourGrid(algae, gridWidth, gridHeight, discretization);
+		buffer.addGrid(massiveGrid);
+		buffer.addGrid(branchingGrid);
+		buffer.addGrid(algaeGrid);
+		coverage = new CoverageIndex(gridWidth, gridHeight, 2*discretization, discretization/2);
+		double maxSettlerRadius = Math.max(conf.algaRecRad, conf.aFragmentSize);
+		for (MassiveGroup mG : maCoGroups) maxSettlerRadius = Math.max(maxSettlerRadius, mG.recRad);
+		for (BranchingGroup bG : braCoGroups) maxSettlerRadius = Math.max(maxSettlerRadius, Math.max(bG.recRad, 10 / resolution));
+		occupancy = new OccupancyMap(this, discretization, maxSettlerRadius);
+
+		massiveStore = CoralStore.create(this, "massive", MassiveCoral.NUM_BRANCHES);
+		int maxBranches = 1;
+		for (BranchingGroup bG : braCoGroups) maxBranches = Math.max(maxBranches, bG.numBranches);
+		branchingStore = CoralStore.create(this, "branching", maxBranches);
+		algaStore = new AgentStore(Records.create(this, "algae", Alga.DOUBLES, Alga.INTS), Records.create(this, "algae.halo", Alga.DOUBLES, Alga.INTS));
+		turfStore = new AgentStore(Records.create(this, "turf", TurfCell.DOUBLES, 0));
+		// the group indices are needed before the colonies are stored
+		int index = 0;
+		for (MassiveGroup mG : maCoGroups) mG.index = index++;
+		for (BranchingGroup bG : braCoGroups) bG.index = index++;
+		groupCount = new int[index];
+		groupArea = new double[index];
 
 		initTurf();
+		algaDensity = new AlgaDensityField(this, conf.algaPromotionRadius);
+		if (algaDensity.promotionRadius > 0) schedule.scheduleRepeating(Schedule.EPOCH, 0, algaDensity, 1);
+		algaCompetition = new AlgaCompetition(this);
+		schedule.scheduleRepeating(Schedule.EPOCH, -2, algaCompetition, 1);		// before the algae step
+		tiling = new ReefTiling(this, (int)(tileWidth/dimensionConv_meters), numThreads);
+		schedule.scheduleRepeating(Schedule.EPOCH, -1, tiling, 1);				// agents born later in the month step in the next one
 		initMassiveCorals();
 		initBranchingCorals();
 		initAlgae();
+		buffer.placed(massiveCorals);			// the initial populations were placed directly into the fields
+		buffer.placed(branchingCorals);
+		buffer.placed(algae);
 		
 		// setup and initialize the hashtable where the bleaching 
 		// probabilities for the different CoralGroups are stored in
-		bleachProbs = new Hashtable<String, Double>();
+		bleachProbs = new double[index];
 		initBleachProbs();
-		bleachDeathProbs = new Hashtable<String, Double>();
+		bleachDeathProbs = new double[index];
 		initBleachDeathProbs();
 		
 
 			// to randomize the first bleaching event
-		if(bleachInterval!=0) firstBleach = random.nextInt((bleachInterval/12));
+		if(bleachInterval!=0) firstBleach = environmentRandom().nextInt((bleachInterval/12));
 		else firstBleach=99999;	
 		
 //		temp = new Temperature("TemperatureData_Chumbe", sim);
@@ -596,32 +687,35 @@ public class Siccom extends SimState
 			{
 				if (!createOutput) steps = (int) schedule.getSteps();
 				calculateBleachProbs();
+				bleaching();
 				getMax();
 				grazing();
 			}
 		};
 		schedule.scheduleRepeating(Schedule.EPOCH, 2, monthlies, 1);
 
+		/**
+		 * 	OUTPUT
+		 * 	-- one snapshot per month for all sinks
+		 */
+		reefOutput = new ReefOutput(this);
 		if(createOutput == true) 
 		{
 			outW.initOutput(this);
-			
-			Steppable output = new Steppable()
-			{
-				private static final long serialVersionUID = 1L;
-	
-				@Override
-				public void step(SimState state) 
-				{
-					steps = (int) schedule.getSteps();
-					
-					outW.groupedOutput(steps);
-					outW.temperatureOutput(steps, temp.meanTemp, temp.longTermSummerMeanTemp, minHR, temp.heatRate, haveBeenBleaching);
-//					if (steps!=0 && steps%indivOutInter == 0)  outW.individualOutput(steps);
-				}
-			};
-			schedule.scheduleRepeating(Schedule.EPOCH, 2, output, 1);
+			reefOutput.addSink(outW);
 		}
+		Steppable output = new Steppable()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void step(SimState state) 
+			{
+				steps = (int) schedule.getSteps();
+				reefOutput.step(state);
+			}
+		};
+		schedule.scheduleRepeating(Schedule.EPOCH, 2, output, 1);
 
 		/**
 		 * GET THE DATA
@@ -645,34 +739,10 @@ public class Siccom extends SimState
 		/**
 		 * 	DISTURBANCE 
 		 */
-		if (disser1)
+		if (!disturbanceTypes.isEmpty())
 		{
-			disturber1 = new Steppable()
-			{
-				private static final long serialVersionUID = 3564764645L;
-
-				@Override
-				public void step(SimState state) 
-				{
-					disturbance1(dist1);
-				}
-			};
-			schedule.scheduleOnce(Schedule.EPOCH+dist1[5], disturber1);
-		}
-		
-		if (disser2)
-		{
-			disturber2 = new Steppable()
-			{
-				private static final long serialVersionUID = 3564764645L;
-
-				@Override
-				public void step(SimState state) 
-				{
-					 disturbance2(dist2);
-				}
-			};
-			schedule.scheduleOnce(Schedule.EPOCH+dist2[5], disturber2);
+			disturber = new DisturbanceEngine(this, disturbanceTypes);
+			schedule.scheduleRepeating(Schedule.EPOCH, 0, disturber, 1);
 		}
 		
 		/**
@@ -723,21 +793,77 @@ public class Siccom extends SimState
 			}
 		};
 		schedule.scheduleRepeating(Schedule.EPOCH + conf.algaRecFirst, 1, aRecruitment, conf.algaRecInterval);	
+		
+		/**
+		 * 	STRIP EXCHANGE
+		 */
+		if (transport != null)
+		{
+			exchange = new StripExchange(this, transport);
+			schedule.scheduleRepeating(Schedule.EPOCH, 3, exchange, 1);		// after all other steps of the month
+		}
+	}
+	
+	/**
+	 * @return the random generator for the environment
+	 */
+	public MersenneTwisterFast environmentRandom()
+	{
+		if (envRandom != null) return envRandom;
+		return random;
 	}
 
+	/**
+	 * Ends the simulation and stops the threads of the tiling
+	 */
+	public void finish()
+	{
+		super.finish();
+		if (reefOutput != null) reefOutput.close();
+		if (tiling != null) tiling.shutdown();
+		if (massiveStore != null) massiveStore.close();
+		if (branchingStore != null) branchingStore.close();
+		if (algaStore != null) algaStore.close();
+		if (turfStore != null) turfStore.close();
+	}
+	
+	/**
+	 * Lets corals bleach with the probability of their species -- only in months with bleaching.
+	 * Candidates are drawn by skipping with the highest probability and then accepted with the
+	 * ratio of their own probability, so only the bleaching corals are visited
+	 */
+	public void bleaching()
+	{
+		if (maxBleachProb <= 0) return;
+		
+		buffer.begin();
+		Bag m = massiveOrder.agents();
+		for (int i=Sampling.next(random, -1, maxBleachProb); i<m.numObjs; i=Sampling.next(random, i, maxBleachProb))
+		{
+			MassiveCoral mC = (MassiveCoral) m.objs[i];
+			if (mC.ghost()) continue;
+			double p = bleachProbs[mC.mG.index];
+			if (p >= maxBleachProb || random.nextBoolean(p / maxBleachProb)) mC.bleach();
+		}
+		
+		Bag b = branchingOrder.agents();
+		for (int i=Sampling.next(random, -1, maxBleachProb); i<b.numObjs; i=Sampling.next(random, i, maxBleachProb))
+		{
+			BranchingCoral bC = (BranchingCoral) b.objs[i];
+			if (bC.ghost()) continue;
+			double p = bleachProbs[bC.bG.index];
+			if (p >= maxBleachProb || random.nextBoolean(p / maxBleachProb)) bC.bleach();
+		}
+		buffer.commit();
+	}
+	
 	/**
 	 * Initialization of bleaching probabilities for each coral species
 	 */
 	private void initBleachProbs()
 	 {
-		 for(MassiveGroup mG : maCoGroups)
-		 {
-			 bleachProbs.put(mG.name, 0.0);
-		 }
-		 for(BranchingGroup bG : braCoGroups)
-		 {
-			 bleachProbs.put(bG.name, 0.0);
-		 }
+		 Arrays.fill(bleachProbs, 0.0);
+		 maxBleachProb = 0;
 	 }
 	/**
 	 * Determination of bleaching probs within a month
@@ -747,18 +873,20 @@ public class Siccom extends SimState
 		 if(temp.degreeHeatingDays > minDHD && temp.heatRate > minHR)
 		 {
 			 haveBeenBleaching=true;
+			 maxBleachProb = 0;
 			 
 			 for(MassiveGroup mG : maCoGroups)
 			 {
 				 bleachProb = ((1 - mG.minBleachProb) / (maxHR-minHR) * (temp.heatRate-minHR)) + mG.minBleachProb;	
 				 if (bleachProb>1) bleachProb = 1;
 				 if (bleachProb<0) bleachProb = 0;
-				 bleachProbs.put(mG.name, bleachProb);
+				 bleachProbs[mG.index] = bleachProb;
+				 if (bleachProb > maxBleachProb) maxBleachProb = bleachProb;
 				 
 				 bleachDeathProb = ((1 - mG.minDeathProb) / (maxHR-minHR) * (temp.heatRate-minHR)) + mG.minDeathProb;	
 				 if (bleachDeathProb>1) bleachDeathProb = 1;
 				 if (bleachDeathProb<0) bleachDeathProb = 0;
-				 bleachDeathProbs.put(mG.name, bleachDeathProb);
+				 bleachDeathProbs[mG.index] = bleachDeathProb;
 			 }
 			 
 			 for(BranchingGroup bG : braCoGroups)
@@ -766,12 +894,13 @@ public class Siccom extends SimState
 				 bleachProb = ((1 - bG.minBleachProb) / (maxHR-minHR) * (temp.heatRate-minHR)) + bG.minBleachProb;
 				 if (bleachProb>1) bleachProb = 1;
 				 if (bleachProb<0) bleachProb = 0;
-				 bleachProbs.put(bG.name, bleachProb);
+				 bleachProbs[bG.index] = bleachProb;
+				 if (bleachProb > maxBleachProb) maxBleachProb = bleachProb;
 				 
 				 bleachDeathProb = ((1 - bG.minDeathProb) / (maxHR-minHR) * (temp.heatRate-minHR)) + bG.minDeathProb;
 				 if (bleachDeathProb>1) bleachDeathProb = 1;
 				 if (bleachDeathProb<0) bleachDeathProb = 0;				 
-				 bleachDeathProbs.put(bG.name, bleachDeathProb);
+				 bleachDeathProbs[bG.index] = bleachDeathProb;
 			 }
 //			 System.out.println(bleachProbs);
 		 }
@@ -787,14 +916,7 @@ public class Siccom extends SimState
 	  */
 	 private void initBleachDeathProbs()
 	 {
-		 for(MassiveGroup mG : maCoGroups)
-		 {
-			 bleachDeathProbs.put(mG.name, 0.0);
-		 }
-		 for(BranchingGroup bG : braCoGroups)
-		 {
-			 bleachDeathProbs.put(bG.name, 0.0);
-		 }
+		 Arrays.fill(bleachDeathProbs, 0.0);
 	 }
 
 	/* 
@@ -849,32 +971,58 @@ public class Siccom extends SimState
 			
 			sim.algae.setObjectLocation(a, 
 					new Double2D(xPos, yPos));	
-			schedule.scheduleOnce(Schedule.EPOCH, a);
 			sumSize = sumSize + a.getSize();
 		}
 	}
 	
 	
+	/**
+	 * Provides an alga -- a dead one from the pool if there is one, otherwise a new one
+	 * @param xPos x-position
+	 * @param yPos y-position
+	 * @param radius initial radius
+	 * @param age initial age
+	 * @param aH initial height
+	 */
+	public Alga newAlga(double xPos, double yPos, double radius, int age, double aH)
+	{
+		Alga a = algaPool.obtain();
+		if (a == null) return new Alga(this, xPos, yPos, radius, age, aH);
+		a.reset(xPos, yPos, radius, age, aH);
+		return a;
+	}
+	
 	/**
 	 * Creates new alga agents and stores them into the algae-Continuous2D
 	 */
  	public void recruitAlgae()
   	{
-   		for (int i=0; i<conf.algaRecNum; i++)
+ 		buffer.begin();
+		// only the recruits landing where they can live are placed
+		int settlers = occupancy.settlers(OccupancyMap.ALGA, conf.algaRecNum);
+   		for (int i=0; i<settlers; i++)
   		{
-  			double xPos = random.nextDouble()*gridWidth;
-  			double yPos = random.nextDouble()*gridHeight;
+  			occupancy.nextPosition(OccupancyMap.ALGA);
+  			double xPos = occupancy.x;
+  			double yPos = occupancy.y;
+  			if (occupancy.doomed(OccupancyMap.ALGA, xPos, yPos, conf.algaRecRad)) continue;
   				
-  			Alga a = new Alga(		sim,							// the simulation, the agent acts in
-  									xPos,							// x position
+  			// small recruits are only counted until they reach the promotion radius
+  			if (algaDensity.accepts(conf.algaRecRad))
+  			{
+  				algaDensity.add(xPos, yPos);
+  				continue;
+  			}
+  			
+  			Alga a = newAlga(		xPos,							// x position
   									yPos,							// y position
 									conf.algaRecRad,				// radius
 									0,								// age
 									conf.algaRecRad);				// height of the recruit equals the radius
   				
-  			sim.algae.setObjectLocation(a, new Double2D(xPos, yPos));
-  			schedule.scheduleOnce(a);
+  			buffer.birth(algae, a, xPos, yPos);
    		}
+ 		buffer.commit();
   	}
 	
  	/*
@@ -884,6 +1032,7 @@ public class Siccom extends SimState
  	 * Initializes turf algae and stores them into the turf-SparseGrid2D
  	 */
 	private void initTurf() {
+		turfCells = new TurfCell[cellNumWidth*cellNumHeight];
 		for (int i = 0; i < cellNumWidth; i++)
 		{
 			double x = (i * cellWidth);
@@ -900,12 +1049,24 @@ public class Siccom extends SimState
 												cover,
 												turfGR			);
 				
-				schedule.scheduleOnce(Schedule.EPOCH, tC);
 				turf.setObjectLocation(tC, i, j);
+				turfCells[i*cellNumHeight + j] = tC;
 			}
 		}
 	}
  
+ 	/**
+ 	 * @return the turf cell at a position -- null if the position lies outside of the reef
+ 	 */
+ 	public TurfCell turfCellAt(double x, double y)
+ 	{
+ 		if (x < 0 || y < 0) return null;
+ 		int i = (int)(x / cellWidth);
+ 		int j = (int)(y / cellHeight);
+ 		if (i >= cellNumWidth || j >= cellNumHeight) return null;
+ 		return turfCells[i*cellNumHeight + j];
+ 	}
+ 	
  	/* GRAZING */
 	/**
 	 *  At first the grazing probability is computed in relation to the algal density.
@@ -925,17 +1086,22 @@ public class Siccom extends SimState
 		if (grazingProb < 0) grazingProb = 0; 
 		else if (grazingProb > 1) grazingProb = 1;
 		
-		Bag a = algae.getAllObjects();
-		for (int i=0; i<a.numObjs; i++)
+		// only the grazed algae and cells are visited -- the grazed algae leave the field at the end of the phase
+		Bag a = algaeOrder.agents();
+		buffer.begin();
+		for (int i=Sampling.next(random, -1, grazingProb); i<a.numObjs; i=Sampling.next(random, i, grazingProb))
 		{
-			if (random.nextBoolean(grazingProb)) ((Alga) a.objs[i]).die();
+			Alga al = (Alga) a.objs[i];
+			if (!al.ghost()) al.die();
 		}
+		buffer.commit();
+		algaDensity.graze(grazingProb);
 		
-		Bag t = turf.getAllObjects();
-		for (int j=0; j<t.numObjs; j++)
+		for (int j=Sampling.next(random, -1, grazingProb); j<turfCells.length; j=Sampling.next(random, j, grazingProb))
 		{
-			if(random.nextBoolean(grazingProb)) ((TurfCell) t.objs[j]).cover = ((TurfCell) t.objs[j]).cover - 50;
-			if (((TurfCell) t.objs[j]).cover < 0) ((TurfCell) t.objs[j]).cover = 0;
+			TurfCell tC = turfCells[j];
+			tC.setCover(tC.sendCover() - 50);
+			if (tC.sendCover() < 0) tC.setCover(0);
 		}
 		
 	}
@@ -948,25 +1114,8 @@ public class Siccom extends SimState
 	 */
 	public void getMax()
 	{
-		maCoMaxLength = 25;						// in case that the larger coral dies, maxR is reset to the initial value
-		braCoMaxLength = 10;
-		Bag m = massiveCorals.getAllObjects();
-		for (int i=0; i<m.numObjs; i++)
-		{
-			 if ((!((MassiveCoral) m.objs[i]).bleached) && (((MassiveCoral) m.objs[i]).maximumBranchLength > maCoMaxLength))
-			 {
-				maCoMaxLength = ((MassiveCoral) m.objs[i]).getRadius(); 
-			 }
-		}
-		
-		Bag b = branchingCorals.getAllObjects();
-		for (int i=0; i<b.numObjs; i++)
-		{
-			 if ((!((BranchingCoral) b.objs[i]).bleached) && (((BranchingCoral) b.objs[i]).maximumBranchLength > braCoMaxLength))
-			 {
-				braCoMaxLength = ((BranchingCoral) b.objs[i]).getRadius(); 
-			 }
-		}
+		maCoMaxLength = massiveStore.maxLength(25);			// in case that the larger coral dies, maxR is reset to the initial value
+		braCoMaxLength = branchingStore.maxLength(10);
 	}
 	
 	/**
@@ -979,235 +1128,40 @@ public class Siccom extends SimState
 	}
 
 
-	/* DISTURBANCE */
-	
-	// Disturbance No. 1
-	/**
-	 * Clears a field of the simulation area of all objects
-	 */
-	public void disturbance1(double[] disList)
-	{
-		double disturbMaxRadius = disList[0];
-		double disturbMinRadius = disList[1];
-		int disturbMeanInterval = (int) disList[2];
-		int disturbSDInterval = (int) disList[3];
-		int disturbPerEvent = (int) disList[4]; 					// random.nextInt(disturbMaxNumber1);
-		
-		if (disturbPerEvent != 0)
-		{
-
-			for (int j=0; j<disturbPerEvent; j++)
-			{
-				dRadius = random.nextDouble()* (disturbMaxRadius - disturbMinRadius +1) + disturbMinRadius;
-				if (dRadius<0.5) dRadius = 0;
-				
-				
-				double dX = random.nextDouble() *  ((gridWidth+dRadius) - (0-dRadius) + 1)  + (0-dRadius);
-				double dY = random.nextDouble() *  ((gridWidth+dRadius) - (0-dRadius) + 1)  + (0-dRadius);	
-				Double2D dCentre = new Double2D(	dX, dY );
-				
-				if (createOutput) outW.disturbanceOutput(steps, "small", dX, dY, dRadius);
-				Bag m = massiveCorals.getObjectsExactlyWithinDistance(dCentre, dRadius);
-				for (int i=0; i<m.numObjs; i++)
-				{
-					MassiveCoral maco = ((MassiveCoral) m.objs[i]);
-					double sf = maco.mG.surfaceFactor;
-					double prob = 1 - ((maxDisBreakProb-minDisBreakProb)/sf);
-					
-					if(random.nextBoolean(prob))
-					{
-						maco.die();
-					}
-				}
-					
-				Bag b = branchingCorals.getObjectsExactlyWithinDistance(dCentre, dRadius);
-				for (int i=0; i<b.numObjs; i++)
-				{
-					BranchingCoral braco = ((BranchingCoral) b.objs[i]);
-					double sf = braco.bG.surfaceFactor;
-					double prob = 1 - ((maxDisBreakProb-minDisBreakProb)/sf);
-				
-					if(random.nextBoolean(prob))
-					{
-						if (sim.random.nextBoolean(braco.fragProb)) braco.fragtate();
-						braco.die();
-					}
-				}
-				
-				Bag a = algae.getObjectsExactlyWithinDistance(dCentre, dRadius);
-				for (int i=0; i<a.numObjs; i++) ((Alga) a.objs[i]).die();
-			}
-		}
-			// sets the time for the first disturbance event to occur
-			if (disturbMeanInterval<=1) 
-			{
-				dInterval = 1;
-				schedule.scheduleOnce(disturber1);
-			}
-			else
-			{
-				dInterval = Math.round(random.nextGaussian() * disturbSDInterval + disturbMeanInterval) + 1;
-				schedule.scheduleOnce(steps+dInterval, disturber1);			// reschedule the disturbance event after the time interval
-			}
-														
-	}
-	
-	// Disturbance No. 2
-	/**
-	 * Clears a field of the simulation area of all objects
-	 */
-	public void disturbance2(double[] disList)
-	{
-		double disturbMaxRadius = disList[0];
-		double disturbMinRadius = disList[1];
-		int disturbMeanInterval = (int) disList[2];
-		int disturbSDInterval = (int) disList[3];
-		int disturbPerEvent = (int) disList[4]; 					// random.nextInt(disturbMaxNumber1);
-
-		if (disturbPerEvent != 0)
-		{
-
-			for (int j=0; j<disturbPerEvent; j++)
-			{
-				dRadius = random.nextDouble()* (disturbMaxRadius - disturbMinRadius +1) + disturbMinRadius;
-				double dX = random.nextDouble() *  ((gridWidth+dRadius) - (0-dRadius) + 1)  + (0-dRadius);
-				double dY = random.nextDouble() *  ((gridWidth+dRadius) - (0-dRadius) + 1)  + (0-dRadius);	
-				Double2D dCentre = new Double2D(	dX, dY );
-				
-				if (createOutput) outW.disturbanceOutput(steps, "large", dX, dY, dRadius);
-				Bag m = massiveCorals.getObjectsExactlyWithinDistance(dCentre, dRadius);
-				for (int i=0; i<m.numObjs; i++)
-				{
-					MassiveCoral maco = ((MassiveCoral) m.objs[i]);
-					double sf = maco.mG.surfaceFactor;
-					double prob = 1-((maxDisBreakProb-minDisBreakProb)/sf);
-					
-					if(random.nextBoolean(prob))
-					{
-						maco.die();
-					}
-				}
-				
-				Bag b = branchingCorals.getObjectsExactlyWithinDistance(dCentre, dRadius);
-				for (int i=0; i<b.numObjs; i++)
-				{
-					BranchingCoral braco = ((BranchingCoral) b.objs[i]);
-					double sf = braco.bG.surfaceFactor;
-					double prob = 1-((maxDisBreakProb-minDisBreakProb)/sf);
-					
-					if(random.nextBoolean(prob))
-					{
-						braco.die();
-					}
-				}
-				
-				Bag a = algae.getObjectsExactlyWithinDistance(dCentre, dRadius);
-				for (int i=0; i<a.numObjs; i++) ((Alga) a.objs[i]).die();
-			}
-		}
-		
-			if (disturbMeanInterval<=1) 
-			{
-				dInterval = 1;
-				schedule.scheduleOnce(disturber2);
-			}
-			else
-			{
-				dInterval = Math.round(random.nextGaussian() * disturbSDInterval + disturbMeanInterval) + 1;
-				schedule.scheduleOnce(steps+dInterval, disturber2);			// reschedule the disturbance event after the time interval
-			}													
-	}
-	
 	/**
-	 * Counts massive coral agents of each group and stores them in separate lists for each group
+	 * Counts massive coral agents of each group -- from the store
 	 */
 	public void massiveCoralCounter()
 	{
-		for (MassiveGroup mG : maCoGroups )
-		{
-			int num = 0;
-			Bag m = massiveCorals.getAllObjects();
-			
-			for (int i=0; i<m.numObjs; i++)
-			{
-				MassiveCoral mC = (MassiveCoral)m.objs[i];
-				if (mC.getName().equals(mG.name))
-				num++;
-			}
-			mG.numMaCo = num;
-		}
+		massiveStore.census(groupCount, groupArea);
+		for (MassiveGroup mG : maCoGroups) mG.numMaCo = groupCount[mG.index];
 	}
 	
 	/**
-	 * Computes the relative cover of massive coral groups and stores them separately for each group
+	 * Computes the relative cover of massive coral groups and stores them separately for each group -- from the store
 	 */
 	public void massiveCoralCover()
 	{
-		totalMaCoCov = 0;
-		
-		
-		for ( MassiveGroup mG : maCoGroups ) 
-		{
-			double cSize = 0;
-			Bag m = massiveCorals.getAllObjects();
-		
-			for (int i=0; i<m.numObjs; i++) 
-			{
-				MassiveCoral mC = (MassiveCoral)m.objs[i];
-				if (mC.getName().equals(mG.name))
-					cSize += ((MassiveCoral) m.objs[i]).size;
-			}		
-			mG.maCoPercentCov = cSize/totalArea*100;
-			
-			
-			totalMaCoCov += cSize;
-		}
-		
-		
+		totalMaCoCov = massiveStore.census(groupCount, groupArea);
+		for (MassiveGroup mG : maCoGroups) mG.maCoPercentCov = groupArea[mG.index]/totalArea*100;
 	}
 	
 	/**
-	 * Counts branching coral agents of each group and stores them in separate lists for each group
+	 * Counts branching coral agents of each group -- from the store
 	 */
 	public void branchingCoralCounter()
 	{
-		for (BranchingGroup bG : braCoGroups)
-		{
-			int num = 0;
-			Bag m = branchingCorals.getAllObjects();
-			
-			for (int i=0; i<m.numObjs; i++)
-			{
-				BranchingCoral bC = (BranchingCoral)m.objs[i];
-				if (bC.getName().equals(bG.name) && (bC.xPos > 0 || bC.xPos < Siccom.gridWidth || bC.yPos > 0 || bC.yPos < Siccom.gridHeight))
-				num++;
-			}
-			bG.numBraCo = num;
-		}
+		branchingStore.census(groupCount, groupArea);
+		for (BranchingGroup bG : braCoGroups) bG.numBraCo = groupCount[bG.index];
 	}
 	
 	/**
-	 * Computes the relative cover of branching coral groups and stores them separately for each group
+	 * Computes the relative cover of branching coral groups and stores them separately for each group -- from the store
 	 */
 	public void branchingCoralCover()
 	{
-		totalBraCoCov = 0;
-		
-		for ( BranchingGroup bG : braCoGroups ) 
-		{
-			double cSize = 0;
-			Bag m = branchingCorals.getAllObjects();
-		
-			for (int i=0; i<m.numObjs; i++) 
-			{
-				BranchingCoral bC = (BranchingCoral)m.objs[i];
-				if (bC.getName().equals(bG.name) && (bC.xPos > 0 || bC.xPos < Siccom.gridWidth || bC.yPos > 0 || bC.yPos < Siccom.gridHeight))	
-					cSize += ((BranchingCoral) m.objs[i]).size;
-			}
-			bG.braCoPercentCov = cSize/totalArea*100;
-			
-			totalBraCoCov += cSize;
-		}
+		totalBraCoCov = branchingStore.census(groupCount, groupArea);
+		for (BranchingGroup bG : braCoGroups) bG.braCoPercentCov = groupArea[bG.index]/totalArea*100;
 	}
 	
 	/**
@@ -1216,12 +1170,14 @@ public class Siccom extends SimState
 	public void algCounter()
 	{
 		numAlgae = 0;
-		Bag a = algae.getAllObjects();
+		Bag a = algaeOrder.agents();
 		for (int i=0; i<a.numObjs; i++)
 		{
 			Alga alg = (Alga) a.objs[i];
-			if (alg.alive && (alg.xPos > 0 || alg.xPos < Siccom.gridWidth || alg.yPos > 0 || alg.yPos < Siccom.gridHeight)) numAlgae++;
+			double x = alg.sendXPos(), y = alg.sendYPos();
+			if (alg.getAlive() && !alg.ghost() && (x > 0 || x < Siccom.gridWidth || y > 0 || y < Siccom.gridHeight)) numAlgae++;
 		}
+		numAlgae += algaDensity.count();
 	}
 
 	/**
@@ -1230,15 +1186,17 @@ public class Siccom extends SimState
 	public double algaeCover()
 	{
 		double aSize = 0;
-		Bag a = algae.getAllObjects();
+		Bag a = algaeOrder.agents();
 		for (int i=0; i<a.numObjs; i++)
 		{
 			Alga alg = (Alga) a.objs[i];
+			double x = alg.sendXPos(), y = alg.sendYPos();
 			
-			if (alg.alive && alg.age>2 && (alg.xPos > 0 || alg.xPos < Siccom.gridWidth || alg.yPos > 0 || alg.yPos < Siccom.gridHeight)) 
+			if (alg.getAlive() && !alg.ghost() && alg.getAge()>2 && (x > 0 || x < Siccom.gridWidth || y > 0 || y < Siccom.gridHeight)) 
 				aSize = aSize + alg.getSize();
 			
 		}
+		aSize += algaDensity.cover(3);
 		algalCoverPercent = aSize/totalArea*100;
 
 		return algalCoverPercent;
@@ -0,0 +1,228 @@
+package siccom.sim;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+import ec.util.MersenneTwisterFast;
+
+/**
+ * Runs a reef split into strips along its width, one JVM process per strip.
+ * The coordinator starts the strip processes, waits for them and merges their output
+ * into one set of output files for the whole reef.
+ * The strips are connected with a {@link LoopbackTransport}, so all processes run on the local machine.
+ *
+ * <pre>
+ * -strips N       the number of strips (default 2)
+ * -years Y        the simulated years (default 10)
+ * -seed S         the random seed (default 1)
+ * -port P         the port of strip 0, strip i uses P+i (default 47000)
+ * -out D          the output folder (default output)
+ * -strip I        runs strip I -- used by the coordinator to start the strip processes
+ * </pre>
+ * @author andreas
+ *
+ */
+public class StripCoordinator
+{
+	int numStrips = 2;
+	int years = 10;
+	long seed = 1;
+	int port = 47000;
+	String out;
+
+	DecimalFormatSymbols usFS = new DecimalFormatSymbols(Locale.US);
+	DecimalFormat numform_1 = new DecimalFormat("00.0", usFS);
+
+	/**
+	 * Runs one strip in this process
+	 * @param strip the index of the strip
+	 * @throws IOException if the exchange with the other strips failed -- the output of the strip is then incomplete
+	 */
+	void runStrip(int strip) throws IOException
+	{
+		Siccom.gui = false;
+
+		// different seeds for the strips, but the same environment
+		Siccom sim = new Siccom(seed + strip);
+		sim.envRandom = new MersenneTwisterFast(seed);
+		sim.conf.readEnvironmentFile("environment");
+		sim.conf.setArea(Siccom.areaWidth / numStrips, Siccom.areaHeight);
+		sim.outputPath = stripFolder(strip);
+
+		sim.transport = new LoopbackTransport(strip, numStrips, port);
+
+		sim.start();
+		long months = years * 12L;
+		while (sim.schedule.getSteps() < months)
+		{
+			if (!sim.schedule.step(sim)) break;
+		}
+		IOException failure = sim.exchange != null ? sim.exchange.failure : null;
+		sim.finish();
+
+		sim.transport.close();
+		if (failure != null) throw failure;
+	}
+
+	/**
+	 * Starts a process for each strip, waits for all of them and merges the output
+	 */
+	void runAll() throws IOException, InterruptedException
+	{
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classPath = System.getProperty("java.class.path");
+
+		ArrayList<Process> processes = new ArrayList<Process>();
+		for (int i=0; i<numStrips; i++)
+		{
+			ProcessBuilder pb = new ProcessBuilder(	java, "-cp", classPath, StripCoordinator.class.getName(),
+													"-strips", ""+numStrips, "-years", ""+years, "-seed", ""+seed,
+													"-port", ""+port, "-out", out, "-strip", ""+i);
+			pb.inheritIO();
+			processes.add(pb.start());
+		}
+
+		int failed = 0;
+		for (Process p : processes) if (p.waitFor() != 0) failed++;
+		if (failed > 0)
+		{
+			System.out.println(failed + " strip(s) failed -- output is not merged");
+			return;
+		}
+
+		mergeGroupedOutput();
+		mergeDisturbances();
+		copy(new File(stripFolder(0) + "/temperatureOutput.dat"), new File(out + "/temperatureOutput.dat"));
+		System.out.println("Merged output of " + numStrips + " strips written to " + out);
+	}
+
+	/**
+	 * @return the output folder of a strip
+	 */
+	String stripFolder(int strip)
+	{
+		return out + "/strip" + strip;
+	}
+
+	/**
+	 * Merges the grouped output -- abundances are summed up, the relative cover is averaged over the strips
+	 * weighted by their share of the reef area
+	 */
+	void mergeGroupedOutput() throws IOException
+	{
+		LinkedHashMap<String, String[]> rows = new LinkedHashMap<String, String[]>();
+		LinkedHashMap<String, double[]> sums = new LinkedHashMap<String, double[]>();
+		String header = null;
+
+		for (int i=0; i<numStrips; i++)
+		{
+			BufferedReader br = new BufferedReader(new FileReader(stripFolder(i) + "/groupedOutput.dat"));
+			header = br.readLine();
+			String line;
+			while ((line = br.readLine()) != null)
+			{
+				String[] v = line.split("\t");
+				if (v.length < 7) continue;
+				String key = v[0] + "\t" + v[3];
+				double[] s = sums.get(key);
+				if (s == null)
+				{
+					s = new double[2];
+					sums.put(key, s);
+					rows.put(key, v);
+				}
+				s[0] += Double.valueOf(v[5]);
+				s[1] += Double.valueOf(v[6]) / numStrips;
+			}
+			br.close();
+		}
+
+		PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(out + "/groupedOutput.dat")));
+		w.write(header + "\n");
+		for (String key : rows.keySet())
+		{
+			String[] v = rows.get(key);
+			double[] s = sums.get(key);
+			w.write(v[0] + "\t" + v[1] + "\t" + v[2] + "\t" + v[3] + "\t" + v[4] + "\t"
+					+ (long)s[0] + "\t" + numform_1.format(s[1]) + "\n");
+		}
+		w.close();
+	}
+
+	/**
+	 * Takes over the disturbance output -- the strips share the events of the whole reef, strip 0 writes them
+	 */
+	void mergeDisturbances() throws IOException
+	{
+		copy(new File(stripFolder(0) + "/disturbance.dat"), new File(out + "/disturbance.dat"));
+	}
+
+	/**
+	 * Copies a text file
+	 */
+	static void copy(File from, File to) throws IOException
+	{
+		BufferedReader br = new BufferedReader(new FileReader(from));
+		PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(to)));
+		String line;
+		while ((line = br.readLine()) != null) w.write(line + "\n");
+		br.close();
+		w.close();
+	}
+
+	/**
+	 * The main method
+	 * @param args see the class description
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		StripCoordinator coord = new StripCoordinator();
+		int strip = -1;
+
+		for (int i=0; i<args.length; i++)
+		{
+			String a = args[i];
+			if (a.equals("-strips")) coord.numStrips = Integer.valueOf(args[++i]);
+			else if (a.equals("-years")) coord.years = Integer.valueOf(args[++i]);
+			else if (a.equals("-seed")) coord.seed = Long.valueOf(args[++i]);
+			else if (a.equals("-port")) coord.port = Integer.valueOf(args[++i]);
+			else if (a.equals("-out")) coord.out = args[++i];
+			else if (a.equals("-strip")) strip = Integer.valueOf(args[++i]);
+			else System.out.println("Unknown argument " + a);
+		}
+
+		// reads the main parameters, e.g. the size of the whole reef
+		Siccom.gui = false;
+		Siccom sim = new Siccom(coord.seed);
+		if (coord.out == null) coord.out = sim.outputPath;
+
+		if (strip >= 0)
+		{
+			try
+			{
+				coord.runStrip(strip);
+			}
+			catch (IOException e)
+			{
+				System.out.println("Strip " + strip + " failed: " + e.getMessage());
+				System.exit(1);		// the coordinator does not merge the output then
+			}
+		}
+		else
+		{
+			new File(coord.out).mkdirs();
+			coord.runAll();
+		}
+		System.exit(0);
+	}
+}
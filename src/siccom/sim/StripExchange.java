@@ -0,0 +1,423 @@
+package siccom.sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.Bag;
+
+/**
+ * Synchronizes a strip of the reef with the other strips at the end of each month.
+ * <ul>
+ * <li>Branching coral fragments and algae that have left the strip across a border to a neighbouring strip
+ * are removed and sent to that strip, where they are created again</li>
+ * <li>The colonies and algae within the halo along a border are sent to the neighbouring strip, where they
+ * stay as ghosts until the next exchange. The agents of that strip meet them in their interactions,
+ * but the ghosts neither step nor count in the output of the strip</li>
+ * <li>The surface of mature colonies of each coral group is summed up over all strips.
+ * Each strip produces its share of the self made recruits of the whole reef in the following month</li>
+ * </ul>
+ * The exchange is done by every strip in the same month, after all other steps of the month,
+ * so it acts as a barrier between the processes.
+ * @author andreas
+ *
+ */
+public class StripExchange implements Steppable
+{
+	private static final long serialVersionUID = -6215093875117629340L;
+
+	static final byte BRANCHING = 0;
+	static final byte ALGA = 1;
+	static final byte MASSIVE = 2;
+
+	Siccom sim;
+	StripTransport transport;
+	/**
+	 * The part of the reef width covered by this strip
+	 */
+	double share;
+	/**
+	 * The agents leaving across the left and right border
+	 */
+	Bag toLeft = new Bag(), toRight = new Bag();
+	/**
+	 * The ghosts of the agents of the neighbouring strips
+	 */
+	Bag ghosts = new Bag();
+	/**
+	 * The longest reach of an agent over all strips at the last exchange
+	 */
+	double reefReach;
+	/**
+	 * The number of agents sent and received in the last month
+	 */
+	public int emigrants, immigrants;
+	/**
+	 * The error that stopped the exchange -- null while it works
+	 */
+	public IOException failure;
+
+	public StripExchange(Siccom sim, StripTransport transport)
+	{
+		this.sim = sim;
+		this.transport = transport;
+		share = 1.0 / transport.getNumStrips();
+	}
+
+	@Override
+	public void step(SimState state)
+	{
+		try
+		{
+			exchange();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			failure = e;
+			sim.kill();
+		}
+	}
+
+	/**
+	 * Sends and receives the boundary agents, the ghosts and the surfaces of mature colonies
+	 */
+	public void exchange() throws IOException
+	{
+		int strip = transport.getStrip();
+		int numStrips = transport.getNumStrips();
+
+		sim.buffer.begin();
+		for (int i=0; i<ghosts.numObjs; i++)
+		{
+			Object o = ghosts.objs[i];
+			if (o instanceof MassiveCoral) ((MassiveCoral) o).die();
+			else if (o instanceof BranchingCoral) ((BranchingCoral) o).die();
+			else ((Alga) o).die();
+		}
+		ghosts.clear();
+		collectEmigrants();
+
+		double reach = reach();
+		double halo = haloWidth(Math.max(reach, reefReach));
+
+		// local surfaces of mature colonies
+		double[] maSurface = new double[sim.maCoGroups.size()];
+		double[] braSurface = new double[sim.braCoGroups.size()];
+		for (int i=0; i<maSurface.length; i++) maSurface[i] = sim.maCoGroups.get(i).matureSurface();
+		for (int i=0; i<braSurface.length; i++) braSurface[i] = sim.braCoGroups.get(i).matureSurface();
+
+		for (int other=0; other<numStrips; other++)
+		{
+			if (other == strip) continue;
+
+			Bag agents = null;
+			double dx = 0, from = 0, to = 0;
+			if (other == strip-1) { agents = toLeft; dx = Siccom.gridWidth; to = halo; }
+			else if (other == strip+1) { agents = toRight; dx = -Siccom.gridWidth; from = Siccom.gridWidth - halo; to = Siccom.gridWidth; }
+
+			transport.send(other, write(maSurface, braSurface, reach, agents, from, to, dx));
+		}
+
+		emigrants = toLeft.numObjs + toRight.numObjs;
+		toLeft.clear();
+		toRight.clear();
+
+		double[] maTotal = maSurface.clone();
+		double[] braTotal = braSurface.clone();
+		immigrants = 0;
+		reefReach = reach;
+		for (int other=0; other<numStrips; other++)
+		{
+			if (other == strip) continue;
+			read(transport.receive(other), maTotal, braTotal);
+		}
+
+		sim.buffer.commit();
+
+		for (int i=0; i<maTotal.length; i++) sim.maCoGroups.get(i).pooledSurface = maTotal[i] * share;
+		for (int i=0; i<braTotal.length; i++) sim.braCoGroups.get(i).pooledSurface = braTotal[i] * share;
+	}
+
+	/**
+	 * @return the longest branch of the colonies of the strip or the largest radius of its corals and algae
+	 */
+	double reach()
+	{
+		double reach = Math.max(sim.conf.aMaxRadius, Math.max(sim.maCoMaxLength, sim.braCoMaxLength));
+		reach = Math.max(reach, sim.massiveStore.longestBranch());
+		return Math.max(reach, sim.branchingStore.longestBranch());
+	}
+
+	/**
+	 * A colony looks for its neighbours up to its longest branch plus the longest reach of the reef and 10 more;
+	 * the algae look less far
+	 * @param reach the longest reach of the reef
+	 * @return the width of the halo along a border
+	 */
+	static double haloWidth(double reach)
+	{
+		return 2*reach + 10;
+	}
+
+	/**
+	 * Finds the branching corals and algae beyond a border to a neighbouring strip and removes them
+	 */
+	void collectEmigrants()
+	{
+		boolean hasLeft = transport.getStrip() > 0;
+		boolean hasRight = transport.getStrip() < transport.getNumStrips()-1;
+
+		// dying agents are removed from the fields at the end of the exchange
+		Bag b = sim.branchingOrder.agents();
+		for (int i=0; i<b.numObjs; i++)
+		{
+			BranchingCoral bC = (BranchingCoral) b.objs[i];
+			if (!bC.getAlive()) continue;
+			if (hasLeft && bC.sendXPos() < 0) toLeft.add(bC);
+			else if (hasRight && bC.sendXPos() >= Siccom.gridWidth) toRight.add(bC);
+			else continue;
+			bC.die();
+		}
+
+		Bag a = sim.algaeOrder.agents();
+		for (int i=0; i<a.numObjs; i++)
+		{
+			Alga al = (Alga) a.objs[i];
+			if (!al.getAlive()) continue;
+			if (hasLeft && al.sendXPos() < 0) toLeft.add(al);
+			else if (hasRight && al.sendXPos() >= Siccom.gridWidth) toRight.add(al);
+			else continue;
+			al.die();
+		}
+	}
+
+	/**
+	 * Writes a message for another strip
+	 * @param reach the longest reach of the agents of this strip
+	 * @param agents the agents moving to that strip (null if the strip is no neighbour)
+	 * @param from the left edge of the halo sent to that strip
+	 * @param to the right edge of the halo -- no ghosts are sent if it is not beyond the left edge
+	 * @param dx the shift of the x-position into the coordinates of that strip
+	 */
+	byte[] write(double[] maSurface, double[] braSurface, double reach, Bag agents, double from, double to, double dx) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(bytes);
+
+		for (int i=0; i<maSurface.length; i++) dos.writeDouble(maSurface[i]);
+		for (int i=0; i<braSurface.length; i++) dos.writeDouble(braSurface[i]);
+		dos.writeDouble(reach);
+
+		int n = (agents == null) ? 0 : agents.numObjs;
+		dos.writeInt(n);
+		for (int i=0; i<n; i++)
+		{
+			if (agents.objs[i] instanceof BranchingCoral)
+			{
+				BranchingCoral bC = (BranchingCoral) agents.objs[i];
+				dos.writeByte(BRANCHING);
+				dos.writeInt(sim.braCoGroups.indexOf(bC.bG));
+				dos.writeDouble(bC.sendXPos() + dx);
+				dos.writeDouble(bC.sendYPos());
+				dos.writeDouble(bC.getRadius());
+				dos.writeDouble(bC.getInitGrowthRate());
+				dos.writeInt(bC.getNumBranches());
+				dos.writeInt(bC.getAge());
+			}
+			else
+			{
+				Alga al = (Alga) agents.objs[i];
+				dos.writeByte(ALGA);
+				dos.writeDouble(al.sendXPos() + dx);
+				dos.writeDouble(al.sendYPos());
+				dos.writeDouble(al.getRadius());
+				dos.writeInt(al.getAge());
+				dos.writeDouble(al.getHeight());
+			}
+		}
+		writeGhosts(dos, from, to, dx);
+		dos.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the living colonies and algae of the strip within the halo
+	 */
+	void writeGhosts(DataOutputStream dos, double from, double to, double dx) throws IOException
+	{
+		Bag m = sim.massiveOrder.agents();
+		Bag b = sim.branchingOrder.agents();
+		Bag a = sim.algaeOrder.agents();
+		Bag halo = new Bag();
+		for (int i=0; i<m.numObjs; i++)
+		{
+			MassiveCoral mC = (MassiveCoral) m.objs[i];
+			if (mC.getAlive() && !mC.ghost() && mC.sendXPos() >= from && mC.sendXPos() < to) halo.add(mC);
+		}
+		for (int i=0; i<b.numObjs; i++)
+		{
+			BranchingCoral bC = (BranchingCoral) b.objs[i];
+			if (bC.getAlive() && !bC.ghost() && bC.sendXPos() >= from && bC.sendXPos() < to) halo.add(bC);
+		}
+		for (int i=0; i<a.numObjs; i++)
+		{
+			Alga al = (Alga) a.objs[i];
+			if (al.getAlive() && !al.ghost() && al.sendXPos() >= from && al.sendXPos() < to) halo.add(al);
+		}
+
+		dos.writeInt(halo.numObjs);
+		for (int i=0; i<halo.numObjs; i++)
+		{
+			Object o = halo.objs[i];
+			if (o instanceof MassiveCoral)
+			{
+				MassiveCoral mC = (MassiveCoral) o;
+				dos.writeByte(MASSIVE);
+				dos.writeInt(sim.maCoGroups.indexOf(mC.mG));
+				writeRecord(dos, mC.store, mC.slot, dx);
+			}
+			else if (o instanceof BranchingCoral)
+			{
+				BranchingCoral bC = (BranchingCoral) o;
+				dos.writeByte(BRANCHING);
+				dos.writeInt(sim.braCoGroups.indexOf(bC.bG));
+				writeRecord(dos, bC.store, bC.slot, dx);
+			}
+			else
+			{
+				Alga al = (Alga) o;
+				dos.writeByte(ALGA);
+				dos.writeInt(al.getAge());
+				for (int k=0; k<Alga.DOUBLES; k++) dos.writeDouble(al.store.get(al.slot, k) + (k == Alga.X ? dx : 0));
+			}
+		}
+	}
+
+	/**
+	 * Writes the record of a colony -- without the doubles only the strip of the colony keeps track of
+	 */
+	void writeRecord(DataOutputStream dos, CoralStore store, int s, double dx) throws IOException
+	{
+		int numBranches = store.getInt(s, CoralStore.NUM_BRANCHES);
+		dos.writeInt(store.getInt(s, CoralStore.AGE));
+		dos.writeInt(store.getInt(s, CoralStore.FLAGS));
+		dos.writeInt(numBranches);
+		for (int k=0; k<CoralStore.BRANCHES + 2*numBranches; k++)
+		{
+			if (k != CoralStore.MARKED_DISC && k != CoralStore.INDEXED_REACH) dos.writeDouble(store.get(s, k) + (k == CoralStore.X ? dx : 0));
+		}
+	}
+
+	/**
+	 * Creates the ghost of an agent of a neighbouring strip
+	 * @param type the type of the agent
+	 */
+	void readGhost(DataInputStream dis, byte type) throws IOException
+	{
+		if (type == ALGA)
+		{
+			int age = dis.readInt();
+			double[] d = new double[Alga.DOUBLES];
+			for (int k=0; k<d.length; k++) d[k] = dis.readDouble();
+
+			Alga a = sim.newAlga(d[Alga.X], d[Alga.Y], d[Alga.RADIUS], age, d[Alga.HEIGHT]);
+			for (int k=0; k<d.length; k++) a.store.set(a.slot, k, d[k]);
+			a.store.setInt(a.slot, Alga.GHOST, 1);
+			sim.buffer.birth(sim.algae, a, d[Alga.X], d[Alga.Y]);
+			ghosts.add(a);
+			return;
+		}
+
+		int group = dis.readInt();
+		int age = dis.readInt();
+		int flags = dis.readInt() | CoralStore.GHOST;
+		int numBranches = dis.readInt();
+		double[] d = new double[CoralStore.BRANCHES + 2*numBranches];
+		for (int k=0; k<d.length; k++)
+		{
+			if (k != CoralStore.MARKED_DISC && k != CoralStore.INDEXED_REACH) d[k] = dis.readDouble();
+		}
+		double xPos = d[CoralStore.X], yPos = d[CoralStore.Y];
+
+		if (type == MASSIVE)
+		{
+			MassiveCoral mC = sim.maCoGroups.get(group).newCoral(xPos, yPos, d[CoralStore.RADIUS], d[CoralStore.INIT_GROWTH_RATE], age);
+			copyRecord(d, flags, mC.store, mC.slot);
+			mC.index();
+			mC.occupy();
+			sim.buffer.birth(sim.massiveCorals, mC, xPos, yPos);
+			ghosts.add(mC);
+		}
+		else
+		{
+			BranchingCoral bC = sim.braCoGroups.get(group).newCoral(xPos, yPos, d[CoralStore.RADIUS], d[CoralStore.INIT_GROWTH_RATE], numBranches, age);
+			copyRecord(d, flags, bC.store, bC.slot);
+			bC.index();
+			bC.occupy();
+			sim.buffer.birth(sim.branchingCorals, bC, xPos, yPos);
+			ghosts.add(bC);
+		}
+	}
+
+	/**
+	 * Copies a received record into the record of a ghost -- the ghost keeps how it is listed in this strip
+	 */
+	static void copyRecord(double[] d, int flags, CoralStore store, int s)
+	{
+		for (int k=0; k<d.length; k++)
+		{
+			if (k != CoralStore.MARKED_DISC && k != CoralStore.INDEXED_REACH) store.set(s, k, d[k]);
+		}
+		store.setInt(s, CoralStore.FLAGS, flags);
+	}
+
+	/**
+	 * Reads the message of another strip, adds its surfaces to the totals and creates the arriving agents and ghosts
+	 */
+	void read(byte[] msg, double[] maTotal, double[] braTotal) throws IOException
+	{
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(msg));
+
+		for (int i=0; i<maTotal.length; i++) maTotal[i] += dis.readDouble();
+		for (int i=0; i<braTotal.length; i++) braTotal[i] += dis.readDouble();
+		reefReach = Math.max(reefReach, dis.readDouble());
+
+		int n = dis.readInt();
+		for (int i=0; i<n; i++)
+		{
+			if (dis.readByte() == BRANCHING)
+			{
+				BranchingGroup bG = sim.braCoGroups.get(dis.readInt());
+				double xPos = dis.readDouble();
+				double yPos = dis.readDouble();
+				double radius = dis.readDouble();
+				double growthRate = dis.readDouble();
+				int numBranches = dis.readInt();
+				int age = dis.readInt();
+
+				BranchingCoral bC = bG.newCoral(xPos, yPos, radius, growthRate, numBranches, age);
+				sim.buffer.birth(sim.branchingCorals, bC, xPos, yPos);
+			}
+			else
+			{
+				double xPos = dis.readDouble();
+				double yPos = dis.readDouble();
+				double radius = dis.readDouble();
+				int age = dis.readInt();
+				double height = dis.readDouble();
+
+				Alga a = sim.newAlga(xPos, yPos, radius, age, height);
+				sim.buffer.birth(sim.algae, a, xPos, yPos);
+			}
+			immigrants++;
+		}
+
+		int g = dis.readInt();
+		for (int i=0; i<g; i++) readGhost(dis, dis.readByte());
+	}
+}
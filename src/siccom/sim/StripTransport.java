@@ -0,0 +1,42 @@
+package siccom.sim;
+
+import java.io.IOException;
+
+/**
+ * Connects the processes of a reef that is split into strips along its width.
+ * Strip i borders on strips i-1 and i+1; every strip can send messages to every other strip.
+ * Messages between two strips arrive in the order they were sent.
+ * @author andreas
+ *
+ */
+public interface StripTransport
+{
+	/**
+	 * @return the index of the own strip
+	 */
+	public int getStrip();
+
+	/**
+	 * @return the number of strips
+	 */
+	public int getNumStrips();
+
+	/**
+	 * Sends a message to another strip -- does not wait for the message to be received
+	 * @param strip the receiving strip
+	 * @param message the message
+	 */
+	public void send(int strip, byte[] message) throws IOException;
+
+	/**
+	 * Waits for the next message of another strip
+	 * @param strip the sending strip
+	 * @return the message
+	 */
+	public byte[] receive(int strip) throws IOException;
+
+	/**
+	 * Closes all connections
+	 */
+	public void close();
+}
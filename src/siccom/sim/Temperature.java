@@ -165,7 +165,7 @@ public class Temperature implements Steppable
 		for (int i=0; i<120; i++)
 			glider.add(i, 28.0);
 		
-		year = (int)(sim.random.nextDouble() * (maxYear - minYear +1) + minYear);
+		year = (int)(sim.environmentRandom().nextDouble() * (maxYear - minYear +1) + minYear);
 		
 		longTermSummerMeanTemp = 29;
 	}
@@ -205,8 +205,8 @@ public class Temperature implements Steppable
 	{
 		for(int i=1; i<=sim.longTermYears; i++)
 		{
-			int y =  (int)(sim.random.nextDouble() * (maxYear - minYear +1) + minYear);
-			while (y == 1998) y = (int)(sim.random.nextDouble() * (maxYear - minYear +1) + minYear);
+			int y =  (int)(sim.environmentRandom().nextDouble() * (maxYear - minYear +1) + minYear);
+			while (y == 1998) y = (int)(sim.environmentRandom().nextDouble() * (maxYear - minYear +1) + minYear);
 			ArrayList<Double> ltd = tempData.get(Integer.toString(y));
 			longTermData.add(ltd);
 			
@@ -289,7 +289,7 @@ public class Temperature implements Steppable
 	 */
 	public ArrayList<Double> randomize()
 	{
-		year = (int)(sim.random.nextDouble() * (maxYear - minYear +1) + minYear);
+		year = (int)(sim.environmentRandom().nextDouble() * (maxYear - minYear +1) + minYear);
 		return tempData.get(year+"");
 	}
 	/**
@@ -378,10 +378,10 @@ public class Temperature implements Steppable
 				else
 				{			
 					sim.bleachIsOn=false;
-					int tempDataYear = (int)(sim.random.nextDouble() * (maxYear - minYear +1) + minYear);
+					int tempDataYear = (int)(sim.environmentRandom().nextDouble() * (maxYear - minYear +1) + minYear);
 	
 					// to make sure that 1998 is not chosen outside the bleaching interval
-					while (tempDataYear == 1998) tempDataYear = (int)(sim.random.nextDouble() * (maxYear - minYear +1) + minYear);
+					while (tempDataYear == 1998) tempDataYear = (int)(sim.environmentRandom().nextDouble() * (maxYear - minYear +1) + minYear);
 					
 					tempList = tempData.get(tempDataYear+""); 
 					yearData = tempList;
@@ -0,0 +1,250 @@
+package siccom.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A series of values at regular times (e.g. one per month) kept in primitive chunks of {@link #CHUNK} values.
+ * The chunk being filled is a plain array; a full chunk is sealed and -- if compression is on --
+ * encoded as in Gorilla (Pelkonen et al. 2015): each value is stored as the XOR with the value before,
+ * a repeated value costs one bit and a slowly changing value only the bits that differ.
+ * Counts and covers of a reef change little from month to month, so a sealed chunk takes a few bytes per value.
+ * <p>
+ * The times are not stored: value i belongs to start + i*interval.
+ * Reading a value of a compressed chunk decodes the whole chunk, which is kept until another chunk is read,
+ * so reading in order decodes each chunk once.
+ * @author andreas
+ *
+ */
+public class TimeSeriesBuffer
+{
+	public static final int CHUNK = 1024;
+
+	final double start;
+	final double interval;
+	final boolean compress;
+	/**
+	 * The sealed chunks -- double[] if not compressed, long[] (the bits) if compressed
+	 */
+	ArrayList<Object> sealed = new ArrayList<Object>();
+	double[] head = new double[CHUNK];
+	int headSize;
+	/**
+	 * The chunk decoded last
+	 */
+	double[] decoded = new double[CHUNK];
+	int decodedChunk = -1;
+
+	/**
+	 * @param start the time of the first value
+	 * @param interval the time between two values
+	 * @param compress true to encode the sealed chunks
+	 */
+	public TimeSeriesBuffer(double start, double interval, boolean compress)
+	{
+		this.start = start;
+		this.interval = interval;
+		this.compress = compress;
+	}
+
+	public void add(double v)
+	{
+		head[headSize++] = v;
+		if (headSize < CHUNK) return;
+		if (compress) sealed.add(encode(head));
+		else sealed.add(head);
+		head = compress ? head : new double[CHUNK];
+		headSize = 0;
+	}
+
+	public int size()
+	{
+		return sealed.size()*CHUNK + headSize;
+	}
+
+	/**
+	 * @return the time of value i
+	 */
+	public double x(int i)
+	{
+		return start + i*interval;
+	}
+
+	public double get(int i)
+	{
+		int c = i / CHUNK;
+		if (c == sealed.size()) return head[i - c*CHUNK];
+		return chunk(c)[i - c*CHUNK];
+	}
+
+	/**
+	 * @return the values of a sealed chunk
+	 */
+	private double[] chunk(int c)
+	{
+		Object o = sealed.get(c);
+		if (o instanceof double[]) return (double[]) o;
+		if (decodedChunk != c)
+		{
+			decode((long[]) o, decoded);
+			decodedChunk = c;
+		}
+		return decoded;
+	}
+
+	/**
+	 * Copies values into an array
+	 * @param from the first value
+	 * @param to the value after the last
+	 */
+	public void copy(int from, int to, double[] out, int offset)
+	{
+		for (int i=from; i<to; )
+		{
+			int c = i / CHUNK;
+			int at = i - c*CHUNK;
+			int n = Math.min(to - i, CHUNK - at);
+			double[] values = c == sealed.size() ? head : chunk(c);
+			System.arraycopy(values, at, out, offset + i - from, n);
+			i += n;
+		}
+	}
+
+	public double[] toArray()
+	{
+		double[] v = new double[size()];
+		copy(0, v.length, v, 0);
+		return v;
+	}
+
+	/**
+	 * @return the bytes held by the values (without the object headers)
+	 */
+	public long bytes()
+	{
+		long b = 8L*head.length;
+		for (Object o : sealed) b += o instanceof double[] ? 8L*((double[]) o).length : 8L*((long[]) o).length;
+		return b;
+	}
+
+	/**
+	 * Encodes a chunk: the first value as is, then for each value
+	 * <ul>
+	 * <li>0 -- the same as the value before</li>
+	 * <li>10 + bits -- the XOR with the value before fits into the window of the XOR before</li>
+	 * <li>11 + 5 bits leading zeros + 6 bits length + bits -- a new window</li>
+	 * </ul>
+	 */
+	static long[] encode(double[] values)
+	{
+		BitWriter w = new BitWriter();
+		long prev = Double.doubleToRawLongBits(values[0]);
+		w.write(prev, 64);
+		int leading = -1, trailing = 0;
+		for (int i=1; i<values.length; i++)
+		{
+			long bits = Double.doubleToRawLongBits(values[i]);
+			long xor = bits ^ prev;
+			prev = bits;
+			if (xor == 0)
+			{
+				w.write(0, 1);
+				continue;
+			}
+			int lz = Math.min(31, Long.numberOfLeadingZeros(xor));
+			int tz = Long.numberOfTrailingZeros(xor);
+			if (leading >= 0 && lz >= leading && tz >= trailing)
+			{
+				w.write(2, 2);
+				w.write(xor >>> trailing, 64 - leading - trailing);
+			}
+			else
+			{
+				leading = lz;
+				trailing = tz;
+				int length = 64 - lz - tz;
+				w.write(3, 2);
+				w.write(lz, 5);
+				w.write(length & 63, 6);		// 64 is written as 0
+				w.write(xor >>> tz, length);
+			}
+		}
+		return w.toArray();
+	}
+
+	static void decode(long[] bits, double[] out)
+	{
+		BitReader r = new BitReader(bits);
+		long prev = r.read(64);
+		out[0] = Double.longBitsToDouble(prev);
+		int leading = 0, trailing = 0;
+		for (int i=1; i<out.length; i++)
+		{
+			if (r.read(1) != 0)
+			{
+				if (r.read(1) != 0)
+				{
+					leading = (int) r.read(5);
+					int length = (int) r.read(6);
+					if (length == 0) length = 64;
+					trailing = 64 - leading - length;
+				}
+				prev ^= r.read(64 - leading - trailing) << trailing;
+			}
+			out[i] = Double.longBitsToDouble(prev);
+		}
+	}
+
+	/**
+	 * Writes bits into a growing array of longs, the first bit is the highest
+	 */
+	static class BitWriter
+	{
+		long[] words = new long[16];
+		int bit;
+
+		void write(long value, int n)
+		{
+			if (n == 0) return;
+			if (n < 64) value &= (1L << n) - 1;
+			int w = bit >>> 6, used = bit & 63;
+			if (w+1 >= words.length) words = Arrays.copyOf(words, 2*words.length);
+			int free = 64 - used;
+			if (n <= free) words[w] |= value << (free - n);
+			else
+			{
+				words[w] |= value >>> (n - free);
+				words[w+1] |= value << (64 - (n - free));
+			}
+			bit += n;
+		}
+
+		long[] toArray()
+		{
+			return Arrays.copyOf(words, (bit + 63) >>> 6);
+		}
+	}
+
+	static class BitReader
+	{
+		final long[] words;
+		int bit;
+
+		BitReader(long[] words)
+		{
+			this.words = words;
+		}
+
+		long read(int n)
+		{
+			if (n == 0) return 0;
+			int w = bit >>> 6, used = bit & 63;
+			int free = 64 - used;
+			long v;
+			if (n <= free) v = words[w] >>> (free - n);
+			else v = (words[w] << (n - free)) | (words[w+1] >>> (64 - (n - free)));
+			bit += n;
+			return n == 64 ? v : v & ((1L << n) - 1);
+		}
+	}
+}
@@ -2,22 +2,24 @@ package siccom.sim;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
-import sim.engine.SimState;
-import sim.engine.Steppable;
+
+import org.jhotdraw.geom.Polygon2D;
+
 import sim.portrayal.DrawInfo2D;
 import sim.portrayal.simple.RectanglePortrayal2D;
 import sim.util.Bag;
 import sim.util.gui.SimpleColorMap;
 
 /**
- * One cell of turf algae
+ * One cell of turf algae -- updated by the tile of the {@link ReefTiling} it lies in
  * @author andreas
  *
  */
 
 
-public class TurfCell extends RectanglePortrayal2D implements Steppable
+public class TurfCell extends RectanglePortrayal2D
 {
 	/**
 	 */
@@ -25,27 +27,27 @@ public class TurfCell extends RectanglePortrayal2D implements Steppable
 
 	//VARIABLES
 	/**
-	 * The percentage cover
+	 * The doubles of the record of a cell in the {@link AgentStore} of the turf:
+	 * the percentage cover, the actual growth rate and the initial growth rate of turf
 	 */
-	double 	cover;
+	static final int COVER = 0, GROWTH_RATE = 1, INI_GROWTH_RATE = 2;
+	static final int DOUBLES = 3;
 	/**
 	 * The maximal cover
 	 */
-	double	maxCover;
+	static final double maxCover = 100;
 	/**
 	 * The size of a cell
 	 */
 	double	size;
 	/**
-	 * The initial growth rate of turf
+	 * The store holding the cover and growth of the cell
 	 */
-	double 	iniGrowthRate;
+	AgentStore store;
 	/**
-	 * The actual growth rate
+	 * The slot of the cell in the store
 	 */
-	double	growthRate;
-	
-	private final double iniMaxCover = 100;
+	int slot;
 	
 	/**
 	 * The position of the upper left corner of the cell
@@ -86,68 +88,57 @@ public class TurfCell extends RectanglePortrayal2D implements Steppable
 		this.cellHeight = cellHeight;
 		this.x = x2;
 		this.y = y2;
-		this.cover = cover;
-		iniGrowthRate = growthRate;
-		this.growthRate = iniGrowthRate;
+		store = sim.turfStore;
+		slot = store.allocate(this);
+		store.set(slot, COVER, cover);
+		store.set(slot, INI_GROWTH_RATE, growthRate);
+		store.set(slot, GROWTH_RATE, growthRate);
 		size = cellWidth*cellHeight;
-		maxCover = iniMaxCover;
-		
+		cell = new Rectangle2D.Double( x, y, cellWidth, cellHeight );
 	}
 	
 	
 
-	@Override
 	/**
-	 * The step routine
+	 * Interacts with the given corals and grows -- called for each month.
+	 * The corals are read from the halos of their stores, since they may be stepped by other tiles at the same time
+	 * @param mB the massive corals which may overlap the cell
+	 * @param bB the branching corals which may overlap the cell
+	 * @param outline a polygon to draw the outlines of the massive corals into
 	 */
-	public void step(SimState state) 
+	public void update(Bag mB, Bag bB, Polygon2D.Double outline)
 	{
-
-		maxCover = iniMaxCover;
-		growthRate = iniGrowthRate;
-		
-		interactMaCo();
-		interactBraCo();
+		store.set(slot, GROWTH_RATE, store.get(slot, INI_GROWTH_RATE));
 		
-		if (cover >= maxCover) cover = maxCover;
-		else cover += growthRate;
-		
-		reschedule(1.0);	
+		interactMaCo(mB, outline);
+		interactBraCo(bB);
 		
-	}
-	
-	/**
-	 * Reschedule after dTime
-	 * @param dTime
-	 */
-	public final void reschedule(double dTime) 
-	{
-		if (dTime <= 0.0) {
-			step(sim);
-		}
-		sim.schedule.scheduleOnceIn(dTime, this);
+		double cover = sendCover();
+		if (cover >= maxCover) setCover(maxCover);
+		else setCover(cover + store.get(slot, GROWTH_RATE));
 	}
 	
 	/**
 	 * Interaction with massive corals
+	 * @param mB the massive corals
+	 * @param outline a polygon to draw the outlines of the corals into
 	 */
-	public void interactMaCo()
+	public void interactMaCo(Bag mB, Polygon2D.Double outline)
 	{
-		
-		Bag mB = sim.massiveCorals.getAllObjects();
 		for (int i=0; i<mB.size(); i++)
 		{
 			MassiveCoral mC = (MassiveCoral) mB.objs[i];
-			if (mC.sendShape().intersects(sendShape()))
+			mC.haloOutline(outline);
+			if (outline.intersects(sendShape()))
 			{
 				
-			if (mC.sendShape().contains(this.sendShape()))
+			if (outline.contains(this.sendShape()))
 			{	
-				cover = 0;
-				growthRate = 0;
+				setCover(0);
+				store.set(slot, GROWTH_RATE, 0);
 			}
-			else if (mC.size > size)
-				growthRate = growthRate * 0.9;
+			else if (mC.haloSize() > size)
+				store.set(slot, GROWTH_RATE, store.get(slot, GROWTH_RATE) * 0.9);
 				
 			}
 		}
@@ -155,24 +146,26 @@ public class TurfCell extends RectanglePortrayal2D implements Steppable
 	
 	/**
 	 * Interaction with branching corals
+	 * @param bB the branching corals
 	 */
-	public void interactBraCo()
+	public void interactBraCo(Bag bB)
 	{
-		Bag bB = sim.branchingCorals.getAllObjects();
 		for (int i=0; i<bB.size(); i++)
 		{
 			BranchingCoral bC = (BranchingCoral) bB.objs[i];
+			double radius = bC.haloRadius();
+			Ellipse2D.Double shape = new Ellipse2D.Double(bC.haloX() - radius, bC.haloY() - radius, 2*radius, 2*radius);
 			
-			if (bC.sendShape().intersects(sendShape()))
+			if (shape.intersects(sendShape()))
 			{
 				
-				if (bC.sendShape().contains(this.sendShape()))
+				if (shape.contains(this.sendShape()))
 				{	
-					cover = 0;
-					growthRate = 0;
+					setCover(0);
+					store.set(slot, GROWTH_RATE, 0);
 				}
-				else if (bC.size > size)
-					growthRate = growthRate * 0.9;
+				else if (bC.haloSize() > size)
+					store.set(slot, GROWTH_RATE, store.get(slot, GROWTH_RATE) * 0.9);
 			}
 		}
 	}
@@ -186,7 +179,7 @@ public class TurfCell extends RectanglePortrayal2D implements Steppable
 		final double height = info.draw.height * cellHeight;
 	    	
 		SimpleColorMap colorM = new SimpleColorMap( 0.0, 100.0, Color.black, turfColor);		
-		color = colorM.getColor(cover);
+		color = colorM.getColor(sendCover());
 		graphics.setColor(color);
 	    	
 		final int x = (int) (info.draw.x - (cellWidth*0.5));
@@ -199,10 +192,12 @@ public class TurfCell extends RectanglePortrayal2D implements Steppable
 		
 	public Rectangle2D.Double sendShape()
 	{
-		return new Rectangle2D.Double( x,y, cellWidth, cellHeight );
+		return cell;
 	}
 	
-	public double sendCover() { return cover; }
+	public double sendCover() { return store.get(slot, COVER); }
+	
+	public void setCover(double cover) { store.set(slot, COVER, cover); }
 	
 	
 }